@@ -2,7 +2,9 @@ package de.dailab.recommender.constraint;
 
 import de.dailab.recommender.dataset.Dataset;
 import de.dailab.recommender.dataset.Entity;
+import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.dataset.RelationshipType;
+import de.dailab.recommender.matrix.Matrix;
 import de.dailab.recommender.recommendation.Recommendation;
 
 /**
@@ -15,7 +17,9 @@ public class PresentConstraint
     implements Constraint
 {
 	/**
-	 * A present constraint based on given dataset, source and relationship types.
+	 * A present constraint based on given dataset, source and relationship types. Only relationship types whose subject
+	 * is the type of the source are considered. The relationships are looked up in each call to accept(), and thus
+	 * reflect changes to the dataset.
 	 * 
 	 * @param dataset The dataset
 	 * @param source The source entity
@@ -35,10 +39,19 @@ public class PresentConstraint
 	@Override
 	public boolean accept(Recommendation recommendation)
 	{
+		final Entity entity = recommendation.getEntity();
+
 		for (final RelationshipType relationshipType: relationshipTypes)
-			if (dataset.getRelationshipSet(relationshipType).getObject().equals(recommendation.getEntity().getType())
-			    && dataset.getRelationshipSet(relationshipType).getMatrix().get(source.getId(),
-			        recommendation.getEntity().getId()) != 0.) return false;
+		{
+			final RelationshipSet relationshipSet = dataset.getRelationshipSet(relationshipType);
+			if (!relationshipSet.getSubject().equals(source.getType())
+			    || !relationshipSet.getObject().equals(entity.getType())) continue;
+
+			/* The row count is kept by the matrix; it avoids looking up entries for sources without relationships */
+			final Matrix matrix = relationshipSet.getMatrix();
+			if (matrix.getRowCount(source.getId()) != 0 && matrix.get(source.getId(), entity.getId()) != 0.)
+			    return false;
+		}
 
 		return true;
 	}
@@ -0,0 +1,235 @@
+package de.dailab.recommender.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+
+/**
+ * The neighbors of all entities of a dataset over all relationship sets, stored in compressed sparse row format for
+ * each entity type. Obtained through Dataset.getAdjacencyIndex(), which builds it once and reuses it until a
+ * relationship set is added or replaced when all matrices are frozen, and builds a new one on each call otherwise.
+ * <p>
+ * The neighbors of an entity are those returned by Dataset.getNeighbors(), in the same order: for each relationship
+ * set in turn, the entities in the row of the entity (followed forward) and then those in its column (followed
+ * backward). Entities of a relationship set whose subject and object types are equal are thus found once in each
+ * direction. Neighbors are iterated without creating objects using a {@link NeighborCursor}.
+ * <p>
+ * For each entity type, four parallel arrays are stored: the offset of each entity, and the ID, the link and the
+ * weight of each neighbor. The link holds the index of the relationship set and the direction. Weights are not stored
+ * for entity types that are connected only by unweighted relationship sets. The memory requirement is thus
+ * {@code 2 r (2 I + D) + n I} for r relationships and n entities, where I is the size of int and D the size of double.
+ * <p>
+ * The neighbors and weights are those of the matrices when the index was built; later changes to modifiable matrices
+ * are not reflected.
+ * 
+ * @author kunegis
+ */
+public final class AdjacencyIndex
+{
+	/**
+	 * Build the adjacency index of a dataset.
+	 * 
+	 * @param dataset A dataset; all relationship sets must have a matrix
+	 */
+	public AdjacencyIndex(Dataset dataset)
+	{
+		final int typeCount = dataset.getEntityTypes().size();
+
+		relationshipSets = new ArrayList <RelationshipSet>(dataset.getRelationshipSets());
+		final int relationshipSetCount = relationshipSets.size();
+		matrices = new Matrix[relationshipSetCount];
+		subjectTypeIndexes = new int[relationshipSetCount];
+		objectTypeIndexes = new int[relationshipSetCount];
+		maxAbsWeights = new double[relationshipSetCount];
+		absWeightSums = new double[relationshipSetCount];
+		for (int r = 0; r < relationshipSetCount; ++r)
+		{
+			final RelationshipSet relationshipSet = relationshipSets.get(r);
+			matrices[r] = relationshipSet.getMatrix();
+			subjectTypeIndexes[r] = dataset.getEntityTypeIndex(relationshipSet.getSubject());
+			objectTypeIndexes[r] = dataset.getEntityTypeIndex(relationshipSet.getObject());
+		}
+
+		sizes = new int[typeCount];
+		offsets = new int[typeCount][];
+		ids = new int[typeCount][];
+		links = new int[typeCount][];
+		weights = new double[typeCount][];
+
+		/*
+		 * Matrices with no rows or columns, i.e. of relationship sets with an empty entity set, have no entries and are
+		 * skipped; their CURSORS[r] is NULL.
+		 */
+		final MatrixCursor cursors[] = new MatrixCursor[relationshipSetCount];
+		for (int r = 0; r < relationshipSetCount; ++r)
+			if (matrices[r].rows() != 0 && matrices[r].cols() != 0) cursors[r] = matrices[r].cursor();
+
+		for (int t = 0; t < typeCount; ++t)
+		{
+			final int size = dataset.getExistingEntitySet(dataset.getEntityType(t)).size();
+			sizes[t] = size;
+
+			/* Count */
+			final int typeOffsets[] = new int[size + 1];
+			boolean weighted = false;
+			for (int r = 0; r < relationshipSetCount; ++r)
+			{
+				final Matrix matrix = matrices[r];
+				final boolean empty = cursors[r] == null;
+				if (subjectTypeIndexes[r] == t && !empty)
+					for (int id = 0; id < size; ++id)
+						typeOffsets[id + 1] += matrix.getRowCount(id);
+				if (objectTypeIndexes[r] == t && !empty)
+					for (int id = 0; id < size; ++id)
+						typeOffsets[id + 1] += matrix.getColCount(id);
+				if ((subjectTypeIndexes[r] == t || objectTypeIndexes[r] == t)
+				    && !matrix.getWeightType().equals(boolean.class.getSimpleName())) weighted = true;
+			}
+			for (int id = 0; id < size; ++id)
+				typeOffsets[id + 1] += typeOffsets[id];
+
+			/* Fill */
+			final int count = typeOffsets[size];
+			final int typeIds[] = new int[count];
+			final int typeLinks[] = new int[count];
+			final double typeWeights[] = weighted ? new double[count] : null;
+			int k = 0;
+			for (int id = 0; id < size; ++id)
+			{
+				for (int r = 0; r < relationshipSetCount; ++r)
+				{
+					if (cursors[r] == null) continue;
+					if (subjectTypeIndexes[r] == t)
+					{
+						for (cursors[r].row(id); cursors[r].next(); ++k)
+						{
+							typeIds[k] = cursors[r].index();
+							typeLinks[k] = r << 1;
+							final double weight = cursors[r].value();
+							if (weighted) typeWeights[k] = weight;
+							if (Math.abs(weight) > maxAbsWeights[r]) maxAbsWeights[r] = Math.abs(weight);
+							absWeightSums[r] += Math.abs(weight);
+						}
+					}
+					if (objectTypeIndexes[r] == t)
+					{
+						for (cursors[r].col(id); cursors[r].next(); ++k)
+						{
+							typeIds[k] = cursors[r].index();
+							typeLinks[k] = r << 1 | 1;
+							if (weighted) typeWeights[k] = cursors[r].value();
+						}
+					}
+				}
+				assert k == typeOffsets[id + 1];
+			}
+
+			offsets[t] = typeOffsets;
+			ids[t] = typeIds;
+			links[t] = typeLinks;
+			weights[t] = typeWeights;
+		}
+	}
+
+	/**
+	 * @return A new cursor over the neighbors of entities, not positioned on any entity
+	 */
+	public NeighborCursor cursor()
+	{
+		return new NeighborCursor(this);
+	}
+
+	/**
+	 * @param typeIndex The index of an entity type
+	 * @param id The ID of an entity of that type
+	 * @return The number of neighbors of the entity
+	 */
+	public int getDegree(int typeIndex, int id)
+	{
+		return offsets[typeIndex][id + 1] - offsets[typeIndex][id];
+	}
+
+	/**
+	 * @return The number of relationship sets
+	 */
+	public int getRelationshipSetCount()
+	{
+		return relationshipSets.size();
+	}
+
+	/**
+	 * @param relationshipIndex The index of a relationship set, as returned by NeighborCursor.relationshipIndex()
+	 * @return The relationship set of the given index
+	 */
+	public RelationshipSet getRelationshipSet(int relationshipIndex)
+	{
+		return relationshipSets.get(relationshipIndex);
+	}
+
+	/**
+	 * @param relationshipIndex The index of a relationship set
+	 * @return The largest absolute weight in the relationship set, or zero when it is empty
+	 */
+	public double getMaxAbsWeight(int relationshipIndex)
+	{
+		return maxAbsWeights[relationshipIndex];
+	}
+
+	/**
+	 * @param relationshipIndex The index of a relationship set
+	 * @return The sum of the absolute weights of all entries of the matrix of the relationship set, summed row by row
+	 */
+	public double getAbsWeightSum(int relationshipIndex)
+	{
+		return absWeightSums[relationshipIndex];
+	}
+
+	/**
+	 * Whether this index still describes the given dataset, whose matrices must all be frozen and thus cannot have
+	 * changed since this index was built.
+	 * 
+	 * @param dataset A frozen dataset
+	 * @return Whether DATASET has the same entity set sizes, the same relationship sets and the same matrices as when
+	 *         this index was built
+	 */
+	boolean isValid(Dataset dataset)
+	{
+		assert dataset.isFrozen();
+
+		if (dataset.getEntityTypes().size() != sizes.length) return false;
+		for (int t = 0; t < sizes.length; ++t)
+			if (dataset.getExistingEntitySet(dataset.getEntityType(t)).size() != sizes[t]) return false;
+
+		if (dataset.getRelationshipSets().size() != relationshipSets.size()) return false;
+		int r = 0;
+		for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
+		{
+			if (relationshipSet != relationshipSets.get(r) || relationshipSet.getMatrix() != matrices[r]) return false;
+			++r;
+		}
+		return true;
+	}
+
+	/*
+	 * By relationship index: the relationship set, its matrix when the index was built, the indexes of its subject and
+	 * object entity types, and statistics of its weights.
+	 */
+	private final List <RelationshipSet> relationshipSets;
+	private final Matrix matrices[];
+	final int subjectTypeIndexes[], objectTypeIndexes[];
+	private final double maxAbsWeights[], absWeightSums[];
+
+	/*
+	 * By entity type index: the number of entities, and the neighbors in compressed sparse row format. The neighbors
+	 * of entity i of type t are found at the positions OFFSETS[t][i] to OFFSETS[t][i + 1] of the other arrays. The
+	 * link of a neighbor is twice the relationship index, plus one when the edge is followed backward. WEIGHTS[t] is
+	 * NULL when all weights are one.
+	 */
+	private final int sizes[];
+	final int offsets[][];
+	final int ids[][];
+	final int links[][];
+	final double weights[][];
+}
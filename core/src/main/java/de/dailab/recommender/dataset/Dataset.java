@@ -3,13 +3,21 @@ package de.dailab.recommender.dataset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import de.dailab.recommender.matrix.Entry;
 import de.dailab.recommender.matrix.template.MatrixFactory;
+import de.dailab.recommender.matrix.template.ParallelMultiplication;
 
 /**
  * A semantic network consisting of entities and relationships of any number of types.
@@ -75,15 +83,39 @@ public class Dataset
 		return ret;
 	}
 
+	/**
+	 * Convert the matrices of all relationship sets into the read-only compressed format. This saves memory and speeds
+	 * up predictors and recommenders, but the relationship sets cannot be modified afterwards, except by replacing
+	 * their matrices.
+	 * <p>
+	 * The indexes used by getEntity(MetadataName, EntityType, Object) are built for all metadata, in parallel, so that
+	 * lookups by request threads do not have to build them.
+	 * 
+	 * @see MatrixFactory#freeze(de.dailab.recommender.matrix.Matrix)
+	 */
+	public final void freeze()
+	{
+		for (final RelationshipSet relationshipSet: relationshipSets.values())
+			relationshipSet.setMatrix(MatrixFactory.freeze(relationshipSet.getMatrix()));
+
+		buildMetadataIndexes();
+	}
+
 	/**
 	 * Add an entity set. If this dataset already contains an entity set of the same entity type, the previous entity
-	 * set is removed.
+	 * set is removed. An entity type keeps its index when its entity set is replaced.
 	 * 
 	 * @param entitySet the entity set to add
 	 */
 	public final void addEntitySet(EntitySet entitySet)
 	{
 		entitySets.put(entitySet.getType(), entitySet);
+
+		if (!entityTypeIndexes.containsKey(entitySet.getType()))
+		{
+			entityTypeIndexes.put(entitySet.getType(), entityTypeList.size());
+			entityTypeList.add(entitySet.getType());
+		}
 	}
 
 	/**
@@ -187,6 +219,56 @@ public class Dataset
 		return ret;
 	}
 
+	/**
+	 * The index of an entity type, as used in entity handles. Entity types are numbered from zero in the order in which
+	 * their entity sets were first added.
+	 * 
+	 * @param entityType An entity type of this dataset
+	 * @return The index of the entity type
+	 * @throws NoSuchElementException There is no entity set of the given type
+	 * @see EntityHandle
+	 */
+	public final int getEntityTypeIndex(EntityType entityType)
+	{
+		final Integer ret = entityTypeIndexes.get(entityType);
+		if (ret == null)
+		    throw new NoSuchElementException(String.format("Dataset has no entity type \"%s\"", entityType));
+		return ret;
+	}
+
+	/**
+	 * The entity type of a given index.
+	 * 
+	 * @param typeIndex An entity type index, smaller than the number of entity types
+	 * @return The entity type of the given index
+	 */
+	public final EntityType getEntityType(int typeIndex)
+	{
+		return entityTypeList.get(typeIndex);
+	}
+
+	/**
+	 * The handle of an entity.
+	 * 
+	 * @param entity An entity of this dataset
+	 * @return The handle of the entity, using the entity type indexes of this dataset
+	 */
+	public final long getHandle(Entity entity)
+	{
+		return EntityHandle.pack(getEntityTypeIndex(entity.getType()), entity.getId());
+	}
+
+	/**
+	 * The entity of a handle.
+	 * 
+	 * @param handle A handle using the entity type indexes of this dataset
+	 * @return A new entity object
+	 */
+	public final Entity getEntity(long handle)
+	{
+		return new Entity(entityTypeList.get(EntityHandle.getTypeIndex(handle)), EntityHandle.getId(handle));
+	}
+
 	/**
 	 * Return a specific metadata of a given entity.
 	 * 
@@ -211,38 +293,93 @@ public class Dataset
 	}
 
 	/**
-	 * Get all neighbors of an entity.
+	 * Get all neighbors of an entity. In frozen datasets, the neighbors are read from the adjacency index; iterating
+	 * over them using getAdjacencyIndex().cursor() avoids creating the returned objects. Otherwise, they are read from
+	 * the rows and columns of the matrices, and thus reflect all changes to them.
 	 * 
 	 * @param entity The entity to get the neighbors of
-	 * @return An iterator over all neighbors, not in any particular order
+	 * @return An iterator over all neighbors, in the order described in AdjacencyIndex
 	 */
 	public Iterable <DatasetEntry> getNeighbors(Entity entity)
 	{
-		final List <DatasetEntry> ret = new ArrayList <DatasetEntry>();
-
-		for (final RelationshipSet relationshipSet: getRelationshipSets())
+		if (!isFrozen())
 		{
-			if (relationshipSet.getSubject().equals(entity.getType()))
+			final List <DatasetEntry> ret = new ArrayList <DatasetEntry>();
+
+			for (final RelationshipSet relationshipSet: getRelationshipSets())
 			{
-				for (final Entry entry: relationshipSet.getMatrix().row(entity.getId()))
+				if (relationshipSet.getSubject().equals(entity.getType()))
 				{
-					final Entity neighbor = new Entity(relationshipSet.getObject(), entry.index);
-					ret.add(new DatasetEntry(neighbor, relationshipSet.getType(), true, entry.value));
+					for (final Entry entry: relationshipSet.getMatrix().row(entity.getId()))
+					{
+						final Entity neighbor = new Entity(relationshipSet.getObject(), entry.index);
+						ret.add(new DatasetEntry(neighbor, relationshipSet.getType(), true, entry.value));
+					}
 				}
-			}
-			if (relationshipSet.getObject().equals(entity.getType()))
-			{
-				for (final Entry entry: relationshipSet.getMatrix().col(entity.getId()))
+				if (relationshipSet.getObject().equals(entity.getType()))
 				{
-					final Entity neighbor = new Entity(relationshipSet.getSubject(), entry.index);
-					ret.add(new DatasetEntry(neighbor, relationshipSet.getType(), false, entry.value));
+					for (final Entry entry: relationshipSet.getMatrix().col(entity.getId()))
+					{
+						final Entity neighbor = new Entity(relationshipSet.getSubject(), entry.index);
+						ret.add(new DatasetEntry(neighbor, relationshipSet.getType(), false, entry.value));
+					}
 				}
 			}
+
+			return ret;
 		}
 
+		final AdjacencyIndex adjacencyIndex = getAdjacencyIndex();
+		final NeighborCursor cursor = adjacencyIndex.cursor();
+		final int typeIndex = getEntityTypeIndex(entity.getType());
+
+		final List <DatasetEntry> ret = new ArrayList <DatasetEntry>(adjacencyIndex.getDegree(typeIndex, entity
+		    .getId()));
+
+		for (cursor.entity(typeIndex, entity.getId()); cursor.next();)
+		{
+			final Entity neighbor = new Entity(getEntityType(cursor.typeIndex()), cursor.id());
+			ret.add(new DatasetEntry(neighbor, adjacencyIndex.getRelationshipSet(cursor.relationshipIndex()).getType(),
+			    cursor.forward(), cursor.weight()));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * The neighbors of all entities over all relationship sets. In frozen datasets, the index is built on the first
+	 * call and reused until an entity set or relationship set is added or replaced. Otherwise, the matrices may be
+	 * modified at any time, and a new index is built on each call.
+	 * 
+	 * @return The adjacency index of the current relationship sets
+	 */
+	public final AdjacencyIndex getAdjacencyIndex()
+	{
+		if (!isFrozen()) return new AdjacencyIndex(this);
+
+		AdjacencyIndex ret = adjacencyIndex;
+		if (ret == null || !ret.isValid(this))
+		{
+			ret = new AdjacencyIndex(this);
+			adjacencyIndex = ret;
+		}
 		return ret;
 	}
 
+	/**
+	 * Whether the matrices of all relationship sets are read-only, as after freeze(). Only the matrices of frozen
+	 * datasets are indexed by getAdjacencyIndex() across calls.
+	 * 
+	 * @return Whether all matrices are frozen
+	 * @see MatrixFactory#isFrozen(de.dailab.recommender.matrix.Matrix)
+	 */
+	public final boolean isFrozen()
+	{
+		for (final RelationshipSet relationshipSet: relationshipSets.values())
+			if (!MatrixFactory.isFrozen(relationshipSet.getMatrix())) return false;
+		return true;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -279,29 +416,81 @@ public class Dataset
 	 */
 	public Entity getEntity(MetadataName metadataName, EntityType entityType, Object object)
 	{
-		MetadataIndex metadataIndex = metadataIndexes.get(metadataName);
+		return getMetadataValueIndex(metadataName).getEntity(entityType, object);
+	}
 
-		if (metadataIndex == null)
-		{
-			metadataIndex = new MetadataIndex();
+	/**
+	 * The index of entities by the values of a metadata. The index is built on first use, or by freeze(), and is not
+	 * updated when entities are added or their metadata is changed. Can be called by several threads at once.
+	 * 
+	 * @param metadataName A metadata name
+	 * @return The index of the metadata
+	 */
+	public final MetadataValueIndex getMetadataValueIndex(MetadataName metadataName)
+	{
+		final MetadataValueIndex ret = metadataIndexes.get(metadataName);
+		if (ret != null) return ret;
 
-			for (final EntitySet entitySet: entitySets.values())
-			{
-				final SingleMetadataIndex singleMetadataIndex = metadataIndex.getSingleIdCache(entitySet.getType());
+		/* Another thread may build the same index at the same time; the first one added is kept */
+		final MetadataValueIndex newIndex = new MetadataValueIndex(this, metadataName);
+		final MetadataValueIndex previous = metadataIndexes.putIfAbsent(metadataName, newIndex);
+		return previous == null ? newIndex : previous;
+	}
 
-				if (!entitySet.getMetadataNames().contains(metadataName)) continue;
+	/**
+	 * Build the metadata value indexes of all metadata of all entity sets, replacing existing ones. The indexes of
+	 * different metadata are built in parallel using the executor service of ParallelMultiplication, except when
+	 * called from a thread of that executor service.
+	 */
+	private void buildMetadataIndexes()
+	{
+		final Set <MetadataName> metadataNames = new HashSet <MetadataName>();
+		for (final EntitySet entitySet: entitySets.values())
+			metadataNames.addAll(entitySet.getMetadataNames());
 
-				for (int i = 0; i < entitySet.size(); ++i)
+		final ExecutorService executorService = ParallelMultiplication.getExecutorService();
+		if (executorService == null || ParallelMultiplication.isPoolThread() || metadataNames.size() <= 1)
+		{
+			for (final MetadataName metadataName: metadataNames)
+				metadataIndexes.put(metadataName, new MetadataValueIndex(this, metadataName));
+			return;
+		}
+
+		final List <Future <MetadataValueIndex>> futures = new ArrayList <Future <MetadataValueIndex>>();
+		for (final MetadataName metadataName: metadataNames)
+		{
+			futures.add(executorService.submit(new Callable <MetadataValueIndex>()
+			{
+				@Override
+				public MetadataValueIndex call()
 				{
-					final Object singleMetadata = entitySet.getMetadata(i, metadataName);
-					if (singleMetadata != null) singleMetadataIndex.add(i, singleMetadata);
+					return new MetadataValueIndex(Dataset.this, metadataName);
 				}
-			}
-
-			metadataIndexes.put(metadataName, metadataIndex);
+			}));
 		}
 
-		return metadataIndex.getEntity(entityType, object);
+		try
+		{
+			for (final Future <MetadataValueIndex> future: futures)
+			{
+				final MetadataValueIndex metadataValueIndex = future.get();
+				metadataIndexes.put(metadataValueIndex.getMetadataName(), metadataValueIndex);
+			}
+		}
+		catch (final InterruptedException interruptedException)
+		{
+			for (final Future <MetadataValueIndex> future: futures)
+				future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(interruptedException);
+		}
+		catch (final ExecutionException executionException)
+		{
+			final Throwable cause = executionException.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
 	}
 
 	/**
@@ -314,5 +503,20 @@ public class Dataset
 	 */
 	private final Map <EntityType, EntitySet> entitySets = new HashMap <EntityType, EntitySet>();
 
-	private final Map <MetadataName, MetadataIndex> metadataIndexes = new HashMap <MetadataName, MetadataIndex>();
+	/**
+	 * The entity types by their index, and the index of each entity type.
+	 */
+	private final List <EntityType> entityTypeList = new ArrayList <EntityType>();
+	private final Map <EntityType, Integer> entityTypeIndexes = new HashMap <EntityType, Integer>();
+
+	/**
+	 * The adjacency index computed by getAdjacencyIndex() for the frozen matrices. NULL when not yet computed.
+	 */
+	private volatile AdjacencyIndex adjacencyIndex;
+
+	/**
+	 * The metadata value indexes by metadata name. A concurrent map, so that indexes built by one thread are safely
+	 * published to others.
+	 */
+	private final ConcurrentMap <MetadataName, MetadataValueIndex> metadataIndexes = new ConcurrentHashMap <MetadataName, MetadataValueIndex>();
 }
@@ -0,0 +1,373 @@
+package de.dailab.recommender.dataset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import de.dailab.recommender.matrix.MappedMatrix;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Saving and loading of whole datasets in a binary format. Loading a snapshot does not parse text and does not sort
+ * relationships, and is thus limited by the speed at which the files can be read. Datasets loaded from text files or
+ * databases can be saved once as a snapshot and loaded from it afterwards.
+ * <p>
+ * A snapshot is a directory containing the file "dataset" and one file "matrix-k" for the k-th relationship set. The
+ * file "dataset" contains the entity sets with their metadata and the relationship sets without their matrices. The
+ * matrices are stored in the format of {@link MappedMatrix}. All numbers are big-endian, and strings are stored as
+ * their length in bytes (int, -1 for NULL) followed by their UTF-8 encoding.
+ * <ul>
+ * <li>Header: magic number (int), version (int), number of entity sets (int)
+ * <li>Each entity set: type (string), size (int), number of metadata (int, -1 when setMetadataNames() was not called),
+ * and for each metadata its name (string), type (byte: 0 for String, 1 for Integer, 2 for Double, 3 for Date) and
+ * value for each entity (string, int, double or long)
+ * <li>Number of relationship sets (int)
+ * <li>Each relationship set: type, subject, object, relationship format and weight range (all strings; the latter two
+ * may be NULL), and the kind of matrix (byte: 0 for modifiable, 1 for symmetric, 2 for read-only)
+ * </ul>
+ * Entity sets are stored in the order of their entity type index, so that entity handles remain valid. Metadata indexes
+ * are not stored, because they are built from the metadata on first use.
+ * <p>
+ * When a snapshot is loaded with mapping enabled, the matrices are {@link MappedMatrix} objects which are read by the
+ * operating system on first access instead of being loaded. Mapped matrices are read-only and are not symmetric even
+ * when the saved matrices were. Otherwise, each matrix is loaded into the type it had when saved: read-only matrices
+ * into the format returned by MatrixFactory.freeze(), symmetric matrices into symmetric matrices, and other matrices
+ * into memory-held matrices. Relationship weights are stored as in MappedMatrix, i.e. long weights beyond the
+ * precision of double are rounded.
+ * 
+ * @author kunegis
+ */
+public final class DatasetSnapshot
+{
+	/**
+	 * Save a dataset as a snapshot. Existing files of the snapshot are overwritten.
+	 * 
+	 * @param dataset The dataset to save
+	 * @param directory The directory of the snapshot; created if it does not exist
+	 * @throws IOException on write errors
+	 */
+	public static void write(Dataset dataset, File directory)
+	    throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+		    throw new IOException(String.format("%s:  Cannot create directory", directory));
+
+		final List <RelationshipSet> relationshipSets = new ArrayList <RelationshipSet>(dataset.getRelationshipSets());
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+		    directory, DATASET_FILENAME))));
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			out.writeInt(dataset.getEntityTypes().size());
+			for (int t = 0; t < dataset.getEntityTypes().size(); ++t)
+				writeEntitySet(out, dataset.getExistingEntitySet(dataset.getEntityType(t)));
+
+			out.writeInt(relationshipSets.size());
+			for (final RelationshipSet relationshipSet: relationshipSets)
+			{
+				writeString(out, relationshipSet.getType().getName());
+				writeString(out, relationshipSet.getSubject().getName());
+				writeString(out, relationshipSet.getObject().getName());
+				writeString(out, relationshipSet.getRelationshipFormat() == null ? null : relationshipSet
+				    .getRelationshipFormat().name());
+				writeString(out, relationshipSet.getWeightRange() == null ? null : relationshipSet.getWeightRange()
+				    .name());
+
+				final Matrix matrix = relationshipSet.getMatrix();
+				out.writeByte(MatrixFactory.isFrozen(matrix) ? KIND_FROZEN : matrix.isSymmetric() ? KIND_SYMMETRIC
+				    : KIND_MEMORY);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		for (int k = 0; k < relationshipSets.size(); ++k)
+			MappedMatrix.write(relationshipSets.get(k).getMatrix(), getMatrixFile(directory, k));
+
+		LOGGER.info(String.format("Wrote snapshot %s:  %d entity sets, %d relationship sets", directory, dataset
+		    .getEntityTypes().size(), relationshipSets.size()));
+	}
+
+	/**
+	 * Load a snapshot into memory.
+	 * 
+	 * @param directory The directory of the snapshot, as written by write()
+	 * @return The loaded dataset
+	 * @throws IOException on read errors, or when the directory does not contain a valid snapshot
+	 */
+	public static Dataset read(File directory)
+	    throws IOException
+	{
+		return read(directory, false);
+	}
+
+	/**
+	 * Load a snapshot, optionally mapping the matrices instead of loading them.
+	 * 
+	 * @param directory The directory of the snapshot, as written by write()
+	 * @param map Whether to map the matrices into memory as read-only MappedMatrix objects instead of loading them; the
+	 *        files of the snapshot must then not be modified while the dataset is used
+	 * @return The loaded dataset
+	 * @throws IOException on read errors, or when the directory does not contain a valid snapshot
+	 */
+	public static Dataset read(File directory, boolean map)
+	    throws IOException
+	{
+		final File file = new File(directory, DATASET_FILENAME);
+		final Dataset ret = new Dataset();
+		final List <RelationshipSet> relationshipSets = new ArrayList <RelationshipSet>();
+		final List <Byte> kinds = new ArrayList <Byte>();
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try
+		{
+			if (in.readInt() != MAGIC) throw new IOException(String.format("%s:  Not a dataset snapshot", file));
+			final int version = in.readInt();
+			if (version != VERSION)
+			    throw new IOException(String.format("%s:  Unsupported dataset snapshot version %d", file, version));
+
+			final int entitySetCount = readCount(in, file);
+			for (int t = 0; t < entitySetCount; ++t)
+				ret.addEntitySet(readEntitySet(in, file));
+
+			final int relationshipSetCount = readCount(in, file);
+			for (int k = 0; k < relationshipSetCount; ++k)
+			{
+				final RelationshipType type = new RelationshipType(readString(in));
+				final EntityType subject = new EntityType(readString(in));
+				final EntityType object = new EntityType(readString(in));
+				final String relationshipFormat = readString(in);
+				final String weightRange = readString(in);
+				final byte kind = in.readByte();
+				if (ret.getEntitySet(subject) == null || ret.getEntitySet(object) == null || kind < KIND_MEMORY
+				    || kind > KIND_FROZEN)
+				    throw new IOException(String.format("%s:  Invalid relationship set %s", file, type));
+				relationshipSets.add(new RelationshipSet(type, subject, object, relationshipFormat == null ? null
+				    : RelationshipFormat.valueOf(relationshipFormat), weightRange == null ? null : WeightRange
+				    .valueOf(weightRange)));
+				kinds.add(kind);
+			}
+		}
+		catch (final IllegalArgumentException illegalArgumentException)
+		{
+			/* Unknown relationship format or weight range */
+			throw new IOException(String.format("%s:  %s", file, illegalArgumentException.getMessage()));
+		}
+		finally
+		{
+			in.close();
+		}
+
+		for (int k = 0; k < relationshipSets.size(); ++k)
+		{
+			final RelationshipSet relationshipSet = relationshipSets.get(k);
+			final MappedMatrix mappedMatrix = new MappedMatrix(getMatrixFile(directory, k));
+			if (mappedMatrix.rows() != ret.getEntitySet(relationshipSet.getSubject()).size()
+			    || mappedMatrix.cols() != ret.getEntitySet(relationshipSet.getObject()).size())
+			    throw new IOException(String.format("%s:  Matrix size does not match entity sets", getMatrixFile(
+			        directory, k)));
+
+			relationshipSet.setMatrix(map ? mappedMatrix : load(mappedMatrix, kinds.get(k)));
+			ret.addRelationshipSet(relationshipSet);
+		}
+
+		LOGGER.info(String.format("Read snapshot %s:  %d entity sets, %d relationship sets", directory, ret
+		    .getEntityTypes().size(), relationshipSets.size()));
+
+		return ret;
+	}
+
+	private static void writeEntitySet(DataOutputStream out, EntitySet entitySet)
+	    throws IOException
+	{
+		writeString(out, entitySet.getType().getName());
+		final int size = entitySet.size();
+		out.writeInt(size);
+
+		final List <MetadataName> metadataNames = entitySet.getMetadataNameList();
+		if (metadataNames == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(metadataNames.size());
+		for (final MetadataName metadataName: metadataNames)
+		{
+			writeString(out, metadataName.getValue());
+			final Object array = entitySet.getMetadataArray(metadataName);
+			if (array instanceof StringColumn)
+			{
+				out.writeByte(TYPE_STRING);
+				final StringColumn stringColumn = (StringColumn) array;
+				for (int id = 0; id < size; ++id)
+					writeString(out, stringColumn.get(id));
+			}
+			else if (array instanceof int[])
+			{
+				out.writeByte(TYPE_INT);
+				final int ints[] = (int[]) array;
+				for (int id = 0; id < size; ++id)
+					out.writeInt(ints[id]);
+			}
+			else if (array instanceof double[])
+			{
+				out.writeByte(TYPE_DOUBLE);
+				final double doubles[] = (double[]) array;
+				for (int id = 0; id < size; ++id)
+					out.writeDouble(doubles[id]);
+			}
+			else
+			{
+				out.writeByte(TYPE_DATE);
+				final long times[] = (long[]) array;
+				for (int id = 0; id < size; ++id)
+					out.writeLong(times[id]);
+			}
+		}
+	}
+
+	private static EntitySet readEntitySet(DataInputStream in, File file)
+	    throws IOException
+	{
+		final EntityType type = new EntityType(readString(in));
+		final int size = readCount(in, file);
+		final int metadataCount = in.readInt();
+		if (metadataCount < 0) return EntitySet.newEntitySet(type, size, null, null);
+
+		final List <MetadataName> metadataNames = new ArrayList <MetadataName>(metadataCount);
+		final List <Object> arrays = new ArrayList <Object>(metadataCount);
+		for (int i = 0; i < metadataCount; ++i)
+		{
+			metadataNames.add(new MetadataName(readString(in)));
+			final byte metadataType = in.readByte();
+			switch (metadataType)
+			{
+			case TYPE_STRING:
+				final StringColumn stringColumn = new StringColumn(size);
+				for (int id = 0; id < size; ++id)
+					stringColumn.set(id, readString(in));
+				arrays.add(stringColumn);
+				break;
+			case TYPE_INT:
+				final int ints[] = new int[size];
+				for (int id = 0; id < size; ++id)
+					ints[id] = in.readInt();
+				arrays.add(ints);
+				break;
+			case TYPE_DOUBLE:
+				final double doubles[] = new double[size];
+				for (int id = 0; id < size; ++id)
+					doubles[id] = in.readDouble();
+				arrays.add(doubles);
+				break;
+			case TYPE_DATE:
+				final long times[] = new long[size];
+				for (int id = 0; id < size; ++id)
+					times[id] = in.readLong();
+				arrays.add(times);
+				break;
+			default:
+				throw new IOException(String.format("%s:  Invalid metadata type %d in entity set %s", file,
+				    metadataType, type));
+			}
+		}
+
+		return EntitySet.newEntitySet(type, size, metadataNames, arrays);
+	}
+
+	/**
+	 * Copy a mapped matrix into a memory-held matrix of the given kind.
+	 */
+	private static Matrix load(MappedMatrix mappedMatrix, byte kind)
+	{
+		final int m = mappedMatrix.rows();
+		final String weightType = mappedMatrix.getWeightType();
+		final boolean binary = weightType.equals(boolean.class.getSimpleName());
+
+		final int rowOffsets[] = new int[m + 1];
+		final int colIndexes[] = new int[mappedMatrix.nnz()];
+		final double values[] = binary ? null : new double[mappedMatrix.nnz()];
+		final MatrixCursor cursor = mappedMatrix.cursor();
+		int k = 0;
+		for (int i = 0; i < m; ++i)
+		{
+			for (cursor.row(i); cursor.next(); ++k)
+			{
+				colIndexes[k] = cursor.index();
+				if (!binary) values[k] = cursor.value();
+			}
+			rowOffsets[i + 1] = k;
+		}
+
+		return MatrixFactory.newMatrix(m, mappedMatrix.cols(), weightType, rowOffsets, colIndexes, values,
+		    kind == KIND_SYMMETRIC, kind == KIND_FROZEN);
+	}
+
+	private static File getMatrixFile(File directory, int k)
+	{
+		return new File(directory, MATRIX_FILENAME_PREFIX + k);
+	}
+
+	private static int readCount(DataInputStream in, File file)
+	    throws IOException
+	{
+		final int ret = in.readInt();
+		if (ret < 0) throw new IOException(String.format("%s:  Invalid count %d", file, ret));
+		return ret;
+	}
+
+	private static void writeString(DataOutputStream out, String string)
+	    throws IOException
+	{
+		if (string == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		final byte bytes[] = string.getBytes(ENCODING);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * @return The string, or NULL
+	 */
+	private static String readString(DataInputStream in)
+	    throws IOException
+	{
+		final int length = in.readInt();
+		if (length < 0) return null;
+		final byte bytes[] = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, ENCODING);
+	}
+
+	private static final String DATASET_FILENAME = "dataset";
+	private static final String MATRIX_FILENAME_PREFIX = "matrix-";
+	private static final String ENCODING = "UTF-8";
+
+	private static final int MAGIC = 0x44534e50;
+	private static final int VERSION = 1;
+
+	private static final byte KIND_MEMORY = 0, KIND_SYMMETRIC = 1, KIND_FROZEN = 2;
+	private static final byte TYPE_STRING = 0, TYPE_INT = 1, TYPE_DOUBLE = 2, TYPE_DATE = 3;
+
+	private static final Logger LOGGER = Logger.getLogger(DatasetSnapshot.class);
+}
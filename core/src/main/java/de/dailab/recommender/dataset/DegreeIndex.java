@@ -0,0 +1,123 @@
+package de.dailab.recommender.dataset;
+
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * The degrees of the subject and object entities of a relationship set, i.e. the number of entries in each row and
+ * column of its matrix. Obtained through RelationshipSet.getDegreeIndex(), which computes it once and then reuses it
+ * for frozen matrices, and computes a new one on each call otherwise.
+ * <p>
+ * Unlike MatrixStatistics, the degrees are read from the row and column counts of the matrix, which the matrices
+ * created by MatrixFactory and MatrixBuilder keep up to date, instead of iterating over all entries. The memory
+ * requirement is {@code (m + n) I} for an m by n matrix, where I is the size of int; for symmetric matrices the two
+ * arrays are shared.
+ * 
+ * @author kunegis
+ */
+public final class DegreeIndex
+{
+	/**
+	 * The degrees of the rows and columns of the given matrix.
+	 * 
+	 * @param matrix A matrix
+	 */
+	public DegreeIndex(Matrix matrix)
+	{
+		this.matrix = matrix;
+
+		final int m = matrix.rows();
+		final int n = matrix.cols();
+
+		rowDegrees = new int[m];
+		for (int i = 0; i < m; ++i)
+		{
+			rowDegrees[i] = matrix.getRowCount(i);
+			if (rowDegrees[i] > maxRowDegree) maxRowDegree = rowDegrees[i];
+		}
+
+		if (matrix.isSymmetric())
+		{
+			colDegrees = rowDegrees;
+			maxColDegree = maxRowDegree;
+		}
+		else
+		{
+			colDegrees = new int[n];
+			for (int j = 0; j < n; ++j)
+			{
+				colDegrees[j] = matrix.getColCount(j);
+				if (colDegrees[j] > maxColDegree) maxColDegree = colDegrees[j];
+			}
+		}
+	}
+
+	/**
+	 * @param i Row index, i.e. the ID of a subject entity
+	 * @return The number of entries in row I
+	 */
+	public int getRowDegree(int i)
+	{
+		return rowDegrees[i];
+	}
+
+	/**
+	 * @param j Column index, i.e. the ID of an object entity
+	 * @return The number of entries in column J
+	 */
+	public int getColDegree(int j)
+	{
+		return colDegrees[j];
+	}
+
+	/**
+	 * @return The largest row degree, or zero when the matrix has no rows
+	 */
+	public int getMaxRowDegree()
+	{
+		return maxRowDegree;
+	}
+
+	/**
+	 * @return The largest column degree, or zero when the matrix has no columns
+	 */
+	public int getMaxColDegree()
+	{
+		return maxColDegree;
+	}
+
+	/**
+	 * Count the rows having at least the given number of entries.
+	 * 
+	 * @param minimum Minimal degree
+	 * @return The number of rows whose degree is at least MINIMUM
+	 */
+	public int countRows(int minimum)
+	{
+		if (minimum > maxRowDegree) return 0;
+
+		int ret = 0;
+		for (final int degree: rowDegrees)
+			if (degree >= minimum) ++ret;
+		return ret;
+	}
+
+	/**
+	 * Whether this index still describes the given frozen matrix, which cannot have changed since this index was
+	 * computed.
+	 * 
+	 * @param matrix A frozen matrix
+	 * @return Whether MATRIX is the matrix this index was computed from
+	 */
+	boolean isValid(Matrix matrix)
+	{
+		assert MatrixFactory.isFrozen(matrix);
+		return matrix == this.matrix;
+	}
+
+	private final Matrix matrix;
+	private final int rowDegrees[];
+	private final int colDegrees[];
+	private int maxRowDegree = 0;
+	private int maxColDegree = 0;
+}
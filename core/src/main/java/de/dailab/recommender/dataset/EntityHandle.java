@@ -0,0 +1,49 @@
+package de.dailab.recommender.dataset;
+
+/**
+ * Entities packed into a single long, for use in internal loops and primitive collections instead of Entity objects.
+ * <p>
+ * A handle consists of the index of the entity type in the upper 32 bits and the entity ID in the lower 32 bits. Type
+ * indexes are assigned by a registry, usually that of a dataset (see {@link Dataset#getEntityTypeIndex(EntityType)}),
+ * and handles are only meaningful together with that registry. Handles of entities with nonnegative IDs are
+ * nonnegative.
+ * <p>
+ * Entity objects should be created from handles only at the boundary of the public API, e.g. when returning
+ * recommendations.
+ * 
+ * @author kunegis
+ */
+public final class EntityHandle
+{
+	/**
+	 * Pack an entity type index and an entity ID into a handle.
+	 * 
+	 * @param typeIndex The index of the entity type; nonnegative
+	 * @param id The entity ID; nonnegative
+	 * @return The handle
+	 */
+	public static long pack(int typeIndex, int id)
+	{
+		assert typeIndex >= 0 && id >= 0;
+
+		return (long) typeIndex << 32 | id;
+	}
+
+	/**
+	 * @param handle A handle
+	 * @return The entity type index of the handle
+	 */
+	public static int getTypeIndex(long handle)
+	{
+		return (int) (handle >>> 32);
+	}
+
+	/**
+	 * @param handle A handle
+	 * @return The entity ID of the handle
+	 */
+	public static int getId(long handle)
+	{
+		return (int) handle;
+	}
+}
@@ -0,0 +1,132 @@
+package de.dailab.recommender.dataset;
+
+import java.util.Arrays;
+
+/**
+ * A map from entity handles to objects, stored in an open-addressing hash table with linear probing. Unlike a HashMap
+ * keyed by Entity objects, neither the keys nor the table entries are objects, and lookups do not hash entity types.
+ * <p>
+ * Keys are handles as created by {@link EntityHandle#pack(int, int)}, and are thus nonnegative. Values may be NULL; a
+ * key mapped to NULL is still contained in the map. Keys cannot be removed. The memory requirement is at most
+ * {@code 4 * r * (L + P)} for r keys, where L is the size of long and P the pointer size.
+ * <p>
+ * Instances must not be used by several threads at once.
+ * 
+ * @param <V> The type of values
+ * 
+ * @author kunegis
+ */
+public final class EntityHandleMap <V>
+{
+	/**
+	 * An empty map.
+	 */
+	public EntityHandleMap()
+	{
+		allocate(MIN_LENGTH);
+	}
+
+	/**
+	 * @return The number of keys in the map
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Whether the map contains a key, possibly mapped to NULL.
+	 * 
+	 * @param handle An entity handle
+	 * @return Whether HANDLE was put into the map
+	 */
+	public boolean containsKey(long handle)
+	{
+		return keys[find(handle)] == handle;
+	}
+
+	/**
+	 * The value of a key.
+	 * 
+	 * @param handle An entity handle
+	 * @return The value of HANDLE, or NULL if HANDLE is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long handle)
+	{
+		final int slot = find(handle);
+		return keys[slot] == handle ? (V) values[slot] : null;
+	}
+
+	/**
+	 * Set the value of a key, adding the key if it is not present.
+	 * 
+	 * @param handle An entity handle
+	 * @param value The new value; may be NULL
+	 */
+	public void put(long handle, V value)
+	{
+		int slot = find(handle);
+		if (keys[slot] != handle)
+		{
+			if (2 * (size + 1) > keys.length)
+			{
+				final long oldKeys[] = keys;
+				final Object oldValues[] = values;
+				allocate(2 * keys.length);
+				for (int s = 0; s < oldKeys.length; ++s)
+				{
+					if (oldKeys[s] == EMPTY) continue;
+					final int newSlot = find(oldKeys[s]);
+					keys[newSlot] = oldKeys[s];
+					values[newSlot] = oldValues[s];
+				}
+				slot = find(handle);
+			}
+			keys[slot] = handle;
+			++size;
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * The slot containing HANDLE, or the empty slot at which it would be inserted.
+	 */
+	private int find(long handle)
+	{
+		assert handle >= 0;
+
+		final int mask = keys.length - 1;
+		int slot = (int) ((handle * 0x9E3779B97F4A7C15L) >>> shift);
+		while (keys[slot] != handle && keys[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Allocate empty tables of the given length, which must be a power of two.
+	 */
+	private void allocate(int length)
+	{
+		assert Integer.bitCount(length) == 1;
+
+		keys = new long[length];
+		Arrays.fill(keys, EMPTY);
+		values = new Object[length];
+		shift = 64 - Integer.numberOfTrailingZeros(length);
+	}
+
+	/*
+	 * KEYS[s] is the handle stored in slot s, or EMPTY, and VALUES[s] its value. At most half of all slots are used.
+	 * The first slot probed for a handle is given by the highest bits of the handle times a large odd constant
+	 * (Fibonacci hashing).
+	 */
+	private long keys[];
+	private Object values[];
+	private int shift;
+	private int size = 0;
+
+	private static final long EMPTY = -1;
+
+	private static final int MIN_LENGTH = 16;
+}
@@ -27,7 +27,9 @@ import java.util.Set;
  * <li>Double
  * <li>java.util.Date (only the time is stored)
  * </ul>
- * 
+ * <p>
+ * String metadata is stored in a StringColumn: a dictionary for metadata with few distinct values, and otherwise
+ * prefix-compressed blocks outside of the Java heap, which are decoded on each call to getMetadata().
  * <p>
  * The number of entities in an entity set can be zero.
  * 
@@ -57,8 +59,8 @@ public final class EntitySet
 	private int size = 0;
 
 	/**
-	 * The metadata. For each metadata type, an array of one of the following types: String[interned], int, double,
-	 * long.
+	 * The metadata. For each metadata type, a StringColumn or an array of one of the following types: int, double,
+	 * long. Arrays may be longer than SIZE after entities have been added.
 	 */
 	private final Map <MetadataName, Object> metadata = new HashMap <MetadataName, Object>();
 
@@ -161,7 +163,7 @@ public final class EntitySet
 
 			if (object instanceof String)
 			{
-				metadata.put(metadataName, new String[size]);
+				metadata.put(metadataName, new StringColumn(size));
 			}
 			else if (object instanceof Integer)
 			{
@@ -212,6 +214,7 @@ public final class EntitySet
 	 */
 	public void setMetadata(int entityId, MetadataName metadataName, Object metadataValue)
 	{
+		assert 0 <= entityId && entityId < size;
 		final Object array = metadata.get(metadataName);
 		setMetadata(entityId, array, metadataValue);
 	}
@@ -221,26 +224,35 @@ public final class EntitySet
 		if (metadataValue instanceof String)
 		{
 			final String string = (String) metadataValue;
-			final String stringArray[] = (String[]) array;
-			stringArray[entityId] = string;
+			final StringColumn stringColumn = (StringColumn) array;
+			stringColumn.set(entityId, string);
 		}
-		else if (metadataValue instanceof Integer)
+		else if (metadataValue instanceof Date)
 		{
-			final int number = ((Integer) metadataValue).intValue();
+			final Date date = (Date) metadataValue;
+			final long dateArray[] = (long[]) array;
+			dateArray[entityId] = date.getTime();
+		}
+		/*
+		 * Numbers are converted to the type of the metadata, as text files give all numbers as Double. Dates are then
+		 * given in milliseconds.
+		 */
+		else if (array instanceof int[])
+		{
+			final int number = ((Number) metadataValue).intValue();
 			final int intArray[] = (int[]) array;
 			intArray[entityId] = number;
 		}
-		else if (metadataValue instanceof Double)
+		else if (array instanceof double[])
 		{
-			final double number = ((Double) metadataValue).longValue();
+			final double number = ((Number) metadataValue).doubleValue();
 			final double doubleArray[] = (double[]) array;
 			doubleArray[entityId] = number;
 		}
-		else if (metadataValue instanceof Date)
+		else if (array instanceof long[])
 		{
-			final Date date = (Date) metadataValue;
 			final long dateArray[] = (long[]) array;
-			dateArray[entityId] = date.getTime();
+			dateArray[entityId] = ((Number) metadataValue).longValue();
 		}
 	}
 
@@ -253,12 +265,13 @@ public final class EntitySet
 	 */
 	public Object getMetadata(int entityId, MetadataName metadataName)
 	{
+		assert 0 <= entityId && entityId < size;
 		final Object array = metadata.get(metadataName);
 		assert array != null;
 
-		if (array instanceof String[])
+		if (array instanceof StringColumn)
 		{
-			return ((String[]) array)[entityId];
+			return ((StringColumn) array).get(entityId);
 		}
 		else if (array instanceof int[])
 		{
@@ -289,7 +302,9 @@ public final class EntitySet
 	 */
 	public Class <?> getMetadataClass(MetadataName metadataName)
 	{
-		return metadata.get(metadataName).getClass().getComponentType();
+		final Object array = metadata.get(metadataName);
+		if (array instanceof StringColumn) return String.class;
+		return array.getClass().getComponentType();
 	}
 
 	/**
@@ -311,26 +326,177 @@ public final class EntitySet
 		return ret;
 	}
 
+	/**
+	 * The metadata names in the order given to setMetadataNames(). Used by DatasetSnapshot.
+	 * 
+	 * @return The metadata names, or NULL when setMetadataNames() has not been called
+	 */
+	List <MetadataName> getMetadataNameList()
+	{
+		return metadataNames;
+	}
+
+	/**
+	 * The object holding all values of a metadata, of one of the types StringColumn, int[], double[] and long[]. Used by
+	 * DatasetSnapshot.
+	 * 
+	 * @param metadataName A metadata name of this entity set
+	 * @return The array of the metadata; not a copy. Arrays may be longer than the number of entities.
+	 */
+	Object getMetadataArray(MetadataName metadataName)
+	{
+		return metadata.get(metadataName);
+	}
+
+	/**
+	 * An entity set with the given metadata arrays. Used by DatasetSnapshot.
+	 * 
+	 * @param type The entity type
+	 * @param size The number of entities
+	 * @param metadataNames The metadata names; NULL when there are none
+	 * @param arrays The arrays of each metadata, in the format returned by getMetadataArray(); used by the entity set
+	 * @return The new entity set
+	 */
+	static EntitySet newEntitySet(EntityType type, int size, List <MetadataName> metadataNames, List <Object> arrays)
+	{
+		final EntitySet ret = new EntitySet(type);
+		ret.size = size;
+		ret.metadataNames = metadataNames;
+		if (metadataNames != null)
+		{
+			assert arrays.size() == metadataNames.size();
+			for (int i = 0; i < metadataNames.size(); ++i)
+			{
+				final Object array = arrays.get(i);
+				assert (array instanceof StringColumn ? ((StringColumn) array).size() : Array.getLength(array)) == size;
+				ret.metadata.put(metadataNames.get(i), arrays.get(i));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * A copy of this entity set in which the entities are renumbered, with the metadata of each entity moved to its new
+	 * ID. Used by DatasetReordering.
+	 * 
+	 * @param oldIds The old ID of each new ID; a permutation of the IDs of this entity set
+	 * @return The renumbered entity set
+	 */
+	EntitySet renumber(int oldIds[])
+	{
+		assert oldIds.length == size;
+
+		final EntitySet ret = new EntitySet(type);
+		ret.size = size;
+		ret.metadataNames = metadataNames;
+
+		for (final Map.Entry <MetadataName, Object> entry: metadata.entrySet())
+		{
+			final Object array = entry.getValue();
+			final Object newArray;
+			if (array instanceof StringColumn)
+			{
+				newArray = ((StringColumn) array).renumber(oldIds);
+			}
+			else if (array instanceof int[])
+			{
+				final int oldArray[] = (int[]) array, intArray[] = new int[size];
+				for (int i = 0; i < size; ++i)
+					intArray[i] = oldArray[oldIds[i]];
+				newArray = intArray;
+			}
+			else if (array instanceof double[])
+			{
+				final double oldArray[] = (double[]) array, doubleArray[] = new double[size];
+				for (int i = 0; i < size; ++i)
+					doubleArray[i] = oldArray[oldIds[i]];
+				newArray = doubleArray;
+			}
+			else
+			{
+				final long oldArray[] = (long[]) array, dateArray[] = new long[size];
+				for (int i = 0; i < size; ++i)
+					dateArray[i] = oldArray[oldIds[i]];
+				newArray = dateArray;
+			}
+			ret.metadata.put(entry.getKey(), newArray);
+		}
+
+		return ret;
+	}
+
 	/**
 	 * Add an entity to the set. The new entity will have as ID the current size of the entity set. All metadata is NULL
 	 * or zero initially.
+	 * <p>
+	 * Metadata arrays are at least doubled in size when they are full, so that adding entities one by one takes
+	 * amortized constant time. Call trimToSize() to free the unused space once all entities have been added.
 	 * 
 	 * @return The ID of the new entity
 	 */
 	public int addEntity()
 	{
+		return addEntities(1);
+	}
+
+	/**
+	 * Add entities to the set. The new entities will have as IDs the current size of the entity set and the following
+	 * integers. All metadata is NULL or zero initially.
+	 * 
+	 * @param count The number of entities to add; may be zero
+	 * @return The ID of the first new entity
+	 */
+	public int addEntities(int count)
+	{
+		assert count >= 0;
+
 		/* Set size */
-		final int ret = size++;
+		final int ret = size;
+		size += count;
+
+		/* Grow metadata arrays */
+		if (metadataNames != null)
+		{
+			for (final MetadataName metadataName: metadataNames)
+			{
+				final Object array = metadata.get(metadataName);
+				if (array instanceof StringColumn)
+				{
+					((StringColumn) array).setSize(size);
+					continue;
+				}
+				final int capacity = Array.getLength(array);
+				if (capacity >= size) continue;
+				final Object newArray = Array.newInstance(array.getClass().getComponentType(), Math.max(size,
+				    2 * capacity));
+				System.arraycopy(array, 0, newArray, 0, ret);
+				metadata.put(metadataName, newArray);
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Free the space reserved by addEntity() and addEntities() for entities not yet added. Should be called once all
+	 * entities have been added.
+	 */
+	public void trimToSize()
+	{
+		if (metadataNames == null) return;
 
-		/* Resize metadata arrays */
 		for (final MetadataName metadataName: metadataNames)
 		{
 			final Object array = metadata.get(metadataName);
+			if (array instanceof StringColumn)
+			{
+				((StringColumn) array).trimToSize();
+				continue;
+			}
+			if (Array.getLength(array) == size) continue;
 			final Object newArray = Array.newInstance(array.getClass().getComponentType(), size);
-			System.arraycopy(array, 0, newArray, 0, size - 1);
+			System.arraycopy(array, 0, newArray, 0, size);
 			metadata.put(metadataName, newArray);
 		}
-
-		return ret;
 	}
 }
@@ -0,0 +1,230 @@
+package de.dailab.recommender.dataset;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The entities of a dataset by the value of one metadata. Used by Dataset.getEntity(MetadataName, EntityType, Object),
+ * which builds the index of a metadata on first use, or for all metadata when the dataset is frozen.
+ * <p>
+ * For each entity type, the IDs of the entities are stored in an open-addressing hash table with linear probing. The
+ * values themselves are not stored; they are read from the entity set when comparing. For string metadata, the hash
+ * code of each value is stored along with the ID, so that values from front-coded columns are decoded only when the
+ * hash codes match. The memory requirement is thus at most {@code 4 n I} for n entities, where I is the size of int,
+ * and twice that for string metadata.
+ * <p>
+ * When several entities have the same value, the entity with the largest ID is found. The index is not updated when
+ * entities are added or metadata is changed; freezing the dataset builds it anew.
+ * <p>
+ * Instances are immutable and can be used by several threads at once.
+ * 
+ * @author kunegis
+ */
+public final class MetadataValueIndex
+{
+	/**
+	 * Build the index of a metadata over all entity sets of a dataset.
+	 * 
+	 * @param dataset The dataset
+	 * @param metadataName The metadata to index; entity sets not having it are included but contain no entities
+	 */
+	public MetadataValueIndex(Dataset dataset, MetadataName metadataName)
+	{
+		this.metadataName = metadataName;
+
+		final int typeCount = dataset.getEntityTypes().size();
+		typeIndexes = new HashMap <EntityType, Integer>();
+		for (int t = 0; t < typeCount; ++t)
+			typeIndexes.put(dataset.getEntityType(t), t);
+		arrays = new Object[typeCount];
+		slots = new int[typeCount][];
+		hashes = new int[typeCount][];
+		shifts = new int[typeCount];
+
+		for (int t = 0; t < typeCount; ++t)
+		{
+			final EntitySet entitySet = dataset.getExistingEntitySet(dataset.getEntityType(t));
+			if (!entitySet.getMetadataNames().contains(metadataName)) continue;
+
+			final Object array = entitySet.getMetadataArray(metadataName);
+			final int size = entitySet.size();
+			final StringColumn stringColumn = array instanceof StringColumn ? (StringColumn) array : null;
+
+			int length = MIN_LENGTH;
+			while (length < 2 * size)
+				length *= 2;
+			final int typeSlots[] = new int[length];
+			final int typeHashes[] = stringColumn == null ? null : new int[length];
+			final int shift = 32 - Integer.numberOfTrailingZeros(length);
+			arrays[t] = array;
+			slots[t] = typeSlots;
+			hashes[t] = typeHashes;
+			shifts[t] = shift;
+
+			for (int id = 0; id < size; ++id)
+			{
+				final String string;
+				final int hash;
+				if (stringColumn != null)
+				{
+					string = stringColumn.get(id);
+					if (string == null) continue;
+					hash = string.hashCode();
+				}
+				else
+				{
+					string = null;
+					hash = hash(array, id);
+				}
+
+				final int mask = length - 1;
+				int slot = (hash * 0x9E3779B9) >>> shift;
+				while (typeSlots[slot] != 0)
+				{
+					final int other = typeSlots[slot] - 1;
+					if (stringColumn != null ? typeHashes[slot] == hash && string.equals(stringColumn.get(other))
+					    : equal(array, other, id)) break;
+					slot = (slot + 1) & mask;
+				}
+				typeSlots[slot] = id + 1;
+				if (typeHashes != null) typeHashes[slot] = hash;
+			}
+		}
+	}
+
+	/**
+	 * Get the entity of a given type having a given metadata value.
+	 * 
+	 * @param entityType The entity type of which to get the entity
+	 * @param object The metadata value; must be of the type of the metadata
+	 * @return The entity
+	 * @throws IllegalArgumentException The given entity type is not contained in the index
+	 * @throws NoSuchElementException When no entity has the given object as metadata
+	 */
+	public Entity getEntity(EntityType entityType, Object object)
+	{
+		final Integer typeIndex = typeIndexes.get(entityType);
+		if (typeIndex == null) throw new IllegalArgumentException("No such entity type:  " + entityType);
+
+		final int id = getId(typeIndex, object);
+		if (id < 0) throw new NoSuchElementException(String.format("No entity corresponds to %s", object));
+		return new Entity(entityType, id);
+	}
+
+	/**
+	 * Get the ID of the entity of a given type having a given metadata value.
+	 * 
+	 * @param typeIndex The index of the entity type
+	 * @param object The metadata value
+	 * @return The ID of the entity, or -1 when no entity of the type has the value
+	 */
+	public int getId(int typeIndex, Object object)
+	{
+		final int typeSlots[] = slots[typeIndex];
+		if (typeSlots == null || object == null) return -1;
+		final Object array = arrays[typeIndex];
+		final int typeHashes[] = hashes[typeIndex];
+
+		final int hash;
+		if (array instanceof StringColumn)
+		{
+			if (!(object instanceof String)) return -1;
+			hash = object.hashCode();
+		}
+		else if (array instanceof int[])
+		{
+			if (!(object instanceof Integer)) return -1;
+			hash = (Integer) object;
+		}
+		else if (array instanceof double[])
+		{
+			if (!(object instanceof Double)) return -1;
+			hash = hash(Double.doubleToLongBits((Double) object));
+		}
+		else
+		{
+			if (!(object instanceof Date)) return -1;
+			hash = hash(((Date) object).getTime());
+		}
+
+		final int mask = typeSlots.length - 1;
+		for (int slot = (hash * 0x9E3779B9) >>> shifts[typeIndex]; typeSlots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			final int id = typeSlots[slot] - 1;
+			if (typeHashes != null)
+			{
+				if (typeHashes[slot] == hash && object.equals(((StringColumn) array).get(id))) return id;
+			}
+			else if (hash(array, id) == hash && equal(array, id, object)) return id;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return The indexed metadata
+	 */
+	public MetadataName getMetadataName()
+	{
+		return metadataName;
+	}
+
+	/**
+	 * The hash code of the value of an entity in a primitive metadata array.
+	 */
+	private static int hash(Object array, int id)
+	{
+		if (array instanceof int[]) return ((int[]) array)[id];
+		if (array instanceof double[]) return hash(Double.doubleToLongBits(((double[]) array)[id]));
+		return hash(((long[]) array)[id]);
+	}
+
+	private static int hash(long bits)
+	{
+		return (int) (bits ^ bits >>> 32);
+	}
+
+	/**
+	 * Whether two entities have the same value in a primitive metadata array. Doubles are compared as by
+	 * Double.equals().
+	 */
+	private static boolean equal(Object array, int id, int otherId)
+	{
+		if (array instanceof int[]) return ((int[]) array)[id] == ((int[]) array)[otherId];
+		if (array instanceof double[])
+		    return Double.doubleToLongBits(((double[]) array)[id]) == Double
+		        .doubleToLongBits(((double[]) array)[otherId]);
+		return ((long[]) array)[id] == ((long[]) array)[otherId];
+	}
+
+	/**
+	 * Whether an entity has the given value in a primitive metadata array, whose type matches that of the value.
+	 */
+	private static boolean equal(Object array, int id, Object object)
+	{
+		if (array instanceof int[]) return ((int[]) array)[id] == (Integer) object;
+		if (array instanceof double[])
+		    return Double.doubleToLongBits(((double[]) array)[id]) == Double.doubleToLongBits((Double) object);
+		return ((long[]) array)[id] == ((Date) object).getTime();
+	}
+
+	private final MetadataName metadataName;
+
+	private final Map <EntityType, Integer> typeIndexes;
+
+	/*
+	 * By entity type index: the metadata array or column, and the hash table. SLOTS[t][s] is zero for an empty slot
+	 * and one plus the ID of an entity otherwise; HASHES[t][s] is the hash code of its value for string metadata, and
+	 * HASHES[t] is NULL for other metadata. SLOTS[t] is NULL when the entity set does not have the metadata. The first
+	 * slot probed for hash code h is h times a large odd constant, shifted right by SHIFTS[t] bits (Fibonacci
+	 * hashing).
+	 */
+	private final Object arrays[];
+	private final int slots[][];
+	private final int hashes[][];
+	private final int shifts[];
+
+	private static final int MIN_LENGTH = 16;
+}
@@ -0,0 +1,123 @@
+package de.dailab.recommender.dataset;
+
+/**
+ * A cursor over the neighbors of entities in an adjacency index. The same cursor can be positioned on any number of
+ * entities one after the other, so that iterating over neighbors does not allocate any objects. Typical usage:
+ * 
+ * <pre>
+ * final NeighborCursor cursor = dataset.getAdjacencyIndex().cursor();
+ * for (cursor.entity(typeIndex, id); cursor.next();)
+ * 	sum[cursor.typeIndex()][cursor.id()] += cursor.weight();
+ * </pre>
+ * 
+ * Instances must not be used by several threads at once.
+ * 
+ * @see AdjacencyIndex
+ * 
+ * @author kunegis
+ */
+public final class NeighborCursor
+{
+	NeighborCursor(AdjacencyIndex adjacencyIndex)
+	{
+		this.adjacencyIndex = adjacencyIndex;
+	}
+
+	/**
+	 * Position the cursor before the first neighbor of an entity.
+	 * 
+	 * @param typeIndex The entity type index of the entity
+	 * @param id The ID of the entity
+	 * @return This cursor
+	 */
+	public NeighborCursor entity(int typeIndex, int id)
+	{
+		ids = adjacencyIndex.ids[typeIndex];
+		links = adjacencyIndex.links[typeIndex];
+		weights = adjacencyIndex.weights[typeIndex];
+		k = adjacencyIndex.offsets[typeIndex][id] - 1;
+		end = adjacencyIndex.offsets[typeIndex][id + 1];
+		return this;
+	}
+
+	/**
+	 * Position the cursor before the first neighbor of an entity.
+	 * 
+	 * @param handle The handle of the entity, using the entity type indexes of the dataset
+	 * @return This cursor
+	 */
+	public NeighborCursor entity(long handle)
+	{
+		return entity(EntityHandle.getTypeIndex(handle), EntityHandle.getId(handle));
+	}
+
+	/**
+	 * Advance to the next neighbor.
+	 * 
+	 * @return Whether there is a next neighbor
+	 */
+	public boolean next()
+	{
+		return ++k < end;
+	}
+
+	/**
+	 * @return The entity type index of the current neighbor
+	 */
+	public int typeIndex()
+	{
+		final int link = links[k];
+		return (link & 1) == 0 ? adjacencyIndex.objectTypeIndexes[link >>> 1]
+		    : adjacencyIndex.subjectTypeIndexes[link >>> 1];
+	}
+
+	/**
+	 * @return The ID of the current neighbor
+	 */
+	public int id()
+	{
+		return ids[k];
+	}
+
+	/**
+	 * @return The handle of the current neighbor
+	 */
+	public long handle()
+	{
+		return EntityHandle.pack(typeIndex(), ids[k]);
+	}
+
+	/**
+	 * @return The index of the relationship set connecting the entity to the current neighbor
+	 */
+	public int relationshipIndex()
+	{
+		return links[k] >>> 1;
+	}
+
+	/**
+	 * @return Whether the current neighbor is the object of the relationship, i.e. the edge is followed forward
+	 */
+	public boolean forward()
+	{
+		return (links[k] & 1) == 0;
+	}
+
+	/**
+	 * @return The weight of the relationship connecting the entity to the current neighbor
+	 */
+	public double weight()
+	{
+		return weights == null ? 1. : weights[k];
+	}
+
+	private final AdjacencyIndex adjacencyIndex;
+
+	/*
+	 * The arrays of the entity type of the current entity, and the position of the current neighbor in them.
+	 */
+	private int ids[], links[];
+	private double weights[];
+	private int k = -1;
+	private int end = 0;
+}
@@ -42,6 +42,11 @@ public final class RelationshipSet
 	 */
 	private Matrix matrix;
 
+	/**
+	 * The degrees of the frozen matrix, computed by getDegreeIndex(). NULL when not yet computed.
+	 */
+	private volatile DegreeIndex degreeIndex;
+
 	/**
 	 * Initialize an instance. Set the final fields only. The matrix is NULL initially.
 	 * 
@@ -147,6 +152,26 @@ public final class RelationshipSet
 		return matrix;
 	}
 
+	/**
+	 * The degrees of all subject and object entities. For frozen matrices, the index is computed on the first call and
+	 * reused until the matrix is replaced. Modifiable matrices may change at any time, and a new index is computed on
+	 * each call. The degree of single entities is also returned by the row and column counts of the matrix.
+	 * 
+	 * @return The degree index of the current matrix
+	 */
+	public DegreeIndex getDegreeIndex()
+	{
+		if (!MatrixFactory.isFrozen(matrix)) return new DegreeIndex(matrix);
+
+		DegreeIndex ret = degreeIndex;
+		if (ret == null || !ret.isValid(matrix))
+		{
+			ret = new DegreeIndex(matrix);
+			degreeIndex = ret;
+		}
+		return ret;
+	}
+
 	/**
 	 * @return whether the subject and object entity types differ
 	 */
@@ -173,6 +198,7 @@ public final class RelationshipSet
 		}
 
 		this.matrix = matrix;
+		degreeIndex = null;
 
 		if (relationshipFormat == RelationshipFormat.ASYM || relationshipFormat == RelationshipFormat.SYM)
 		{
@@ -0,0 +1,474 @@
+package de.dailab.recommender.dataset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of a string metadata of an entity set, stored compactly. Used by EntitySet in place of an array of
+ * strings.
+ * <p>
+ * A column begins as a dictionary: each distinct value is stored once and each entity holds the code of its value.
+ * When the number of distinct values exceeds DICTIONARY_MAX_SIZE, as for URIs, the column is converted to front-coded
+ * blocks: the values of BLOCK_SIZE consecutive entities are stored together in UTF-8, each value as the length of the
+ * prefix it shares with the previous value followed by the rest of its bytes. Blocks are held outside of the Java heap
+ * in direct byte buffers and decoded on each call to get().
+ * <p>
+ * The arrays of codes and block positions may have room for more entities than the column has, as reserved by setSize()
+ * and freed by trimToSize().
+ * <p>
+ * The block last written to is held decoded, so that setting the values of consecutive entities encodes each block
+ * only once. A block that is written again is appended anew; the space of its previous encoding is reclaimed when
+ * more than half of all stored bytes are unused.
+ * <p>
+ * Values returned by get() are interned, as were the values of the string arrays previously used by EntitySet. A
+ * front-coded column takes about {@code L + 3} bytes per entity, where L is the average number of bytes of a value not
+ * shared with the previous value, of which only about one byte is on the Java heap.
+ * <p>
+ * get() can be called by several threads at once, as long as no values are set at the same time.
+ * 
+ * @author kunegis
+ */
+final class StringColumn
+{
+	/**
+	 * A column in which all values are NULL.
+	 * 
+	 * @param size The number of entities
+	 */
+	StringColumn(int size)
+	{
+		assert size >= 0;
+		this.size = size;
+		codes = new int[size];
+	}
+
+	/**
+	 * @return The number of entities
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param id The ID of an entity
+	 * @return The interned value of the entity, or NULL
+	 */
+	String get(int id)
+	{
+		assert id >= 0 && id < size;
+
+		if (codes != null)
+		{
+			final int code = codes[id];
+			return code == 0 ? null : dictionary.get(code - 1);
+		}
+
+		final int block = id / BLOCK_SIZE;
+		if (block == openBlock) return openValues[id % BLOCK_SIZE];
+
+		final String ret = decode(block, id % BLOCK_SIZE);
+		return ret == null ? null : ret.intern();
+	}
+
+	/**
+	 * @param id The ID of an entity
+	 * @param value The new value of the entity; may be NULL
+	 */
+	void set(int id, String value)
+	{
+		assert id >= 0 && id < size;
+
+		final String interned = value == null ? null : value.intern();
+
+		if (codes != null)
+		{
+			if (interned == null)
+			{
+				codes[id] = 0;
+				return;
+			}
+			Integer code = dictionaryCodes.get(interned);
+			if (code == null)
+			{
+				if (dictionary.size() < DICTIONARY_MAX_SIZE)
+				{
+					dictionary.add(interned);
+					code = dictionary.size();
+					dictionaryCodes.put(interned, code);
+				}
+				else
+				{
+					convert();
+					set(id, interned);
+					return;
+				}
+			}
+			codes[id] = code;
+			return;
+		}
+
+		open(id / BLOCK_SIZE);
+		openValues[id % BLOCK_SIZE] = interned;
+	}
+
+	/**
+	 * Change the number of entities. New entities have the value NULL. The space for entities is at least doubled when
+	 * it is exceeded, so that adding entities one by one takes amortized constant time.
+	 * 
+	 * @param newSize The new number of entities; not smaller than the current number
+	 */
+	void setSize(int newSize)
+	{
+		assert newSize >= size;
+
+		if (codes != null)
+		{
+			if (newSize > codes.length) resize(Math.max(newSize, 2 * codes.length));
+		}
+		else
+		{
+			final int blockCount = (newSize + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			if (blockCount > blockPositions.length) resize(Math.max(blockCount, 2 * blockPositions.length) * BLOCK_SIZE);
+		}
+
+		size = newSize;
+	}
+
+	/**
+	 * Free the space reserved for entities not yet added, encode the open block and reclaim the space of rewritten
+	 * blocks.
+	 */
+	void trimToSize()
+	{
+		if (codes == null)
+		{
+			close();
+			if (garbageLength > 0) compact();
+		}
+		resize(size);
+	}
+
+	/**
+	 * Reallocate the codes or block arrays to hold the given number of entities, which is not less than SIZE.
+	 */
+	private void resize(int capacity)
+	{
+		if (codes != null)
+		{
+			if (codes.length == capacity) return;
+			final int newCodes[] = new int[capacity];
+			System.arraycopy(codes, 0, newCodes, 0, size);
+			codes = newCodes;
+		}
+		else
+		{
+			final int blockCount = (capacity + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			if (blockPositions.length == blockCount) return;
+			final int oldBlockCount = Math.min(blockCount, blockPositions.length);
+			final long newBlockPositions[] = new long[blockCount];
+			System.arraycopy(blockPositions, 0, newBlockPositions, 0, oldBlockCount);
+			for (int b = oldBlockCount; b < blockCount; ++b)
+				newBlockPositions[b] = -1;
+			blockPositions = newBlockPositions;
+			final int newBlockLengths[] = new int[blockCount];
+			System.arraycopy(blockLengths, 0, newBlockLengths, 0, oldBlockCount);
+			blockLengths = newBlockLengths;
+		}
+	}
+
+	/**
+	 * A column holding the values of this column in a different order.
+	 * 
+	 * @param oldIds The old ID of each new ID
+	 * @return The new column
+	 */
+	StringColumn renumber(int oldIds[])
+	{
+		assert oldIds.length == size;
+
+		final StringColumn ret = new StringColumn(size);
+		for (int i = 0; i < size; ++i)
+			ret.set(i, get(oldIds[i]));
+		return ret;
+	}
+
+	/**
+	 * Convert a dictionary column to front-coded blocks.
+	 */
+	private void convert()
+	{
+		final int oldCodes[] = codes;
+		final List <String> oldDictionary = dictionary;
+
+		codes = null;
+		dictionary = null;
+		dictionaryCodes = null;
+
+		final int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockPositions = new long[blockCount];
+		for (int b = 0; b < blockCount; ++b)
+			blockPositions[b] = -1;
+		blockLengths = new int[blockCount];
+		openValues = new String[BLOCK_SIZE];
+
+		for (int id = 0; id < size; ++id)
+			if (oldCodes[id] != 0) set(id, oldDictionary.get(oldCodes[id] - 1));
+	}
+
+	/**
+	 * Make the given block the open block, encoding the previously open block.
+	 */
+	private void open(int block)
+	{
+		if (block == openBlock) return;
+
+		close();
+
+		for (int k = 0; k < BLOCK_SIZE; ++k)
+		{
+			final String value = decode(block, k);
+			openValues[k] = value == null ? null : value.intern();
+		}
+		openBlock = block;
+	}
+
+	/**
+	 * Encode the open block, if any.
+	 */
+	private void close()
+	{
+		if (openBlock < 0) return;
+
+		final int block = openBlock;
+		openBlock = -1;
+
+		final int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+		/* Each varint takes at most five bytes */
+		int length = 1 + 10 * count;
+		boolean empty = true;
+		final byte encoded[][] = new byte[count][];
+		for (int k = 0; k < count; ++k)
+		{
+			if (openValues[k] == null) continue;
+			encoded[k] = toBytes(openValues[k]);
+			length += encoded[k].length;
+			empty = false;
+		}
+
+		liveLength -= blockLengths[block];
+		garbageLength += blockLengths[block];
+		blockLengths[block] = 0;
+		blockPositions[block] = -1;
+		if (empty) return;
+
+		/* Encode */
+		final byte bytes[] = new byte[length];
+		int position = 0;
+		bytes[position++] = (byte) count;
+		byte previous[] = null;
+		for (int k = 0; k < count; ++k)
+		{
+			final byte value[] = encoded[k];
+			if (value == null)
+			{
+				position = writeVarint(bytes, position, 0);
+				position = writeVarint(bytes, position, 0);
+				continue;
+			}
+			int shared = 0;
+			if (previous != null)
+				while (shared < previous.length && shared < value.length && previous[shared] == value[shared])
+					++shared;
+			position = writeVarint(bytes, position, shared);
+			position = writeVarint(bytes, position, value.length - shared + 1);
+			System.arraycopy(value, shared, bytes, position, value.length - shared);
+			position += value.length - shared;
+			previous = value;
+		}
+
+		blockPositions[block] = append(bytes, position);
+		blockLengths[block] = position;
+		liveLength += position;
+
+		if (garbageLength > liveLength) compact();
+	}
+
+	/**
+	 * The value at index K of the given block, not interned. Does not change any state.
+	 */
+	private String decode(int block, int k)
+	{
+		final long blockPosition = blockPositions[block];
+		if (blockPosition < 0) return null;
+
+		final ByteBuffer chunk = chunks.get((int) (blockPosition >>> 32));
+		int position = (int) blockPosition;
+		final int count = chunk.get(position++);
+		if (k >= count) return null;
+
+		byte value[] = new byte[64];
+		int length = 0;
+		int previousLength = 0;
+		for (int j = 0;; ++j)
+		{
+			/* Read a varint for the shared length and one for the suffix length plus one */
+			int shared = 0;
+			for (int shift = 0;; shift += 7)
+			{
+				final byte b = chunk.get(position++);
+				shared |= (b & 0x7F) << shift;
+				if (b >= 0) break;
+			}
+			int suffix = 0;
+			for (int shift = 0;; shift += 7)
+			{
+				final byte b = chunk.get(position++);
+				suffix |= (b & 0x7F) << shift;
+				if (b >= 0) break;
+			}
+
+			if (suffix == 0)
+			{
+				/* NULL; the next value shares with the last non-NULL value */
+				if (j == k) return null;
+				continue;
+			}
+			--suffix;
+
+			assert shared <= previousLength;
+			length = shared + suffix;
+			if (length > value.length)
+			{
+				final byte newValue[] = new byte[Math.max(length, 2 * value.length)];
+				System.arraycopy(value, 0, newValue, 0, shared);
+				value = newValue;
+			}
+			for (int i = 0; i < suffix; ++i)
+				value[shared + i] = chunk.get(position++);
+			previousLength = length;
+
+			if (j == k) return CHARSET.decode(ByteBuffer.wrap(value, 0, length)).toString();
+		}
+	}
+
+	/**
+	 * Append the first LENGTH bytes to the chunks and return their position.
+	 */
+	private long append(byte bytes[], int length)
+	{
+		ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+		if (chunk == null || chunk.capacity() - chunkLength < length)
+		{
+			/* Chunks double in size up to CHUNK_SIZE, so that small columns take little memory */
+			final int capacity = chunk == null ? MIN_CHUNK_SIZE : Math.min(CHUNK_SIZE, 2 * chunk.capacity());
+			chunk = ByteBuffer.allocateDirect(Math.max(capacity, length));
+			chunks.add(chunk);
+			chunkLength = 0;
+		}
+
+		final long ret = (long) (chunks.size() - 1) << 32 | chunkLength;
+		for (int i = 0; i < length; ++i)
+			chunk.put(chunkLength + i, bytes[i]);
+		chunkLength += length;
+		return ret;
+	}
+
+	/**
+	 * Copy all blocks into new chunks, dropping the space of blocks that were written again.
+	 */
+	private void compact()
+	{
+		final List <ByteBuffer> oldChunks = chunks;
+		chunks = new ArrayList <ByteBuffer>();
+		chunkLength = 0;
+
+		byte bytes[] = new byte[0];
+		for (int b = 0; b < blockPositions.length; ++b)
+		{
+			if (blockPositions[b] < 0) continue;
+			final ByteBuffer chunk = oldChunks.get((int) (blockPositions[b] >>> 32));
+			final int position = (int) blockPositions[b];
+			if (bytes.length < blockLengths[b]) bytes = new byte[blockLengths[b]];
+			for (int i = 0; i < blockLengths[b]; ++i)
+				bytes[i] = chunk.get(position + i);
+			blockPositions[b] = append(bytes, blockLengths[b]);
+		}
+
+		garbageLength = 0;
+	}
+
+	private static byte[] toBytes(String value)
+	{
+		final ByteBuffer buffer = CHARSET.encode(value);
+		final byte ret[] = new byte[buffer.remaining()];
+		buffer.get(ret);
+		return ret;
+	}
+
+	/**
+	 * Write a nonnegative number in seven-bit groups, least significant first, with the high bit set on all but the
+	 * last byte. Return the position after the number.
+	 */
+	private static int writeVarint(byte bytes[], int position, int number)
+	{
+		assert number >= 0;
+		while (number >= 0x80)
+		{
+			bytes[position++] = (byte) (number | 0x80);
+			number >>>= 7;
+		}
+		bytes[position++] = (byte) number;
+		return position;
+	}
+
+	private int size;
+
+	/*
+	 * Dictionary mode: CODES[id] is zero for NULL and one plus the index of the value in DICTIONARY otherwise.
+	 * DICTIONARY_CODES maps values to their code. All three are NULL in front-coded mode.
+	 */
+	private int codes[];
+	private List <String> dictionary = new ArrayList <String>();
+	private Map <String, Integer> dictionaryCodes = new HashMap <String, Integer>();
+
+	/*
+	 * Front-coded mode: the position of each block (chunk index in the upper and offset in the lower 32 bits, or -1 when
+	 * all values are NULL) and its length in bytes. A block consists of the number of values it holds (one byte),
+	 * followed by the shared length and suffix length plus one of each value as varints (both zero for NULL) and the
+	 * suffix bytes.
+	 */
+	private long blockPositions[];
+	private int blockLengths[];
+	private List <ByteBuffer> chunks = new ArrayList <ByteBuffer>();
+	private int chunkLength = 0;
+
+	/*
+	 * LIVE_LENGTH is the number of bytes in all blocks, GARBAGE_LENGTH the number of bytes in chunks no longer used.
+	 */
+	private long liveLength = 0, garbageLength = 0;
+
+	/*
+	 * The decoded block, or -1.
+	 */
+	private int openBlock = -1;
+	private String openValues[];
+
+	/**
+	 * The number of distinct values above which a column is converted to front-coded blocks.
+	 */
+	static final int DICTIONARY_MAX_SIZE = 1 << 12;
+
+	/**
+	 * The number of consecutive entities whose values are stored in one block.
+	 */
+	static final int BLOCK_SIZE = 16;
+
+	private static final int MIN_CHUNK_SIZE = 1 << 12, CHUNK_SIZE = 1 << 24;
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+}
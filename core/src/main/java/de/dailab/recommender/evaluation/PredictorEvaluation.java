@@ -24,7 +24,8 @@ import de.dailab.recommender.evaluation.predictionerror.Rmse;
 import de.dailab.recommender.laplacian.LaplacianPredictor;
 import de.dailab.recommender.latent.EigenvalueDecompositionPredictor;
 import de.dailab.recommender.latent.LatentPredictorList;
-import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
 import de.dailab.recommender.predict.CompoundPredictorList;
 import de.dailab.recommender.predict.NormalizedPredictor;
 import de.dailab.recommender.predict.Predictor;
@@ -79,14 +80,17 @@ public class PredictorEvaluation
 			for (final PredictionError error: errors)
 				errorRuns.put(error, error.run());
 
-			for (final FullEntry entry: split.test.getMatrix().all())
-			{
-				final double prediction = predictorModel.predict(new Entity(split.test.getSubject(), entry.rowIndex),
-				    new Entity(split.test.getObject(), entry.colIndex));
+			final Matrix testMatrix = split.test.getMatrix();
+			final MatrixCursor cursor = testMatrix.cursor();
+			for (int row = 0; row < testMatrix.rows(); ++row)
+				for (cursor.row(row); cursor.next();)
+				{
+					final double prediction = predictorModel.predict(new Entity(split.test.getSubject(), row),
+					    new Entity(split.test.getObject(), cursor.index()));
 
-				for (final PredictionErrorRun errorRun: errorRuns.values())
-					errorRun.add(entry.value, prediction);
-			}
+					for (final PredictionErrorRun errorRun: errorRuns.values())
+						errorRun.add(cursor.value(), prediction);
+				}
 
 			final Map <PredictionError, Double> predictorErrorValues = new HashMap <PredictionError, Double>();
 			errorValues.put(predictor, predictorErrorValues);
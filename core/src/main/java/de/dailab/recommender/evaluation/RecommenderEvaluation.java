@@ -24,6 +24,7 @@ import de.dailab.recommender.evaluation.recommenderperformance.Precision;
 import de.dailab.recommender.evaluation.recommenderperformance.RecommenderPerformance;
 import de.dailab.recommender.evaluation.recommenderperformance.RecommenderPerformanceRun;
 import de.dailab.recommender.latent.LatentRecommender;
+import de.dailab.recommender.matrix.MatrixCursor;
 import de.dailab.recommender.path.PathRecommender;
 import de.dailab.recommender.recommend.PathPredictorRecommender;
 import de.dailab.recommender.recommend.Recommender;
@@ -90,14 +91,15 @@ public class RecommenderEvaluation
 
 			int rowCount = 0;
 
+			final MatrixCursor cursor = split.test.getMatrix().cursor();
+
 			for (final int j: split.test.getMatrix().getRows())
 			{
 				++rowCount;
 
-				final Iterator <de.dailab.recommender.matrix.Entry> testRow = split.test.getMatrix().row(j).iterator();
 				final Set <Entity> testSet = new HashSet <Entity>();
-				while (testRow.hasNext())
-					testSet.add(new Entity(split.test.getObject(), testRow.next().index));
+				for (cursor.row(j); cursor.next();)
+					testSet.add(new Entity(split.test.getObject(), cursor.index()));
 
 				final Iterator <Recommendation> recommendations = recommenderModel.recommend(new Entity(split.test
 				    .getSubject(), j), targetTypes);
@@ -3,13 +3,13 @@ package de.dailab.recommender.evaluation;
 import java.util.Random;
 
 import de.dailab.recommender.dataset.Dataset;
+import de.dailab.recommender.dataset.DegreeIndex;
 import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.dataset.RelationshipType;
 import de.dailab.recommender.dataset.UnirelationalDataset;
-import de.dailab.recommender.matrix.Entry;
-import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.Matrix;
-import de.dailab.recommender.matrix.template.MatrixFactory;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.template.MatrixBuilder;
 
 /**
  * A split of a dataset into training and test sets.
@@ -54,20 +54,28 @@ public class Split
 
 		final RelationshipSet relationshipSet = dataset.getExistingRelationshipSet(relationshipType);
 
-		final Matrix trainingMatrix = MatrixFactory.newMemoryMatrix(relationshipSet.getMatrix());
-		final Matrix testMatrix = MatrixFactory.newMemoryMatrix(relationshipSet.getMatrix());
-
 		final Random random = new Random();
 
 		final Matrix oldMatrix = relationshipSet.getMatrix();
 
+		final MatrixBuilder trainingBuilder = new MatrixBuilder(oldMatrix.rows(), oldMatrix.cols(),
+		    oldMatrix.getWeightType());
+		final MatrixBuilder testBuilder = new MatrixBuilder(oldMatrix.rows(), oldMatrix.cols(), oldMatrix
+		    .getWeightType());
+
+		final Matrix trainingMatrix, testMatrix;
+
+		final MatrixCursor cursor = oldMatrix.cursor();
+
 		if (type instanceof PredictorSplitType)
 		{
-			for (final FullEntry entry: oldMatrix.all())
-			{
-				(random.nextDouble() < testSize ? testMatrix : trainingMatrix).set(entry.rowIndex, entry.colIndex,
-				    entry.value);
-			}
+			for (int i = 0; i < oldMatrix.rows(); ++i)
+				for (cursor.row(i); cursor.next();)
+					(random.nextDouble() < testSize ? testBuilder : trainingBuilder).add(i, cursor.index(), cursor
+					    .value());
+
+			trainingMatrix = trainingBuilder.build();
+			testMatrix = testBuilder.build();
 
 			if (relationshipSet.getWeightRange().isZeroSignificant())
 			{
@@ -89,41 +97,51 @@ public class Split
 
 			final int minimumEdges = recommenderSplitType.minimum;
 
+			final DegreeIndex degreeIndex = relationshipSet.getDegreeIndex();
+			if (degreeIndex.countRows(minimumEdges) == 0)
+			    throw new IllegalArgumentException(String.format("RecommenderSplitType.minimum = %d is too big:  "
+			        + "no entity has at least %d neighbors", minimumEdges, minimumEdges));
+
 			boolean empty = true;
 			for (int i = 0; i < oldMatrix.rows(); ++i)
 			{
-				if (oldMatrix.getRowCount(i) < minimumEdges)
+				if (degreeIndex.getRowDegree(i) < minimumEdges)
 				{
-					for (final Entry entry: oldMatrix.row(i))
-						trainingMatrix.set(i, entry.index, entry.value);
+					for (cursor.row(i); cursor.next();)
+						trainingBuilder.add(i, cursor.index(), cursor.value());
 					continue;
 				}
 
-				for (final Entry entry: oldMatrix.row(i))
+				for (cursor.row(i); cursor.next();)
 				{
 					int count = 0;
 					if (random.nextDouble() < testSize)
 					{
 						empty = false;
-						testMatrix.set(i, entry.index, entry.value);
+						testBuilder.add(i, cursor.index(), cursor.value());
 						++count;
 					}
 					else
-						trainingMatrix.set(i, entry.index, entry.value);
+						trainingBuilder.add(i, cursor.index(), cursor.value());
 
 					while (count > 0)
 					{
 						final int j = random.nextInt(oldMatrix.cols());
 						if (oldMatrix.get(i, j) != 0) continue;
 						--count;
-						testMatrix.set(i, j, 0);
+						testBuilder.add(i, j, 0);
 					}
 				}
 			}
 			if (empty)
 			    throw new IllegalArgumentException(String.format("RecommenderSplitType.minimum = %d is too big:  "
 			        + "test set is empty; most entities have less than %d neighbors", minimumEdges, minimumEdges));
+
+			trainingMatrix = trainingBuilder.build();
+			testMatrix = testBuilder.build();
 		}
+		else
+			throw new IllegalArgumentException(String.format("Invalid split type %s", type));
 
 		relationshipSet.setMatrix(trainingMatrix);
 
@@ -10,7 +10,7 @@ import de.dailab.recommender.dataset.EntitySet;
 import de.dailab.recommender.dataset.EntityType;
 import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.latent.LatentPredictorModel;
-import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.MatrixCursor;
 import de.dailab.recommender.predict.RelationshipTypePonderation;
 import de.dailab.recommender.similarity.EuclideanSimilarity;
 
@@ -82,19 +82,19 @@ class LaplacianPredictorModel
 					if (relationshipSet.getSubject().equals(entityType))
 					{
 						final double uObjects[][] = u.get(relationshipSet.getObject());
-						for (final Entry entry: relationshipSet.getMatrix().row(i))
+						for (final MatrixCursor cursor = relationshipSet.getMatrix().cursor().row(i); cursor.next();)
 						{
 							for (int k = 0; k < rank; ++k)
-								averageRuns[k].add(ponderation * entry.value, uObjects[k][entry.index]);
+								averageRuns[k].add(ponderation * cursor.value(), uObjects[k][cursor.index()]);
 						}
 					}
 					if (relationshipSet.getObject().equals(entityType))
 					{
 						final double uSubjects[][] = u.get(relationshipSet.getSubject());
-						for (final Entry entry: relationshipSet.getMatrix().col(i))
+						for (final MatrixCursor cursor = relationshipSet.getMatrix().cursor().col(i); cursor.next();)
 						{
 							for (int k = 0; k < rank; ++k)
-								averageRuns[k].add(ponderation * entry.value, uSubjects[k][entry.index]);
+								averageRuns[k].add(ponderation * cursor.value(), uSubjects[k][cursor.index()]);
 						}
 					}
 				}
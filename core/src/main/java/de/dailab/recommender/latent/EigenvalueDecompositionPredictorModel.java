@@ -7,6 +7,7 @@ import de.dailab.recommender.dataset.Dataset;
 import de.dailab.recommender.dataset.EntitySet;
 import de.dailab.recommender.dataset.EntityType;
 import de.dailab.recommender.dataset.RelationshipSet;
+import de.dailab.recommender.matrix.template.ParallelMultiplication;
 import de.dailab.recommender.predict.RelationshipTypePonderation;
 import de.dailab.recommender.similarity.ScalarProduct;
 import de.dailab.recommender.similarity.Similarity;
@@ -115,11 +116,9 @@ class EigenvalueDecompositionPredictorModel
 			final double uOldSubject[][] = uOld.get(relationshipSet.getSubject());
 			final double uOldObject[][] = uOld.get(relationshipSet.getObject());
 
-			for (int k = 0; k < rank; ++k)
-			{
-				relationshipSet.getMatrix().mult(uOldObject[k], uSubject[k], weight);
-				relationshipSet.getMatrix().multT(uOldSubject[k], uObject[k], weight);
-			}
+			/* All RANK vectors in a single pass over the matrix */
+			ParallelMultiplication.multBlock(relationshipSet.getMatrix(), uOldObject, uSubject, weight);
+			ParallelMultiplication.multBlockT(relationshipSet.getMatrix(), uOldSubject, uObject, weight);
 		}
 
 		v = u;
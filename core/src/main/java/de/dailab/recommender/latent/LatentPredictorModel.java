@@ -6,6 +6,7 @@ import java.util.Map;
 import de.dailab.recommender.dataset.Dataset;
 import de.dailab.recommender.dataset.Entity;
 import de.dailab.recommender.dataset.EntityType;
+import de.dailab.recommender.latent.kernels.Kernels;
 import de.dailab.recommender.predict.PredictorModel;
 import de.dailab.recommender.similarity.ScalarProduct;
 import de.dailab.recommender.similarity.Similarity;
@@ -196,11 +197,9 @@ public abstract class LatentPredictorModel
 			{
 				double lm = 0.;
 				for (final double ue[][]: u.values())
-					for (int i = 0; i < ue[0].length; ++i)
-						lm += ue[m][i] * ue[k][i];
+					lm += Kernels.dot(ue[m], ue[k]);
 				for (final double ue[][]: u.values())
-					for (int i = 0; i < ue[0].length; ++i)
-						ue[k][i] -= lm * ue[m][i];
+					Kernels.axpy(-lm, ue[m], ue[k]);
 			}
 
 			/* Normalize */
@@ -208,15 +207,11 @@ public abstract class LatentPredictorModel
 			double sum = 0;
 			for (final double ue[][]: u.values())
 			{
-				for (int i = 0; i < ue[0].length; ++i)
-				{
-					final double mli = ue[k][i];
-					assert !Double.isNaN(mli) && !Double.isInfinite(mli);
-					squareSum += mli * mli;
-					sum += mli;
-				}
+				squareSum += Kernels.dot(ue[k], ue[k]);
+				sum += Kernels.sum(ue[k]);
 			}
 
+			assert !Double.isNaN(squareSum) && !Double.isInfinite(squareSum);
 			assert squareSum >= 0;
 
 			final double oldLambda = lambda[k];
@@ -230,10 +225,7 @@ public abstract class LatentPredictorModel
 			final double divisor = lambda[k] == 0 ? 1 : lambda[k];
 
 			for (final double ue[][]: u.values())
-				for (int i = 0; i < ue[0].length; ++i)
-				{
-					ue[k][i] /= divisor;
-				}
+				Kernels.scale(1. / divisor, ue[k]);
 		}
 
 		final double convergence = Math.sqrt(sumConvergence / rank / Math.abs(lambda[0]));
@@ -0,0 +1,163 @@
+package de.dailab.recommender.latent.kernels;
+
+/**
+ * Kernels on dense vectors of doubles, as used by latent models. The latent vectors of a model are stored as one array
+ * per latent dimension, indexed by entity ID; the kernels operate on such arrays.
+ * <p>
+ * The loops are unrolled four times, with independent partial sums in reductions, so that several multiplications
+ * can proceed at the same time in the processor instead of waiting for each other. Because the partial sums are added
+ * at the end, results may differ from a sequential loop in the last bits.
+ * <p>
+ * All arrays passed to one call must have the same length unless stated otherwise.
+ * 
+ * @author kunegis
+ */
+public final class Kernels
+{
+	/**
+	 * The scalar product of two vectors.
+	 * 
+	 * @param a A vector
+	 * @param b A vector of the same length
+	 * @return The scalar product of A and B
+	 */
+	public static double dot(double a[], double b[])
+	{
+		assert a.length == b.length;
+
+		return dot(a, b, 0, a.length);
+	}
+
+	/**
+	 * Add a multiple of a vector to another vector.
+	 * 
+	 * @param alpha The factor
+	 * @param x The vector to add
+	 * @param y The vector to which ALPHA times X is added
+	 */
+	public static void axpy(double alpha, double x[], double y[])
+	{
+		assert x.length == y.length;
+
+		axpy(alpha, x, y, 0, x.length);
+	}
+
+	/**
+	 * Multiply a vector by a factor.
+	 * 
+	 * @param alpha The factor
+	 * @param x The vector to multiply in place
+	 */
+	public static void scale(double alpha, double x[])
+	{
+		int i = 0;
+		for (; i + 3 < x.length; i += 4)
+		{
+			x[i] *= alpha;
+			x[i + 1] *= alpha;
+			x[i + 2] *= alpha;
+			x[i + 3] *= alpha;
+		}
+		for (; i < x.length; ++i)
+			x[i] *= alpha;
+	}
+
+	/**
+	 * The Euclidean norm of a vector.
+	 * 
+	 * @param x A vector
+	 * @return The square root of the sum of squares of X
+	 */
+	public static double norm(double x[])
+	{
+		return Math.sqrt(dot(x, x));
+	}
+
+	/**
+	 * The sum of all components of a vector.
+	 * 
+	 * @param x A vector
+	 * @return The sum of X
+	 */
+	public static double sum(double x[])
+	{
+		double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+		int i = 0;
+		for (; i + 3 < x.length; i += 4)
+		{
+			s0 += x[i];
+			s1 += x[i + 1];
+			s2 += x[i + 2];
+			s3 += x[i + 3];
+		}
+		for (; i < x.length; ++i)
+			s0 += x[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * The scalar products of one latent vector with the latent vectors of all entities. With the latent vectors stored
+	 * as U[k][i] for latent dimension k and entity i, RET[i] is increased by the sum over k of X[k] U[k][i]. This is a
+	 * linear combination of the arrays U[k]; it is computed in blocks of entities so that the block of RET stays in
+	 * the cache while all latent dimensions are added to it.
+	 * 
+	 * @param x The latent vector, of length U.length
+	 * @param u The latent vectors of all entities, by latent dimension and entity; all of the same length
+	 * @param ret The scores to which the scalar products are added; of the same length as U[k]; NULL to create a zero
+	 *        vector
+	 * @return RET, or the new vector if RET is NULL
+	 */
+	public static double[] dotAll(double x[], double u[][], double ret[])
+	{
+		assert x.length == u.length;
+
+		if (ret == null) ret = new double[u.length == 0 ? 0 : u[0].length];
+
+		for (int begin = 0; begin < ret.length; begin += BLOCK)
+		{
+			final int end = Math.min(ret.length, begin + BLOCK);
+			for (int k = 0; k < u.length; ++k)
+			{
+				assert u[k].length == ret.length;
+				if (x[k] != 0.) axpy(x[k], u[k], ret, begin, end);
+			}
+		}
+
+		return ret;
+	}
+
+	private static double dot(double a[], double b[], int begin, int end)
+	{
+		double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+		int i = begin;
+		for (; i + 3 < end; i += 4)
+		{
+			s0 += a[i] * b[i];
+			s1 += a[i + 1] * b[i + 1];
+			s2 += a[i + 2] * b[i + 2];
+			s3 += a[i + 3] * b[i + 3];
+		}
+		for (; i < end; ++i)
+			s0 += a[i] * b[i];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	private static void axpy(double alpha, double x[], double y[], int begin, int end)
+	{
+		int i = begin;
+		for (; i + 3 < end; i += 4)
+		{
+			y[i] += alpha * x[i];
+			y[i + 1] += alpha * x[i + 1];
+			y[i + 2] += alpha * x[i + 2];
+			y[i + 3] += alpha * x[i + 3];
+		}
+		for (; i < end; ++i)
+			y[i] += alpha * x[i];
+	}
+
+	/**
+	 * The number of entities processed at once by dotAll(), such that the block of the result uses 8 kB.
+	 */
+	private static final int BLOCK = 1024;
+}
@@ -10,6 +10,7 @@ import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.latent.LatentPredictorModel;
 import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.MatrixIterator;
+import de.dailab.recommender.matrix.template.ParallelMultiplication;
 import de.dailab.recommender.predict.RelationshipTypePonderation;
 
 /**
@@ -98,10 +99,10 @@ public class MaskDecompositionPredictorModel
 				{
 					final double weight = relationshipTypePonderation.getWeightDefault(relationshipSet.getType());
 
-					relationshipSet.getMatrix().multT(u.get(relationshipSet.getSubject())[k],
+					ParallelMultiplication.multT(relationshipSet.getMatrix(), u.get(relationshipSet.getSubject())[k],
 					    ukNew.get(relationshipSet.getObject()), weight);
 
-					relationshipSet.getMatrix().mult(u.get(relationshipSet.getObject())[k],
+					ParallelMultiplication.mult(relationshipSet.getMatrix(), u.get(relationshipSet.getObject())[k],
 					    ukNew.get(relationshipSet.getSubject()), weight);
 				}
 
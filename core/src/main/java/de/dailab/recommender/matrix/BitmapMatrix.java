@@ -0,0 +1,420 @@
+package de.dailab.recommender.matrix;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only binary matrix in which each row and each column is stored as a BitmapVector. Dense rows and columns
+ * use one bit per entry, and runs of consecutive indexes use four bytes per run. get() runs in constant time for dense
+ * rows, and rows and columns can be intersected and merged with getRow(), getCol() and the set operations of
+ * BitmapVector.
+ * <p>
+ * Sparse rows and columns use as much memory as in the matrices returned by MatrixFactory.freeze(), plus a constant
+ * overhead per row and column. Bitmap matrices are thus best suited for matrices with many dense or clustered rows and
+ * columns.
+ * <p>
+ * Instances can be used by several threads at once.
+ * 
+ * @author kunegis
+ */
+public class BitmapMatrix
+    implements FrozenMatrix
+{
+	/**
+	 * A bitmap matrix with the same nonzero entries as the given matrix. Entries of value zero are not included.
+	 * 
+	 * @param matrix The matrix to convert; not modified
+	 */
+	public BitmapMatrix(Matrix matrix)
+	{
+		m = matrix.rows();
+		n = matrix.cols();
+
+		rows = new BitmapVector[m];
+		cols = new BitmapVector[n];
+
+		if (m == 0 || n == 0)
+		{
+			Arrays.fill(rows, EMPTY);
+			Arrays.fill(cols, EMPTY);
+			nnz = 0;
+			return;
+		}
+
+		final MatrixCursor cursor = matrix.cursor();
+		int indexes[] = new int[16];
+		int sum = 0;
+
+		for (int i = 0; i < m; ++i)
+		{
+			indexes = fill(cursor.row(i), indexes);
+			rows[i] = new BitmapVector(indexes, 1, 1 + indexes[0]);
+			sum += rows[i].cardinality();
+		}
+
+		for (int j = 0; j < n; ++j)
+		{
+			indexes = fill(cursor.col(j), indexes);
+			cols[j] = new BitmapVector(indexes, 1, 1 + indexes[0]);
+		}
+
+		nnz = sum;
+	}
+
+	/**
+	 * Read the nonzero indexes of a cursor in ascending order.
+	 * 
+	 * @param cursor A cursor over a row or column
+	 * @param indexes A buffer
+	 * @return The buffer or a larger buffer containing the count followed by the indexes
+	 */
+	private static int[] fill(Cursor cursor, int indexes[])
+	{
+		int count = 0;
+		boolean sorted = true;
+		while (cursor.next())
+		{
+			if (cursor.value() == 0.) continue;
+			if (1 + count == indexes.length)
+			{
+				final int newIndexes[] = new int[2 * indexes.length];
+				System.arraycopy(indexes, 0, newIndexes, 0, indexes.length);
+				indexes = newIndexes;
+			}
+			indexes[1 + count] = cursor.index();
+			if (count > 0 && indexes[count] > indexes[1 + count]) sorted = false;
+			++count;
+		}
+		if (!sorted) Arrays.sort(indexes, 1, 1 + count);
+		indexes[0] = count;
+		return indexes;
+	}
+
+	/**
+	 * @param i A row index
+	 * @return The row I as a bitmap vector
+	 */
+	public BitmapVector getRow(int i)
+	{
+		return rows[i];
+	}
+
+	/**
+	 * @param j A column index
+	 * @return The column J as a bitmap vector
+	 */
+	public BitmapVector getCol(int j)
+	{
+		return cols[j];
+	}
+
+	/**
+	 * @return The number of bytes used by the rows and columns, not counting object overhead
+	 */
+	public long getSize()
+	{
+		long ret = 0;
+		for (final BitmapVector row: rows)
+			ret += row.getSize();
+		for (final BitmapVector col: cols)
+			ret += col.getSize();
+		return ret;
+	}
+
+	@Override
+	public int rows()
+	{
+		return m;
+	}
+
+	@Override
+	public int cols()
+	{
+		return n;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
+	@Override
+	public int nnz()
+	{
+		return nnz;
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return boolean.class.getSimpleName();
+	}
+
+	@Override
+	public int getRowCount(int row)
+	{
+		return rows[row].cardinality();
+	}
+
+	@Override
+	public int getColCount(int col)
+	{
+		return cols[col].cardinality();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Bitmap matrices are read-only; this method always throws.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void set(int i, int j, double value)
+	{
+		throw new UnsupportedOperationException("Bitmap matrices are read-only");
+	}
+
+	@Override
+	public double get(int i, int j)
+	{
+		assert i >= 0 && i < m && j >= 0 && j < n;
+
+		return rows[i].contains(j) ? 1. : 0.;
+	}
+
+	@Override
+	public boolean isSymmetric()
+	{
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Iterate in row-by-row order. The returned iterator does not support set().
+	 */
+	@Override
+	public MatrixIterable <FullEntry> all()
+	{
+		return new MatrixIterable <FullEntry>()
+		{
+			@Override
+			public MatrixIterator <FullEntry> iterator()
+			{
+				return new MatrixIterator <FullEntry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						if (advanced) return present;
+						advanced = true;
+						while (i < m)
+						{
+							if (cursor.next()) return present = true;
+							if (++i < m) cursor.reset(rows[i]);
+						}
+						return present = false;
+					}
+
+					@Override
+					public FullEntry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						advanced = false;
+						return new FullEntry(i, cursor.index(), 1.);
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void set(double newValue)
+					{
+						throw new UnsupportedOperationException("Bitmap matrices are read-only");
+					}
+
+					private int i = 0;
+					private final BitmapVector.VectorCursor cursor = new BitmapVector.VectorCursor()
+					    .reset(m == 0 ? EMPTY : rows[0]);
+					private boolean advanced = false, present;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Entry> row(int i)
+	{
+		return rows[i];
+	}
+
+	@Override
+	public Iterable <Entry> col(int j)
+	{
+		return cols[j];
+	}
+
+	@Override
+	public double[] mult(double[] v, double[] ret, double weight)
+	{
+		assert v.length == n;
+
+		if (ret == null) ret = new double[m];
+
+		assert ret.length == m;
+
+		for (int i = 0; i < m; ++i)
+			ret[i] += weight * rows[i].mult(v);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == m;
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		for (int j = 0; j < n; ++j)
+			ret[j] += weight * cols[j].mult(v);
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		return multBlock(rows, v, ret, weight);
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		return multBlock(cols, v, ret, weight);
+	}
+
+	private static double[][] multBlock(BitmapVector vectors[], double v[][], double ret[][], double weight)
+	{
+		if (ret == null) ret = new double[v.length][vectors.length];
+
+		assert ret.length == v.length;
+
+		final double sums[] = new double[v.length];
+		for (int i = 0; i < vectors.length; ++i)
+		{
+			vectors[i].mult(v, sums);
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][i] += weight * sums[r];
+		}
+
+		return ret;
+	}
+
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				cursor.reset(rows[i]);
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				cursor.reset(cols[j]);
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return cursor.next();
+			}
+
+			@Override
+			public int index()
+			{
+				return cursor.index();
+			}
+
+			@Override
+			public double value()
+			{
+				return 1.;
+			}
+
+			private final BitmapVector.VectorCursor cursor = new BitmapVector.VectorCursor().reset(EMPTY);
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getRows()
+	{
+		return nonempty(rows);
+	}
+
+	@Override
+	public Iterable <Integer> getCols()
+	{
+		return nonempty(cols);
+	}
+
+	private static Iterable <Integer> nonempty(final BitmapVector vectors[])
+	{
+		return new Iterable <Integer>()
+		{
+			@Override
+			public Iterator <Integer> iterator()
+			{
+				return new Iterator <Integer>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						while (next < vectors.length && vectors[next].cardinality() == 0)
+							++next;
+						return next < vectors.length;
+					}
+
+					@Override
+					public Integer next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						return next++;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int next = 0;
+				};
+			}
+		};
+	}
+
+	private final int m, n;
+	private final int nnz;
+
+	/*
+	 * Never NULL; empty rows and columns are represented by EMPTY.
+	 */
+	private final BitmapVector rows[];
+	private final BitmapVector cols[];
+
+	private static final BitmapVector EMPTY = new BitmapVector(new int[0]);
+}
@@ -0,0 +1,928 @@
+package de.dailab.recommender.matrix;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only sparse binary vector stored as a compressed bitmap in the manner of Roaring bitmaps. Indexes are split
+ * into a high and a low 16-bit part. The indexes with the same high part form a block, which is stored in one of three
+ * containers, whichever is smallest:
+ * <ul>
+ * <li>Array: the sorted low parts, 2 bytes per entry; for sparse blocks
+ * <li>Bitmap: one bit for each of the 65536 possible low parts, 8 kB; for dense blocks
+ * <li>Run: the start and length of each run of consecutive indexes, 4 bytes per run; for clustered blocks
+ * </ul>
+ * Membership tests take constant time in bitmap blocks and logarithmic time in other blocks. Intersections and unions
+ * are computed block by block, using word operations when one of the blocks is a bitmap.
+ * <p>
+ * Indexes are nonnegative. Instances can be used by several threads at once.
+ * 
+ * @see <a href = "http://roaringbitmap.org/">Roaring bitmaps</a>
+ * 
+ * @author kunegis
+ */
+public final class BitmapVector
+    implements Vector
+{
+	/**
+	 * A vector containing the given indexes.
+	 * 
+	 * @param indexes Nonnegative indexes, sorted and without duplicates
+	 * @param begin First index to use
+	 * @param end Index after the last index to use
+	 */
+	public BitmapVector(int indexes[], int begin, int end)
+	{
+		int blockCount = 0;
+		for (int k = begin; k < end; ++k)
+		{
+			assert indexes[k] >= 0;
+			assert k == begin || indexes[k] > indexes[k - 1];
+			if (k == begin || indexes[k] >>> 16 != indexes[k - 1] >>> 16) ++blockCount;
+		}
+
+		keys = new char[blockCount];
+		containers = new Container[blockCount];
+
+		int b = 0;
+		for (int k = begin; k < end;)
+		{
+			final int high = indexes[k] >>> 16;
+			int l = k + 1;
+			while (l < end && indexes[l] >>> 16 == high)
+				++l;
+			keys[b] = (char) high;
+			containers[b] = Container.create(indexes, k, l);
+			++b;
+			k = l;
+		}
+
+		cardinality = end - begin;
+	}
+
+	/**
+	 * A vector containing the given indexes.
+	 * 
+	 * @param indexes Nonnegative indexes, sorted and without duplicates
+	 */
+	public BitmapVector(int indexes[])
+	{
+		this(indexes, 0, indexes.length);
+	}
+
+	/**
+	 * The first COUNT blocks of the given arrays.
+	 */
+	private BitmapVector(char keys[], Container containers[], int count)
+	{
+		if (count < keys.length)
+		{
+			this.keys = new char[count];
+			this.containers = new Container[count];
+			System.arraycopy(keys, 0, this.keys, 0, count);
+			System.arraycopy(containers, 0, this.containers, 0, count);
+		}
+		else
+		{
+			this.keys = keys;
+			this.containers = containers;
+		}
+
+		int sum = 0;
+		for (int b = 0; b < count; ++b)
+			sum += this.containers[b].cardinality();
+		cardinality = sum;
+	}
+
+	/**
+	 * Whether an index is present.
+	 * 
+	 * @param i A nonnegative index
+	 * @return Whether the index I is present
+	 */
+	public boolean contains(int i)
+	{
+		final int b = find((char) (i >>> 16));
+		return b >= 0 && containers[b].contains((char) i);
+	}
+
+	/**
+	 * @return The number of indexes in this vector
+	 */
+	public int cardinality()
+	{
+		return cardinality;
+	}
+
+	/**
+	 * The intersection of this vector with another one.
+	 * 
+	 * @param other Another vector
+	 * @return A new vector containing the indexes present in both vectors
+	 */
+	public BitmapVector and(BitmapVector other)
+	{
+		final int count = Math.min(keys.length, other.keys.length);
+		final char retKeys[] = new char[count];
+		final Container retContainers[] = new Container[count];
+		int ret = 0;
+		for (int a = 0, b = 0; a < keys.length && b < other.keys.length;)
+		{
+			if (keys[a] < other.keys[b])
+				++a;
+			else if (keys[a] > other.keys[b])
+				++b;
+			else
+			{
+				final Container container = Container.and(containers[a], other.containers[b]);
+				if (container != null)
+				{
+					retKeys[ret] = keys[a];
+					retContainers[ret] = container;
+					++ret;
+				}
+				++a;
+				++b;
+			}
+		}
+		return new BitmapVector(retKeys, retContainers, ret);
+	}
+
+	/**
+	 * The number of indexes present in both this vector and another one. This is faster than computing and(), as the
+	 * intersection is not stored.
+	 * 
+	 * @param other Another vector
+	 * @return The cardinality of the intersection
+	 */
+	public int andCardinality(BitmapVector other)
+	{
+		int ret = 0;
+		for (int a = 0, b = 0; a < keys.length && b < other.keys.length;)
+		{
+			if (keys[a] < other.keys[b])
+				++a;
+			else if (keys[a] > other.keys[b])
+				++b;
+			else
+				ret += Container.andCardinality(containers[a++], other.containers[b++]);
+		}
+		return ret;
+	}
+
+	/**
+	 * The union of this vector with another one.
+	 * 
+	 * @param other Another vector
+	 * @return A new vector containing the indexes present in at least one of the vectors
+	 */
+	public BitmapVector or(BitmapVector other)
+	{
+		final int count = keys.length + other.keys.length;
+		final char retKeys[] = new char[count];
+		final Container retContainers[] = new Container[count];
+		int ret = 0;
+		int a = 0, b = 0;
+		while (a < keys.length || b < other.keys.length)
+		{
+			if (b == other.keys.length || a < keys.length && keys[a] < other.keys[b])
+			{
+				retKeys[ret] = keys[a];
+				retContainers[ret++] = containers[a++];
+			}
+			else if (a == keys.length || keys[a] > other.keys[b])
+			{
+				retKeys[ret] = other.keys[b];
+				retContainers[ret++] = other.containers[b++];
+			}
+			else
+			{
+				retKeys[ret] = keys[a];
+				retContainers[ret++] = Container.or(containers[a++], other.containers[b++]);
+			}
+		}
+		return new BitmapVector(retKeys, retContainers, ret);
+	}
+
+	/**
+	 * @return The indexes in this vector in ascending order
+	 */
+	public int[] toArray()
+	{
+		final int ret[] = new int[cardinality];
+		int k = 0;
+		for (final VectorCursor cursor = new VectorCursor().reset(this); cursor.next();)
+			ret[k++] = cursor.index();
+		assert k == cardinality;
+		return ret;
+	}
+
+	/**
+	 * @return The number of bytes used by the containers, not counting object overhead
+	 */
+	public long getSize()
+	{
+		long ret = 2L * keys.length;
+		for (final Container container: containers)
+			ret += container.size();
+		return ret;
+	}
+
+	@Override
+	public int nnz()
+	{
+		return cardinality;
+	}
+
+	@Override
+	public String getIndexType()
+	{
+		return int.class.getSimpleName();
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return boolean.class.getSimpleName();
+	}
+
+	@Override
+	public double getGeneric(int i)
+	{
+		return contains(i) ? 1. : 0.;
+	}
+
+	@Override
+	public void setGeneric(int i, double value)
+	{
+		throw new UnsupportedOperationException("Bitmap vectors are read-only");
+	}
+
+	@Override
+	public void addGeneric(int i, double value)
+	{
+		throw new UnsupportedOperationException("Bitmap vectors are read-only");
+	}
+
+	@Override
+	public MatrixIterator <Entry> iterator()
+	{
+		return new MatrixIterator <Entry>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				if (!advanced)
+				{
+					present = cursor.next();
+					advanced = true;
+				}
+				return present;
+			}
+
+			@Override
+			public Entry next()
+			{
+				if (!hasNext()) throw new NoSuchElementException();
+				advanced = false;
+				return new Entry(cursor.index(), 1.);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void set(double newValue)
+			{
+				throw new UnsupportedOperationException("Bitmap vectors are read-only");
+			}
+
+			private final VectorCursor cursor = new VectorCursor().reset(BitmapVector.this);
+			private boolean advanced = false, present;
+		};
+	}
+
+	@Override
+	public Cursor cursor()
+	{
+		return new VectorCursor().reset(this);
+	}
+
+	/**
+	 * Scalar product.
+	 * 
+	 * @param v A vector
+	 * @return THIS * v
+	 */
+	double mult(double v[])
+	{
+		double ret = 0.;
+		for (int b = 0; b < keys.length; ++b)
+			ret += containers[b].sum(v, keys[b] << 16);
+		return ret;
+	}
+
+	/**
+	 * Compute the scalar products of this vector with several vectors at once.
+	 * 
+	 * @param v Vectors
+	 * @param ret Set to THIS * v[k] for each k; of the same length as V
+	 */
+	void mult(double v[][], double ret[])
+	{
+		assert ret.length == v.length;
+
+		for (int r = 0; r < ret.length; ++r)
+			ret[r] = 0.;
+
+		for (int b = 0; b < keys.length; ++b)
+			containers[b].sum(v, keys[b] << 16, ret);
+	}
+
+	/**
+	 * A cursor that can be moved to another vector, so that one cursor can be used for all rows of a matrix.
+	 */
+	static final class VectorCursor
+	    implements Cursor
+	{
+		/**
+		 * Move the cursor before the first index of a vector.
+		 * 
+		 * @param vector The vector
+		 * @return This cursor
+		 */
+		VectorCursor reset(BitmapVector vector)
+		{
+			keys = vector.keys;
+			containers = vector.containers;
+			b = 0;
+			low = -1;
+			return this;
+		}
+
+		@Override
+		public boolean next()
+		{
+			while (b < keys.length)
+			{
+				low = containers[b].next(low + 1);
+				if (low >= 0) return true;
+				++b;
+			}
+			return false;
+		}
+
+		@Override
+		public int index()
+		{
+			return keys[b] << 16 | low;
+		}
+
+		@Override
+		public double value()
+		{
+			return 1.;
+		}
+
+		private char keys[];
+		private Container containers[];
+		private int b, low;
+	}
+
+	/**
+	 * Binary search for a block.
+	 * 
+	 * @param key The high part of an index
+	 * @return The position of the block with the given key, or -1 when there is none
+	 */
+	private int find(char key)
+	{
+		int min = 0;
+		int max = keys.length;
+		while (min < max)
+		{
+			final int mid = (min + max) >>> 1;
+			if (keys[mid] == key) return mid;
+			if (keys[mid] > key)
+				max = mid;
+			else
+				min = mid + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * The low parts of the indexes in one block. Containers are never empty and never modified.
+	 */
+	private static abstract class Container
+	{
+		/**
+		 * @return Number of low parts present
+		 */
+		abstract int cardinality();
+
+		/**
+		 * @param low A low part
+		 * @return Whether LOW is present
+		 */
+		abstract boolean contains(char low);
+
+		/**
+		 * @param low A low part, or 65536
+		 * @return The smallest low part present that is at least LOW, or -1 when there is none
+		 */
+		abstract int next(int low);
+
+		/**
+		 * Set the bits of the present low parts in a bitmap.
+		 * 
+		 * @param words The bitmap; of length WORDS
+		 */
+		abstract void orInto(long words[]);
+
+		/**
+		 * @param v A vector
+		 * @param base The high part of the indexes shifted by 16 bits
+		 * @return The sum of the entries of V at the indexes in this container
+		 */
+		abstract double sum(double v[], int base);
+
+		/**
+		 * Add to RET[r] the sum of the entries of V[r] at the indexes in this container.
+		 * 
+		 * @param v Vectors
+		 * @param base The high part of the indexes shifted by 16 bits
+		 * @param ret Sums; of the same length as V
+		 */
+		abstract void sum(double v[][], int base, double ret[]);
+
+		/**
+		 * @return Number of bytes used
+		 */
+		abstract int size();
+
+		/**
+		 * A container for the low parts of the given indexes, in the format that uses the least memory.
+		 * 
+		 * @param indexes Indexes with the same high part, sorted and without duplicates
+		 * @param begin First index
+		 * @param end Index after the last index
+		 * @return The container
+		 */
+		static Container create(int indexes[], int begin, int end)
+		{
+			final int cardinality = end - begin;
+			int runs = 1;
+			for (int k = begin + 1; k < end; ++k)
+				if (indexes[k] != indexes[k - 1] + 1) ++runs;
+
+			if (4 * runs < Math.min(2 * cardinality, 8 * WORDS))
+			{
+				final char starts[] = new char[runs];
+				final char lengths[] = new char[runs];
+				int r = -1;
+				for (int k = begin; k < end; ++k)
+				{
+					if (k == begin || indexes[k] != indexes[k - 1] + 1)
+						starts[++r] = (char) indexes[k];
+					else
+						++lengths[r];
+				}
+				return new RunContainer(starts, lengths, cardinality);
+			}
+
+			if (cardinality <= MAX_ARRAY)
+			{
+				final char lows[] = new char[cardinality];
+				for (int k = begin; k < end; ++k)
+					lows[k - begin] = (char) indexes[k];
+				return new ArrayContainer(lows);
+			}
+
+			final long words[] = new long[WORDS];
+			for (int k = begin; k < end; ++k)
+				words[(indexes[k] & 0xFFFF) >>> 6] |= 1L << indexes[k];
+			return new BitmapContainer(words, cardinality);
+		}
+
+		/**
+		 * A container for the bits set in a bitmap, in the format that uses the least memory.
+		 * 
+		 * @param words A bitmap of length WORDS; may be used by the returned container
+		 * @return The container, or NULL when no bit is set
+		 */
+		static Container create(long words[])
+		{
+			int cardinality = 0;
+			int runs = 0;
+			long previous = 0;
+			for (final long word: words)
+			{
+				cardinality += Long.bitCount(word);
+				/* Bits that start a run */
+				runs += Long.bitCount(word & ~(word << 1 | previous >>> 63));
+				previous = word;
+			}
+
+			if (cardinality == 0) return null;
+
+			if (4 * runs < Math.min(2 * cardinality, 8 * WORDS))
+			{
+				final char starts[] = new char[runs];
+				final char lengths[] = new char[runs];
+				int r = -1;
+				int last = -2;
+				for (int low = nextBit(words, 0); low >= 0; low = nextBit(words, low + 1))
+				{
+					if (low != last + 1)
+						starts[++r] = (char) low;
+					else
+						++lengths[r];
+					last = low;
+				}
+				return new RunContainer(starts, lengths, cardinality);
+			}
+
+			if (cardinality <= MAX_ARRAY)
+			{
+				final char lows[] = new char[cardinality];
+				int k = 0;
+				for (int low = nextBit(words, 0); low >= 0; low = nextBit(words, low + 1))
+					lows[k++] = (char) low;
+				return new ArrayContainer(lows);
+			}
+
+			return new BitmapContainer(words, cardinality);
+		}
+
+		static Container and(Container a, Container b)
+		{
+			/* Filter the array; the result is not larger */
+			if (b instanceof ArrayContainer)
+			{
+				final Container c = a;
+				a = b;
+				b = c;
+			}
+			if (a instanceof ArrayContainer)
+			{
+				final char lows[] = ((ArrayContainer) a).lows;
+				final char ret[] = new char[lows.length];
+				int count = 0;
+				for (final char low: lows)
+					if (b.contains(low)) ret[count++] = low;
+				if (count == 0) return null;
+				final char trimmed[] = new char[count];
+				System.arraycopy(ret, 0, trimmed, 0, count);
+				return new ArrayContainer(trimmed);
+			}
+
+			final long words[] = a.toWords();
+			final long other[] = b.toWords();
+			for (int w = 0; w < WORDS; ++w)
+				words[w] &= other[w];
+			return create(words);
+		}
+
+		static int andCardinality(Container a, Container b)
+		{
+			if (b instanceof ArrayContainer)
+			{
+				final Container c = a;
+				a = b;
+				b = c;
+			}
+			if (a instanceof ArrayContainer)
+			{
+				int ret = 0;
+				for (final char low: ((ArrayContainer) a).lows)
+					if (b.contains(low)) ++ret;
+				return ret;
+			}
+
+			final long words[] = a instanceof BitmapContainer ? ((BitmapContainer) a).words : a.toWords();
+			final long other[] = b instanceof BitmapContainer ? ((BitmapContainer) b).words : b.toWords();
+			int ret = 0;
+			for (int w = 0; w < WORDS; ++w)
+				ret += Long.bitCount(words[w] & other[w]);
+			return ret;
+		}
+
+		static Container or(Container a, Container b)
+		{
+			final long words[] = a.toWords();
+			b.orInto(words);
+			return create(words);
+		}
+
+		/**
+		 * @return A new bitmap of this container
+		 */
+		final long[] toWords()
+		{
+			final long ret[] = new long[WORDS];
+			orInto(ret);
+			return ret;
+		}
+
+		/**
+		 * @param words A bitmap of length WORDS
+		 * @param low A low part, or 65536
+		 * @return The smallest set bit that is at least LOW, or -1 when there is none
+		 */
+		static int nextBit(long words[], int low)
+		{
+			int w = low >>> 6;
+			if (w >= WORDS) return -1;
+			long word = words[w] & -1L << low;
+			while (word == 0)
+			{
+				if (++w == WORDS) return -1;
+				word = words[w];
+			}
+			return w << 6 | Long.numberOfTrailingZeros(word);
+		}
+	}
+
+	/**
+	 * Sorted low parts.
+	 */
+	private static final class ArrayContainer
+	    extends Container
+	{
+		ArrayContainer(char lows[])
+		{
+			assert lows.length > 0 && lows.length <= MAX_ARRAY;
+			this.lows = lows;
+		}
+
+		@Override
+		int cardinality()
+		{
+			return lows.length;
+		}
+
+		@Override
+		boolean contains(char low)
+		{
+			return search(low) >= 0;
+		}
+
+		@Override
+		int next(int low)
+		{
+			if (low > 0xFFFF) return -1;
+			int k = search((char) low);
+			if (k < 0) k = -k - 1;
+			return k < lows.length ? lows[k] : -1;
+		}
+
+		@Override
+		void orInto(long words[])
+		{
+			for (final char low: lows)
+				words[low >>> 6] |= 1L << low;
+		}
+
+		@Override
+		double sum(double v[], int base)
+		{
+			double ret = 0.;
+			for (final char low: lows)
+				ret += v[base | low];
+			return ret;
+		}
+
+		@Override
+		void sum(double v[][], int base, double ret[])
+		{
+			for (final char low: lows)
+			{
+				final int index = base | low;
+				for (int r = 0; r < ret.length; ++r)
+					ret[r] += v[r][index];
+			}
+		}
+
+		@Override
+		int size()
+		{
+			return 2 * lows.length;
+		}
+
+		/**
+		 * @return The position of LOW, or -(insertion point) - 1
+		 */
+		private int search(char low)
+		{
+			int min = 0;
+			int max = lows.length;
+			while (min < max)
+			{
+				final int mid = (min + max) >>> 1;
+				if (lows[mid] == low) return mid;
+				if (lows[mid] > low)
+					max = mid;
+				else
+					min = mid + 1;
+			}
+			return -min - 1;
+		}
+
+		final char lows[];
+	}
+
+	/**
+	 * One bit per possible low part.
+	 */
+	private static final class BitmapContainer
+	    extends Container
+	{
+		BitmapContainer(long words[], int cardinality)
+		{
+			assert words.length == WORDS;
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality()
+		{
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char low)
+		{
+			return (words[low >>> 6] & 1L << low) != 0;
+		}
+
+		@Override
+		int next(int low)
+		{
+			return nextBit(words, low);
+		}
+
+		@Override
+		void orInto(long words[])
+		{
+			for (int w = 0; w < WORDS; ++w)
+				words[w] |= this.words[w];
+		}
+
+		@Override
+		double sum(double v[], int base)
+		{
+			double ret = 0.;
+			for (int w = 0; w < WORDS; ++w)
+			{
+				for (long word = words[w]; word != 0; word &= word - 1)
+					ret += v[base | w << 6 | Long.numberOfTrailingZeros(word)];
+			}
+			return ret;
+		}
+
+		@Override
+		void sum(double v[][], int base, double ret[])
+		{
+			for (int w = 0; w < WORDS; ++w)
+			{
+				for (long word = words[w]; word != 0; word &= word - 1)
+				{
+					final int index = base | w << 6 | Long.numberOfTrailingZeros(word);
+					for (int r = 0; r < ret.length; ++r)
+						ret[r] += v[r][index];
+				}
+			}
+		}
+
+		@Override
+		int size()
+		{
+			return 8 * WORDS;
+		}
+
+		final long words[];
+		private final int cardinality;
+	}
+
+	/**
+	 * Runs of consecutive low parts, given by their start and their length minus one.
+	 */
+	private static final class RunContainer
+	    extends Container
+	{
+		RunContainer(char starts[], char lengths[], int cardinality)
+		{
+			assert starts.length == lengths.length && starts.length > 0;
+			this.starts = starts;
+			this.lengths = lengths;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality()
+		{
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char low)
+		{
+			final int r = find(low);
+			return r >= 0 && low <= starts[r] + lengths[r];
+		}
+
+		@Override
+		int next(int low)
+		{
+			if (low > 0xFFFF) return -1;
+			final int r = find((char) low);
+			if (r >= 0 && low <= starts[r] + lengths[r]) return low;
+			return r + 1 < starts.length ? starts[r + 1] : -1;
+		}
+
+		@Override
+		void orInto(long words[])
+		{
+			for (int r = 0; r < starts.length; ++r)
+			{
+				final int end = starts[r] + lengths[r];
+				for (int low = starts[r]; low <= end; ++low)
+					words[low >>> 6] |= 1L << low;
+			}
+		}
+
+		@Override
+		double sum(double v[], int base)
+		{
+			double ret = 0.;
+			for (int r = 0; r < starts.length; ++r)
+			{
+				final int end = base + starts[r] + lengths[r];
+				for (int index = base + starts[r]; index <= end; ++index)
+					ret += v[index];
+			}
+			return ret;
+		}
+
+		@Override
+		void sum(double v[][], int base, double ret[])
+		{
+			for (int r = 0; r < starts.length; ++r)
+			{
+				final int end = base + starts[r] + lengths[r];
+				for (int index = base + starts[r]; index <= end; ++index)
+					for (int s = 0; s < ret.length; ++s)
+						ret[s] += v[s][index];
+			}
+		}
+
+		@Override
+		int size()
+		{
+			return 4 * starts.length;
+		}
+
+		/**
+		 * @return The last run starting at or before LOW, or -1 when there is none
+		 */
+		private int find(char low)
+		{
+			int min = 0;
+			int max = starts.length;
+			while (min < max)
+			{
+				final int mid = (min + max) >>> 1;
+				if (starts[mid] > low)
+					max = mid;
+				else
+					min = mid + 1;
+			}
+			return min - 1;
+		}
+
+		private final char starts[];
+		private final char lengths[];
+		private final int cardinality;
+	}
+
+	/*
+	 * The high parts of the blocks in ascending order, and the corresponding containers.
+	 */
+	private final char keys[];
+	private final Container containers[];
+	private final int cardinality;
+
+	/**
+	 * Number of words in a bitmap container.
+	 */
+	private static final int WORDS = 1 << 10;
+
+	/**
+	 * Maximal cardinality of an array container. Above this, a bitmap uses less memory.
+	 */
+	private static final int MAX_ARRAY = 4096;
+}
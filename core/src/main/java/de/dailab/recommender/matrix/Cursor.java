@@ -0,0 +1,39 @@
+package de.dailab.recommender.matrix;
+
+/**
+ * A cursor over the entries of a vector, or of a row or column of a matrix. Unlike iterators, cursors do not allocate
+ * an object for each entry.
+ * <p>
+ * A cursor is initially positioned before the first entry. Typical usage:
+ * 
+ * <pre>
+ * final Cursor cursor = vector.cursor();
+ * while (cursor.next())
+ * 	sum += cursor.value();
+ * </pre>
+ * 
+ * @author kunegis
+ */
+public interface Cursor
+{
+	/**
+	 * Advance to the next entry.
+	 * 
+	 * @return Whether there is a next entry; FALSE when the end is reached
+	 */
+	boolean next();
+
+	/**
+	 * The index of the current entry. Must only be called after next() has returned TRUE.
+	 * 
+	 * @return The row or column index
+	 */
+	int index();
+
+	/**
+	 * The value of the current entry. Must only be called after next() has returned TRUE.
+	 * 
+	 * @return The value
+	 */
+	double value();
+}
@@ -0,0 +1,11 @@
+package de.dailab.recommender.matrix;
+
+/**
+ * Marker for read-only matrices, such as those returned by MatrixFactory.freeze() and mapped, bitmap and varint
+ * matrices. The set() method of such matrices throws UnsupportedOperationException, and their entries never change.
+ * 
+ * @author kunegis
+ */
+public interface FrozenMatrix
+    extends Matrix
+{}
@@ -0,0 +1,281 @@
+package de.dailab.recommender.matrix;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A sparse vector of doubles stored in an open-addressing hash table with linear probing. Unlike the sorted memory-held
+ * vectors created by MatrixFactory.newMemoryVector(), setGeneric(), addGeneric() and getGeneric() run in expected
+ * constant time regardless of the order in which indexes are given. This makes hash vectors suitable for accumulating
+ * many scattered additions, e.g. the result of one step of a spreading activation.
+ * <p>
+ * iterator() and cursor() visit the entries in an unspecified order, in time proportional to the size of the table,
+ * which is at most four times the number of entries unless a larger capacity was given. sortedCursor() visits them in
+ * order of increasing index. Entries that are set to zero remain entries, as in the
+ * other vectors of this package. The memory requirement is at most {@code 4 * r * (I + D)} for r entries, where I is
+ * the size of int and D the size of double.
+ * <p>
+ * Instances must not be used by several threads at once.
+ * 
+ * @author kunegis
+ */
+public final class HashVector
+    implements Vector
+{
+	/**
+	 * An empty vector.
+	 */
+	public HashVector()
+	{
+		this(0);
+	}
+
+	/**
+	 * An empty vector that can hold the given number of entries without growing.
+	 * 
+	 * @param capacity Expected number of entries
+	 */
+	public HashVector(int capacity)
+	{
+		assert capacity >= 0;
+
+		int length = MIN_LENGTH;
+		while (length < 2 * capacity)
+			length *= 2;
+		allocate(length);
+	}
+
+	@Override
+	public int nnz()
+	{
+		return size;
+	}
+
+	@Override
+	public String getIndexType()
+	{
+		return int.class.getSimpleName();
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return double.class.getSimpleName();
+	}
+
+	@Override
+	public double getGeneric(int i)
+	{
+		final int slot = find(i);
+		return keys[slot] == i ? values[slot] : 0.;
+	}
+
+	/**
+	 * Whether the vector has an entry at the given index. Unlike getGeneric(), this distinguishes entries of value zero
+	 * from missing entries.
+	 * 
+	 * @param i An index
+	 * @return Whether I is an entry of this vector
+	 */
+	public boolean contains(int i)
+	{
+		return keys[find(i)] == i;
+	}
+
+	@Override
+	public void setGeneric(int i, double value)
+	{
+		/* INSERT() may reallocate VALUES */
+		final int slot = insert(i);
+		values[slot] = value;
+	}
+
+	@Override
+	public void addGeneric(int i, double value)
+	{
+		final int slot = insert(i);
+		values[slot] += value;
+	}
+
+	@Override
+	public MatrixIterator <Entry> iterator()
+	{
+		return new MatrixIterator <Entry>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				while (next < keys.length && keys[next] == EMPTY)
+					++next;
+				return next < keys.length;
+			}
+
+			@Override
+			public Entry next()
+			{
+				if (!hasNext()) throw new NoSuchElementException();
+				current = next++;
+				return new Entry(keys[current], values[current]);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+
+			/**
+			 * Does not change the set of entries, and thus does not move other entries.
+			 */
+			@Override
+			public void set(double newValue)
+			{
+				values[current] = newValue;
+			}
+
+			private int next = 0, current = -1;
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The cursor must not be used anymore after an entry has been added to the vector.
+	 */
+	@Override
+	public Cursor cursor()
+	{
+		return new Cursor()
+		{
+			@Override
+			public boolean next()
+			{
+				while (++slot < keys.length)
+					if (keys[slot] != EMPTY) return true;
+				return false;
+			}
+
+			@Override
+			public int index()
+			{
+				return keys[slot];
+			}
+
+			@Override
+			public double value()
+			{
+				return values[slot];
+			}
+
+			private int slot = -1;
+		};
+	}
+
+	/**
+	 * A cursor over the entries in order of increasing index. The indexes are sorted when this method is called, in
+	 * time {@code O(r log r)} for r entries.
+	 * 
+	 * @return A new cursor positioned before the first entry
+	 */
+	public Cursor sortedCursor()
+	{
+		final int indexes[] = new int[size];
+		int count = 0;
+		for (final int key: keys)
+			if (key != EMPTY) indexes[count++] = key;
+		assert count == size;
+		Arrays.sort(indexes);
+
+		return new Cursor()
+		{
+			@Override
+			public boolean next()
+			{
+				return ++k < indexes.length;
+			}
+
+			@Override
+			public int index()
+			{
+				return indexes[k];
+			}
+
+			@Override
+			public double value()
+			{
+				return getGeneric(indexes[k]);
+			}
+
+			private int k = -1;
+		};
+	}
+
+	/**
+	 * The slot containing the index I, or the empty slot at which it would be inserted.
+	 */
+	private int find(int i)
+	{
+		assert i >= 0;
+
+		final int mask = keys.length - 1;
+		int slot = (i * 0x9E3779B9) >>> shift;
+		while (keys[slot] != i && keys[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * The slot containing the index I, inserting it with value zero if it is not present.
+	 */
+	private int insert(int i)
+	{
+		int slot = find(i);
+		if (keys[slot] == i) return slot;
+
+		if (2 * (size + 1) > keys.length)
+		{
+			final int oldKeys[] = keys;
+			final double oldValues[] = values;
+			allocate(2 * keys.length);
+			for (int s = 0; s < oldKeys.length; ++s)
+			{
+				if (oldKeys[s] == EMPTY) continue;
+				final int newSlot = find(oldKeys[s]);
+				keys[newSlot] = oldKeys[s];
+				values[newSlot] = oldValues[s];
+			}
+			slot = find(i);
+		}
+
+		keys[slot] = i;
+		++size;
+		return slot;
+	}
+
+	/**
+	 * Allocate empty tables of the given length, which must be a power of two.
+	 */
+	private void allocate(int length)
+	{
+		assert Integer.bitCount(length) == 1;
+
+		keys = new int[length];
+		Arrays.fill(keys, EMPTY);
+		values = new double[length];
+		shift = 32 - Integer.numberOfTrailingZeros(length);
+	}
+
+	/*
+	 * KEYS[s] is the index stored in slot s, or EMPTY, and VALUES[s] its value. At most half of all slots are used.
+	 * The first slot probed for index i is given by the highest bits of i times a large odd constant (Fibonacci
+	 * hashing).
+	 */
+	private int keys[];
+	private double values[];
+	private int shift;
+	private int size = 0;
+
+	private static final int EMPTY = -1;
+
+	private static final int MIN_LENGTH = 16;
+}
@@ -0,0 +1,707 @@
+package de.dailab.recommender.matrix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only matrix backed by a memory-mapped file in compressed sparse row and column format. Opening a mapped
+ * matrix does not read the file; pages are loaded by the operating system when accessed and are shared through the
+ * page cache between all processes that map the same file. The matrix uses no space on the Java heap.
+ * <p>
+ * Mapped matrix files are written by write(). The file is mapped in segments of {@code 2^30} bytes, so files may be
+ * larger than 2 GB. The file must not be modified while it is mapped.
+ * <p>
+ * The file consists of a header followed by six arrays, each padded to a multiple of 8 bytes. All numbers are
+ * big-endian.
+ * <ul>
+ * <li>Header: magic number (int), version (int), m (int), n (int), r (long), weight type (int), value size (int)
+ * <li>Row offsets (m + 1 longs), row indexes (r ints), row values (r values)
+ * <li>Column offsets (n + 1 longs), column indexes (r ints), column values (r values)
+ * </ul>
+ * Values are stored as floats (value size 4) for the weight types byte, short, char and float, as doubles (value size
+ * 8) for int, long and double, and are not stored (value size 0) for unweighted matrices.
+ * <p>
+ * Instances can be used by several threads at once.
+ * 
+ * @author kunegis
+ */
+public class MappedMatrix
+    implements FrozenMatrix
+{
+	/**
+	 * Map a matrix file as written by write().
+	 * 
+	 * @param file The file
+	 * @throws IOException when the file cannot be mapped or is not a mapped matrix file
+	 */
+	public MappedMatrix(File file)
+	    throws IOException
+	{
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			final FileChannel channel = randomAccessFile.getChannel();
+			final long size = channel.size();
+			if (size < HEADER_SIZE) throw new IOException(String.format("%s:  Not a mapped matrix file", file));
+
+			segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+			for (int s = 0; s < segments.length; ++s)
+			{
+				final long start = (long) s << SEGMENT_BITS;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+			}
+		}
+		finally
+		{
+			/* The mapping remains valid after the file is closed */
+			randomAccessFile.close();
+		}
+
+		if (getInt(0) != MAGIC) throw new IOException(String.format("%s:  Not a mapped matrix file", file));
+		if (getInt(4) != VERSION)
+		    throw new IOException(String.format("%s:  Unsupported mapped matrix version %d", file, getInt(4)));
+
+		m = getInt(8);
+		n = getInt(12);
+		final long r = getLong(16);
+		final int weightTypeCode = getInt(24);
+		valueSize = getInt(28);
+
+		if (m < 0 || n < 0 || r < 0 || r > Integer.MAX_VALUE || weightTypeCode < 0
+		    || weightTypeCode >= WEIGHT_TYPES.length || valueSize != getValueSize(WEIGHT_TYPES[weightTypeCode]))
+		    throw new IOException(String.format("%s:  Invalid mapped matrix header", file));
+
+		nnz = (int) r;
+		weightType = WEIGHT_TYPES[weightTypeCode];
+
+		rowOffsets = HEADER_SIZE;
+		rowIndexes = rowOffsets + pad(8L * (m + 1));
+		rowValues = rowIndexes + pad(4L * nnz);
+		colOffsets = rowValues + pad((long) valueSize * nnz);
+		colIndexes = colOffsets + pad(8L * (n + 1));
+		colValues = colIndexes + pad(4L * nnz);
+
+		final long end = colValues + pad((long) valueSize * nnz);
+		if (end != (long) (segments.length - 1) * SEGMENT_SIZE + segments[segments.length - 1].capacity())
+		    throw new IOException(String.format("%s:  Invalid mapped matrix size", file));
+	}
+
+	/**
+	 * Write a matrix to a file in the format read by the constructor.
+	 * 
+	 * @param matrix The matrix to write
+	 * @param file The file to write; overwritten if it exists
+	 * @throws IOException on write errors
+	 */
+	public static void write(Matrix matrix, File file)
+	    throws IOException
+	{
+		final String weightType = matrix.getWeightType();
+		assert Arrays.asList(WEIGHT_TYPES).contains(weightType);
+		final int valueSize = getValueSize(weightType);
+
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			final int m = matrix.rows();
+			final int n = matrix.cols();
+
+			long r = 0;
+			for (int i = 0; i < m; ++i)
+				r += getCount(matrix, i, true);
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(m);
+			out.writeInt(n);
+			out.writeLong(r);
+			out.writeInt(Arrays.asList(WEIGHT_TYPES).indexOf(weightType));
+			out.writeInt(valueSize);
+
+			writeSide(out, m, r, valueSize, true, matrix);
+			writeSide(out, n, r, valueSize, false, matrix);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Write the offsets, indexes and values of all rows or all columns.
+	 */
+	private static void writeSide(DataOutputStream out, int count, long r, int valueSize, boolean rows, Matrix matrix)
+	    throws IOException
+	{
+		long offset = 0;
+		out.writeLong(0);
+		for (int i = 0; i < count; ++i)
+		{
+			offset += getCount(matrix, i, rows);
+			out.writeLong(offset);
+		}
+		assert offset == r;
+		writePadding(out, 8L * (count + 1));
+
+		for (int i = 0; i < count; ++i)
+			for (final Entry entry: sorted(rows ? matrix.row(i) : matrix.col(i), getCount(matrix, i, rows)))
+				out.writeInt(entry.index);
+		writePadding(out, 4L * r);
+
+		if (valueSize == 0) return;
+		for (int i = 0; i < count; ++i)
+			for (final Entry entry: sorted(rows ? matrix.row(i) : matrix.col(i), getCount(matrix, i, rows)))
+			{
+				if (valueSize == 4)
+					out.writeFloat((float) entry.value);
+				else
+					out.writeDouble(entry.value);
+			}
+		writePadding(out, valueSize * r);
+	}
+
+	/**
+	 * The number of entries in a row or column. Matrices with zero rows or columns do not support getRowCount() and
+	 * getColCount().
+	 */
+	private static int getCount(Matrix matrix, int i, boolean rows)
+	{
+		if (matrix.rows() == 0 || matrix.cols() == 0) return 0;
+		return rows ? matrix.getRowCount(i) : matrix.getColCount(i);
+	}
+
+	/**
+	 * The entries of a row or column sorted by index. The Matrix interface does not guarantee the order of iteration.
+	 */
+	private static Entry[] sorted(Iterable <Entry> entries, int count)
+	{
+		final Entry ret[] = new Entry[count];
+		int k = 0;
+		boolean isSorted = true;
+		for (final Entry entry: entries)
+		{
+			if (k > 0 && ret[k - 1].index > entry.index) isSorted = false;
+			ret[k++] = entry;
+		}
+		assert k == count;
+		if (!isSorted) Arrays.sort(ret, ENTRY_COMPARATOR);
+		return ret;
+	}
+
+	private static void writePadding(DataOutputStream out, long length)
+	    throws IOException
+	{
+		for (long k = length; k < pad(length); ++k)
+			out.writeByte(0);
+	}
+
+	private static long pad(long length)
+	{
+		return (length + 7) & ~7L;
+	}
+
+	private static int getValueSize(String weightType)
+	{
+		if (weightType.equals(boolean.class.getSimpleName())) return 0;
+		if (weightType.equals(int.class.getSimpleName()) || weightType.equals(long.class.getSimpleName())
+		    || weightType.equals(double.class.getSimpleName())) return 8;
+		return 4;
+	}
+
+	@Override
+	public int rows()
+	{
+		return m;
+	}
+
+	@Override
+	public int cols()
+	{
+		return n;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
+	@Override
+	public int nnz()
+	{
+		return nnz;
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return weightType;
+	}
+
+	@Override
+	public int getRowCount(int row)
+	{
+		return (int) (getOffset(rowOffsets, row + 1) - getOffset(rowOffsets, row));
+	}
+
+	@Override
+	public int getColCount(int col)
+	{
+		return (int) (getOffset(colOffsets, col + 1) - getOffset(colOffsets, col));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Mapped matrices are read-only; this method always throws.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void set(int i, int j, double value)
+	{
+		throw new UnsupportedOperationException("Mapped matrices are read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Binary search in the shorter of the row and the column.
+	 */
+	@Override
+	public double get(int i, int j)
+	{
+		assert i >= 0 && i < m && j >= 0 && j < n;
+
+		if (getRowCount(i) <= getColCount(j))
+		{
+			final long k = search(rowIndexes, getOffset(rowOffsets, i), getOffset(rowOffsets, i + 1), j);
+			return k < 0 ? 0. : getValue(rowValues, k);
+		}
+		else
+		{
+			final long k = search(colIndexes, getOffset(colOffsets, j), getOffset(colOffsets, j + 1), i);
+			return k < 0 ? 0. : getValue(colValues, k);
+		}
+	}
+
+	/**
+	 * @return The position of index I in the given range of the index array at BASE, or -1 if it is not present
+	 */
+	private long search(long base, long min, long max, int i)
+	{
+		while (min < max)
+		{
+			final long mid = (min + max) >>> 1;
+			final int index = getInt(base + 4 * mid);
+			if (index == i) return mid;
+			if (index > i)
+				max = mid;
+			else
+				min = mid + 1;
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean isSymmetric()
+	{
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Iterate in row-by-row order. The returned iterator does not support set().
+	 */
+	@Override
+	public MatrixIterable <FullEntry> all()
+	{
+		return new MatrixIterable <FullEntry>()
+		{
+			@Override
+			public MatrixIterator <FullEntry> iterator()
+			{
+				return new MatrixIterator <FullEntry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return k < nnz;
+					}
+
+					@Override
+					public FullEntry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						while (getOffset(rowOffsets, i + 1) <= k)
+							++i;
+						final FullEntry ret = new FullEntry(i, getInt(rowIndexes + 4 * k), getValue(rowValues, k));
+						++k;
+						return ret;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void set(double newValue)
+					{
+						throw new UnsupportedOperationException("Mapped matrices are read-only");
+					}
+
+					private int i = 0;
+					private long k = 0;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Entry> row(int i)
+	{
+		return iterable(rowIndexes, rowValues, getOffset(rowOffsets, i), getOffset(rowOffsets, i + 1));
+	}
+
+	@Override
+	public Iterable <Entry> col(int j)
+	{
+		return iterable(colIndexes, colValues, getOffset(colOffsets, j), getOffset(colOffsets, j + 1));
+	}
+
+	private Iterable <Entry> iterable(final long indexes, final long values, final long begin, final long end)
+	{
+		if (begin == end) return Collections.emptyList();
+
+		return new Iterable <Entry>()
+		{
+			@Override
+			public Iterator <Entry> iterator()
+			{
+				return new Iterator <Entry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return k < end;
+					}
+
+					@Override
+					public Entry next()
+					{
+						if (k == end) throw new NoSuchElementException();
+						final Entry ret = new Entry(getInt(indexes + 4 * k), getValue(values, k));
+						++k;
+						return ret;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private long k = begin;
+				};
+			}
+		};
+	}
+
+	@Override
+	public double[] mult(double[] v, double[] ret, double weight)
+	{
+		assert v.length == n;
+
+		if (ret == null) ret = new double[m];
+
+		assert ret.length == m;
+
+		long begin = getOffset(rowOffsets, 0);
+		for (int i = 0; i < m; ++i)
+		{
+			final long end = getOffset(rowOffsets, i + 1);
+			double sum = 0.;
+			for (long k = begin; k < end; ++k)
+				sum += v[getInt(rowIndexes + 4 * k)] * getValue(rowValues, k);
+			ret[i] += weight * sum;
+			begin = end;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == m;
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		long begin = getOffset(colOffsets, 0);
+		for (int j = 0; j < n; ++j)
+		{
+			final long end = getOffset(colOffsets, j + 1);
+			double sum = 0.;
+			for (long l = begin; l < end; ++l)
+				sum += v[getInt(colIndexes + 4 * l)] * getValue(colValues, l);
+			ret[j] += weight * sum;
+			begin = end;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][m];
+
+		assert ret.length == v.length;
+
+		final double sums[] = new double[v.length];
+		long begin = getOffset(rowOffsets, 0);
+		for (int i = 0; i < m; ++i)
+		{
+			final long end = getOffset(rowOffsets, i + 1);
+			if (begin == end) continue;
+			for (int r = 0; r < sums.length; ++r)
+				sums[r] = 0.;
+			for (long k = begin; k < end; ++k)
+			{
+				final int j = getInt(rowIndexes + 4 * k);
+				final double value = getValue(rowValues, k);
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] += v[r][j] * value;
+			}
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][i] += weight * sums[r];
+			begin = end;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][n];
+
+		assert ret.length == v.length;
+
+		final double sums[] = new double[v.length];
+		long begin = getOffset(colOffsets, 0);
+		for (int j = 0; j < n; ++j)
+		{
+			final long end = getOffset(colOffsets, j + 1);
+			if (begin == end) continue;
+			for (int r = 0; r < sums.length; ++r)
+				sums[r] = 0.;
+			for (long l = begin; l < end; ++l)
+			{
+				final int i = getInt(colIndexes + 4 * l);
+				final double value = getValue(colValues, l);
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] += v[r][i] * value;
+			}
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][j] += weight * sums[r];
+			begin = end;
+		}
+
+		return ret;
+	}
+
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				indexes = rowIndexes;
+				values = rowValues;
+				k = getOffset(rowOffsets, i) - 1;
+				end = getOffset(rowOffsets, i + 1);
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				indexes = colIndexes;
+				values = colValues;
+				k = getOffset(colOffsets, j) - 1;
+				end = getOffset(colOffsets, j + 1);
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return ++k < end;
+			}
+
+			@Override
+			public int index()
+			{
+				return getInt(indexes + 4 * k);
+			}
+
+			@Override
+			public double value()
+			{
+				return getValue(values, k);
+			}
+
+			/*
+			 * File positions of the index and value arrays of the current row or column.
+			 */
+			private long indexes, values;
+			private long k = -1;
+			private long end = 0;
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getRows()
+	{
+		return nonempty(rowOffsets, m);
+	}
+
+	@Override
+	public Iterable <Integer> getCols()
+	{
+		return nonempty(colOffsets, n);
+	}
+
+	/**
+	 * @return Iterable over the indexes whose range in the offset array at BASE is not empty
+	 */
+	private Iterable <Integer> nonempty(final long base, final int count)
+	{
+		return new Iterable <Integer>()
+		{
+			@Override
+			public Iterator <Integer> iterator()
+			{
+				return new Iterator <Integer>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						while (next < count && getOffset(base, next) == getOffset(base, next + 1))
+							++next;
+						return next < count;
+					}
+
+					@Override
+					public Integer next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						return next++;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int next = 0;
+				};
+			}
+		};
+	}
+
+	private long getOffset(long base, int i)
+	{
+		return getLong(base + 8L * i);
+	}
+
+	/**
+	 * The value at position K of the value array at BASE. Unweighted matrices have all values one.
+	 */
+	private double getValue(long base, long k)
+	{
+		switch (valueSize)
+		{
+		case 0:
+			return 1.;
+		case 4:
+			return segments[(int) ((base + 4 * k) >>> SEGMENT_BITS)].getFloat((int) ((base + 4 * k) & SEGMENT_MASK));
+		default:
+			return segments[(int) ((base + 8 * k) >>> SEGMENT_BITS)].getDouble((int) ((base + 8 * k) & SEGMENT_MASK));
+		}
+	}
+
+	/*
+	 * Values never cross segment boundaries because all arrays are aligned to 8 bytes and the segment size is a
+	 * multiple of 8.
+	 */
+
+	private int getInt(long position)
+	{
+		return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & SEGMENT_MASK));
+	}
+
+	private long getLong(long position)
+	{
+		return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK));
+	}
+
+	private final MappedByteBuffer segments[];
+
+	private final int m, n, nnz;
+	private final String weightType;
+
+	/**
+	 * Size of a stored value in bytes: 0, 4 or 8.
+	 */
+	private final int valueSize;
+
+	/*
+	 * File positions of the six arrays.
+	 */
+	private final long rowOffsets, rowIndexes, rowValues;
+	private final long colOffsets, colIndexes, colValues;
+
+	private static final int MAGIC = 0x4d4d5458;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * The weight types in the order of their code in the file header.
+	 */
+	private static final String WEIGHT_TYPES[] = { boolean.class.getSimpleName(), byte.class.getSimpleName(),
+	    short.class.getSimpleName(), char.class.getSimpleName(), int.class.getSimpleName(), long.class.getSimpleName(),
+	    float.class.getSimpleName(), double.class.getSimpleName() };
+
+	private static final Comparator <Entry> ENTRY_COMPARATOR = new Comparator <Entry>()
+	{
+		@Override
+		public int compare(Entry entry1, Entry entry2)
+		{
+			return entry1.index < entry2.index ? -1 : entry1.index > entry2.index ? 1 : 0;
+		}
+	};
+}
@@ -35,7 +35,8 @@ public interface Matrix
 	int cols();
 
 	/**
-	 * Compute the number of entries. This call may not run in constant time.
+	 * Compute the number of entries. The matrices created by MatrixFactory and MatrixBuilder keep this number up to
+	 * date and return it in constant time; other implementations may not.
 	 * 
 	 * @return The number of entries
 	 */
@@ -118,6 +119,32 @@ public interface Matrix
 	 */
 	double[] multT(double v[], double ret[], double weight);
 
+	/**
+	 * Multiplication with several vectors at once. Equivalent to calling mult(v[k], ret[k], weight) for each k, but
+	 * implementations read each entry of the matrix only once.
+	 * <p>
+	 * Compute RET[k] += WEIGHT * This * v[k] for each k.
+	 * 
+	 * @param v K vectors of size N (column count of this)
+	 * @param ret K vectors of size M to which the products are added. If NULL, return the products. If set, the
+	 *        vectors are modified in-place and RET is returned.
+	 * @param weight factor
+	 * @return The products; return RET if it was given
+	 */
+	double[][] multBlock(double v[][], double ret[][], double weight);
+
+	/**
+	 * As multBlock(), but use This^t instead of This.
+	 * <p>
+	 * Compute RET[k] += WEIGHT * This' * v[k] for each k.
+	 * 
+	 * @param v K vectors of size M (row count of this)
+	 * @param ret K vectors of size N (optional)
+	 * @param weight factor
+	 * @return The products
+	 */
+	double[][] multBlockT(double v[][], double ret[][], double weight);
+
 	/**
 	 * Iterate over all entries. The order is unspecified.
 	 * 
@@ -141,6 +168,14 @@ public interface Matrix
 	 */
 	Iterable <Entry> col(int j);
 
+	/**
+	 * A cursor over rows and columns. Unlike row() and col(), iterating with a cursor does not allocate an object for
+	 * each entry. Each cursor must only be used by one thread.
+	 * 
+	 * @return A new cursor, not positioned on any row or column
+	 */
+	MatrixCursor cursor();
+
 	/**
 	 * Iterate over all nonempty rows.
 	 * 
@@ -0,0 +1,36 @@
+package de.dailab.recommender.matrix;
+
+/**
+ * A cursor over the rows and columns of a matrix. The same cursor can be positioned on any number of rows and columns
+ * one after the other, so that iterating over a whole matrix does not allocate any objects. Typical usage:
+ * 
+ * <pre>
+ * final MatrixCursor cursor = matrix.cursor();
+ * for (int i = 0; i &lt; matrix.rows(); ++i)
+ * 	for (cursor.row(i); cursor.next();)
+ * 		sum += cursor.value();
+ * </pre>
+ * 
+ * @author kunegis
+ */
+public interface MatrixCursor
+    extends Cursor
+{
+	/**
+	 * Position the cursor before the first entry of a row. Subsequent calls to next() iterate over the row; index()
+	 * returns column indexes.
+	 * 
+	 * @param i Row index
+	 * @return This cursor
+	 */
+	MatrixCursor row(int i);
+
+	/**
+	 * Position the cursor before the first entry of a column. Subsequent calls to next() iterate over the column;
+	 * index() returns row indexes.
+	 * 
+	 * @param j Column index
+	 * @return This cursor
+	 */
+	MatrixCursor col(int j);
+}
@@ -0,0 +1,727 @@
+package de.dailab.recommender.matrix;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only matrix in compressed sparse row and column format, in which the sorted indexes of each row and column
+ * are delta-encoded and stored as group varints. The difference between consecutive indexes minus one is stored in one
+ * to four bytes; four such differences are preceded by a tag byte giving their lengths. Values are stored as floats
+ * for the weight types byte, short, char and float, as doubles for int, long and double, and are not stored for
+ * unweighted matrices.
+ * <p>
+ * For the typical gaps of large sparse matrices, indexes take between one and two bytes instead of four. mult(),
+ * multT(), row() and col() decode the indexes sequentially. get() uses a skip index containing every SKIP-th index
+ * of each row and column, and decodes at most SKIP indexes.
+ * <p>
+ * Instances can be used by several threads at once.
+ * 
+ * @author kunegis
+ */
+public class VarintMatrix
+    implements FrozenMatrix
+{
+	/**
+	 * A compressed copy of the given matrix.
+	 * 
+	 * @param matrix The matrix to compress; not modified
+	 */
+	public VarintMatrix(Matrix matrix)
+	{
+		m = matrix.rows();
+		n = matrix.cols();
+		weightType = matrix.getWeightType();
+
+		final int valueSize = getValueSize(weightType);
+
+		rows = new Side(matrix, true, valueSize);
+		cols = new Side(matrix, false, valueSize);
+		assert rows.offsets[m] == cols.offsets[n];
+	}
+
+	/**
+	 * @return The number of bytes used by the encoded indexes, including the skip index, in both rows and columns
+	 */
+	public long getIndexSize()
+	{
+		return rows.getIndexSize() + cols.getIndexSize();
+	}
+
+	@Override
+	public int rows()
+	{
+		return m;
+	}
+
+	@Override
+	public int cols()
+	{
+		return n;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
+	@Override
+	public int nnz()
+	{
+		return rows.offsets[m];
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return weightType;
+	}
+
+	@Override
+	public int getRowCount(int row)
+	{
+		return rows.offsets[row + 1] - rows.offsets[row];
+	}
+
+	@Override
+	public int getColCount(int col)
+	{
+		return cols.offsets[col + 1] - cols.offsets[col];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Varint matrices are read-only; this method always throws.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void set(int i, int j, double value)
+	{
+		throw new UnsupportedOperationException("Varint matrices are read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Search in the shorter of the row and the column.
+	 */
+	@Override
+	public double get(int i, int j)
+	{
+		assert i >= 0 && i < m && j >= 0 && j < n;
+
+		if (getRowCount(i) <= getColCount(j))
+			return rows.get(i, j);
+		else
+			return cols.get(j, i);
+	}
+
+	@Override
+	public boolean isSymmetric()
+	{
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Iterate in row-by-row order. The returned iterator does not support set().
+	 */
+	@Override
+	public MatrixIterable <FullEntry> all()
+	{
+		return new MatrixIterable <FullEntry>()
+		{
+			@Override
+			public MatrixIterator <FullEntry> iterator()
+			{
+				return new MatrixIterator <FullEntry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						if (advanced) return present;
+						advanced = true;
+						while (i < m)
+						{
+							if (cursor.next()) return present = true;
+							if (++i < m) cursor.row(i);
+						}
+						return present = false;
+					}
+
+					@Override
+					public FullEntry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						advanced = false;
+						return new FullEntry(i, cursor.index(), cursor.value());
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void set(double newValue)
+					{
+						throw new UnsupportedOperationException("Varint matrices are read-only");
+					}
+
+					private int i = 0;
+					private final MatrixCursor cursor = m == 0 ? cursor() : cursor().row(0);
+					private boolean advanced = false, present;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Entry> row(int i)
+	{
+		return rows.iterable(i);
+	}
+
+	@Override
+	public Iterable <Entry> col(int j)
+	{
+		return cols.iterable(j);
+	}
+
+	@Override
+	public double[] mult(double[] v, double[] ret, double weight)
+	{
+		assert v.length == n;
+
+		if (ret == null) ret = new double[m];
+
+		assert ret.length == m;
+
+		rows.mult(v, ret, weight);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == m;
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		cols.mult(v, ret, weight);
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][m];
+
+		assert ret.length == v.length;
+
+		rows.multBlock(v, ret, weight);
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][n];
+
+		assert ret.length == v.length;
+
+		cols.multBlock(v, ret, weight);
+
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Moving the cursor to a row or column decodes its indexes into a buffer of the cursor.
+	 */
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				side = rows;
+				count = rows.decode(i, indexes = rows.buffer(indexes));
+				offset = rows.offsets[i];
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				side = cols;
+				count = cols.decode(j, indexes = cols.buffer(indexes));
+				offset = cols.offsets[j];
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return ++k < count;
+			}
+
+			@Override
+			public int index()
+			{
+				return indexes[k];
+			}
+
+			@Override
+			public double value()
+			{
+				return side.getValue(offset + k);
+			}
+
+			private Side side = rows;
+			private int indexes[] = null;
+			private int count = 0, offset = 0, k = -1;
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getRows()
+	{
+		return rows.nonempty();
+	}
+
+	@Override
+	public Iterable <Integer> getCols()
+	{
+		return cols.nonempty();
+	}
+
+	private static int getValueSize(String weightType)
+	{
+		if (weightType.equals(boolean.class.getSimpleName())) return 0;
+		if (weightType.equals(int.class.getSimpleName()) || weightType.equals(long.class.getSimpleName())
+		    || weightType.equals(double.class.getSimpleName())) return 8;
+		return 4;
+	}
+
+	/**
+	 * The encoded rows, or the encoded columns.
+	 */
+	private static final class Side
+	{
+		/**
+		 * Encode the rows or columns of a matrix.
+		 * 
+		 * @param matrix The matrix
+		 * @param rows Whether to encode rows
+		 * @param valueSize 0, 4 or 8
+		 */
+		Side(Matrix matrix, boolean rows, int valueSize)
+		{
+			final int count = rows ? matrix.rows() : matrix.cols();
+			final boolean empty = matrix.rows() == 0 || matrix.cols() == 0;
+
+			offsets = new int[count + 1];
+			byteOffsets = new int[count + 1];
+			skipOffsets = new int[count + 1];
+			int maxCount = 0;
+			for (int i = 0; i < count; ++i)
+			{
+				final int c = empty ? 0 : rows ? matrix.getRowCount(i) : matrix.getColCount(i);
+				offsets[i + 1] = offsets[i] + c;
+				skipOffsets[i + 1] = skipOffsets[i] + (c == 0 ? 0 : (c - 1) / SKIP);
+				maxCount = Math.max(maxCount, c);
+			}
+			this.maxCount = maxCount;
+
+			final int r = offsets[count];
+			floatValues = valueSize == 4 ? new float[r] : null;
+			doubleValues = valueSize == 8 ? new double[r] : null;
+			skipIndexes = new int[skipOffsets[count]];
+			skipPositions = new int[skipOffsets[count]];
+
+			byte bytes[] = new byte[Math.max(16, r + r / 4 + 4)];
+			int p = 0;
+
+			final int indexes[] = new int[maxCount];
+			final double values[] = new double[maxCount];
+			final MatrixCursor cursor = empty ? null : matrix.cursor();
+
+			for (int i = 0; i < count; ++i)
+			{
+				byteOffsets[i] = p;
+
+				final int c = offsets[i + 1] - offsets[i];
+				if (c == 0) continue;
+
+				if (rows)
+					cursor.row(i);
+				else
+					cursor.col(i);
+				int l = 0;
+				while (cursor.next())
+				{
+					indexes[l] = cursor.index();
+					values[l] = cursor.value();
+					++l;
+				}
+				assert l == c;
+				sort(indexes, values, c);
+
+				int previous = -1;
+				int s = skipOffsets[i];
+				for (int k = 0; k < c; k += 4)
+				{
+					if (k > 0 && k % SKIP == 0)
+					{
+						skipIndexes[s] = previous;
+						skipPositions[s] = p;
+						++s;
+					}
+
+					/* At most 17 bytes per group */
+					if (p + 17 > bytes.length)
+					{
+						final byte newBytes[] = new byte[2 * bytes.length];
+						System.arraycopy(bytes, 0, newBytes, 0, p);
+						bytes = newBytes;
+					}
+
+					final int tagPosition = p++;
+					int tag = 0;
+					for (int g = 0; g < 4 && k + g < c; ++g)
+					{
+						int delta = indexes[k + g] - previous - 1;
+						assert delta >= 0;
+						previous = indexes[k + g];
+						final int length = delta >>> 8 == 0 ? 0 : delta >>> 16 == 0 ? 1 : delta >>> 24 == 0 ? 2 : 3;
+						tag |= length << 2 * g;
+						for (int b = 0; b <= length; ++b, delta >>>= 8)
+							bytes[p++] = (byte) delta;
+					}
+					bytes[tagPosition] = (byte) tag;
+				}
+				assert s == skipOffsets[i + 1];
+
+				if (floatValues != null)
+					for (int k = 0; k < c; ++k)
+						floatValues[offsets[i] + k] = (float) values[k];
+				else if (doubleValues != null) System.arraycopy(values, 0, doubleValues, offsets[i], c);
+			}
+			byteOffsets[count] = p;
+
+			this.bytes = new byte[p];
+			System.arraycopy(bytes, 0, this.bytes, 0, p);
+		}
+
+		/**
+		 * Sort indexes and values by index. Cursors return indexes in ascending order in all implementations of this
+		 * package, so this is usually a single pass.
+		 */
+		private static void sort(int indexes[], double values[], int count)
+		{
+			for (int k = 1; k < count; ++k)
+			{
+				final int index = indexes[k];
+				final double value = values[k];
+				int l = k;
+				for (; l > 0 && indexes[l - 1] > index; --l)
+				{
+					indexes[l] = indexes[l - 1];
+					values[l] = values[l - 1];
+				}
+				indexes[l] = index;
+				values[l] = value;
+			}
+		}
+
+		/**
+		 * Decode the indexes of a row.
+		 * 
+		 * @param i The row
+		 * @param ret Filled with the indexes; of length at least the row count
+		 * @return The number of indexes
+		 */
+		int decode(int i, int ret[])
+		{
+			final int count = offsets[i + 1] - offsets[i];
+			decode(byteOffsets[i], -1, ret, count);
+			return count;
+		}
+
+		/**
+		 * Decode indexes beginning at a group boundary.
+		 * 
+		 * @param p The position of the tag byte of the first group
+		 * @param previous The index before the first decoded index, or -1
+		 * @param ret Filled with the indexes
+		 * @param count The number of indexes to decode
+		 * @return The position after the last decoded group
+		 */
+		private int decode(int p, int previous, int ret[], int count)
+		{
+			final byte bytes[] = this.bytes;
+			for (int k = 0; k < count;)
+			{
+				final int tag = bytes[p++];
+				final int end = Math.min(count, k + 4);
+				for (int shift = 0; k < end; ++k, shift += 2)
+				{
+					final int length = tag >>> shift & 3;
+					previous += getDelta(bytes, p, length) + 1;
+					p += length + 1;
+					ret[k] = previous;
+				}
+			}
+			return p;
+		}
+
+		/**
+		 * @param bytes Encoded indexes
+		 * @param p Position of the first byte of the difference
+		 * @param length Number of bytes minus one
+		 * @return The difference, in little-endian order
+		 */
+		private static int getDelta(byte bytes[], int p, int length)
+		{
+			int ret = bytes[p] & 0xFF;
+			if (length >= 1)
+			{
+				ret |= (bytes[p + 1] & 0xFF) << 8;
+				if (length >= 2)
+				{
+					ret |= (bytes[p + 2] & 0xFF) << 16;
+					if (length == 3) ret |= bytes[p + 3] << 24;
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * @param i A row
+		 * @param j A column
+		 * @return The value of (I,J)
+		 */
+		double get(int i, int j)
+		{
+			final int count = offsets[i + 1] - offsets[i];
+			if (count == 0) return 0.;
+
+			/* The last skip entry before J */
+			int min = skipOffsets[i];
+			int max = skipOffsets[i + 1];
+			while (min < max)
+			{
+				final int mid = (min + max) >>> 1;
+				if (skipIndexes[mid] < j)
+					min = mid + 1;
+				else
+					max = mid;
+			}
+			final int s = min - 1;
+
+			int k = s < skipOffsets[i] ? 0 : (s - skipOffsets[i] + 1) * SKIP;
+			int p = s < skipOffsets[i] ? byteOffsets[i] : skipPositions[s];
+			int previous = s < skipOffsets[i] ? -1 : skipIndexes[s];
+
+			/* Decode until J is reached; this is at most SKIP indexes */
+			while (k < count)
+			{
+				final int tag = bytes[p++];
+				final int end = Math.min(count, k + 4);
+				for (int shift = 0; k < end; ++k, shift += 2)
+				{
+					final int length = tag >>> shift & 3;
+					previous += getDelta(bytes, p, length) + 1;
+					p += length + 1;
+					if (previous >= j) return previous == j ? getValue(offsets[i] + k) : 0.;
+				}
+			}
+			return 0.;
+		}
+
+		double getValue(int k)
+		{
+			if (floatValues != null) return floatValues[k];
+			if (doubleValues != null) return doubleValues[k];
+			return 1.;
+		}
+
+		/**
+		 * @param buffer A buffer or NULL
+		 * @return BUFFER if it can hold any row, else a new buffer
+		 */
+		int[] buffer(int buffer[])
+		{
+			return buffer != null && buffer.length >= maxCount ? buffer : new int[maxCount];
+		}
+
+		void mult(double v[], double ret[], double weight)
+		{
+			final int indexes[] = new int[maxCount];
+			for (int i = 0; i + 1 < offsets.length; ++i)
+			{
+				final int count = decode(i, indexes);
+				final int offset = offsets[i];
+				double sum = 0.;
+				if (floatValues != null)
+					for (int k = 0; k < count; ++k)
+						sum += v[indexes[k]] * floatValues[offset + k];
+				else if (doubleValues != null)
+					for (int k = 0; k < count; ++k)
+						sum += v[indexes[k]] * doubleValues[offset + k];
+				else
+					for (int k = 0; k < count; ++k)
+						sum += v[indexes[k]];
+				ret[i] += weight * sum;
+			}
+		}
+
+		void multBlock(double v[][], double ret[][], double weight)
+		{
+			final int indexes[] = new int[maxCount];
+			final double sums[] = new double[v.length];
+			for (int i = 0; i + 1 < offsets.length; ++i)
+			{
+				final int count = decode(i, indexes);
+				if (count == 0) continue;
+				final int offset = offsets[i];
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] = 0.;
+				for (int k = 0; k < count; ++k)
+				{
+					final int index = indexes[k];
+					final double value = getValue(offset + k);
+					for (int r = 0; r < sums.length; ++r)
+						sums[r] += v[r][index] * value;
+				}
+				for (int r = 0; r < sums.length; ++r)
+					ret[r][i] += weight * sums[r];
+			}
+		}
+
+		Iterable <Entry> iterable(final int i)
+		{
+			return new Iterable <Entry>()
+			{
+				@Override
+				public Iterator <Entry> iterator()
+				{
+					final int indexes[] = new int[offsets[i + 1] - offsets[i]];
+					decode(i, indexes);
+
+					return new Iterator <Entry>()
+					{
+						@Override
+						public boolean hasNext()
+						{
+							return k < indexes.length;
+						}
+
+						@Override
+						public Entry next()
+						{
+							if (!hasNext()) throw new NoSuchElementException();
+							final Entry ret = new Entry(indexes[k], getValue(offsets[i] + k));
+							++k;
+							return ret;
+						}
+
+						@Override
+						public void remove()
+						{
+							throw new UnsupportedOperationException();
+						}
+
+						private int k = 0;
+					};
+				}
+			};
+		}
+
+		Iterable <Integer> nonempty()
+		{
+			return new Iterable <Integer>()
+			{
+				@Override
+				public Iterator <Integer> iterator()
+				{
+					return new Iterator <Integer>()
+					{
+						@Override
+						public boolean hasNext()
+						{
+							while (next + 1 < offsets.length && offsets[next + 1] == offsets[next])
+								++next;
+							return next + 1 < offsets.length;
+						}
+
+						@Override
+						public Integer next()
+						{
+							if (!hasNext()) throw new NoSuchElementException();
+							return next++;
+						}
+
+						@Override
+						public void remove()
+						{
+							throw new UnsupportedOperationException();
+						}
+
+						private int next = 0;
+					};
+				}
+			};
+		}
+
+		long getIndexSize()
+		{
+			return bytes.length + 4L * (offsets.length + byteOffsets.length + skipOffsets.length) + 8L
+			    * skipIndexes.length;
+		}
+
+		/*
+		 * Row I consists of the entries OFFSETS[I] (inclusive) to OFFSETS[I + 1] (exclusive), whose indexes are encoded
+		 * in BYTES beginning at BYTE_OFFSETS[I]. The skip entries SKIP_OFFSETS[I] to SKIP_OFFSETS[I + 1] of row I give,
+		 * for each multiple K of SKIP smaller than the row count, the index of entry K - 1 and the position of the
+		 * group containing entry K.
+		 */
+		final int offsets[];
+		private final int byteOffsets[];
+		private final byte bytes[];
+		private final int skipOffsets[];
+		private final int skipIndexes[];
+		private final int skipPositions[];
+		private final int maxCount;
+
+		/*
+		 * At most one is not NULL.
+		 */
+		private final float floatValues[];
+		private final double doubleValues[];
+	}
+
+	private final int m, n;
+	private final String weightType;
+	private final Side rows, cols;
+
+	/**
+	 * Number of indexes between two entries of the skip index. A multiple of four, so that skip entries point to group
+	 * boundaries.
+	 */
+	static final int SKIP = 64;
+}
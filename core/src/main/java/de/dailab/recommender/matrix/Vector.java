@@ -52,4 +52,12 @@ public interface Vector
 	void addGeneric(int i, double value);
 
 	MatrixIterator <Entry> iterator();
+
+	/**
+	 * A cursor over the entries, in the same order as iterator(). Unlike iterator(), the cursor does not allocate an
+	 * object for each entry.
+	 * 
+	 * @return A new cursor positioned before the first entry
+	 */
+	Cursor cursor();
 }
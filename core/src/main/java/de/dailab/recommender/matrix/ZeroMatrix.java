@@ -102,6 +102,46 @@ public class ZeroMatrix
 		return EMPTY_ARRAY;
 	}
 
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			/* All rows and columns are empty */
+			@Override
+			public MatrixCursor row(int i)
+			{
+				assert 0 <= i && i < m;
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				assert 0 <= j && j < n;
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return false;
+			}
+
+			@Override
+			public int index()
+			{
+				throw new NoSuchElementException();
+			}
+
+			@Override
+			public double value()
+			{
+				throw new NoSuchElementException();
+			}
+		};
+	}
+
 	@Override
 	public Iterable <Integer> getRows()
 	{
@@ -132,6 +172,22 @@ public class ZeroMatrix
 		return ret;
 	}
 
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][m];
+		assert ret.length == v.length;
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][n];
+		assert ret.length == v.length;
+		return ret;
+	}
+
 	private final static Iterable <Entry> EMPTY_ARRAY = new ArrayList <Entry>();
 	private final static Iterable <Integer> EMPTY_ARRAY_INT = new ArrayList <Integer>();
 
@@ -0,0 +1,624 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FrozenMatrix;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.MatrixIterable;
+import de.dailab.recommender.matrix.MatrixIterator;
+
+/**
+ * A read-only sparse binary matrix held in memory in compressed sparse row (CSR) and compressed sparse column (CSC)
+ * format, with indexes represented by chars and bytes.
+ * <p>
+ * Each dimension is stored as one offset array and one packed index array, so that there is no per-row or per-column
+ * object. Entries of each row and of each column are sorted by index.
+ * <p>
+ * Matrices of this type are built from another matrix with MatrixFactory.freeze() and cannot be modified.
+ * 
+ * @author autogenerated
+ */
+@SuppressWarnings("all")
+final class CompressedBinaryMatrixCharByte
+    implements FrozenMatrix, RangeMatrix
+{
+	/**
+	 * A compressed copy of the given matrix. The given matrix is only read.
+	 * 
+	 * @param matrix The matrix to copy; indexes must fit into the index types of this class and all entries are taken
+	 *        to be one
+	 */
+	public CompressedBinaryMatrixCharByte(Matrix matrix)
+	{
+		final int m = matrix.rows();
+		final int n = matrix.cols();
+
+		rowOffsets = new int[m + 1];
+		for (int i = 0; i < m; ++i)
+			rowOffsets[i + 1] = rowOffsets[i] + matrix.getRowCount(i);
+
+		final int nnz = rowOffsets[m];
+
+		rowIndexes = new byte[nnz];
+		for (int i = 0; i < m; ++i)
+		{
+			int k = rowOffsets[i];
+			for (final Entry entry: matrix.row(i))
+			{
+				rowIndexes[k] = (byte) entry.index;
+				++k;
+			}
+			assert k == rowOffsets[i + 1];
+		}
+
+		colOffsets = new int[n + 1];
+		colIndexes = new char[nnz];
+
+		/*
+		 * Row entries are read in the order given by the matrix, which may not be sorted. Transposing twice with a
+		 * counting sort yields sorted rows and columns in linear time.
+		 */
+		transposeA(rowOffsets, rowIndexes, colOffsets, colIndexes);
+		transposeB(colOffsets, colIndexes, rowOffsets, rowIndexes);
+	}
+
+	/**
+	 * A compressed matrix from the given entries in compressed sparse row format, as produced by MatrixBuilder.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1. Kept by the matrix.
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values Ignored; may be NULL
+	 */
+	CompressedBinaryMatrixCharByte(int m, int n, int rowOffsets[], int colIndexes[], double values[])
+	{
+		assert rowOffsets.length == m + 1;
+		assert colIndexes.length >= rowOffsets[m];
+
+		final int nnz = rowOffsets[m];
+
+		this.rowOffsets = rowOffsets;
+		rowIndexes = new byte[nnz];
+		for (int k = 0; k < nnz; ++k)
+			rowIndexes[k] = (byte) colIndexes[k];
+
+		colOffsets = new int[n + 1];
+		this.colIndexes = new char[nnz];
+		transposeA(rowOffsets, rowIndexes, colOffsets, this.colIndexes);
+	}
+
+	/**
+	 * Fill the column arrays from the row arrays using a counting sort. Columns are sorted by row index.
+	 */
+	private static void transposeA(int rowOffsets[], byte rowIndexes[], int colOffsets[], char colIndexes[])
+	{
+		final int m = rowOffsets.length - 1;
+		final int n = colOffsets.length - 1;
+
+		colOffsets[0] = 0;
+		for (int j = 0; j < n; ++j)
+			colOffsets[j + 1] = 0;
+		for (int k = 0; k < rowOffsets[m]; ++k)
+			++colOffsets[rowIndexes[k] + 1];
+		for (int j = 0; j < n; ++j)
+			colOffsets[j + 1] += colOffsets[j];
+
+		final int next[] = new int[n];
+		System.arraycopy(colOffsets, 0, next, 0, n);
+		for (int i = 0; i < m; ++i)
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+			{
+				final int l = next[rowIndexes[k]]++;
+				colIndexes[l] = (char) i;
+			}
+	}
+
+	/**
+	 * Fill the row arrays from the column arrays using a counting sort. Rows are sorted by column index.
+	 */
+	private static void transposeB(int colOffsets[], char colIndexes[], int rowOffsets[], byte rowIndexes[])
+	{
+		final int n = colOffsets.length - 1;
+		final int m = rowOffsets.length - 1;
+
+		rowOffsets[0] = 0;
+		for (int i = 0; i < m; ++i)
+			rowOffsets[i + 1] = 0;
+		for (int l = 0; l < colOffsets[n]; ++l)
+			++rowOffsets[colIndexes[l] + 1];
+		for (int i = 0; i < m; ++i)
+			rowOffsets[i + 1] += rowOffsets[i];
+
+		final int next[] = new int[m];
+		System.arraycopy(rowOffsets, 0, next, 0, m);
+		for (int j = 0; j < n; ++j)
+			for (int l = colOffsets[j]; l < colOffsets[j + 1]; ++l)
+			{
+				final int k = next[colIndexes[l]]++;
+				rowIndexes[k] = (byte) j;
+			}
+	}
+
+	@Override
+	public int rows()
+	{
+		return rowOffsets.length - 1;
+	}
+
+	@Override
+	public int cols()
+	{
+		return colOffsets.length - 1;
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return boolean.class.getSimpleName();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
+	@Override
+	public int nnz()
+	{
+		return rowIndexes.length;
+	}
+
+	@Override
+	public int getRowCount(int row)
+	{
+		return rowOffsets[row + 1] - rowOffsets[row];
+	}
+
+	@Override
+	public int getColCount(int col)
+	{
+		return colOffsets[col + 1] - colOffsets[col];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Compressed matrices are read-only; this method always throws.
+	 * 
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void set(int i, int j, double value)
+	{
+		throw new UnsupportedOperationException("Compressed matrices are read-only");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Iterate in row-by-row order. The returned iterator does not support set().
+	 */
+	@Override
+	public MatrixIterable <FullEntry> all()
+	{
+		return new MatrixIterable <FullEntry>()
+		{
+			@Override
+			public MatrixIterator <FullEntry> iterator()
+			{
+				return new MatrixIterator <FullEntry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return k < rowIndexes.length;
+					}
+
+					@Override
+					public FullEntry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						while (rowOffsets[i + 1] <= k)
+							++i;
+						final FullEntry ret = new FullEntry(i, rowIndexes[k], 1.);
+						++k;
+						return ret;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void set(double newValue)
+					{
+						throw new UnsupportedOperationException("Compressed matrices are read-only");
+					}
+
+					private int i = 0;
+					private int k = 0;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Entry> row(int i)
+	{
+		return iterableA(rowIndexes, rowOffsets[i], rowOffsets[i + 1]);
+	}
+
+	@Override
+	public Iterable <Entry> col(int j)
+	{
+		return iterableB(colIndexes, colOffsets[j], colOffsets[j + 1]);
+	}
+
+	private static Iterable <Entry> iterableA(final byte indexes[], final int begin, final int end)
+	{
+		if (begin == end) return Collections.emptyList();
+
+		return new Iterable <Entry>()
+		{
+			@Override
+			public Iterator <Entry> iterator()
+			{
+				return new Iterator <Entry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return k < end;
+					}
+
+					@Override
+					public Entry next()
+					{
+						if (k == end) throw new NoSuchElementException();
+						final Entry ret = new Entry(indexes[k], 1.);
+						++k;
+						return ret;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int k = begin;
+				};
+			}
+		};
+	}
+
+	private static Iterable <Entry> iterableB(final char indexes[], final int begin, final int end)
+	{
+		if (begin == end) return Collections.emptyList();
+
+		return new Iterable <Entry>()
+		{
+			@Override
+			public Iterator <Entry> iterator()
+			{
+				return new Iterator <Entry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return k < end;
+					}
+
+					@Override
+					public Entry next()
+					{
+						if (k == end) throw new NoSuchElementException();
+						final Entry ret = new Entry(indexes[k], 1.);
+						++k;
+						return ret;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int k = begin;
+				};
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Binary search in the shorter of the row and the column.
+	 */
+	@Override
+	public double get(int i, int j)
+	{
+		assert i >= 0 && i < rows() && j >= 0 && j < cols();
+
+		if (getRowCount(i) <= getColCount(j))
+		{
+			return searchA(rowIndexes, rowOffsets[i], rowOffsets[i + 1], j) < 0 ? 0. : 1.;
+		}
+		else
+		{
+			return searchB(colIndexes, colOffsets[j], colOffsets[j + 1], i) < 0 ? 0. : 1.;
+		}
+	}
+
+	/**
+	 * @return The position of index I in the given range of INDEXES, or -1 if it is not present
+	 */
+	private static int searchA(byte indexes[], int min, int max, int i)
+	{
+		while (min < max)
+		{
+			final int mid = (min + max) >>> 1;
+			if (indexes[mid] == i) return mid;
+			if (indexes[mid] > i)
+				max = mid;
+			else
+				min = mid + 1;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The position of index I in the given range of INDEXES, or -1 if it is not present
+	 */
+	private static int searchB(char indexes[], int min, int max, int i)
+	{
+		while (min < max)
+		{
+			final int mid = (min + max) >>> 1;
+			if (indexes[mid] == i) return mid;
+			if (indexes[mid] > i)
+				max = mid;
+			else
+				min = mid + 1;
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean isSymmetric()
+	{
+		return false;
+	}
+
+	@Override
+	public double[] mult(double[] v, double[] ret, double weight)
+	{
+		assert v.length == cols();
+
+		final int m = rows();
+
+		if (ret == null) ret = new double[m];
+
+		assert ret.length == m;
+
+		mult(v, ret, weight, 0, m);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == rows();
+
+		final int n = cols();
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		multT(v, ret, weight, 0, n);
+
+		return ret;
+	}
+
+	@Override
+	public void mult(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int i = begin; i < end; ++i)
+		{
+			double sum = 0.;
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+				sum += v[rowIndexes[k]];
+			ret[i] += weight * sum;
+		}
+	}
+
+	@Override
+	public void multT(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int j = begin; j < end; ++j)
+		{
+			double sum = 0.;
+			for (int l = colOffsets[j]; l < colOffsets[j + 1]; ++l)
+				sum += v[colIndexes[l]];
+			ret[j] += weight * sum;
+		}
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][rows()];
+
+		assert ret.length == v.length;
+
+		multBlock(v, ret, weight, 0, rows());
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][cols()];
+
+		assert ret.length == v.length;
+
+		multBlockT(v, ret, weight, 0, cols());
+
+		return ret;
+	}
+
+	@Override
+	public void multBlock(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final double sums[] = new double[v.length];
+		for (int i = begin; i < end; ++i)
+		{
+			if (rowOffsets[i] == rowOffsets[i + 1]) continue;
+			for (int r = 0; r < sums.length; ++r)
+				sums[r] = 0.;
+			for (int l = rowOffsets[i]; l < rowOffsets[i + 1]; ++l)
+			{
+				final int index = rowIndexes[l];
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] += v[r][index];
+			}
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][i] += weight * sums[r];
+		}
+	}
+
+	@Override
+	public void multBlockT(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final double sums[] = new double[v.length];
+		for (int j = begin; j < end; ++j)
+		{
+			if (colOffsets[j] == colOffsets[j + 1]) continue;
+			for (int r = 0; r < sums.length; ++r)
+				sums[r] = 0.;
+			for (int l = colOffsets[j]; l < colOffsets[j + 1]; ++l)
+			{
+				final int index = colIndexes[l];
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] += v[r][index];
+			}
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][j] += weight * sums[r];
+		}
+	}
+
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				transposed = false;
+				k = rowOffsets[i] - 1;
+				end = rowOffsets[i + 1];
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				transposed = true;
+				k = colOffsets[j] - 1;
+				end = colOffsets[j + 1];
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return ++k < end;
+			}
+
+			@Override
+			public int index()
+			{
+				return transposed ? colIndexes[k] : rowIndexes[k];
+			}
+
+			@Override
+			public double value()
+			{
+				return 1.;
+			}
+
+			private boolean transposed = false;
+			private int k = -1;
+			private int end = 0;
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getRows()
+	{
+		return nonempty(rowOffsets);
+	}
+
+	@Override
+	public Iterable <Integer> getCols()
+	{
+		return nonempty(colOffsets);
+	}
+
+	/**
+	 * @return Iterable over the indexes whose range in the given offset array is not empty
+	 */
+	private static Iterable <Integer> nonempty(final int offsets[])
+	{
+		return new Iterable <Integer> ()
+		{
+			public Iterator <Integer> iterator()
+			{
+				return new Iterator <Integer> ()
+				{
+					public boolean hasNext()
+					{
+						while (next + 1 < offsets.length && offsets[next] == offsets[next + 1])
+						      ++next;
+						return next + 1 < offsets.length;
+					}
+
+					public Integer next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						return next++;
+					}
+
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int next = 0;
+				};
+			}
+		};
+	}
+
+	/*
+	 * Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive) of ROW_INDEXES, and
+	 * likewise for columns. The offset arrays have one more element than there are rows and columns.
+	 */
+	private final int rowOffsets[];
+	private final byte rowIndexes[];
+	private final int colOffsets[];
+	private final char colIndexes[];
+}
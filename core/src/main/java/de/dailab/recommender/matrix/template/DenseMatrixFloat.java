@@ -0,0 +1,524 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.MatrixIterable;
+import de.dailab.recommender.matrix.MatrixIterator;
+
+/**
+ * A dense memory-held matrix of floats, stored in one array in row-major order. Uses {@code m * n * v} bytes for
+ * the values, where v is the size of float, and no memory for indexes. This is less than a sparse matrix when a
+ * large proportion of entries is nonzero; see MatrixFactory.isDense().
+ * <p>
+ * Entries of value zero are considered empty: row(), col(), all() and cursors skip them, and nnz(), getRowCount() and
+ * getColCount() do not count them. These counts are updated by set() and run in constant time.
+ * <p>
+ * mult(), multT() and their block variants read the array sequentially, in blocks of BLOCK columns so that the parts
+ * of the vectors that are used stay in the cache.
+ * 
+ * @author autogenerated
+ */
+@SuppressWarnings("all")
+final class DenseMatrixFloat
+    implements RangeMatrix
+{
+	/**
+	 * A dense matrix of the given size. The constructed matrix is zero.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 */
+	public DenseMatrixFloat(int m, int n)
+	{
+		assert m >= 0 && n >= 0;
+		assert (long) m * n <= Integer.MAX_VALUE;
+
+		this.m = m;
+		this.n = n;
+		values = new float[m * n];
+		rowCounts = new int[m];
+		colCounts = new int[n];
+	}
+
+	/**
+	 * A matrix containing the given entries in compressed sparse row format, as produced by MatrixBuilder.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values The value of each entry
+	 */
+	DenseMatrixFloat(int m, int n, int rowOffsets[], int colIndexes[], double values[])
+	{
+		this(m, n);
+
+		assert rowOffsets.length == m + 1;
+		assert colIndexes.length >= rowOffsets[m] && values.length >= rowOffsets[m];
+
+		for (int i = 0; i < m; ++i)
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+				setValue(i, colIndexes[k], (float) values[k]);
+	}
+
+	@Override
+	public int rows()
+	{
+		return m;
+	}
+
+	@Override
+	public int cols()
+	{
+		return n;
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return "float";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
+	@Override
+	public int nnz()
+	{
+		return nnz;
+	}
+
+	@Override
+	public int getRowCount(int row)
+	{
+		return rowCounts[row];
+	}
+
+	@Override
+	public int getColCount(int col)
+	{
+		return colCounts[col];
+	}
+
+	@Override
+	public void set(int i, int j, double value)
+	{
+		setValue(i, j, (float) value);
+	}
+
+	/**
+	 * Set the value using its exact type.
+	 * 
+	 * @param i row index
+	 * @param j column index
+	 * @param value the value
+	 */
+	public void setValue(int i, int j, float value)
+	{
+		assert i >= 0 && i < m && j >= 0 && j < n;
+
+		final int k = i * n + j;
+		if (values[k] == 0 && value != 0)
+		{
+			++nnz;
+			++rowCounts[i];
+			++colCounts[j];
+		}
+		else if (values[k] != 0 && value == 0)
+		{
+			--nnz;
+			--rowCounts[i];
+			--colCounts[j];
+		}
+		values[k] = value;
+	}
+
+	@Override
+	public double get(int i, int j)
+	{
+		assert i >= 0 && i < m && j >= 0 && j < n;
+
+		return values[i * n + j];
+	}
+
+	@Override
+	public boolean isSymmetric()
+	{
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Iterate in row-by-row order, skipping zeros.
+	 */
+	@Override
+	public MatrixIterable <FullEntry> all()
+	{
+		return new MatrixIterable <FullEntry>()
+		{
+			@Override
+			public MatrixIterator <FullEntry> iterator()
+			{
+				return new MatrixIterator <FullEntry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						while (next < values.length && values[next] == 0)
+							++next;
+						return next < values.length;
+					}
+
+					@Override
+					public FullEntry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						current = next++;
+						return new FullEntry(current / n, current % n, values[current]);
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void set(double newValue)
+					{
+						setValue(current / n, current % n, (float) newValue);
+					}
+
+					private int next = 0, current = -1;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Entry> row(int i)
+	{
+		return entries(i * n, 1, n);
+	}
+
+	@Override
+	public Iterable <Entry> col(int j)
+	{
+		return entries(j, n, m);
+	}
+
+	/**
+	 * The nonzero entries at the positions BEGIN + k * STEP for k from zero to COUNT - 1, with index k.
+	 */
+	private Iterable <Entry> entries(final int begin, final int step, final int count)
+	{
+		return new Iterable <Entry>()
+		{
+			@Override
+			public Iterator <Entry> iterator()
+			{
+				return new Iterator <Entry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						while (next < count && values[begin + next * step] == 0)
+							++next;
+						return next < count;
+					}
+
+					@Override
+					public Entry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						final Entry ret = new Entry(next, values[begin + next * step]);
+						++next;
+						return ret;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int next = 0;
+				};
+			}
+		};
+	}
+
+	@Override
+	public double[] mult(double[] v, double[] ret, double weight)
+	{
+		assert v.length == n;
+
+		if (ret == null) ret = new double[m];
+
+		assert ret.length == m;
+
+		mult(v, ret, weight, 0, m);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == m;
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		multT(v, ret, weight, 0, n);
+
+		return ret;
+	}
+
+	@Override
+	public void mult(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int j0 = 0; j0 < n; j0 += BLOCK)
+		{
+			final int j1 = Math.min(n, j0 + BLOCK);
+			for (int i = begin; i < end; ++i)
+				ret[i] += weight * dot(i * n, v, j0, j1);
+		}
+	}
+
+	@Override
+	public void multT(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int j0 = begin; j0 < end; j0 += BLOCK)
+		{
+			final int j1 = Math.min(end, j0 + BLOCK);
+			for (int i = 0; i < m; ++i)
+			{
+				if (v[i] == 0.) continue;
+				axpy(weight * v[i], i * n, ret, j0, j1);
+			}
+		}
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][m];
+
+		assert ret.length == v.length;
+
+		multBlock(v, ret, weight, 0, m);
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][n];
+
+		assert ret.length == v.length;
+
+		multBlockT(v, ret, weight, 0, n);
+
+		return ret;
+	}
+
+	@Override
+	public void multBlock(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		for (int j0 = 0; j0 < n; j0 += BLOCK)
+		{
+			final int j1 = Math.min(n, j0 + BLOCK);
+			for (int i = begin; i < end; ++i)
+			{
+				for (int r = 0; r < v.length; ++r)
+					ret[r][i] += weight * dot(i * n, v[r], j0, j1);
+			}
+		}
+	}
+
+	@Override
+	public void multBlockT(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		for (int j0 = begin; j0 < end; j0 += BLOCK)
+		{
+			final int j1 = Math.min(end, j0 + BLOCK);
+			for (int i = 0; i < m; ++i)
+			{
+				for (int r = 0; r < v.length; ++r)
+				{
+					if (v[r][i] == 0.) continue;
+					axpy(weight * v[r][i], i * n, ret[r], j0, j1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The scalar product of the columns J0 to J1 of the row beginning at OFFSET with the same part of V, unrolled four
+	 * times.
+	 */
+	private double dot(int offset, double v[], int j0, int j1)
+	{
+		double s0 = 0., s1 = 0., s2 = 0., s3 = 0.;
+		int j = j0;
+		for (; j + 3 < j1; j += 4)
+		{
+			s0 += values[offset + j] * v[j];
+			s1 += values[offset + j + 1] * v[j + 1];
+			s2 += values[offset + j + 2] * v[j + 2];
+			s3 += values[offset + j + 3] * v[j + 3];
+		}
+		for (; j < j1; ++j)
+			s0 += values[offset + j] * v[j];
+		return (s0 + s1) + (s2 + s3);
+	}
+
+	/**
+	 * Add A times the columns J0 to J1 of the row beginning at OFFSET to the same part of RET, unrolled four times.
+	 */
+	private void axpy(double a, int offset, double ret[], int j0, int j1)
+	{
+		int j = j0;
+		for (; j + 3 < j1; j += 4)
+		{
+			ret[j] += a * values[offset + j];
+			ret[j + 1] += a * values[offset + j + 1];
+			ret[j + 2] += a * values[offset + j + 2];
+			ret[j + 3] += a * values[offset + j + 3];
+		}
+		for (; j < j1; ++j)
+			ret[j] += a * values[offset + j];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The cursor skips zeros.
+	 */
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				begin = i * n;
+				step = 1;
+				count = n;
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				begin = j;
+				step = n;
+				count = m;
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				while (++k < count)
+					if (values[begin + k * step] != 0) return true;
+				return false;
+			}
+
+			@Override
+			public int index()
+			{
+				return k;
+			}
+
+			@Override
+			public double value()
+			{
+				return values[begin + k * step];
+			}
+
+			private int begin = 0, step = 1, count = 0, k = -1;
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getRows()
+	{
+		return nonempty(rowCounts);
+	}
+
+	@Override
+	public Iterable <Integer> getCols()
+	{
+		return nonempty(colCounts);
+	}
+
+	private static Iterable <Integer> nonempty(final int counts[])
+	{
+		return new Iterable <Integer>()
+		{
+			@Override
+			public Iterator <Integer> iterator()
+			{
+				return new Iterator <Integer>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						while (next < counts.length && counts[next] == 0)
+							++next;
+						return next < counts.length;
+					}
+
+					@Override
+					public Integer next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						return next++;
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int next = 0;
+				};
+			}
+		};
+	}
+
+	private final int m, n;
+
+	/*
+	 * Entry (i,j) is VALUES[I * N + J].
+	 */
+	private final float values[];
+
+	/*
+	 * The number of nonzero entries, overall, in each row and in each column.
+	 */
+	private int nnz = 0;
+	private final int rowCounts[];
+	private final int colCounts[];
+
+	/**
+	 * The number of columns processed at once in multiplications.
+	 */
+	private static final int BLOCK = 1024;
+}
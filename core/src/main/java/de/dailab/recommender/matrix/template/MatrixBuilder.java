@@ -0,0 +1,541 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+import de.dailab.recommender.matrix.BitmapMatrix;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.VarintMatrix;
+import de.dailab.recommender.matrix.ZeroMatrix;
+
+/**
+ * Bulk construction of sparse matrices from entries given in any order. Entries are collected in coordinate format
+ * (three parallel arrays) and the matrix is built in one pass once all entries are known, using a radix sort by row and
+ * column. This avoids the repeated array insertions of calling Matrix.set() for each entry, which are quadratic in the
+ * number of entries of a single row or column.
+ * <p>
+ * Entries given more than once at the same position are merged according to the given Duplicates mode. The builder
+ * cannot be used anymore after build(), buildFrozen(), buildSymmetric() or buildPlanned() has been called.
+ * <p>
+ * Memory usage while building is {@code r * (2 * I + D)} for r added entries, where I is the size of int and D the
+ * size of double, plus {@code 2 * r * I} for the sort.
+ * 
+ * @author kunegis
+ */
+public class MatrixBuilder
+{
+	/**
+	 * How entries added more than once at the same position are combined.
+	 */
+	public enum Duplicates
+	{
+		/**
+		 * The values are added.
+		 */
+		SUM,
+
+		/**
+		 * The value added last is used, as if Matrix.set() had been called for each entry.
+		 */
+		LAST
+	}
+
+	/**
+	 * A builder for a matrix of the given size and value type, in which duplicate entries are merged using the given
+	 * mode.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param valueType The value type as in MatrixFactory.newMemoryMatrix(); NULL denotes the default type (float) and
+	 *        "boolean" a binary matrix
+	 * @param duplicates How to merge duplicate entries
+	 */
+	public MatrixBuilder(int m, int n, String valueType, Duplicates duplicates)
+	{
+		assert m >= 0 && n >= 0;
+		assert duplicates != null;
+
+		if (valueType == null) valueType = float.class.getSimpleName();
+		assert MatrixFactory.VALUE_TYPES.contains(valueType);
+
+		this.m = m;
+		this.n = n;
+		this.valueType = valueType;
+		this.duplicates = duplicates;
+
+		binary = valueType.equals(boolean.class.getSimpleName());
+		rowIndexes = new int[INITIAL_CAPACITY];
+		colIndexes = new int[INITIAL_CAPACITY];
+		values = binary ? null : new double[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * A builder for a matrix of the given size and value type, in which the last of duplicate entries is used.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param valueType The value type; NULL denotes the default type (float) and "boolean" a binary matrix
+	 */
+	public MatrixBuilder(int m, int n, String valueType)
+	{
+		this(m, n, valueType, Duplicates.LAST);
+	}
+
+	/**
+	 * A builder for a matrix of the given size and the default value type, which is float.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 */
+	public MatrixBuilder(int m, int n)
+	{
+		this(m, n, float.class.getSimpleName());
+	}
+
+	/**
+	 * Add an entry.
+	 * 
+	 * @param i Row index
+	 * @param j Column index
+	 * @param value The value; ignored for binary matrices
+	 */
+	public void add(int i, int j, double value)
+	{
+		assert i >= 0 && i < m && j >= 0 && j < n;
+		assert rowIndexes != null : "Matrix already built";
+
+		if (count == rowIndexes.length)
+		{
+			final int capacity = 2 * count;
+			final int newRowIndexes[] = new int[capacity];
+			final int newColIndexes[] = new int[capacity];
+			System.arraycopy(rowIndexes, 0, newRowIndexes, 0, count);
+			System.arraycopy(colIndexes, 0, newColIndexes, 0, count);
+			rowIndexes = newRowIndexes;
+			colIndexes = newColIndexes;
+			if (!binary)
+			{
+				final double newValues[] = new double[capacity];
+				System.arraycopy(values, 0, newValues, 0, count);
+				values = newValues;
+			}
+		}
+
+		rowIndexes[count] = i;
+		colIndexes[count] = j;
+		if (!binary) values[count] = value;
+		++count;
+	}
+
+	/**
+	 * Add entries given in coordinate format, in order. Equivalent to calling add(int, int, double) for each entry.
+	 * 
+	 * @param rowIndexes The row indexes
+	 * @param colIndexes The column indexes
+	 * @param entryValues The values; NULL when all values are one
+	 * @param entryCount The number of entries to add, from the beginning of the arrays
+	 */
+	public void add(int rowIndexes[], int colIndexes[], double entryValues[], int entryCount)
+	{
+		assert this.rowIndexes != null : "Matrix already built";
+		assert entryCount >= 0;
+
+		if (count + entryCount > this.rowIndexes.length)
+		{
+			final int capacity = Math.max(count + entryCount, 2 * count);
+			final int newRowIndexes[] = new int[capacity];
+			final int newColIndexes[] = new int[capacity];
+			System.arraycopy(this.rowIndexes, 0, newRowIndexes, 0, count);
+			System.arraycopy(this.colIndexes, 0, newColIndexes, 0, count);
+			this.rowIndexes = newRowIndexes;
+			this.colIndexes = newColIndexes;
+			if (!binary)
+			{
+				final double newValues[] = new double[capacity];
+				System.arraycopy(values, 0, newValues, 0, count);
+				values = newValues;
+			}
+		}
+
+		for (int k = 0; k < entryCount; ++k)
+			assert rowIndexes[k] >= 0 && rowIndexes[k] < m && colIndexes[k] >= 0 && colIndexes[k] < n;
+		System.arraycopy(rowIndexes, 0, this.rowIndexes, count, entryCount);
+		System.arraycopy(colIndexes, 0, this.colIndexes, count, entryCount);
+		if (!binary)
+		{
+			if (entryValues == null)
+				Arrays.fill(values, count, count + entryCount, 1.);
+			else
+				System.arraycopy(entryValues, 0, values, count, entryCount);
+		}
+		count += entryCount;
+	}
+
+	/**
+	 * Add an entry of value one.
+	 * 
+	 * @param i Row index
+	 * @param j Column index
+	 */
+	public void add(int i, int j)
+	{
+		add(i, j, 1.);
+	}
+
+	/**
+	 * The number of entries added so far, including duplicates.
+	 * 
+	 * @return The number of added entries
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Build a modifiable memory-held matrix of the type returned by MatrixFactory.newMemoryMatrix(), containing the
+	 * added entries. Added entries of value zero are kept as entries.
+	 * 
+	 * @return The built matrix
+	 */
+	public Matrix build()
+	{
+		return build("Memory");
+	}
+
+	/**
+	 * Build a modifiable memory-held matrix of the type returned by MatrixFactory.newLazyMemoryMatrix(), containing the
+	 * added entries. The column index of the matrix is built on first use.
+	 * 
+	 * @return The built matrix
+	 */
+	public Matrix buildLazy()
+	{
+		assert rowIndexes != null : "Matrix already built";
+
+		if (m == 0 || n == 0)
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+			return new ZeroMatrix(m, n);
+		}
+
+		final int rowOffsets[] = new int[m + 1];
+		compress(rowOffsets);
+
+		try
+		{
+			final Object obj = MatrixFactory.newInstance(MatrixFactory.getConstructor(MatrixFactory.getMatrixClassName(
+			    "Memory", m, n, valueType), int.class, int.class, int[].class, int[].class, double[].class,
+			    boolean.class), Integer.valueOf(m), Integer.valueOf(n), rowOffsets, colIndexes, values, Boolean.TRUE);
+
+			assert obj instanceof Matrix;
+
+			return (Matrix) obj;
+		}
+		finally
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+		}
+	}
+
+	/**
+	 * Build a read-only matrix of the type returned by MatrixFactory.freeze(), containing the added entries.
+	 * 
+	 * @return The built read-only matrix
+	 */
+	public Matrix buildFrozen()
+	{
+		assert rowIndexes != null : "Matrix already built";
+
+		if (m == 0 || n == 0)
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+			return MatrixFactory.newEmptyFrozenMatrix(m, n, valueType);
+		}
+
+		return build("Compressed");
+	}
+
+	/**
+	 * Build a modifiable symmetric matrix of the type returned by MatrixFactory.newSymmetricMatrix(). The matrix must be
+	 * square. Each added entry (i,j) is used for both (i,j) and (j,i), as if Matrix.set() had been called on a
+	 * symmetric matrix; duplicates are thus detected regardless of the orientation in which they were added.
+	 * 
+	 * @return The built symmetric matrix
+	 */
+	public Matrix buildSymmetric()
+	{
+		assert rowIndexes != null : "Matrix already built";
+		assert m == n;
+
+		if (m == 0)
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+			return new ZeroMatrix(m, n);
+		}
+
+		/* Keep only the upper triangle; the order of entries is not changed */
+		for (int k = 0; k < count; ++k)
+		{
+			if (rowIndexes[k] <= colIndexes[k]) continue;
+			final int i = rowIndexes[k];
+			rowIndexes[k] = colIndexes[k];
+			colIndexes[k] = i;
+		}
+
+		final int upperOffsets[] = new int[m + 1];
+		compress(upperOffsets);
+
+		/*
+		 * Mirror the upper triangle. Row I consists of the entries (k,i) with k < i, which are found in increasing order
+		 * of k, followed by the entries (i,j) with j >= i of the upper triangle.
+		 */
+		final int rowOffsets[] = new int[m + 1];
+		for (int i = 0; i < m; ++i)
+		{
+			rowOffsets[i + 1] += upperOffsets[i + 1] - upperOffsets[i];
+			for (int l = upperOffsets[i]; l < upperOffsets[i + 1]; ++l)
+				if (colIndexes[l] != i) ++rowOffsets[colIndexes[l] + 1];
+		}
+		for (int i = 0; i < m; ++i)
+			rowOffsets[i + 1] += rowOffsets[i];
+
+		final int positions[] = new int[m];
+		System.arraycopy(rowOffsets, 0, positions, 0, m);
+		final int fullColIndexes[] = new int[rowOffsets[m]];
+		final double fullValues[] = binary ? null : new double[rowOffsets[m]];
+		for (int i = 0; i < m; ++i)
+		{
+			for (int l = upperOffsets[i]; l < upperOffsets[i + 1]; ++l)
+			{
+				final int j = colIndexes[l];
+				if (j == i) continue;
+				fullColIndexes[positions[j]] = i;
+				if (!binary) fullValues[positions[j]] = values[l];
+				++positions[j];
+			}
+		}
+		for (int i = 0; i < m; ++i)
+		{
+			for (int l = upperOffsets[i]; l < upperOffsets[i + 1]; ++l)
+			{
+				fullColIndexes[positions[i]] = colIndexes[l];
+				if (!binary) fullValues[positions[i]] = values[l];
+				++positions[i];
+			}
+			assert positions[i] == rowOffsets[i + 1];
+		}
+
+		colIndexes = fullColIndexes;
+		values = fullValues;
+
+		return newMatrix(MatrixFactory.getSymmetricMatrixClassName(n, valueType), rowOffsets);
+	}
+
+	/**
+	 * Build a matrix in the layout that uses the least memory for the added entries, as determined by MatrixPlan. The
+	 * statistics of the entries, the chosen layout and the reason for choosing it are logged and can be retrieved
+	 * using getPlan().
+	 * <p>
+	 * A modifiable matrix is dense when MatrixFactory.isDense() is true for the added entries and none of them has
+	 * value zero, symmetric when the added entries are symmetric, and memory-held otherwise. A read-only matrix is
+	 * compressed as returned by buildFrozen(), dense, a BitmapMatrix or a VarintMatrix, and its value type may be
+	 * narrowed to a smaller type that represents all values exactly.
+	 * 
+	 * @param modifiable Whether the returned matrix must support set()
+	 * @return The built matrix
+	 */
+	public Matrix buildPlanned(boolean modifiable)
+	{
+		assert rowIndexes != null : "Matrix already built";
+
+		if (m == 0 || n == 0)
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+			return modifiable ? new ZeroMatrix(m, n) : MatrixFactory.newEmptyFrozenMatrix(m, n, valueType);
+		}
+
+		final int rowOffsets[] = new int[m + 1];
+		compress(rowOffsets);
+
+		plan = MatrixPlan.plan(m, n, valueType, rowOffsets, colIndexes, values, modifiable);
+		LOGGER.info(String.format("Matrix %d x %d: %s", m, n, plan));
+
+		switch (plan.layout)
+		{
+		case MEMORY:
+			return newMatrix(MatrixFactory.getMatrixClassName("Memory", m, n, plan.valueType), rowOffsets);
+		case DENSE:
+			return newMatrix(MatrixFactory.getDenseMatrixClassName(plan.valueType), rowOffsets);
+		case SYMMETRIC:
+			/* The rows of a symmetric matrix contain the entries of both triangles in order */
+			return newMatrix(MatrixFactory.getSymmetricMatrixClassName(n, plan.valueType), rowOffsets);
+		case COMPRESSED:
+			return newMatrix(MatrixFactory.getMatrixClassName("Compressed", m, n, plan.valueType), rowOffsets);
+		case VARINT:
+			return new VarintMatrix(newMatrix(MatrixFactory.getMatrixClassName("Compressed", m, n, plan.valueType),
+			    rowOffsets));
+		case BITMAP:
+			return new BitmapMatrix(newMatrix(MatrixFactory.getMatrixClassName("Compressed", m, n, plan.valueType),
+			    rowOffsets));
+		default:
+			assert false;
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * The plan used by buildPlanned().
+	 * 
+	 * @return The plan, or NULL when buildPlanned() has not been called or the matrix is empty
+	 */
+	public MatrixPlan getPlan()
+	{
+		return plan;
+	}
+
+	private Matrix build(String format)
+	{
+		assert rowIndexes != null : "Matrix already built";
+
+		if (m == 0 || n == 0)
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+			return new ZeroMatrix(m, n);
+		}
+
+		final int rowOffsets[] = new int[m + 1];
+		compress(rowOffsets);
+
+		return newMatrix(MatrixFactory.getMatrixClassName(format, m, n, valueType), rowOffsets);
+	}
+
+	/**
+	 * Instantiate the matrix class from the compressed entries, and release the entries.
+	 * 
+	 * @param className The fully qualified name of the matrix class
+	 * @param rowOffsets The row offsets into COL_INDEXES and VALUES
+	 * @return The new matrix
+	 */
+	private Matrix newMatrix(String className, int rowOffsets[])
+	{
+		try
+		{
+			final Object obj = MatrixFactory.newInstance(MatrixFactory.getConstructor(className, int.class, int.class,
+			    int[].class, int[].class, double[].class), Integer.valueOf(m), Integer.valueOf(n), rowOffsets,
+			    colIndexes, values);
+
+			assert obj instanceof Matrix;
+
+			return (Matrix) obj;
+		}
+		finally
+		{
+			rowIndexes = colIndexes = null;
+			values = null;
+		}
+	}
+
+	/**
+	 * Sort the entries by row and column and merge duplicates. Afterwards, COL_INDEXES and VALUES contain the entries in
+	 * compressed sparse row format described by ROW_OFFSETS.
+	 * <p>
+	 * This is a least significant digit radix sort with two digits: a counting sort by column followed by a counting
+	 * sort by row. Both sorts are stable, so duplicate entries remain in the order in which they were added.
+	 * 
+	 * @param rowOffsets Filled with the row offsets; of length M + 1
+	 */
+	private void compress(int rowOffsets[])
+	{
+		/*
+		 * Counting sort by column, giving the permutation BY_COL.
+		 */
+		final int colOffsets[] = new int[n + 1];
+		for (int k = 0; k < count; ++k)
+			++colOffsets[colIndexes[k] + 1];
+		for (int j = 0; j < n; ++j)
+			colOffsets[j + 1] += colOffsets[j];
+		final int byCol[] = new int[count];
+		for (int k = 0; k < count; ++k)
+			byCol[colOffsets[colIndexes[k]]++] = k;
+
+		/*
+		 * Counting sort of BY_COL by row, giving the permutation ORDER sorted by row and column.
+		 */
+		for (int k = 0; k < count; ++k)
+			++rowOffsets[rowIndexes[k] + 1];
+		for (int i = 0; i < m; ++i)
+			rowOffsets[i + 1] += rowOffsets[i];
+		final int positions[] = new int[m];
+		System.arraycopy(rowOffsets, 0, positions, 0, m);
+		final int order[] = new int[count];
+		for (int l = 0; l < count; ++l)
+		{
+			final int k = byCol[l];
+			order[positions[rowIndexes[k]]++] = k;
+		}
+
+		/*
+		 * Merge duplicates, which are adjacent in ORDER.
+		 */
+		final int newColIndexes[] = byCol;
+		final double newValues[] = binary ? null : new double[count];
+		int out = 0;
+		int begin = 0;
+		for (int i = 0; i < m; ++i)
+		{
+			final int end = rowOffsets[i + 1];
+			rowOffsets[i] = out;
+			for (int l = begin; l < end; ++l)
+			{
+				final int k = order[l];
+				if (out > rowOffsets[i] && newColIndexes[out - 1] == colIndexes[k])
+				{
+					if (binary) continue;
+					if (duplicates == Duplicates.SUM)
+						newValues[out - 1] += values[k];
+					else
+						newValues[out - 1] = values[k];
+				}
+				else
+				{
+					newColIndexes[out] = colIndexes[k];
+					if (!binary) newValues[out] = values[k];
+					++out;
+				}
+			}
+			begin = end;
+		}
+		rowOffsets[m] = out;
+
+		colIndexes = newColIndexes;
+		values = newValues;
+	}
+
+	private final int m, n;
+	private final String valueType;
+	private final Duplicates duplicates;
+	private final boolean binary;
+
+	/*
+	 * The added entries in coordinate format. The first COUNT entries are used. VALUES is NULL for binary matrices. All
+	 * arrays are set to NULL once the matrix is built.
+	 */
+	private int count = 0;
+	private int rowIndexes[];
+	private int colIndexes[];
+	private double values[];
+
+	private MatrixPlan plan;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final static Logger LOGGER = Logger.getLogger(MatrixBuilder.class);
+}
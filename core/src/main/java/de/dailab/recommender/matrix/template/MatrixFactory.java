@@ -1,12 +1,17 @@
 package de.dailab.recommender.matrix.template;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import de.dailab.recommender.matrix.FrozenMatrix;
 import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.Matrix;
 import de.dailab.recommender.matrix.Vector;
+import de.dailab.recommender.matrix.ZeroMatrix;
 
 /**
  * Factory for creating sparse memory-held matrices of a given size and format. Sparse matrices can only be created
@@ -15,6 +20,17 @@ import de.dailab.recommender.matrix.Vector;
  * The raw memory requirement for a m by n matrix with r entries of index types i and j and value type v is {@code r *
  * (i + j + 2 * v) + (m + n) * (3 * P + 3 * O + I)}, where O is the pointer size in the JVM, I is the size of int and O
  * the overhead for an object on the heap, which is at least 8 bytes.
+ * <p>
+ * Symmetric matrices created with newSymmetricMatrix() store each row once and use it as the corresponding column.
+ * Their raw memory requirement is {@code r * (i + v) + n * (P + O + I)}, where r counts both (i,j) and (j,i).
+ * <p>
+ * Matrices of which mostly rows are read can be created with newLazyMemoryMatrix(), which builds the column index on
+ * first use only. Until then, the memory requirement is that of the rows, about half of the above.
+ * <p>
+ * Matrices in which most entries are nonzero can be stored densely using newDenseMatrix().
+ * <p>
+ * Matrices that are not modified anymore can be frozen into a read-only compressed format using freeze(). The raw
+ * memory requirement of a frozen matrix is {@code r * (i + j + 2 * v) + (m + n + 2) * I}.
  * 
  * @author kunegis
  */
@@ -38,26 +54,158 @@ public class MatrixFactory
 		if (valueType == null) valueType = float.class.getSimpleName();
 		assert VALUE_TYPES.contains(valueType);
 
-		final String indexA = getIndexType(m);
-		final String indexB = getIndexType(n);
+		return newMatrix(getMatrixClassName("Memory", m, n, valueType), m, n);
+	}
 
-		final String packageName = MatrixFactory.class.getPackage().getName();
+	/**
+	 * Create an asymmetric sparse memory matrix of given size with minimal index sizes, whose column index is built
+	 * only when first needed. Until col(), getColCount(), getCols(), multT() or multBlockT() is called, set() only
+	 * updates the rows and the matrix uses about half the memory of the matrices returned by newMemoryMatrix(). The
+	 * columns are then built in one parallel pass and maintained from then on. This suits matrices of which mostly
+	 * rows are read.
+	 * 
+	 * @param m row count
+	 * @param n column count
+	 * @param valueType type of values in the matrix as in newMemoryMatrix(). May be NULL to denote the default type
+	 *        (float). May be "boolean" to denote a binary matrix.
+	 * 
+	 * @return an empty sparse memory-held matrix of the given size with a lazy column index
+	 */
+	public static Matrix newLazyMemoryMatrix(int m, int n, String valueType)
+	{
+		assert m > 0;
+		assert n > 0;
 
-		final String className = packageName
-		    + "."
-		    + (valueType.equals(boolean.class.getSimpleName()) ? "MemoryBinaryMatrix" + upcase(indexA) + upcase(indexB)
-		        : "MemoryMatrix" + upcase(indexA) + upcase(indexB) + upcase(valueType));
+		if (valueType == null) valueType = float.class.getSimpleName();
+		assert VALUE_TYPES.contains(valueType);
 
-		try
-		{
-			final Class <?> matrixClass = Class.forName(className);
+		final Object obj = newInstance(getConstructor(getMatrixClassName("Memory", m, n, valueType), int.class,
+		    int.class, boolean.class), Integer.valueOf(m), Integer.valueOf(n), Boolean.TRUE);
+
+		assert obj instanceof Matrix;
+
+		return (Matrix) obj;
+	}
+
+	/**
+	 * Create a symmetric sparse memory matrix of size n by n with minimal index size. The matrix is initially empty.
+	 * <p>
+	 * Setting the entry (i,j) also sets the entry (j,i). Each row is stored once and used as the corresponding column,
+	 * so that the matrix uses half the memory of an asymmetric matrix with the same entries. isSymmetric() returns
+	 * true and multT() is equivalent to mult().
+	 * 
+	 * @param n row and column count
+	 * @param valueType type of values in the matrix as in newMemoryMatrix(). May be NULL to denote the default type
+	 *        (float). May be "boolean" to denote a binary matrix.
+	 * 
+	 * @return an empty symmetric sparse memory-held matrix of the given size.
+	 */
+	public static Matrix newSymmetricMatrix(int n, String valueType)
+	{
+		assert n > 0;
+
+		if (valueType == null) valueType = float.class.getSimpleName();
+		assert VALUE_TYPES.contains(valueType);
+
+		return newMatrix(getSymmetricMatrixClassName(n, valueType), n, n);
+	}
+
+	/**
+	 * An empty symmetric unweighted matrix of the given size.
+	 * 
+	 * @param n Row and column count
+	 * @return The built matrix of size n by n
+	 */
+	public static Matrix newSymmetricMatrixUnweighted(int n)
+	{
+		return newSymmetricMatrix(n, boolean.class.getSimpleName());
+	}
+
+	/**
+	 * Create a dense memory-held matrix of size m by n, stored as one array of floats or doubles in row-major order. The
+	 * matrix is initially zero. Entries of value zero are not considered to be entries.
+	 * <p>
+	 * The raw memory requirement is {@code m * n * v + (m + n) * I}, independently of the number of entries. This is
+	 * less than that of sparse matrices for matrices in which most entries are nonzero; see isDense().
+	 * 
+	 * @param m row count
+	 * @param n column count
+	 * @param valueType type of values in the matrix as in newMemoryMatrix(). Values are stored as doubles for "int",
+	 *        "long" and "double", and as floats otherwise. May be NULL to denote the default type (float). Must not be
+	 *        "boolean".
+	 * 
+	 * @return a dense zero matrix of the given size
+	 */
+	public static Matrix newDenseMatrix(int m, int n, String valueType)
+	{
+		assert m > 0;
+		assert n > 0;
+		assert (long) m * n <= Integer.MAX_VALUE;
 
-			final Object obj = matrixClass.getConstructor(int.class, int.class).newInstance(Integer.valueOf(m),
-			    Integer.valueOf(n));
+		if (valueType == null) valueType = float.class.getSimpleName();
+		assert VALUE_TYPES.contains(valueType);
+		assert !valueType.equals(boolean.class.getSimpleName());
 
-			assert obj instanceof Matrix;
+		return newMatrix(getDenseMatrixClassName(valueType), m, n);
+	}
 
-			return (Matrix) obj;
+	/**
+	 * Whether a matrix with the given number of entries is stored as a dense matrix by MatrixBuilder.buildPlanned().
+	 * This is the case for weighted matrices in which at least the proportion DENSE_DENSITY of all entries is nonzero,
+	 * unless an entry has value zero.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param nnz Number of entries
+	 * @param valueType The value type; binary matrices are never dense
+	 * @return Whether the matrix should be dense
+	 */
+	public static boolean isDense(int m, int n, long nnz, String valueType)
+	{
+		if (valueType.equals(boolean.class.getSimpleName())) return false;
+		final long size = (long) m * n;
+		return size > 0 && size <= Integer.MAX_VALUE && nnz >= DENSE_DENSITY * size;
+	}
+
+	/**
+	 * The proportion of nonzero entries above which weighted matrices are dense; see isDense(). At this density, a
+	 * dense matrix of floats uses less memory than sparse matrices of floats with the smallest indexes, and its
+	 * multiplications read memory sequentially.
+	 */
+	public final static double DENSE_DENSITY = .5;
+
+	private static Matrix newMatrix(String className, int m, int n)
+	{
+		final Object obj = newInstance(getConstructor(className, int.class, int.class), Integer.valueOf(m),
+		    Integer.valueOf(n));
+
+		assert obj instanceof Matrix;
+
+		return (Matrix) obj;
+	}
+
+	/**
+	 * The constructor of a matrix or vector class with the given parameter types. Constructors are looked up once per
+	 * class and signature and then kept, so that creating many small matrices and vectors does not go through
+	 * Class.forName() and getDeclaredConstructor() each time.
+	 * 
+	 * @param className The fully qualified class name
+	 * @param parameterTypes The parameter types of the constructor
+	 * @return The constructor
+	 */
+	static Constructor <?> getConstructor(String className, Class <?>... parameterTypes)
+	{
+		final StringBuilder keyBuilder = new StringBuilder(className);
+		for (final Class <?> parameterType: parameterTypes)
+			keyBuilder.append('/').append(parameterType.getName());
+		final String key = keyBuilder.toString();
+
+		Constructor <?> ret = CONSTRUCTORS.get(key);
+		if (ret != null) return ret;
+
+		try
+		{
+			ret = Class.forName(className).getDeclaredConstructor(parameterTypes);
 		}
 		catch (final ClassNotFoundException classNotFoundException)
 		{
@@ -69,6 +217,24 @@ public class MatrixFactory
 			assert false;
 			throw new RuntimeException(noSuchMethodException);
 		}
+
+		CONSTRUCTORS.putIfAbsent(key, ret);
+		return ret;
+	}
+
+	/**
+	 * Call a constructor returned by getConstructor().
+	 * 
+	 * @param constructor The constructor
+	 * @param arguments The arguments
+	 * @return The new object
+	 */
+	static Object newInstance(Constructor <?> constructor, Object... arguments)
+	{
+		try
+		{
+			return constructor.newInstance(arguments);
+		}
 		catch (final InvocationTargetException invocationTargetException)
 		{
 			assert false;
@@ -123,44 +289,14 @@ public class MatrixFactory
 		    + (valueType.equals(boolean.class.getSimpleName()) ? "MemoryBinaryVector" + upcase(indexType)
 		        : "MemoryVector" + upcase(indexType) + upcase(valueType));
 
-		try
-		{
-			final Class <?> vectorClass = Class.forName(className);
-
-			/*
-			 * Don't pass N as parameter because that would be the capacity, not the size.
-			 */
-			final Object obj = vectorClass.getConstructor().newInstance();
+		/*
+		 * Don't pass N as parameter because that would be the capacity, not the size.
+		 */
+		final Object obj = newInstance(getConstructor(className));
 
-			assert obj instanceof Vector;
+		assert obj instanceof Vector;
 
-			return (Vector) obj;
-		}
-		catch (final ClassNotFoundException classNotFoundException)
-		{
-			assert false;
-			throw new RuntimeException(classNotFoundException);
-		}
-		catch (final NoSuchMethodException noSuchMethodException)
-		{
-			assert false;
-			throw new RuntimeException(noSuchMethodException);
-		}
-		catch (final InvocationTargetException invocationTargetException)
-		{
-			assert false;
-			throw new RuntimeException(invocationTargetException);
-		}
-		catch (final IllegalAccessException illegalAccessException)
-		{
-			assert false;
-			throw new RuntimeException(illegalAccessException);
-		}
-		catch (final InstantiationException instantiationException)
-		{
-			assert false;
-			throw new RuntimeException(instantiationException);
-		}
+		return (Vector) obj;
 	}
 
 	/**
@@ -265,45 +401,15 @@ public class MatrixFactory
 	 */
 	public static Matrix newMemoryMatrix(Matrix matrix)
 	{
-		try
-		{
-			final Class <? extends Matrix> matrixClass = matrix.getClass();
+		/*
+		 * Read-only matrices cannot be constructed empty; use the memory matrix of the same weight type.
+		 */
+		if (isFrozen(matrix)) return newMemoryMatrix(matrix.rows(), matrix.cols(), matrix.getWeightType());
 
-			final Object obj = matrixClass.getConstructor(int.class, int.class).newInstance(
-			    Integer.valueOf(matrix.rows()), Integer.valueOf(matrix.cols()));
+		final Object obj = newInstance(getConstructor(matrix.getClass().getName(), int.class, int.class),
+		    Integer.valueOf(matrix.rows()), Integer.valueOf(matrix.cols()));
 
-			return (Matrix) obj;
-		}
-		catch (final IllegalArgumentException exception)
-		{
-			assert false;
-			throw new RuntimeException(exception);
-		}
-		catch (final SecurityException exception)
-		{
-			assert false;
-			throw new RuntimeException(exception);
-		}
-		catch (final InstantiationException exception)
-		{
-			assert false;
-			throw new RuntimeException(exception);
-		}
-		catch (final IllegalAccessException exception)
-		{
-			assert false;
-			throw new RuntimeException(exception);
-		}
-		catch (final InvocationTargetException exception)
-		{
-			assert false;
-			throw new RuntimeException(exception);
-		}
-		catch (final NoSuchMethodException exception)
-		{
-			assert false;
-			throw new RuntimeException(exception);
-		}
+		return (Matrix) obj;
 	}
 
 	/**
@@ -322,12 +428,187 @@ public class MatrixFactory
 		return ret;
 	}
 
+	/**
+	 * Convert a matrix to the read-only compressed sparse row and column format, using minimal index sizes and the
+	 * weight type of the given matrix. The result uses much less memory than the memory-held matrices created by
+	 * newMemoryMatrix(), and its mult(), multT(), row() and col() scan contiguous arrays.
+	 * <p>
+	 * The returned matrix cannot be modified; set() throws UnsupportedOperationException. Matrices that are already
+	 * frozen are returned as is. Matrices without rows or columns are frozen to an empty compressed matrix.
+	 * 
+	 * @param matrix The matrix to freeze; not modified
+	 * @return A read-only copy of the matrix with the same entries
+	 */
+	public static Matrix freeze(Matrix matrix)
+	{
+		if (isFrozen(matrix)) return matrix;
+
+		final String valueType = matrix.getWeightType();
+		assert VALUE_TYPES.contains(valueType);
+
+		/* Matrices without rows or columns, such as ZeroMatrix, have no row counts to copy */
+		final int m = matrix.rows(), n = matrix.cols();
+		if (m == 0 || n == 0) return newEmptyFrozenMatrix(m, n, valueType);
+
+		final String className = getMatrixClassName("Compressed", m, n, valueType);
+
+		final Object obj = newInstance(getConstructor(className, Matrix.class), matrix);
+
+		assert obj instanceof Matrix;
+
+		return (Matrix) obj;
+	}
+
+	/**
+	 * Create a matrix from entries given in compressed sparse row format, e.g. as read from a file. The entries of each
+	 * row must be sorted by column index and must not contain duplicates. The arrays may be used by the returned matrix
+	 * and must not be modified afterwards.
+	 * <p>
+	 * The matrix is of the type returned by freeze() when FROZEN is set, of the type returned by newSymmetricMatrix()
+	 * when SYMMETRIC is set, and of the type returned by MatrixBuilder.build() otherwise.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param valueType The name of the value type; "boolean" denotes a binary matrix
+	 * @param rowOffsets The position of each row in COL_INDEXES and VALUES; of length M + 1
+	 * @param colIndexes The column index of each entry
+	 * @param values The value of each entry; NULL for binary matrices
+	 * @param symmetric Whether the matrix is symmetric; the rows must then contain the entries of both triangles and M
+	 *        must equal N
+	 * @param frozen Whether the matrix is read-only
+	 * @return The new matrix
+	 */
+	public static Matrix newMatrix(int m, int n, String valueType, int rowOffsets[], int colIndexes[], double values[],
+	    boolean symmetric, boolean frozen)
+	{
+		assert VALUE_TYPES.contains(valueType);
+		assert rowOffsets.length == m + 1;
+		assert !symmetric || m == n;
+
+		if (m == 0 || n == 0) return frozen ? newEmptyFrozenMatrix(m, n, valueType) : new ZeroMatrix(m, n);
+
+		final String className;
+		if (frozen)
+			className = getMatrixClassName("Compressed", m, n, valueType);
+		else if (symmetric)
+			className = getSymmetricMatrixClassName(n, valueType);
+		else
+			className = getMatrixClassName("Memory", m, n, valueType);
+
+		final Object obj = newInstance(getConstructor(className, int.class, int.class, int[].class, int[].class,
+		    double[].class), Integer.valueOf(m), Integer.valueOf(n), rowOffsets, colIndexes, values);
+
+		assert obj instanceof Matrix;
+
+		return (Matrix) obj;
+	}
+
+	/**
+	 * A read-only compressed matrix without entries, as returned by freeze() for matrices without rows or columns.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param valueType The name of the value type; "boolean" denotes a binary matrix
+	 * @return The new empty matrix
+	 */
+	static Matrix newEmptyFrozenMatrix(int m, int n, String valueType)
+	{
+		assert m == 0 || n == 0;
+
+		final Object obj = newInstance(getConstructor(getMatrixClassName("Compressed", m, n, valueType), int.class,
+		    int.class, int[].class, int[].class, double[].class), Integer.valueOf(m), Integer.valueOf(n),
+		    new int[m + 1], new int[0], valueType.equals(boolean.class.getSimpleName()) ? null : new double[0]);
+
+		assert obj instanceof Matrix;
+
+		return (Matrix) obj;
+	}
+
+	/**
+	 * Whether a matrix is read-only, i.e. implements FrozenMatrix. This is the case for the matrices returned by
+	 * freeze() and for mapped, bitmap and varint matrices.
+	 * 
+	 * @param matrix A matrix
+	 * @return Whether the matrix is frozen
+	 */
+	public static boolean isFrozen(Matrix matrix)
+	{
+		return matrix instanceof FrozenMatrix;
+	}
+
+	/**
+	 * The fully qualified name of the generated matrix class of the given format with minimal index sizes.
+	 * 
+	 * @param format The class name prefix, e.g. "Memory" or "Compressed"
+	 * @param m Row count
+	 * @param n Column count
+	 * @param valueType The name of the value type; "boolean" denotes a binary matrix
+	 * @return The class name
+	 */
+	static String getMatrixClassName(String format, int m, int n, String valueType)
+	{
+		final String indexA = getIndexType(m);
+		final String indexB = getIndexType(n);
+
+		final String packageName = MatrixFactory.class.getPackage().getName();
+
+		return packageName
+		    + "."
+		    + format
+		    + (valueType.equals(boolean.class.getSimpleName()) ? "BinaryMatrix" + upcase(indexA) + upcase(indexB)
+		        : "Matrix" + upcase(indexA) + upcase(indexB) + upcase(valueType));
+	}
+
+	/**
+	 * The fully qualified name of the generated dense matrix class.
+	 * 
+	 * @param valueType The name of the value type, not "boolean"
+	 * @return The class name
+	 */
+	static String getDenseMatrixClassName(String valueType)
+	{
+		return MatrixFactory.class.getPackage().getName() + ".DenseMatrix" + upcase(getDenseValueType(valueType));
+	}
+
+	/**
+	 * The type in which a dense matrix stores values of the given type: "double" for "int", "long" and "double", which
+	 * float cannot represent exactly, and "float" otherwise.
+	 * 
+	 * @param valueType The name of the value type, not "boolean"
+	 * @return "float" or "double"
+	 */
+	static String getDenseValueType(String valueType)
+	{
+		return valueType.equals(int.class.getSimpleName()) || valueType.equals(long.class.getSimpleName())
+		    || valueType.equals(double.class.getSimpleName()) ? double.class.getSimpleName() : float.class
+		    .getSimpleName();
+	}
+
+	/**
+	 * The fully qualified name of the generated symmetric matrix class with minimal index size.
+	 * 
+	 * @param n Row and column count
+	 * @param valueType The name of the value type; "boolean" denotes a binary matrix
+	 * @return The class name
+	 */
+	static String getSymmetricMatrixClassName(int n, String valueType)
+	{
+		final String index = getIndexType(n);
+
+		final String packageName = MatrixFactory.class.getPackage().getName();
+
+		return packageName
+		    + "."
+		    + (valueType.equals(boolean.class.getSimpleName()) ? "MemorySymmetricBinaryMatrix" + upcase(index)
+		        : "MemorySymmetricMatrix" + upcase(index) + upcase(valueType));
+	}
+
 	/**
 	 * Return the index type necessary to represent indexes that are smaller than n.
 	 * 
 	 * @return the name of the primitive type.
 	 */
-	private static String getIndexType(int n)
+	static String getIndexType(int n)
 	{
 		if (n <= 1 + Byte.MAX_VALUE) return "byte";
 		if (n <= 1 + Character.MAX_VALUE) return "char";
@@ -346,7 +627,13 @@ public class MatrixFactory
 		return "" + (char) ((int) name.charAt(0) + (int) ('A' - 'a')) + name.substring(1);
 	}
 
-	private final static Set <String> VALUE_TYPES = new HashSet <String>();
+	/*
+	 * Constructors by class name and parameter types; see getConstructor().
+	 */
+	private final static ConcurrentMap <String, Constructor <?>> CONSTRUCTORS =
+	    new ConcurrentHashMap <String, Constructor <?>>();
+
+	final static Set <String> VALUE_TYPES = new HashSet <String>();
 
 	static
 	{
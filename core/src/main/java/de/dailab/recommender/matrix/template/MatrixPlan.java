@@ -0,0 +1,368 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Arrays;
+
+/**
+ * The storage layout chosen by MatrixBuilder.buildPlanned() for a matrix, together with the statistics of the entries
+ * it was chosen from and the estimated memory requirement of each layout.
+ * <p>
+ * Modifiable matrices are stored densely when MatrixFactory.isDense() is true, in the symmetric layout when they are
+ * square and symmetric, and in the memory-held layout otherwise. Read-only matrices are stored in the compressed
+ * layout of MatrixFactory.freeze(), unless the dense layout of weighted matrices or the bitmap layout of binary
+ * matrices is smaller, or the varint layout is smaller by at least a quarter; the varint layout is only chosen when its
+ * saving outweighs the cost of decoding indexes. The value type of read-only matrices is narrowed to the smallest type
+ * that represents all values exactly, e.g. "byte" for integer ratings.
+ * <p>
+ * The dense layout is not used when an entry has value zero, as dense matrices do not distinguish zero from the
+ * absence of an entry.
+ * <p>
+ * Memory sizes are estimates in bytes, using the formulas of MatrixFactory, BitmapVector and VarintMatrix with a
+ * pointer size of 8 and an object overhead of 16 bytes.
+ * 
+ * @author kunegis
+ */
+public class MatrixPlan
+{
+	/**
+	 * A storage layout.
+	 */
+	public enum Layout
+	{
+		/**
+		 * Modifiable sparse memory-held matrix as returned by MatrixFactory.newMemoryMatrix()
+		 */
+		MEMORY,
+
+		/**
+		 * Modifiable symmetric matrix as returned by MatrixFactory.newSymmetricMatrix()
+		 */
+		SYMMETRIC,
+
+		/**
+		 * Modifiable dense matrix as returned by MatrixFactory.newDenseMatrix(); only for weighted matrices
+		 */
+		DENSE,
+
+		/**
+		 * Read-only compressed sparse row and column matrix as returned by MatrixFactory.freeze()
+		 */
+		COMPRESSED,
+
+		/**
+		 * Read-only VarintMatrix
+		 */
+		VARINT,
+
+		/**
+		 * Read-only BitmapMatrix; only for binary matrices
+		 */
+		BITMAP
+	}
+
+	/**
+	 * The chosen layout.
+	 */
+	public final Layout layout;
+
+	/**
+	 * The chosen value type; "boolean" denotes a binary matrix.
+	 */
+	public final String valueType;
+
+	/**
+	 * Number of nonzero entries.
+	 */
+	public final int nnz;
+
+	/**
+	 * The largest row and column counts.
+	 */
+	public final int maxRowCount, maxColCount;
+
+	/**
+	 * The smallest and largest value; both one for binary matrices, and both zero for empty matrices.
+	 */
+	public final double minValue, maxValue;
+
+	/**
+	 * Whether the matrix is square and contains (j,i) with the same value for each entry (i,j).
+	 */
+	public final boolean symmetric;
+
+	/**
+	 * The estimated memory requirement in bytes of each layout, indexed by Layout.ordinal(); -1 for layouts that
+	 * cannot be used for the matrix.
+	 */
+	private final long sizes[];
+
+	/**
+	 * @param layout A layout
+	 * @return The estimated memory requirement of the layout in bytes, or -1 when the layout cannot be used
+	 */
+	public long getSize(Layout layout)
+	{
+		return sizes[layout.ordinal()];
+	}
+
+	/**
+	 * The layout, value type, statistics and estimated sizes, in the form in which they are logged by MatrixBuilder.
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder ret = new StringBuilder(String.format(
+		    "%s %s: nnz=%d, max row count %d, max col count %d, values [%g, %g]%s;", layout, valueType, nnz,
+		    maxRowCount, maxColCount, minValue, maxValue, symmetric ? ", symmetric" : ""));
+		for (final Layout l: Layout.values())
+			if (sizes[l.ordinal()] >= 0) ret.append(String.format(" %s=%d", l, sizes[l.ordinal()]));
+		return ret.toString();
+	}
+
+	/**
+	 * Plan the layout of a matrix given in compressed sparse row format.
+	 * 
+	 * @param m Row count; greater than zero
+	 * @param n Column count; greater than zero
+	 * @param valueType The value type given to the builder
+	 * @param rowOffsets The row offsets; of length M + 1
+	 * @param colIndexes The column indexes, sorted within each row and without duplicates
+	 * @param values The values; NULL for binary matrices
+	 * @param modifiable Whether the matrix must be modifiable
+	 * @return The plan
+	 */
+	static MatrixPlan plan(int m, int n, String valueType, int rowOffsets[], int colIndexes[], double values[],
+	    boolean modifiable)
+	{
+		return new MatrixPlan(m, n, valueType, rowOffsets, colIndexes, values, modifiable);
+	}
+
+	private MatrixPlan(int m, int n, String valueType, int rowOffsets[], int colIndexes[], double values[],
+	    boolean modifiable)
+	{
+		assert m > 0 && n > 0;
+		assert rowOffsets.length == m + 1;
+
+		nnz = rowOffsets[m];
+
+		/*
+		 * Column offsets, and the row indexes of each column, which are sorted because rows are traversed in order
+		 */
+		final int colOffsets[] = new int[n + 1];
+		for (int k = 0; k < nnz; ++k)
+			++colOffsets[colIndexes[k] + 1];
+		int maxColCount = 0;
+		for (int j = 0; j < n; ++j)
+		{
+			maxColCount = Math.max(maxColCount, colOffsets[j + 1]);
+			colOffsets[j + 1] += colOffsets[j];
+		}
+		this.maxColCount = maxColCount;
+
+		int maxRowCount = 0;
+		for (int i = 0; i < m; ++i)
+			maxRowCount = Math.max(maxRowCount, rowOffsets[i + 1] - rowOffsets[i]);
+		this.maxRowCount = maxRowCount;
+
+		/*
+		 * Value range
+		 */
+		double minValue = nnz == 0 ? 0. : 1., maxValue = minValue;
+		boolean integral = true, floatExact = true, zero = false;
+		if (values != null)
+		{
+			minValue = nnz == 0 ? 0. : Double.POSITIVE_INFINITY;
+			maxValue = nnz == 0 ? 0. : Double.NEGATIVE_INFINITY;
+			for (int k = 0; k < nnz; ++k)
+			{
+				final double value = values[k];
+				minValue = Math.min(minValue, value);
+				maxValue = Math.max(maxValue, value);
+				if (value != Math.rint(value)) integral = false;
+				if ((float) value != value) floatExact = false;
+				if (value == 0) zero = true;
+			}
+		}
+		this.minValue = minValue;
+		this.maxValue = maxValue;
+
+		symmetric = m == n && isSymmetric(rowOffsets, colIndexes, values);
+
+		final String sparseValueType = modifiable ? valueType : narrow(valueType, minValue, maxValue, integral,
+		    floatExact);
+
+		/*
+		 * Estimated sizes
+		 */
+		final int indexSizeA = getTypeSize(MatrixFactory.getIndexType(m));
+		final int indexSizeB = getTypeSize(MatrixFactory.getIndexType(n));
+		final int valueSize = getTypeSize(sparseValueType);
+
+		sizes = new long[Layout.values().length];
+		Arrays.fill(sizes, -1);
+
+		sizes[Layout.MEMORY.ordinal()] = (long) nnz * (indexSizeA + indexSizeB + 2 * valueSize) + (long) (m + n)
+		    * (3 * POINTER + 3 * OBJECT + 4);
+		if (symmetric)
+			sizes[Layout.SYMMETRIC.ordinal()] = (long) nnz * (indexSizeA + valueSize) + (long) n
+			    * (POINTER + OBJECT + 4);
+		if (valueSize != 0 && !zero && (long) m * n <= Integer.MAX_VALUE)
+			sizes[Layout.DENSE.ordinal()] = (long) m * n
+			    * getTypeSize(MatrixFactory.getDenseValueType(sparseValueType)) + 4L * (m + n);
+
+		if (!modifiable)
+		{
+			sizes[Layout.COMPRESSED.ordinal()] = (long) nnz * (indexSizeA + indexSizeB + 2 * valueSize) + 4L
+			    * (m + n + 2);
+
+			final int rowIndexes[] = new int[nnz];
+			final int positions[] = new int[n];
+			System.arraycopy(colOffsets, 0, positions, 0, n);
+			for (int i = 0; i < m; ++i)
+				for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+					rowIndexes[positions[colIndexes[k]]++] = i;
+
+			/* VarintMatrix stores values as float, or as double when float is not exact */
+			final int varintValueSize = valueSize == 0 ? 0 : valueSize == 8
+			    || sparseValueType.equals(int.class.getSimpleName()) ? 8 : 4;
+			sizes[Layout.VARINT.ordinal()] = getVarintSize(rowOffsets, colIndexes) + getVarintSize(colOffsets,
+			    rowIndexes) + 2L * nnz * varintValueSize;
+
+			if (valueSize == 0)
+				sizes[Layout.BITMAP.ordinal()] = getBitmapSize(rowOffsets, colIndexes)
+				    + getBitmapSize(colOffsets, rowIndexes);
+		}
+
+		/*
+		 * Choose the layout
+		 */
+		if (modifiable)
+			layout = sizes[Layout.DENSE.ordinal()] >= 0 && MatrixFactory.isDense(m, n, nnz, sparseValueType)
+			    ? Layout.DENSE : symmetric ? Layout.SYMMETRIC : Layout.MEMORY;
+		else
+		{
+			Layout best = Layout.COMPRESSED;
+			for (final Layout l: new Layout[] { Layout.DENSE, Layout.BITMAP })
+				if (sizes[l.ordinal()] >= 0 && sizes[l.ordinal()] < sizes[best.ordinal()]) best = l;
+			if (4 * sizes[Layout.VARINT.ordinal()] < 3 * sizes[best.ordinal()]) best = Layout.VARINT;
+			layout = best;
+		}
+
+		this.valueType = layout == Layout.DENSE ? MatrixFactory.getDenseValueType(sparseValueType) : sparseValueType;
+	}
+
+	/**
+	 * Whether a square matrix in compressed sparse row format is symmetric. Each entry is looked up in the row given by
+	 * its column index using binary search.
+	 */
+	private static boolean isSymmetric(int rowOffsets[], int colIndexes[], double values[])
+	{
+		final int m = rowOffsets.length - 1;
+		for (int i = 0; i < m; ++i)
+		{
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+			{
+				final int j = colIndexes[k];
+				if (j <= i) continue;
+				final int l = Arrays.binarySearch(colIndexes, rowOffsets[j], rowOffsets[j + 1], i);
+				if (l < 0) return false;
+				if (values != null && values[l] != values[k]) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The smallest value type that represents the given values exactly, and is not larger than the given type.
+	 */
+	private static String narrow(String valueType, double minValue, double maxValue, boolean integral,
+	    boolean floatExact)
+	{
+		final String ret;
+		if (valueType.equals(boolean.class.getSimpleName()))
+			ret = valueType;
+		else if (minValue == 1. && maxValue == 1.)
+			ret = boolean.class.getSimpleName();
+		else if (integral && minValue >= Byte.MIN_VALUE && maxValue <= Byte.MAX_VALUE)
+			ret = byte.class.getSimpleName();
+		else if (integral && minValue >= Short.MIN_VALUE && maxValue <= Short.MAX_VALUE)
+			ret = short.class.getSimpleName();
+		else if (integral && minValue >= Integer.MIN_VALUE && maxValue <= Integer.MAX_VALUE)
+			ret = int.class.getSimpleName();
+		else if (floatExact)
+			ret = float.class.getSimpleName();
+		else
+			ret = double.class.getSimpleName();
+
+		/* Keep the given type when it is not larger, e.g. "float" for integers that need "int" */
+		return getTypeSize(ret) < getTypeSize(valueType) ? ret : valueType;
+	}
+
+	/**
+	 * Size in bytes of a primitive type; zero for "boolean", which denotes binary matrices.
+	 */
+	private static int getTypeSize(String type)
+	{
+		if (type.equals(boolean.class.getSimpleName())) return 0;
+		if (type.equals(byte.class.getSimpleName())) return 1;
+		if (type.equals(short.class.getSimpleName()) || type.equals(char.class.getSimpleName())) return 2;
+		if (type.equals(int.class.getSimpleName()) || type.equals(float.class.getSimpleName())) return 4;
+		return 8;
+	}
+
+	/**
+	 * The size of the indexes of one side of a VarintMatrix: a tag byte per four indexes, one to four bytes per index
+	 * difference, three offsets per row and the skip index.
+	 */
+	private static long getVarintSize(int offsets[], int indexes[])
+	{
+		final int count = offsets.length - 1;
+		long ret = 12L * (count + 1);
+		for (int i = 0; i < count; ++i)
+		{
+			final int c = offsets[i + 1] - offsets[i];
+			if (c == 0) continue;
+			ret += (c + 3) / 4 + 8 * ((c - 1) / VARINT_SKIP);
+			int previous = -1;
+			for (int k = offsets[i]; k < offsets[i + 1]; ++k)
+			{
+				final int delta = indexes[k] - previous - 1;
+				previous = indexes[k];
+				ret += delta >>> 8 == 0 ? 1 : delta >>> 16 == 0 ? 2 : delta >>> 24 == 0 ? 3 : 4;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * The size of the rows or columns of a BitmapMatrix: per block of 65536 indexes, the smallest of an array, bitmap
+	 * or run container, and an object overhead per vector and per container.
+	 */
+	private static long getBitmapSize(int offsets[], int indexes[])
+	{
+		final int count = offsets.length - 1;
+		long ret = (long) count * (POINTER + 3 * OBJECT);
+		for (int i = 0; i < count; ++i)
+		{
+			int begin = offsets[i];
+			while (begin < offsets[i + 1])
+			{
+				final int high = indexes[begin] >>> 16;
+				int end = begin + 1;
+				int runs = 1;
+				for (; end < offsets[i + 1] && indexes[end] >>> 16 == high; ++end)
+					if (indexes[end] != indexes[end - 1] + 1) ++runs;
+				final int cardinality = end - begin;
+				ret += 2 + POINTER + OBJECT + Math.min(4 * runs, cardinality <= 4096 ? 2 * cardinality : 8192);
+				begin = end;
+			}
+		}
+		return ret;
+	}
+
+	private static final int POINTER = 8, OBJECT = 16;
+
+	/**
+	 * The skip interval of VarintMatrix.
+	 */
+	private static final int VARINT_SKIP = 64;
+}
@@ -7,25 +7,96 @@ import java.util.NoSuchElementException;
 import de.dailab.recommender.matrix.Entry;
 import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
 import de.dailab.recommender.matrix.MatrixIterable;
 import de.dailab.recommender.matrix.MatrixIterator;
 
 /**
  * Sparse asymmetric binary matrix held in memory, with indexes represented by ${index}s and ${index}s, and fast 
  * indexing from both dimensions.
+ * <p>
+ * As in the weighted memory matrices, the column index may be lazy, in which case it is built from the rows in one
+ * parallel pass when it is first needed.
  * 
  * @author autogenerated
  */
 @SuppressWarnings("all")
 final class MemoryBinaryMatrixByteChar
-    implements Matrix
+    implements RangeMatrix
 {
 	public MemoryBinaryMatrixByteChar(int m, int n)
 	{
+		this(m, n, false);
+	}
+
+	/**
+	 * New memory-held binary matrix of the given size, with an optionally lazy column index. The constructed matrix is
+	 * zero.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param lazyCols Whether the column index is built only when first needed
+	 */
+	public MemoryBinaryMatrixByteChar(int m, int n, boolean lazyCols)
+	{
+		this.n = n;
 		rows = new char[m][];
-		cols = new byte[n][];
 		rowCounts = new int[m];
-		colCounts = new int[n];
+		if (!lazyCols)
+		{
+			colCounts = new int[n];
+			cols = new byte[n][];
+		}
+	}
+
+	/**
+	 * A matrix containing the given entries in compressed sparse row format, as produced by MatrixBuilder. Each row
+	 * and column is allocated with its exact size.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values Ignored; may be NULL
+	 */
+	MemoryBinaryMatrixByteChar(int m, int n, int rowOffsets[], int colIndexes[], double values[])
+	{
+		this(m, n, rowOffsets, colIndexes, values, false);
+	}
+
+	/**
+	 * A matrix containing the given entries in compressed sparse row format, with an optionally lazy column index.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values Ignored; may be NULL
+	 * @param lazyCols Whether the column index is built only when first needed
+	 */
+	MemoryBinaryMatrixByteChar(int m, int n, int rowOffsets[], int colIndexes[], double values[],
+	    boolean lazyCols)
+	{
+		this(m, n, true);
+
+		assert rowOffsets.length == m + 1;
+		assert colIndexes.length >= rowOffsets[m];
+
+		for (int i = 0; i < m; ++i)
+		{
+			final int count = rowOffsets[i + 1] - rowOffsets[i];
+			if (count == 0) continue;
+			rows[i] = new char[count];
+			rowCounts[i] = count;
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+				rows[i][k - rowOffsets[i]] = (char) colIndexes[k];
+		}
+
+		nnz = rowOffsets[m];
+
+		if (!lazyCols) transpose();
 	}
 
 	@Override
@@ -37,7 +108,7 @@ final class MemoryBinaryMatrixByteChar
 	@Override
 	public int cols()
 	{
-		return cols.length;
+		return n;
 	}
 
 	@Override
@@ -46,13 +117,15 @@ final class MemoryBinaryMatrixByteChar
 		return boolean.class.getSimpleName(); 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
 	@Override
 	public int nnz()
 	{
-		int ret = 0;
-		for (int countI:  rowCounts)
-		    ret += countI; 
-		return ret; 
+		return nnz;
 	}
 
 	@Override
@@ -64,6 +137,7 @@ final class MemoryBinaryMatrixByteChar
 	@Override
 	public int getColCount(int col)
 	{
+		columns();
 		return colCounts[col]; 
 	}
 
@@ -72,9 +146,12 @@ final class MemoryBinaryMatrixByteChar
 		assert i >= 0;
 		assert j >= 0;
 		assert i < rows.length;
-		assert j < cols.length;
+		assert j < n;
+		final int rowCount = rowCounts[i];
 		setA(rows, rowCounts, i, j);
-		setB(cols, colCounts, j, i);
+		nnz += rowCounts[i] - rowCount;
+		final byte colVectors[][] = cols;
+		if (colVectors != null) setB(colVectors, colCounts, j, i);
 	}
 
 	private static void setA(char vectors[][], int counts[], int i, int j)
@@ -181,10 +258,11 @@ final class MemoryBinaryMatrixByteChar
 		assert i >= 0;
 		assert j >= 0;
 		assert i < rows.length;
-		assert j < cols.length;
+		assert j < n;
 
-		if (rows.length < cols.length)
-			return getA(cols[j], colCounts[j], i);
+		final byte colVectors[][] = cols;
+		if (rows.length < n && colVectors != null)
+			return getA(colVectors[j], colCounts[j], i);
 		else
 			return getB(rows[i], rowCounts[i], j);
 	}
@@ -254,7 +332,7 @@ final class MemoryBinaryMatrixByteChar
 	@Override
 	public Iterable <Entry> col(int j)
 	{
-		return iterableB(cols, j, colCounts[j]);
+		return iterableB(columns(), j, colCounts[j]);
 	}
 
 	@Override
@@ -406,39 +484,170 @@ final class MemoryBinaryMatrixByteChar
 	@Override
 	public double[] mult(double[] v, double[] ret, double weight)
 	{
-		assert v.length == cols.length;
+		assert v.length == n;
 
 		if (ret == null) ret = new double[rows.length];
 
 		assert ret.length == rows.length;
 
-		for (int i = 0; i < rows.length; ++i)
+		mult(v, ret, weight, 0, rows.length);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == rows.length;
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		multT(v, ret, weight, 0, n);
+
+		return ret;
+	}
+
+	@Override
+	public void mult(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int i = begin; i < end; ++i)
 		{
 			if (rows[i] == null) continue;
 			for (int k = 0; k < rowCounts[i]; ++k)
 				ret[i] += weight * v[rows[i][k]];
 		}
+	}
+
+	@Override
+	public void multT(double v[], double ret[], double weight, int begin, int end)
+	{
+		final byte colVectors[][] = columns();
+		for (int j = begin; j < end; ++j)
+		{
+			if (colVectors[j] == null) continue;
+			for (int k = 0; k < colCounts[j]; ++k)
+				ret[j] += weight * v[colVectors[j][k]];
+		}
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][rows.length];
+
+		assert ret.length == v.length;
+
+		multBlock(v, ret, weight, 0, rows.length);
 
 		return ret;
 	}
 
 	@Override
-	public double[] multT(double[] v, double[] ret, double weight)
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
 	{
-		assert v.length == rows.length;
+		if (ret == null) ret = new double[v.length][n];
+
+		assert ret.length == v.length;
 
-		if (ret == null) ret = new double[cols.length];
+		multBlockT(v, ret, weight, 0, n);
 
-		assert ret.length == cols.length;
+		return ret;
+	}
 
-		for (int j = 0; j < cols.length; ++j)
+	@Override
+	public void multBlock(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final double sums[] = new double[v.length];
+		for (int i = begin; i < end; ++i)
 		{
-			if (cols[j] == null) continue;
+			if (rows[i] == null) continue;
+			for (int r = 0; r < sums.length; ++r)
+				sums[r] = 0.;
+			for (int k = 0; k < rowCounts[i]; ++k)
+			{
+				final int index = rows[i][k];
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] += v[r][index];
+			}
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][i] += weight * sums[r];
+		}
+	}
+
+	@Override
+	public void multBlockT(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final byte colVectors[][] = columns();
+		final double sums[] = new double[v.length];
+		for (int j = begin; j < end; ++j)
+		{
+			if (colVectors[j] == null) continue;
+			for (int r = 0; r < sums.length; ++r)
+				sums[r] = 0.;
 			for (int k = 0; k < colCounts[j]; ++k)
-				ret[j] += weight * v[cols[j][k]];
+			{
+				final int index = colVectors[j][k];
+				for (int r = 0; r < sums.length; ++r)
+					sums[r] += v[r][index];
+			}
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][j] += weight * sums[r];
 		}
+	}
 
-		return ret;
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				rowIndexes = rows[i];
+				colIndexes = null;
+				count = rowCounts[i];
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				rowIndexes = null;
+				colIndexes = columns()[j];
+				count = colCounts[j];
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return ++k < count;
+			}
+
+			@Override
+			public int index()
+			{
+				return rowIndexes != null ? rowIndexes[k] : colIndexes[k];
+			}
+
+			@Override
+			public double value()
+			{
+				return 1.;
+			}
+
+			/*
+			 * At most one of ROW_INDEXES and COL_INDEXES is not NULL.
+			 */
+			private char rowIndexes[] = null;
+			private byte colIndexes[] = null;
+			private int count = 0;
+			private int k = -1;
+		};
 	}
 
 	@Override
@@ -476,6 +685,7 @@ final class MemoryBinaryMatrixByteChar
 	@Override
 	public Iterable <Integer> getCols()
 	{
+		columns();
 		return new Iterable <Integer> ()
 		{
 			public Iterator <Integer> iterator()
@@ -505,8 +715,93 @@ final class MemoryBinaryMatrixByteChar
 		}; 
 	}
 
+	/**
+	 * The column vectors, building them first if the column index is lazy and has not been built yet. COL_COUNTS may
+	 * be read after this call.
+	 */
+	private byte[][] columns()
+	{
+		final byte ret[][] = cols;
+		return ret != null ? ret : transpose();
+	}
+
+	/**
+	 * Build the column vectors and counts from the rows, in parallel over ranges of columns. For each range, all rows
+	 * are read twice, finding the entries of the range by binary search: once to count the entries of each column,
+	 * and once to fill the column vectors, which are allocated with their exact size.
+	 */
+	private synchronized byte[][] transpose()
+	{
+		if (cols != null) return cols;
+
+		final byte ret[][] = new byte[n][];
+		final int counts[] = new int[n];
+		ParallelMultiplication.runRanges(n, new ParallelMultiplication.Range()
+		{
+			@Override
+			public void run(int begin, int end)
+			{
+				for (int i = 0; i < rows.length; ++i)
+					for (int k = lowerBound(rows[i], rowCounts[i], begin); k < rowCounts[i] && rows[i][k] < end; ++k)
+						++counts[rows[i][k]];
+
+				for (int j = begin; j < end; ++j)
+				{
+					if (counts[j] == 0) continue;
+					ret[j] = new byte[counts[j]];
+					counts[j] = 0;
+				}
+
+				for (int i = 0; i < rows.length; ++i)
+				{
+					for (int k = lowerBound(rows[i], rowCounts[i], begin); k < rowCounts[i] && rows[i][k] < end; ++k)
+					{
+						final int j = rows[i][k];
+						ret[j][counts[j]++] = (byte) i;
+					}
+				}
+			}
+		});
+
+		/* COL_COUNTS is written before the volatile COLS, so that it is visible to all threads that see COLS */
+		colCounts = counts;
+		cols = ret;
+		return ret;
+	}
+
+	/**
+	 * The position of the first of the COUNT first indexes of VECTOR that is at least I.
+	 */
+	private static int lowerBound(char vector[], int count, int i)
+	{
+		int min = 0;
+		int max = count;
+		while (min < max)
+		{
+			final int mid = (min + max) / 2;
+			if (vector[mid] < i)
+				min = mid + 1;
+			else
+				max = mid;
+		}
+		return min;
+	}
+
+	/*
+	 * COLS and COL_COUNTS are NULL while a lazy column index has not been built.
+	 */
 	private final char rows[][];
-	private final byte cols[][];
+	private volatile byte cols[][];
 	private final int rowCounts[];
-	private final int colCounts[];
+	private int colCounts[];
+
+	/*
+	 * The column count, which is also the length of COLS.
+	 */
+	private final int n;
+
+	/*
+	 * The number of entries, updated by set().
+	 */
+	private int nnz = 0;
 }
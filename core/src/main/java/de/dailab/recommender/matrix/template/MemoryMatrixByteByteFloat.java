@@ -7,18 +7,23 @@ import java.util.NoSuchElementException;
 import de.dailab.recommender.matrix.Entry;
 import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.Matrix; 
+import de.dailab.recommender.matrix.MatrixCursor;
 import de.dailab.recommender.matrix.MatrixIterable;
 import de.dailab.recommender.matrix.MatrixIterator;
 
 /**
  * A sparse, asymmetric memory-held matrix of floats, with fast indexing from both dimensions, and indexes represented
  * by bytes and bytes. 
+ * <p>
+ * The column index may be lazy, in which case set() only updates the rows. The column vectors are then built from the
+ * rows in one parallel pass on the first call to col(), getColCount(), getCols(), multT(), multBlockT() or the col()
+ * method of a cursor, and are maintained by set() from then on. Until then, the matrix uses about half the memory.
  * 
  * @author autogenerated
  */
 @SuppressWarnings("all")
 final class MemoryMatrixByteByteFloat
-    implements Matrix
+    implements RangeMatrix
 {
 	/**
 	 * New memory-held sparse asymmetric float matrix of the given size. The constructed matrix is zero.
@@ -28,8 +33,76 @@ final class MemoryMatrixByteByteFloat
 	 */
 	public MemoryMatrixByteByteFloat(int m, int n)
 	{
+		this(m, n, false);
+	}
+
+	/**
+	 * New memory-held sparse asymmetric matrix of the given size, with an optionally lazy column index. The constructed
+	 * matrix is zero.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param lazyCols Whether the column index is built only when first needed
+	 */
+	public MemoryMatrixByteByteFloat(int m, int n, boolean lazyCols)
+	{
+		this.n = n;
 		rows = new MemoryVectorByteFloat[m];
-		cols = new MemoryVectorByteFloat[n];
+		if (!lazyCols) cols = new MemoryVectorByteFloat[n];
+	}
+
+	/**
+	 * A matrix containing the given entries in compressed sparse row format, as produced by MatrixBuilder. Each row
+	 * and column vector is allocated with its exact size.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values The value of each entry
+	 */
+	MemoryMatrixByteByteFloat(int m, int n, int rowOffsets[], int colIndexes[], double values[])
+	{
+		this(m, n, rowOffsets, colIndexes, values, false);
+	}
+
+	/**
+	 * A matrix containing the given entries in compressed sparse row format, with an optionally lazy column index.
+	 * 
+	 * @param m Row count
+	 * @param n Column count
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values The value of each entry
+	 * @param lazyCols Whether the column index is built only when first needed
+	 */
+	MemoryMatrixByteByteFloat(int m, int n, int rowOffsets[], int colIndexes[], double values[],
+	    boolean lazyCols)
+	{
+		this(m, n, true);
+
+		assert rowOffsets.length == m + 1;
+		assert colIndexes.length >= rowOffsets[m] && values.length >= rowOffsets[m];
+
+		for (int i = 0; i < m; ++i)
+		{
+			final int count = rowOffsets[i + 1] - rowOffsets[i];
+			if (count == 0) continue;
+			final byte indexes[] = new byte[count];
+			final float rowValues[] = new float[count];
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+			{
+				indexes[k - rowOffsets[i]] = (byte) colIndexes[k];
+				rowValues[k - rowOffsets[i]] = (float) values[k];
+			}
+			rows[i] = new MemoryVectorByteFloat(indexes, rowValues);
+		}
+
+		nnz = rowOffsets[m];
+
+		if (!lazyCols) transpose();
 	}
 
 	@Override
@@ -41,7 +114,7 @@ final class MemoryMatrixByteByteFloat
 	@Override
 	public int cols()
 	{
-		return cols.length;
+		return n;
 	}
 
 	@Override
@@ -50,42 +123,46 @@ final class MemoryMatrixByteByteFloat
 		return "float"; 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
 	@Override
 	public int nnz()
 	{
-		int ret = 0; 
-		for (MemoryVectorByteFloat memoryVector:  rows)
-		{
-			if (memoryVector != null)
-			       ret += memoryVector.getSize(); 
-		}
-		return ret; 
+		return nnz;
 	}
 
 	@Override
 	public int getRowCount(int row)
 	{      
 	       if (rows[row] == null)  return 0; 
-	       return rows[row].getSize(); 
+	       return rows[row].nnz(); 
 	}	
 
 	@Override
 	public int getColCount(int col)
 	{
-		if (cols[col] == null)  return 0;
-		return cols[col].getSize(); 
+		final MemoryVectorByteFloat colVector = columns()[col];
+		if (colVector == null)  return 0;
+		return colVector.nnz(); 
 	}
 
 	@Override
 	public void set(int i, int j, double value)
 	{
-		assert i >= 0 && i < rows.length && j >= 0 && j < cols.length;
+		assert i >= 0 && i < rows.length && j >= 0 && j < n;
 
 		if (rows[i] == null) rows[i] = new MemoryVectorByteFloat();
+		final int rowCount = rows[i].nnz();
 		rows[i].set((byte) j, (float) value);
+		nnz += rows[i].nnz() - rowCount;
 
-		if (cols[j] == null) cols[j] = new MemoryVectorByteFloat();
-		cols[j].set((byte) i, (float) value);
+		final MemoryVectorByteFloat colVectors[] = cols;
+		if (colVectors == null) return;
+		if (colVectors[j] == null) colVectors[j] = new MemoryVectorByteFloat();
+		colVectors[j].set((byte) i, (float) value);
 	}
 
 	/**
@@ -96,13 +173,17 @@ final class MemoryMatrixByteByteFloat
 	 */
 	public void setValue(int i, int j, float value)
 	{
-		assert i >= 0 && i < rows.length && j >= 0 && j < cols.length;
+		assert i >= 0 && i < rows.length && j >= 0 && j < n;
 
 		if (rows[i] == null) rows[i] = new MemoryVectorByteFloat();
+		final int rowCount = rows[i].nnz();
 		rows[i].set((byte) j, value);
+		nnz += rows[i].nnz() - rowCount;
 
-		if (cols[j] == null) cols[j] = new MemoryVectorByteFloat();
-		cols[j].set((byte) i, value);
+		final MemoryVectorByteFloat colVectors[] = cols;
+		if (colVectors == null) return;
+		if (colVectors[j] == null) colVectors[j] = new MemoryVectorByteFloat();
+		colVectors[j].set((byte) i, value);
 	}
 
 	/**
@@ -113,13 +194,17 @@ final class MemoryMatrixByteByteFloat
 	 */
 	public void setInt(int i, int j, int value)
 	{
-		assert i >= 0 && i < rows.length && j >= 0 && j < cols.length;
+		assert i >= 0 && i < rows.length && j >= 0 && j < n;
 
 		if (rows[i] == null) rows[i] = new MemoryVectorByteFloat();
+		final int rowCount = rows[i].nnz();
 		rows[i].set((byte) j, (float) value);
+		nnz += rows[i].nnz() - rowCount;
 
-		if (cols[j] == null) cols[j] = new MemoryVectorByteFloat();
-		cols[j].set((byte) i, (float) value);
+		final MemoryVectorByteFloat colVectors[] = cols;
+		if (colVectors == null) return;
+		if (colVectors[j] == null) colVectors[j] = new MemoryVectorByteFloat();
+		colVectors[j].set((byte) i, (float) value);
 	}
 
 	/**
@@ -180,8 +265,9 @@ final class MemoryMatrixByteByteFloat
 	@Override
 	public Iterable <Entry> col(int j)
 	{
-		if (cols[j] == null) return Collections.emptyList();
-		return cols[j];
+		final MemoryVectorByteFloat colVector = columns()[j];
+		if (colVector == null) return Collections.emptyList();
+		return colVector;
 	}
 
 	@Override
@@ -194,10 +280,11 @@ final class MemoryMatrixByteByteFloat
 	@Override
 	public double get(int i, int j)
 	{
-		if (rows.length < cols.length)
+		final MemoryVectorByteFloat colVectors[] = cols;
+		if (rows.length < n && colVectors != null)
 		{
-			if (cols[j] == null) return 0.;
-			return cols[j].get((byte) i);
+			if (colVectors[j] == null) return 0.;
+			return colVectors[j].get((byte) i);
 		}
 		else
 		{
@@ -215,37 +302,159 @@ final class MemoryMatrixByteByteFloat
 	@Override
 	public double[] mult(double[] v, double[] ret, double weight)
 	{
-		assert v.length == cols.length;
+		assert v.length == n;
 
 		if (ret == null) ret = new double[rows.length];
 
 		assert ret.length == rows.length;
 
-		for (int i = 0; i < rows.length; ++i)
+		mult(v, ret, weight, 0, rows.length);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		assert v.length == rows.length;
+
+		if (ret == null) ret = new double[n];
+
+		assert ret.length == n;
+
+		multT(v, ret, weight, 0, n);
+
+		return ret;
+	}
+
+	@Override
+	public void mult(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int i = begin; i < end; ++i)
 		{
 			if (rows[i] == null) continue;
 			ret[i] += weight * rows[i].mult(v);
 		}
+	}
+
+	@Override
+	public void multT(double v[], double ret[], double weight, int begin, int end)
+	{
+		final MemoryVectorByteFloat colVectors[] = columns();
+		for (int j = begin; j < end; ++j)
+		{
+			if (colVectors[j] == null) continue;
+			ret[j] += weight * colVectors[j].mult(v);
+		}
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][rows.length];
+
+		assert ret.length == v.length;
+
+		multBlock(v, ret, weight, 0, rows.length);
 
 		return ret;
 	}
 
 	@Override
-	public double[] multT(double[] v, double[] ret, double weight)
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
 	{
-		assert v.length == rows.length;
+		if (ret == null) ret = new double[v.length][n];
 
-		if (ret == null) ret = new double[cols.length];
+		assert ret.length == v.length;
 
-		assert ret.length == cols.length;
+		multBlockT(v, ret, weight, 0, n);
 
-		for (int j = 0; j < cols.length; ++j)
+		return ret;
+	}
+
+	@Override
+	public void multBlock(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final double sums[] = new double[v.length];
+		for (int i = begin; i < end; ++i)
 		{
-			if (cols[j] == null) continue;
-			ret[j] += weight * cols[j].mult(v);
+			if (rows[i] == null) continue;
+			rows[i].mult(v, sums);
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][i] += weight * sums[r];
 		}
+	}
 
-		return ret;
+	@Override
+	public void multBlockT(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final MemoryVectorByteFloat colVectors[] = columns();
+		final double sums[] = new double[v.length];
+		for (int j = begin; j < end; ++j)
+		{
+			if (colVectors[j] == null) continue;
+			colVectors[j].mult(v, sums);
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][j] += weight * sums[r];
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The cursor reads the row and column vectors directly.
+	 */
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				rowVector = rows[i];
+				colVector = null;
+				count = rowVector == null ? 0 : rowVector.nnz();
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				rowVector = null;
+				colVector = columns()[j];
+				count = colVector == null ? 0 : colVector.nnz();
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return ++k < count;
+			}
+
+			@Override
+			public int index()
+			{
+				return rowVector != null ? rowVector.getIndex(k) : colVector.getIndex(k);
+			}
+
+			@Override
+			public double value()
+			{
+				return rowVector != null ? rowVector.getValue(k) : colVector.getValue(k);
+			}
+
+			/*
+			 * At most one of ROW_VECTOR and COL_VECTOR is not NULL.
+			 */
+			private MemoryVectorByteFloat rowVector = null;
+			private MemoryVectorByteFloat colVector = null;
+			private int count = 0;
+			private int k = -1;
+		};
 	}
 
 	@Override
@@ -259,7 +468,7 @@ final class MemoryMatrixByteByteFloat
 				{
 					public boolean hasNext()
 					{
-						while (next < rows.length && (rows[next] == null || rows[next].getSize() == 0))
+						while (next < rows.length && (rows[next] == null || rows[next].nnz() == 0))
 						      ++next;
 						return next < rows.length; 
 					}
@@ -283,6 +492,7 @@ final class MemoryMatrixByteByteFloat
 	@Override
 	public Iterable <Integer> getCols()
 	{
+		final MemoryVectorByteFloat colVectors[] = columns();
 		return new Iterable <Integer> ()
 		{
 			public Iterator <Integer> iterator()
@@ -291,9 +501,9 @@ final class MemoryMatrixByteByteFloat
 				{
 					public boolean hasNext()
 					{
-						while (next < cols.length && (cols[next] == null || cols[next].getSize() == 0))
+						while (next < colVectors.length && (colVectors[next] == null || colVectors[next].nnz() == 0))
 						      ++next;
-						return next < cols.length; 
+						return next < colVectors.length; 
 					}
 
 					public Integer next()
@@ -312,9 +522,84 @@ final class MemoryMatrixByteByteFloat
 		}; 
 	}
 
+	/**
+	 * The column vectors, building them first if the column index is lazy and has not been built yet.
+	 */
+	private MemoryVectorByteFloat[] columns()
+	{
+		final MemoryVectorByteFloat ret[] = cols;
+		return ret != null ? ret : transpose();
+	}
+
+	/**
+	 * Build the column vectors from the row vectors, in parallel over ranges of columns. For each range, all rows are
+	 * read twice, finding the entries of the range by binary search: once to count the entries of each column, and
+	 * once to fill the column vectors, which are allocated with their exact size.
+	 */
+	private synchronized MemoryVectorByteFloat[] transpose()
+	{
+		if (cols != null) return cols;
+
+		final MemoryVectorByteFloat ret[] = new MemoryVectorByteFloat[n];
+		ParallelMultiplication.runRanges(n, new ParallelMultiplication.Range()
+		{
+			@Override
+			public void run(int begin, int end)
+			{
+				final int counts[] = new int[end - begin];
+				for (final MemoryVectorByteFloat rowVector: rows)
+				{
+					if (rowVector == null) continue;
+					for (int k = rowVector.lowerBound(begin); k < rowVector.nnz() && rowVector.getIndex(k) < end; ++k)
+						++counts[rowVector.getIndex(k) - begin];
+				}
+
+				final byte indexes[][] = new byte[end - begin][];
+				final float values[][] = new float[end - begin][];
+				for (int j = 0; j < end - begin; ++j)
+				{
+					if (counts[j] == 0) continue;
+					indexes[j] = new byte[counts[j]];
+					values[j] = new float[counts[j]];
+					counts[j] = 0;
+				}
+
+				for (int i = 0; i < rows.length; ++i)
+				{
+					final MemoryVectorByteFloat rowVector = rows[i];
+					if (rowVector == null) continue;
+					for (int k = rowVector.lowerBound(begin); k < rowVector.nnz() && rowVector.getIndex(k) < end; ++k)
+					{
+						final int j = rowVector.getIndex(k) - begin;
+						indexes[j][counts[j]] = (byte) i;
+						values[j][counts[j]] = rowVector.getExactValue(k);
+						++counts[j];
+					}
+				}
+
+				for (int j = 0; j < end - begin; ++j)
+					if (indexes[j] != null) ret[begin + j] = new MemoryVectorByteFloat(indexes[j], values[j]);
+			}
+		});
+
+		cols = ret;
+		return ret;
+	}
+
 	/*
-	 * Empty rows and columns may be represented by NULL, but don't have to.
+	 * Empty rows and columns may be represented by NULL, but don't have to. COLS is NULL while a lazy column index has
+	 * not been built.
 	 */
 	private final MemoryVectorByteFloat rows[];
-	private final MemoryVectorByteFloat cols[];
+	private volatile MemoryVectorByteFloat cols[];
+
+	/*
+	 * The column count, which is also the length of COLS.
+	 */
+	private final int n;
+
+	/*
+	 * The number of entries, updated by set().
+	 */
+	private int nnz = 0;
 }
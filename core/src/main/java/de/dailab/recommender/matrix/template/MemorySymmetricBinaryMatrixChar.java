@@ -0,0 +1,399 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.MatrixIterable;
+import de.dailab.recommender.matrix.MatrixIterator;
+
+/**
+ * A sparse, symmetric, square binary matrix held in memory, with indexes represented by chars.
+ * <p>
+ * Only one adjacency list is stored per row; column J is row J. Setting the entry (i,j) also sets the entry (j,i), so
+ * that each off-diagonal entry is stored twice instead of four times as in an asymmetric matrix containing both (i,j)
+ * and (j,i). multT() is the same as mult().
+ * 
+ * @author autogenerated
+ */
+@SuppressWarnings("all")
+final class MemorySymmetricBinaryMatrixChar
+    implements RangeMatrix
+{
+	/**
+	 * New memory-held sparse symmetric matrix of the given size. The constructed matrix is zero.
+	 * 
+	 * @param m Row count
+	 * @param n Column count; must be equal to M
+	 */
+	public MemorySymmetricBinaryMatrixChar(int m, int n)
+	{
+		assert m == n;
+		rows = new MemoryBinaryVectorChar[n];
+	}
+
+	/**
+	 * A matrix containing the given entries in compressed sparse row format, as produced by MatrixBuilder. The
+	 * entries must be symmetric. Each row vector is allocated with its exact size.
+	 * 
+	 * @param m Row count
+	 * @param n Column count; must be equal to M
+	 * @param rowOffsets Row I consists of the entries ROW_OFFSETS[I] (inclusive) to ROW_OFFSETS[I + 1] (exclusive);
+	 *        of length M + 1
+	 * @param colIndexes The column index of each entry; sorted within each row, without duplicates
+	 * @param values Ignored; may be NULL
+	 */
+	MemorySymmetricBinaryMatrixChar(int m, int n, int rowOffsets[], int colIndexes[], double values[])
+	{
+		this(m, n);
+
+		assert rowOffsets.length == m + 1;
+		assert colIndexes.length >= rowOffsets[m];
+
+		for (int i = 0; i < m; ++i)
+		{
+			final int count = rowOffsets[i + 1] - rowOffsets[i];
+			if (count == 0) continue;
+			final char indexes[] = new char[count];
+			for (int k = rowOffsets[i]; k < rowOffsets[i + 1]; ++k)
+				indexes[k - rowOffsets[i]] = (char) colIndexes[k];
+			rows[i] = new MemoryBinaryVectorChar(indexes);
+		}
+
+		nnz = rowOffsets[m];
+	}
+
+	@Override
+	public int rows()
+	{
+		return rows.length;
+	}
+
+	@Override
+	public int cols()
+	{
+		return rows.length;
+	}
+
+	@Override
+	public String getWeightType()
+	{
+		return boolean.class.getSimpleName();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Runs in constant time.
+	 */
+	@Override
+	public int nnz()
+	{
+		return nnz;
+	}
+
+	@Override
+	public int getRowCount(int row)
+	{
+	       if (rows[row] == null)  return 0;
+	       return rows[row].nnz();
+	}
+
+	@Override
+	public int getColCount(int col)
+	{
+		return getRowCount(col);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The value is ignored and the entries (i,j) and (j,i) are set.
+	 */
+	@Override
+	public void set(int i, int j, double value)
+	{
+		set(i, j);
+	}
+
+	/**
+	 * Set the entries (i,j) and (j,i).
+	 * @param i row index
+	 * @param j column index
+	 */
+	public void set(int i, int j)
+	{
+		assert i >= 0 && i < rows.length && j >= 0 && j < rows.length;
+
+		if (rows[i] == null) rows[i] = new MemoryBinaryVectorChar();
+		final int countI = rows[i].nnz();
+		rows[i].set((char) j);
+		nnz += rows[i].nnz() - countI;
+
+		if (i == j) return;
+
+		if (rows[j] == null) rows[j] = new MemoryBinaryVectorChar();
+		final int countJ = rows[j].nnz();
+		rows[j].set((char) i);
+		nnz += rows[j].nnz() - countJ;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Iterate in row-by-row order. Each off-diagonal entry is returned twice, as (i,j) and (j,i).
+	 */
+	@Override
+	public MatrixIterable <FullEntry> all()
+	{
+		return new MatrixIterable <FullEntry>()
+		{
+			@Override
+			public MatrixIterator <FullEntry> iterator()
+			{
+				return new MatrixIterator <FullEntry>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						if (iterator != null && iterator.hasNext()) return true;
+
+						if (iterator != null) ++i;
+
+						while (i < rows.length && (rows[i] == null || !(iterator = rows[i].iterator()).hasNext()))
+							++i;
+						if (iterator == null) return false;
+						return iterator.hasNext();
+					}
+
+					@Override
+					public FullEntry next()
+					{
+						if (!hasNext()) throw new NoSuchElementException();
+						final Entry entry = iterator.next();
+						return new FullEntry(i, entry.index, entry.value);
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					@Override
+					public void set(double newValue)
+					{
+						/* Do nothing, i.e. round to one */
+					}
+
+					private int i = 0;
+					private MatrixIterator <Entry> iterator = null;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Entry> col(int j)
+	{
+		return row(j);
+	}
+
+	@Override
+	public Iterable <Entry> row(int i)
+	{
+		if (rows[i] == null) return Collections.emptyList();
+		return rows[i];
+	}
+
+	@Override
+	public double get(int i, int j)
+	{
+		if (rows[i] == null || rows[j] == null) return 0.;
+
+		/* Search the shorter row */
+		if (rows[i].nnz() <= rows[j].nnz())
+			return rows[i].get((char) j) ? 1. : 0.;
+		else
+			return rows[j].get((char) i) ? 1. : 0.;
+	}
+
+	@Override
+	public boolean isSymmetric()
+	{
+		return true;
+	}
+
+	@Override
+	public double[] mult(double[] v, double[] ret, double weight)
+	{
+		assert v.length == rows.length;
+
+		if (ret == null) ret = new double[rows.length];
+
+		assert ret.length == rows.length;
+
+		mult(v, ret, weight, 0, rows.length);
+
+		return ret;
+	}
+
+	@Override
+	public double[] multT(double[] v, double[] ret, double weight)
+	{
+		return mult(v, ret, weight);
+	}
+
+	@Override
+	public void mult(double v[], double ret[], double weight, int begin, int end)
+	{
+		for (int i = begin; i < end; ++i)
+		{
+			if (rows[i] == null) continue;
+			ret[i] += weight * rows[i].mult(v);
+		}
+	}
+
+	@Override
+	public void multT(double v[], double ret[], double weight, int begin, int end)
+	{
+		mult(v, ret, weight, begin, end);
+	}
+
+	@Override
+	public double[][] multBlock(double[][] v, double[][] ret, double weight)
+	{
+		if (ret == null) ret = new double[v.length][rows.length];
+
+		assert ret.length == v.length;
+
+		multBlock(v, ret, weight, 0, rows.length);
+
+		return ret;
+	}
+
+	@Override
+	public double[][] multBlockT(double[][] v, double[][] ret, double weight)
+	{
+		return multBlock(v, ret, weight);
+	}
+
+	@Override
+	public void multBlock(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		final double sums[] = new double[v.length];
+		for (int i = begin; i < end; ++i)
+		{
+			if (rows[i] == null) continue;
+			rows[i].mult(v, sums);
+			for (int r = 0; r < sums.length; ++r)
+				ret[r][i] += weight * sums[r];
+		}
+	}
+
+	@Override
+	public void multBlockT(double v[][], double ret[][], double weight, int begin, int end)
+	{
+		multBlock(v, ret, weight, begin, end);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The cursor reads the row vectors directly; columns are read from the corresponding rows.
+	 */
+	@Override
+	public MatrixCursor cursor()
+	{
+		return new MatrixCursor()
+		{
+			@Override
+			public MatrixCursor row(int i)
+			{
+				vector = rows[i];
+				count = vector == null ? 0 : vector.nnz();
+				k = -1;
+				return this;
+			}
+
+			@Override
+			public MatrixCursor col(int j)
+			{
+				return row(j);
+			}
+
+			@Override
+			public boolean next()
+			{
+				return ++k < count;
+			}
+
+			@Override
+			public int index()
+			{
+				return vector.getIndex(k);
+			}
+
+			@Override
+			public double value()
+			{
+				return 1.;
+			}
+
+			private MemoryBinaryVectorChar vector = null;
+			private int count = 0;
+			private int k = -1;
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getRows()
+	{
+		return new Iterable <Integer> ()
+		{
+			public Iterator <Integer> iterator()
+			{
+				return new Iterator <Integer> ()
+				{
+					public boolean hasNext()
+					{
+						while (next < rows.length && (rows[next] == null || rows[next].nnz() == 0))
+						      ++next;
+						return next < rows.length;
+					}
+
+					public Integer next()
+					{
+						return next++;
+					}
+
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+
+					private int next = 0;
+				};
+			}
+		};
+	}
+
+	@Override
+	public Iterable <Integer> getCols()
+	{
+		return getRows();
+	}
+
+	/*
+	 * Row I, which is also column I. Empty rows may be represented by NULL, but don't have to.
+	 */
+	private final MemoryBinaryVectorChar rows[];
+
+	/*
+	 * The number of entries, counting (i,j) and (j,i) separately; updated by set().
+	 */
+	private int nnz = 0;
+}
@@ -1,5 +1,6 @@
 package de.dailab.recommender.matrix.template;
 
+import de.dailab.recommender.matrix.Cursor;
 import de.dailab.recommender.matrix.Entry;
 import de.dailab.recommender.matrix.MatrixIterable;
 import de.dailab.recommender.matrix.MatrixIterator;
@@ -35,6 +36,20 @@ final class MemoryVectorByteFloat
 		values = new float[capacity];
 	}
 
+	/**
+	 * A memory vector containing the given entries. The arrays are used by the vector and not copied.
+	 * 
+	 * @param indexes Indexes, sorted and without duplicates
+	 * @param values The values; same length as INDEXES
+	 */
+	MemoryVectorByteFloat(byte indexes[], float values[])
+	{
+		assert indexes.length == values.length;
+		this.indexes = indexes;
+		this.values = values;
+		capacity = indexes.length;
+	}
+
 	@Override
 	public String getIndexType()
 	{
@@ -180,6 +195,79 @@ final class MemoryVectorByteFloat
 		values[min] = value;
 	}
 
+	@Override
+	public Cursor cursor()
+	{
+		return new Cursor()
+		{
+			@Override
+			public boolean next()
+			{
+				return ++k < capacity;
+			}
+
+			@Override
+			public int index()
+			{
+				return indexes[k];
+			}
+
+			@Override
+			public double value()
+			{
+				return values[k];
+			}
+
+			private int k = -1;
+		};
+	}
+
+	/**
+	 * @param k Position of an entry; smaller than nnz()
+	 * @return The index of the entry at position K
+	 */
+	int getIndex(int k)
+	{
+		return indexes[k];
+	}
+
+	/**
+	 * @param i An index
+	 * @return The position of the first entry whose index is at least I; nnz() when there is none
+	 */
+	int lowerBound(int i)
+	{
+		int min = 0;
+		int max = capacity;
+		while (min < max)
+		{
+			final int mid = (min + max) / 2;
+			if (indexes[mid] < i)
+				min = mid + 1;
+			else
+				max = mid;
+		}
+		return min;
+	}
+
+	/**
+	 * @param k Position of an entry; smaller than nnz()
+	 * @return The value of the entry at position K
+	 */
+	double getValue(int k)
+	{
+		return values[k];
+	}
+
+	/**
+	 * @param k Position of an entry; smaller than nnz()
+	 * @return The value of the entry at position K, as float
+	 */
+	float getExactValue(int k)
+	{
+		return values[k];
+	}
+
 	@Override
 	public MatrixIterator <Entry> iterator()
 	{
@@ -265,6 +353,28 @@ final class MemoryVectorByteFloat
 		return ret;
 	}
 
+	/**
+	 * Compute the scalar products of this vector with several vectors at once.
+	 * 
+	 * @param v Vectors
+	 * @param ret Set to THIS * v[k] for each k; of the same length as V
+	 */
+	void mult(double v[][], double ret[])
+	{
+		assert ret.length == v.length;
+
+		for (int r = 0; r < ret.length; ++r)
+			ret[r] = 0.;
+
+		for (int i = 0; i < capacity; ++i)
+		{
+			final int index = indexes[i];
+			final double value = values[i];
+			for (int r = 0; r < ret.length; ++r)
+				ret[r] += v[r][index] * value;
+		}
+	}
+
 	/**
 	 * @return Number of nonsparse elements
 	 */
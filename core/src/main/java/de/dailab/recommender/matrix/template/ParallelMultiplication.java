@@ -0,0 +1,448 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import de.dailab.recommender.matrix.Matrix;
+
+/**
+ * Multi-threaded matrix-vector multiplication. The rows (for mult() and multBlock()) or the columns (for multT() and
+ * multBlockT()) of a matrix are split into blocks containing about the same number of entries, and the blocks are
+ * multiplied in parallel. Each block writes to a separate range of the result vector, so no synchronization is needed;
+ * multT() uses the column index of the matrix.
+ * <p>
+ * The matrices created by MatrixFactory and MatrixBuilder are supported. Other matrices, and matrices with less than
+ * MIN_PARALLEL_NNZ entries, are multiplied by calling their own methods.
+ * <p>
+ * By default, a pool of daemon threads with one thread per available processor is used. Another executor service can
+ * be set with setExecutorService(). When called from a thread of the pool, all methods work in the calling thread, as
+ * waiting for other tasks of the pool could block all its threads.
+ * 
+ * @author kunegis
+ */
+public class ParallelMultiplication
+{
+	/**
+	 * Add weight times the product of a matrix with a vector to RET, in parallel. Same semantics as Matrix.mult().
+	 * 
+	 * @param matrix The matrix
+	 * @param v The vector; of length matrix.cols()
+	 * @param ret The result vector of length matrix.rows(), to which the product is added; NULL to create a zero
+	 *        vector
+	 * @param weight The weight
+	 * @return RET, or the new result vector if RET is NULL
+	 */
+	public static double[] mult(Matrix matrix, final double v[], double ret[], final double weight)
+	{
+		final Pool pool = getPool();
+		if (pool.executorService == null || !(matrix instanceof RangeMatrix) || matrix.nnz() < MIN_PARALLEL_NNZ)
+		    return matrix.mult(v, ret, weight);
+
+		assert v.length == matrix.cols();
+		if (ret == null) ret = new double[matrix.rows()];
+		assert ret.length == matrix.rows();
+
+		final double result[] = ret;
+		run(pool, (RangeMatrix) matrix, false, new Block()
+		{
+			@Override
+			public void run(RangeMatrix rangeMatrix, int begin, int end)
+			{
+				rangeMatrix.mult(v, result, weight, begin, end);
+			}
+		});
+
+		return ret;
+	}
+
+	/**
+	 * Add weight times the product of the transpose of a matrix with a vector to RET, in parallel. Same semantics as
+	 * Matrix.multT().
+	 * 
+	 * @param matrix The matrix
+	 * @param v The vector; of length matrix.rows()
+	 * @param ret The result vector of length matrix.cols(), to which the product is added; NULL to create a zero
+	 *        vector
+	 * @param weight The weight
+	 * @return RET, or the new result vector if RET is NULL
+	 */
+	public static double[] multT(Matrix matrix, final double v[], double ret[], final double weight)
+	{
+		final Pool pool = getPool();
+		if (pool.executorService == null || !(matrix instanceof RangeMatrix) || matrix.nnz() < MIN_PARALLEL_NNZ)
+		    return matrix.multT(v, ret, weight);
+
+		assert v.length == matrix.rows();
+		if (ret == null) ret = new double[matrix.cols()];
+		assert ret.length == matrix.cols();
+
+		final double result[] = ret;
+		run(pool, (RangeMatrix) matrix, true, new Block()
+		{
+			@Override
+			public void run(RangeMatrix rangeMatrix, int begin, int end)
+			{
+				rangeMatrix.multT(v, result, weight, begin, end);
+			}
+		});
+
+		return ret;
+	}
+
+	/**
+	 * Add weight times the products of a matrix with several vectors to RET, in parallel. Same semantics as
+	 * Matrix.multBlock().
+	 * 
+	 * @param matrix The matrix
+	 * @param v K vectors of length matrix.cols()
+	 * @param ret K vectors of length matrix.rows(), to which the products are added; NULL to create zero vectors
+	 * @param weight The weight
+	 * @return RET, or the new result vectors if RET is NULL
+	 */
+	public static double[][] multBlock(Matrix matrix, final double v[][], double ret[][], final double weight)
+	{
+		final Pool pool = getPool();
+		if (pool.executorService == null || !(matrix instanceof RangeMatrix) || matrix.nnz() < MIN_PARALLEL_NNZ)
+		    return matrix.multBlock(v, ret, weight);
+
+		if (ret == null) ret = new double[v.length][matrix.rows()];
+		assert ret.length == v.length;
+
+		final double result[][] = ret;
+		run(pool, (RangeMatrix) matrix, false, new Block()
+		{
+			@Override
+			public void run(RangeMatrix rangeMatrix, int begin, int end)
+			{
+				rangeMatrix.multBlock(v, result, weight, begin, end);
+			}
+		});
+
+		return ret;
+	}
+
+	/**
+	 * Add weight times the products of the transpose of a matrix with several vectors to RET, in parallel. Same
+	 * semantics as Matrix.multBlockT().
+	 * 
+	 * @param matrix The matrix
+	 * @param v K vectors of length matrix.rows()
+	 * @param ret K vectors of length matrix.cols(), to which the products are added; NULL to create zero vectors
+	 * @param weight The weight
+	 * @return RET, or the new result vectors if RET is NULL
+	 */
+	public static double[][] multBlockT(Matrix matrix, final double v[][], double ret[][], final double weight)
+	{
+		final Pool pool = getPool();
+		if (pool.executorService == null || !(matrix instanceof RangeMatrix) || matrix.nnz() < MIN_PARALLEL_NNZ)
+		    return matrix.multBlockT(v, ret, weight);
+
+		if (ret == null) ret = new double[v.length][matrix.cols()];
+		assert ret.length == v.length;
+
+		final double result[][] = ret;
+		run(pool, (RangeMatrix) matrix, true, new Block()
+		{
+			@Override
+			public void run(RangeMatrix rangeMatrix, int begin, int end)
+			{
+				rangeMatrix.multBlockT(v, result, weight, begin, end);
+			}
+		});
+
+		return ret;
+	}
+
+	/**
+	 * Split the integers from zero to COUNT - 1 into ranges of equal length and process them in parallel, using the
+	 * executor service of parallel multiplication. Used to build column indexes and to parse text files. When there is
+	 * no executor service, or when called from a thread of the pool, the whole range is processed in the calling
+	 * thread.
+	 * 
+	 * @param count The number of indexes
+	 * @param range Called once for each range; must only write data belonging to the indexes of its range
+	 */
+	public static void runRanges(int count, final Range range)
+	{
+		final Pool pool = getPool();
+		if (pool.executorService == null || isPoolThread())
+		{
+			range.run(0, count);
+			return;
+		}
+
+		final int blocks = pool.parallelism;
+		final List <Future <?>> futures = new ArrayList <Future <?>>(blocks);
+		for (int b = 0; b < blocks; ++b)
+		{
+			final int begin = (int) ((long) count * b / blocks), end = (int) ((long) count * (b + 1) / blocks);
+			if (begin == end) continue;
+			futures.add(pool.executorService.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					range.run(begin, end);
+				}
+			}));
+		}
+
+		await(futures);
+	}
+
+	/**
+	 * Set the executor service used for parallel multiplication.
+	 * <p>
+	 * Tasks running in the executor service must not call this class, or code using it such as Dataset.freeze(),
+	 * unless the threads of the executor service are created by a thread factory returned by newThreadFactory().
+	 * Otherwise, such tasks may wait for other tasks that cannot run because all threads of the executor service are
+	 * waiting.
+	 * 
+	 * @param executorService The executor service to use; NULL to multiply in the calling thread
+	 * @param parallelism The number of blocks into which each multiplication is split; usually the number of threads
+	 *        of the executor service
+	 */
+	public static synchronized void setExecutorService(ExecutorService executorService, int parallelism)
+	{
+		assert parallelism > 0;
+		pool = new Pool(executorService, parallelism);
+	}
+
+	/**
+	 * The executor service used for parallel multiplication. The default pool is created on first use.
+	 * 
+	 * @return The executor service, or NULL when multiplication is not parallel
+	 */
+	public static ExecutorService getExecutorService()
+	{
+		return getPool().executorService;
+	}
+
+	/**
+	 * The executor service and parallelism, read without locking once the pool is set.
+	 */
+	private static Pool getPool()
+	{
+		final Pool ret = pool;
+		if (ret != null) return ret;
+		return initPool();
+	}
+
+	/**
+	 * Create the default pool unless a pool has been set in the meantime.
+	 */
+	private static synchronized Pool initPool()
+	{
+		if (pool == null)
+		{
+			final int parallelism = Runtime.getRuntime().availableProcessors();
+			final ThreadFactory threadFactory = new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					final Thread thread = new Thread(runnable, "ParallelMultiplication");
+					thread.setDaemon(true);
+					return thread;
+				}
+			};
+			ExecutorService executorService = null;
+			if (parallelism > 1)
+			    executorService = Executors.newFixedThreadPool(parallelism, newThreadFactory(threadFactory));
+			pool = new Pool(executorService, parallelism);
+		}
+
+		return pool;
+	}
+
+	/**
+	 * A thread factory for the threads of an executor service passed to setExecutorService(). Tasks running in the
+	 * threads it creates may call this class; its methods then work in the calling thread.
+	 * 
+	 * @param threadFactory The thread factory that creates the threads
+	 * @return A thread factory creating the same threads, marked as belonging to the pool of parallel multiplication
+	 */
+	public static ThreadFactory newThreadFactory(final ThreadFactory threadFactory)
+	{
+		return new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(final Runnable runnable)
+			{
+				return threadFactory.newThread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						POOL_THREAD.set(Boolean.TRUE);
+						runnable.run();
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Whether the calling thread belongs to the pool of parallel multiplication. Code that waits for tasks it submits
+	 * to the executor service must run them in the calling thread instead when this is true.
+	 * 
+	 * @return Whether the calling thread was created by a thread factory returned by newThreadFactory()
+	 */
+	public static boolean isPoolThread()
+	{
+		return POOL_THREAD.get();
+	}
+
+	/**
+	 * Split the rows or columns into blocks of about equal number of entries and multiply them in parallel. When called
+	 * from a thread of the pool, all rows or columns are multiplied in the calling thread.
+	 */
+	private static void run(Pool pool, final RangeMatrix matrix, boolean transposed, final Block block)
+	{
+		final int count = transposed ? matrix.cols() : matrix.rows();
+		if (isPoolThread())
+		{
+			block.run(matrix, 0, count);
+			return;
+		}
+
+		final int blocks = BLOCKS_PER_THREAD * pool.parallelism;
+
+		/*
+		 * Each row or column is counted with one more than its number of entries, so that blocks of empty rows or
+		 * columns are also split.
+		 */
+		final long total = (long) matrix.nnz() + count;
+
+		final List <Future <?>> futures = new ArrayList <Future <?>>(blocks);
+
+		int begin = 0;
+		long sum = 0;
+		for (int b = 1; b <= blocks && begin < count; ++b)
+		{
+			final long limit = total * b / blocks;
+			int end = begin;
+			while (end < count && (sum < limit || end == begin))
+			{
+				sum += 1 + (transposed ? matrix.getColCount(end) : matrix.getRowCount(end));
+				++end;
+			}
+			if (b == blocks) end = count;
+
+			final int blockBegin = begin, blockEnd = end;
+			futures.add(pool.executorService.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					block.run(matrix, blockBegin, blockEnd);
+				}
+			}));
+
+			begin = end;
+		}
+		assert begin == count;
+
+		await(futures);
+	}
+
+	/**
+	 * Wait for all given tasks to finish, and rethrow the exception of the first task that failed.
+	 */
+	private static void await(List <Future <?>> futures)
+	{
+		try
+		{
+			for (final Future <?> future: futures)
+				future.get();
+		}
+		catch (final InterruptedException interruptedException)
+		{
+			for (final Future <?> future: futures)
+				future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(interruptedException);
+		}
+		catch (final ExecutionException executionException)
+		{
+			final Throwable cause = executionException.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * The multiplication of one block of rows or columns.
+	 */
+	private static interface Block
+	{
+		void run(RangeMatrix rangeMatrix, int begin, int end);
+	}
+
+	/**
+	 * The processing of one range of indexes by runRanges().
+	 */
+	public static interface Range
+	{
+		/**
+		 * @param begin The first index of the range
+		 * @param end The index after the last index of the range
+		 */
+		void run(int begin, int end);
+	}
+
+	/**
+	 * Matrices with less entries are multiplied in the calling thread.
+	 */
+	public static final int MIN_PARALLEL_NNZ = 1 << 15;
+
+	/**
+	 * Number of blocks per thread, to even out differences in speed between blocks.
+	 */
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/**
+	 * An executor service together with the number of blocks into which work is split. Set as a whole, so that each
+	 * multiplication reads both from one volatile field without locking.
+	 */
+	private static final class Pool
+	{
+		Pool(ExecutorService executorService, int parallelism)
+		{
+			this.executorService = executorService;
+			this.parallelism = parallelism;
+		}
+
+		/**
+		 * NULL when multiplication is not parallel.
+		 */
+		final ExecutorService executorService;
+
+		final int parallelism;
+	}
+
+	/**
+	 * NULL until set by setExecutorService() or until the default pool is created on first use.
+	 */
+	private static volatile Pool pool = null;
+
+	/**
+	 * Whether the current thread belongs to the pool, i.e. was created by a thread factory returned by
+	 * newThreadFactory(). Tasks running in the pool must not wait for other tasks of the pool, as all threads of the
+	 * pool may be waiting.
+	 */
+	private static final ThreadLocal <Boolean> POOL_THREAD = new ThreadLocal <Boolean>()
+	{
+		@Override
+		protected Boolean initialValue()
+		{
+			return Boolean.FALSE;
+		}
+	};
+}
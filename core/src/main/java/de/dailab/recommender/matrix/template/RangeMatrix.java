@@ -0,0 +1,59 @@
+package de.dailab.recommender.matrix.template;
+
+import de.dailab.recommender.matrix.Matrix;
+
+/**
+ * A matrix that can multiply a range of its rows or columns with a vector. Used by ParallelMultiplication to split
+ * mult() and multT() into independent blocks.
+ * 
+ * @author kunegis
+ */
+interface RangeMatrix
+    extends Matrix
+{
+	/**
+	 * Add weight times the product of the rows BEGIN (inclusive) to END (exclusive) with V to the corresponding
+	 * entries of RET. Other entries of RET are not accessed.
+	 * 
+	 * @param v The vector to multiply; of length cols()
+	 * @param ret The result vector; of length rows()
+	 * @param weight The weight
+	 * @param begin First row
+	 * @param end Row after the last row
+	 */
+	void mult(double v[], double ret[], double weight, int begin, int end);
+
+	/**
+	 * Add weight times the product of the columns BEGIN (inclusive) to END (exclusive) with V to the corresponding
+	 * entries of RET. Other entries of RET are not accessed.
+	 * 
+	 * @param v The vector to multiply; of length rows()
+	 * @param ret The result vector; of length cols()
+	 * @param weight The weight
+	 * @param begin First column
+	 * @param end Column after the last column
+	 */
+	void multT(double v[], double ret[], double weight, int begin, int end);
+
+	/**
+	 * As mult() with a range of rows, but for several vectors at once as in multBlock().
+	 * 
+	 * @param v K vectors of length cols()
+	 * @param ret K vectors of length rows()
+	 * @param weight The weight
+	 * @param begin First row
+	 * @param end Row after the last row
+	 */
+	void multBlock(double v[][], double ret[][], double weight, int begin, int end);
+
+	/**
+	 * As multT() with a range of columns, but for several vectors at once as in multBlockT().
+	 * 
+	 * @param v K vectors of length rows()
+	 * @param ret K vectors of length cols()
+	 * @param weight The weight
+	 * @param begin First column
+	 * @param end Column after the last column
+	 */
+	void multBlockT(double v[][], double ret[][], double weight, int begin, int end);
+}
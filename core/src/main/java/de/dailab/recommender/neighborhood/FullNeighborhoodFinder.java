@@ -3,6 +3,7 @@ package de.dailab.recommender.neighborhood;
 import java.util.Iterator;
 import java.util.LinkedList;
 
+import de.dailab.recommender.latent.kernels.Kernels;
 import de.dailab.recommender.similarity.Similarity;
 import de.dailab.recommender.similarity.SimilarityRun;
 
@@ -11,7 +12,9 @@ import de.dailab.recommender.similarity.SimilarityRun;
  * <p>
  * This class is inefficient. It has O(n) memory and runtime complexity. It does however return the correct results.
  * <p>
- * This class supports all similarity measures.
+ * This class supports all similarity measures. For spectral similarities, the scores of all vectors are computed
+ * together as x' F(&Lambda;) U using {@link Kernels#dotAll}, which reads each latent dimension sequentially instead of
+ * visiting every latent dimension for each vector.
  * 
  * @author kunegis
  */
@@ -32,6 +35,28 @@ public class FullNeighborhoodFinder
 
 				final LinkedList <WeightedPoint> ret = new LinkedList <WeightedPoint>();
 
+				if (similarity.isSpectral())
+				{
+					final double transformedLambda[] = similarity.transformSpectrum(lambda);
+					final double weights[] = new double[u.length];
+					for (int j = 0; j < u.length; ++j)
+						weights[j] = vector[j] * transformedLambda[j];
+					final double scores[] = Kernels.dotAll(weights, u, null);
+
+					for (int i = 0; i < scores.length; ++i)
+					{
+						final double score = scores[i];
+						assert !Double.isNaN(score) && !Double.isInfinite(score);
+
+						if (ret.size() < k || ret.getLast().score < score)
+						{
+							WeightedPoint.merge(ret, new WeightedPoint(i, score), k);
+						}
+					}
+
+					return ret.iterator();
+				}
+
 				for (int i = 0; i < u[0].length; ++i)
 				{
 					final SimilarityRun similarityRun = similarity.run();
@@ -1,7 +1,7 @@
 package de.dailab.recommender.normalize;
 
-import de.dailab.recommender.matrix.Entry;
 import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
 
 /**
  * Compute sums and counts of a matrix.
@@ -26,15 +26,19 @@ public class MatrixStatistics
 		countSubject = new int[m];
 		sumSubject = new double[m];
 
+		final MatrixCursor cursor = matrix.cursor();
+
 		for (int i = 0; i < m; ++i)
 		{
-			for (final Entry entry: matrix.row(i))
+			for (cursor.row(i); cursor.next();)
 			{
+				final double value = cursor.value();
+
 				++_count;
-				_sum += entry.value;
+				_sum += value;
 
 				++countSubject[i];
-				sumSubject[i] += entry.value;
+				sumSubject[i] += value;
 			}
 		}
 
@@ -50,10 +54,10 @@ public class MatrixStatistics
 
 			for (int j = 0; j < n; ++j)
 			{
-				for (final Entry entry: matrix.col(j))
+				for (cursor.col(j); cursor.next();)
 				{
 					++countObject[j];
-					sumObject[j] += entry.value;
+					sumObject[j] += cursor.value();
 				}
 			}
 		}
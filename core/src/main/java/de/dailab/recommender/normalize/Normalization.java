@@ -7,8 +7,8 @@ import de.dailab.recommender.dataset.EntitySet;
 import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.dataset.RelationshipType;
 import de.dailab.recommender.dataset.WeightRange;
-import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
 import de.dailab.recommender.matrix.template.MatrixFactory;
 
 /**
@@ -104,11 +104,10 @@ public class Normalization
 
 // final Matrix ret = new MemoryMatrix(relationshipSet.getMatrix().rows(), relationshipSet.getMatrix().cols());
 
-		for (final FullEntry fullEntry: relationshipSet.getMatrix().all())
-		{
-			ret.set(fullEntry.rowIndex, fullEntry.colIndex, normalizerModel.normalize(fullEntry.value,
-			    fullEntry.rowIndex, fullEntry.colIndex));
-		}
+		final MatrixCursor cursor = relationshipSet.getMatrix().cursor();
+		for (int i = 0; i < ret.rows(); ++i)
+			for (cursor.row(i); cursor.next();)
+				ret.set(i, cursor.index(), normalizerModel.normalize(cursor.value(), i, cursor.index()));
 
 		return ret;
 	}
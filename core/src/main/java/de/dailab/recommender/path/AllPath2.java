@@ -1,6 +1,6 @@
 package de.dailab.recommender.path;
 
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -8,19 +8,18 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.Map.Entry;
 
+import de.dailab.recommender.dataset.AdjacencyIndex;
 import de.dailab.recommender.dataset.Dataset;
 import de.dailab.recommender.dataset.DatasetEntry;
 import de.dailab.recommender.dataset.Entity;
 import de.dailab.recommender.dataset.EntitySet;
 import de.dailab.recommender.dataset.EntityType;
-import de.dailab.recommender.dataset.RelationshipSet;
-import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.dataset.NeighborCursor;
+import de.dailab.recommender.matrix.Cursor;
+import de.dailab.recommender.matrix.HashVector;
 import de.dailab.recommender.matrix.Vector;
-import de.dailab.recommender.matrix.template.MatrixFactory;
 import de.dailab.recommender.predict.RelationshipTypePonderation;
 import de.dailab.recommender.recommendation.Recommendation;
 
@@ -172,20 +171,24 @@ public class AllPath2
 	public Iterator <Recommendation> recommend(final Dataset dataset, Map <Entity, Double> sources,
 	    final Map <Entity, Set <DatasetEntry>> trail)
 	{
+		final AdjacencyIndex adjacencyIndex = dataset.getAdjacencyIndex();
+
+		/**
+		 * Ponderations by relationship index
+		 */
+		final double ponderations[] = new double[adjacencyIndex.getRelationshipSetCount()];
+		for (int r = 0; r < ponderations.length; ++r)
+			ponderations[r] = relationshipTypePonderation.getWeightDefault(adjacencyIndex.getRelationshipSet(r)
+			    .getType());
+
 		/**
 		 * Maximum absolute weights by relationship type
 		 */
 		double maxWeightOverall = 0;
-		for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
+		for (int r = 0; r < ponderations.length; ++r)
 		{
-			final double ponderation = relationshipTypePonderation.getWeightDefault(relationshipSet.getType());
-			double maxWeightNew = 1. / ponderation;
-			for (final FullEntry fullEntry: relationshipSet.getMatrix().all())
-			{
-				maxWeightNew = Math.max(maxWeightNew, Math.abs(fullEntry.value));
-			}
-
-			maxWeightNew *= ponderation;
+			final double maxWeightNew = Math.max(1. / ponderations[r], adjacencyIndex.getMaxAbsWeight(r))
+			    * ponderations[r];
 
 			if (maxWeightNew > maxWeightOverall) maxWeightOverall = maxWeightNew;
 		}
@@ -211,20 +214,8 @@ public class AllPath2
 		if (minLength == 0)
 		{
 			double weightSum = 0;
-			for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
-			{
-				double weightSumType = 0;
-
-				for (final FullEntry fullEntry: relationshipSet.getMatrix().all())
-				{
-					weightSumType += Math.abs(fullEntry.value);
-				}
-
-				final double ponderation = relationshipTypePonderation.getWeightDefault(relationshipSet.getType())
-				    / maxWeightOverall;
-
-				weightSum += weightSumType * ponderation;
-			}
+			for (int r = 0; r < ponderations.length; ++r)
+				weightSum += adjacencyIndex.getAbsWeightSum(r) * (ponderations[r] / maxWeightOverall);
 
 			int entityCount = 0;
 			for (final EntitySet entitySet: dataset.getEntitySets())
@@ -240,31 +231,33 @@ public class AllPath2
 		final int l[] = new int[1];
 
 		/**
-		 * Vector of weights. All entity types are represented.
+		 * Vector of weights. All entity types are represented. Hash vectors are used because the weights of each step
+		 * are accumulated in the order in which neighbors are found.
 		 */
-		final Map <EntityType, Vector> weightVectors = new HashMap <EntityType, Vector>();
+		final Vector weightVectors[] = new Vector[dataset.getEntityTypes().size()];
 
-		for (final EntitySet entitySet: dataset.getEntitySets())
-			weightVectors.put(entitySet.getType(), MatrixFactory.newMemoryVector(entitySet.size()));
+		for (int t = 0; t < weightVectors.length; ++t)
+			weightVectors[t] = new HashVector();
 
 		for (final Entry <Entity, Double> entry: sources.entrySet())
 		{
 			double weight = entry.getValue();
 			if (shortPathWeights.length > 0) weight *= shortPathWeights[0];
-			weightVectors.get(entry.getKey().getType()).setGeneric(entry.getKey().getId(), weight);
+			weightVectors[dataset.getEntityTypeIndex(entry.getKey().getType())].setGeneric(entry.getKey().getId(),
+			    weight);
 		}
 
 		/*
 		 * Visited; entities in WEIGHTS are included. Only honored when there is a minimal length.
 		 */
-		final Map <EntityType, Vector> visitedVectors = new HashMap <EntityType, Vector>();
-		for (final EntitySet entitySet: dataset.getEntitySets())
-			visitedVectors.put(entitySet.getType(), MatrixFactory.newMemoryVectorUnweighted(entitySet.size()));
+		final Vector visitedVectors[] = new Vector[weightVectors.length];
+		for (int t = 0; t < visitedVectors.length; ++t)
+			visitedVectors[t] = new HashVector();
 
 		if (minLength > 0)
 		{
 			for (final Entity source: sources.keySet())
-				visitedVectors.get(source.getType()).setGeneric(source.getId(), 1);
+				visitedVectors[dataset.getEntityTypeIndex(source.getType())].setGeneric(source.getId(), 1);
 		}
 
 		/**
@@ -272,7 +265,7 @@ public class AllPath2
 		 */
 		final Queue <Recommendation> next = new LinkedList <Recommendation>();
 
-		if (minLength == 0) updateNext(next, weightVectors);
+		if (minLength == 0) updateNext(next, dataset, weightVectors);
 
 		return new Iterator <Recommendation>()
 		{
@@ -314,10 +307,9 @@ public class AllPath2
 				if (DEBUG) System.out.printf("multiply\n");
 
 				/* Multiply */
-				final Map <EntityType, Vector> newWeightVectors = new HashMap <EntityType, Vector>();
-				for (final Entry <EntityType, Vector> entry: weightVectors.entrySet())
-					newWeightVectors.put(entry.getKey(), MatrixFactory.newMemoryVector(entry.getValue().getIndexType(),
-					    entry.getValue().getWeightType()));
+				final Vector newWeightVectors[] = new Vector[weightVectors.length];
+				for (int t = 0; t < weightVectors.length; ++t)
+					newWeightVectors[t] = new HashVector(weightVectors[t].nnz());
 
 				/*
 				 * Effective decay
@@ -326,29 +318,38 @@ public class AllPath2
 				final double effectiveDecay = l[0] < shortPathWeights.length ? shortPathWeights[l[0]]
 				    / shortPathWeights[l[0] - 1] : decay;
 
-				for (final Entry <EntityType, Vector> e: weightVectors.entrySet())
-					for (final de.dailab.recommender.matrix.Entry e2: e.getValue())
+				final NeighborCursor neighborCursor = adjacencyIndex.cursor();
+				for (int t = 0; t < weightVectors.length; ++t)
+					for (final Cursor cursor = weightVectors[t].cursor(); cursor.next();)
 					{
-						final double value = e2.value;
+						final double value = cursor.value();
 
-						final Entity entity = new Entity(e.getKey(), e2.index);
+						/* Only created when a trail is kept */
+						final Entity entity = trail == null ? null : new Entity(dataset.getEntityType(t), cursor
+						    .index());
 
-						for (final DatasetEntry datasetEntry: dataset.getNeighbors(entity))
+						for (neighborCursor.entity(t, cursor.index()); neighborCursor.next();)
 						{
-							if (visitedVectors.get(datasetEntry.entity.getType()).getGeneric(
-							    datasetEntry.entity.getId()) != 0) continue;
+							final int neighborTypeIndex = neighborCursor.typeIndex();
+							final int neighborId = neighborCursor.id();
+
+							if (visitedVectors[neighborTypeIndex].getGeneric(neighborId) != 0) continue;
+
+							final int r = neighborCursor.relationshipIndex();
+							final double weight = neighborCursor.weight();
 
 							/* Add to trail */
 							if (trail != null)
 							{
-								Set <DatasetEntry> previouses = trail.get(datasetEntry.entity);
+								final Entity neighbor = new Entity(dataset.getEntityType(neighborTypeIndex), neighborId);
+								Set <DatasetEntry> previouses = trail.get(neighbor);
 								if (previouses == null)
 								{
 									previouses = new HashSet <DatasetEntry>();
-									trail.put(datasetEntry.entity, previouses);
+									trail.put(neighbor, previouses);
 								}
-								final DatasetEntry newPrevious = new DatasetEntry(entity,
-								    datasetEntry.relationshipType, !datasetEntry.forward, datasetEntry.weight);
+								final DatasetEntry newPrevious = new DatasetEntry(entity, adjacencyIndex
+								    .getRelationshipSet(r).getType(), !neighborCursor.forward(), weight);
 								if (!previouses.contains(newPrevious))
 								{
 									previouses.add(newPrevious);
@@ -356,10 +357,7 @@ public class AllPath2
 							}
 
 							/* Add to NEW_WEIGHTS */
-							final double ponderation = relationshipTypePonderation
-							    .getWeightDefault(datasetEntry.relationshipType);
-							final double factor = effectiveDecay / radius * datasetEntry.weight / maxWeight
-							    * ponderation;
+							final double factor = effectiveDecay / radius * weight / maxWeight * ponderations[r];
 							assert Math.abs(factor) <= 1 * maxShortPathWeightQuotient;
 
 							final double newValue = value * factor;
@@ -369,30 +367,26 @@ public class AllPath2
 							 */
 							if (newValue == 0.) continue;
 
-							newWeightVectors.get(datasetEntry.entity.getType()).addGeneric(datasetEntry.entity.getId(),
-							    newValue);
+							newWeightVectors[neighborTypeIndex].addGeneric(neighborId, newValue);
 						}
 					}
 
-				for (final Entry <EntityType, Vector> entry: weightVectors.entrySet())
-				{
-					entry.setValue(newWeightVectors.get(entry.getKey()));
-				}
+				System.arraycopy(newWeightVectors, 0, weightVectors, 0, weightVectors.length);
 
 				if (minLength > 0)
 				{
-					for (final Entry <EntityType, Vector> entry: weightVectors.entrySet())
+					for (int t = 0; t < weightVectors.length; ++t)
 					{
-						final Vector vector = visitedVectors.get(entry.getKey());
-						for (final de.dailab.recommender.matrix.Entry e2: entry.getValue())
+						final Vector vector = visitedVectors[t];
+						for (final Cursor cursor = weightVectors[t].cursor(); cursor.next();)
 						{
-							vector.addGeneric(e2.index, 1.);
+							vector.setGeneric(cursor.index(), 1.);
 						}
 					}
 				}
 
 				/* Set next */
-				updateNext(next, weightVectors);
+				updateNext(next, dataset, weightVectors);
 
 				if (DEBUG) System.out.printf("\t%d entities\n", next.size());
 			}
@@ -408,34 +402,31 @@ public class AllPath2
 	}
 
 	/**
-	 * Clear NEXT and put all entities in WEIGHTS into NEXT from the highest-scored to the lowest.
+	 * Clear NEXT and put all entities in WEIGHTS into NEXT from the highest-scored to the lowest. The weight vectors
+	 * are indexed by the entity type indexes of DATASET.
 	 */
-	private void updateNext(Queue <Recommendation> next,/* final Map <Entity, Double> weights */
-	final Map <EntityType, Vector> weightVectors)
+	private void updateNext(Queue <Recommendation> next, Dataset dataset, Vector weightVectors[])
 	{
 		next.clear();
 
-		final SortedSet <Entity> sortedEntities = new TreeSet <Entity>(new Comparator <Entity>()
-		{
-			@Override
-			public int compare(Entity entity_1, Entity entity_2)
-			{
-				final double weight_1 = weightVectors.get(entity_1.getType()).getGeneric(entity_1.getId());
-				final double weight_2 = weightVectors.get(entity_2.getType()).getGeneric(entity_2.getId());
-
-				if (weight_1 < weight_2) return +1;
-				if (weight_1 > weight_2) return -1;
-
-				return entity_1.compareTo(entity_2);
-			}
-		});
+		int count = 0;
+		for (final Vector weightVector: weightVectors)
+			count += weightVector.nnz();
 
-		for (final Entry <EntityType, Vector> e: weightVectors.entrySet())
-			for (final de.dailab.recommender.matrix.Entry e2: e.getValue())
-				sortedEntities.add(new Entity(e.getKey(), e2.index));
+		/* Sorted by their natural order, i.e. by score descending, then by entity */
+		final Recommendation recommendations[] = new Recommendation[count];
+		int k = 0;
+		for (int t = 0; t < weightVectors.length; ++t)
+		{
+			final EntityType entityType = dataset.getEntityType(t);
+			for (final Cursor cursor = weightVectors[t].cursor(); cursor.next();)
+				recommendations[k++] = new Recommendation(new Entity(entityType, cursor.index()), cursor.value());
+		}
+		assert k == count;
+		Arrays.sort(recommendations);
 
-		for (final Entity entity: sortedEntities)
-			next.add(new Recommendation(entity, weightVectors.get(entity.getType()).getGeneric(entity.getId())));
+		for (final Recommendation recommendation: recommendations)
+			next.add(recommendation);
 	}
 
 	private final RelationshipTypePonderation relationshipTypePonderation;
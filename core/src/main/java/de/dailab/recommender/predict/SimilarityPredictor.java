@@ -1,12 +1,12 @@
 package de.dailab.recommender.predict;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-
+import de.dailab.recommender.dataset.AdjacencyIndex;
 import de.dailab.recommender.dataset.Dataset;
 import de.dailab.recommender.dataset.DatasetEntry;
 import de.dailab.recommender.dataset.Entity;
+import de.dailab.recommender.dataset.NeighborCursor;
+import de.dailab.recommender.matrix.Cursor;
+import de.dailab.recommender.matrix.HashVector;
 import de.dailab.recommender.similarity.Similarity;
 import de.dailab.recommender.similarity.SimilarityRun;
 
@@ -54,46 +54,51 @@ public class SimilarityPredictor
 			{
 				final SimilarityRun similarityRun = similarity.run();
 
-				final Map <Entity, Double> sourceNeighbors = new HashMap <Entity, Double>();
+				final HashVector sourceNeighbors[] = getNeighbors(source);
+				final HashVector targetNeighbors[] = getNeighbors(target);
 
-				for (final DatasetEntry datasetEntry: dataset.getNeighbors(source))
+				for (int t = 0; t < sourceNeighbors.length; ++t)
 				{
-					final Double weight = sourceNeighbors.get(datasetEntry.entity);
-					if (weight == null)
-						sourceNeighbors.put(datasetEntry.entity, datasetEntry.weight);
-					else
-						sourceNeighbors.put(datasetEntry.entity, datasetEntry.weight + weight);
+					for (final Cursor cursor = sourceNeighbors[t].cursor(); cursor.next();)
+						similarityRun.add(cursor.value(), targetNeighbors[t].getGeneric(cursor.index()), 1);
+
+					for (final Cursor cursor = targetNeighbors[t].cursor(); cursor.next();)
+					{
+						if (sourceNeighbors[t].contains(cursor.index())) continue;
+						similarityRun.add(0, cursor.value(), 1);
+					}
 				}
 
-				final Map <Entity, Double> targetNeighbors = new HashMap <Entity, Double>();
+				final double ret = similarityRun.getSimilarity();
+				assert !Double.isNaN(ret);
+				assert !Double.isInfinite(ret);
+				return ret;
+			}
 
-				for (final DatasetEntry datasetEntry: dataset.getNeighbors(target))
-				{
-					final Double weight = targetNeighbors.get(datasetEntry.entity);
-					if (weight == null)
-						targetNeighbors.put(datasetEntry.entity, datasetEntry.weight);
-					else
-						targetNeighbors.put(datasetEntry.entity, datasetEntry.weight + weight);
-				}
+			/**
+			 * The summed weights of the neighbors of an entity, by entity type index.
+			 */
+			private HashVector[] getNeighbors(Entity entity)
+			{
+				final HashVector ret[] = new HashVector[dataset.getEntityTypes().size()];
+				for (int t = 0; t < ret.length; ++t)
+					ret[t] = new HashVector();
 
-				for (final Entry <Entity, Double> e: sourceNeighbors.entrySet())
+				/* The adjacency index is only kept across calls for frozen datasets */
+				if (!dataset.isFrozen())
 				{
-					final Entity entity = e.getKey();
-					final Double targetWeight = targetNeighbors.get(entity);
-					final double targetWeightActual = targetWeight == null ? 0 : targetWeight;
-
-					similarityRun.add(e.getValue(), targetWeightActual, 1);
+					for (final DatasetEntry datasetEntry: dataset.getNeighbors(entity))
+						ret[dataset.getEntityTypeIndex(datasetEntry.entity.getType())].addGeneric(datasetEntry.entity
+						    .getId(), datasetEntry.weight);
+					return ret;
 				}
 
-				for (final Entry <Entity, Double> e: targetNeighbors.entrySet())
-				{
-					if (sourceNeighbors.containsKey(e.getKey())) continue;
-					similarityRun.add(0, e.getValue(), 1);
-				}
+				final AdjacencyIndex adjacencyIndex = dataset.getAdjacencyIndex();
+				final int typeIndex = dataset.getEntityTypeIndex(entity.getType());
+				final NeighborCursor cursor = adjacencyIndex.cursor();
+				for (cursor.entity(typeIndex, entity.getId()); cursor.next();)
+					ret[cursor.typeIndex()].addGeneric(cursor.id(), cursor.weight());
 
-				final double ret = similarityRun.getSimilarity();
-				assert !Double.isNaN(ret);
-				assert !Double.isInfinite(ret);
 				return ret;
 			}
 
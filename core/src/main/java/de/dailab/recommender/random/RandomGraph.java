@@ -3,9 +3,11 @@ package de.dailab.recommender.random;
 import java.util.Random;
 
 import de.dailab.recommender.dataset.EntityType;
+import de.dailab.recommender.dataset.RelationshipFormat;
 import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.dataset.RelationshipType;
 import de.dailab.recommender.dataset.UnirelationalDataset;
+import de.dailab.recommender.dataset.WeightRange;
 import de.dailab.recommender.matrix.Matrix;
 import de.dailab.recommender.matrix.template.MatrixFactory;
 
@@ -41,14 +43,15 @@ public class RandomGraph
 			final int i = random.nextInt(n);
 			final int j = random.nextInt(n);
 			matrix.set(i, j, 1);
-			matrix.set(j, i, 1);
 		}
 	}
 
 	private static RelationshipSet getRelationshipSet(int n)
 	{
-		final RelationshipSet ret = new RelationshipSet(RELATIONSHIP_TYPE, ENTITY_TYPE, ENTITY_TYPE);
-		final Matrix matrix = MatrixFactory.newMemoryMatrixUnweighted(n);
+		final RelationshipSet ret = new RelationshipSet(RELATIONSHIP_TYPE, ENTITY_TYPE, ENTITY_TYPE,
+		    RelationshipFormat.SYM, WeightRange.UNWEIGHTED);
+		/* Setting (i,j) also sets (j,i) */
+		final Matrix matrix = MatrixFactory.newSymmetricMatrixUnweighted(n);
 
 		ret.setMatrix(matrix);
 		return ret;
@@ -1,9 +1,11 @@
 package de.dailab.recommender.recommend;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -52,7 +54,7 @@ public class FullRecommender
 		@Override
 		public Iterator <Recommendation> recommend(Map <Entity, Double> sources, EntityType targetEntityTypes[])
 		{
-			final LinkedList <Recommendation> ret = new LinkedList <Recommendation>();
+			final List <Recommendation> ret = new ArrayList <Recommendation>();
 
 			for (final EntityType entityType: targetEntityTypes)
 			{
@@ -67,14 +69,17 @@ public class FullRecommender
 					for (final Entry <Entity, Double> e: sources.entrySet())
 						score += e.getValue() * predictorModel.predict(e.getKey(), entity);
 
-					final ListIterator <Recommendation> i = ret.listIterator(0);
-					double lastScore = Double.NaN;
-					while (i.hasNext() && (lastScore = i.next().getScore()) > score);
-					if (lastScore <= score) i.previous();
-					i.add(new Recommendation(new Entity(entityType, id), score));
+					ret.add(new Recommendation(entity, score));
 				}
 			}
 
+			/*
+			 * Sort by descending score. Of recommendations with equal scores, the one computed last comes first; since
+			 * the sort is stable, this is achieved by reversing the list beforehand.
+			 */
+			Collections.reverse(ret);
+			Collections.sort(ret, SCORE_COMPARATOR);
+
 			return ret.iterator();
 		}
 
@@ -102,6 +107,20 @@ public class FullRecommender
 
 	private final Predictor predictor;
 
+	/**
+	 * Compares recommendations by descending score only.
+	 */
+	private static final Comparator <Recommendation> SCORE_COMPARATOR = new Comparator <Recommendation>()
+	{
+		@Override
+		public int compare(Recommendation recommendation_1, Recommendation recommendation_2)
+		{
+			if (recommendation_1.getScore() > recommendation_2.getScore()) return -1;
+			if (recommendation_1.getScore() < recommendation_2.getScore()) return +1;
+			return 0;
+		}
+	};
+
 	@Override
 	public String toString()
 	{
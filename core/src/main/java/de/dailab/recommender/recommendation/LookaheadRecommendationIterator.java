@@ -1,14 +1,15 @@
 package de.dailab.recommender.recommendation;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
-import java.util.Set;
 
 import de.dailab.recommender.dataset.Entity;
+import de.dailab.recommender.dataset.EntityHandle;
+import de.dailab.recommender.dataset.EntityHandleMap;
+import de.dailab.recommender.dataset.EntityType;
 
 /**
  * A recommendation iterator that looks ahead a certain number of recommendations and aggregates duplicate entities.
@@ -59,7 +60,7 @@ public class LookaheadRecommendationIterator
 			insertNext();
 		}
 		final Recommendation ret = queue.remove();
-		queueMap.remove(ret.getEntity());
+		queueMap.put(getHandle(ret.getEntity()), null);
 		return ret;
 	}
 
@@ -86,14 +87,16 @@ public class LookaheadRecommendationIterator
 	private final Queue <Recommendation> queue = new PriorityQueue <Recommendation>();
 
 	/**
-	 * The recommendations in this.queue by their entity.
+	 * The entities already seen, by their handle. Entities in this.queue are mapped to their recommendation; entities
+	 * already returned are mapped to NULL.
 	 */
-	private final Map <Entity, Recommendation> queueMap = new HashMap <Entity, Recommendation>();
+	private final EntityHandleMap <Recommendation> queueMap = new EntityHandleMap <Recommendation>();
 
 	/**
-	 * The entities already seen or in this.queue at the moment.
+	 * The entity types seen so far, by the type index used in handles. There are usually very few entity types, so they
+	 * are searched linearly.
 	 */
-	private final Set <Entity> seen = new HashSet <Entity>();
+	private final List <EntityType> entityTypes = new ArrayList <EntityType>();
 
 	/**
 	 * Insert or add the next recommendation from the iterator into the queue and queue map.
@@ -103,27 +106,39 @@ public class LookaheadRecommendationIterator
 		final Recommendation next = iterator.next();
 
 		final Entity entity = next.getEntity();
+		final long handle = getHandle(entity);
 
-		if (!seen.contains(entity))
+		if (!queueMap.containsKey(handle))
 		{
 			queue.add(next);
-			queueMap.put(entity, next);
-			seen.add(entity);
+			queueMap.put(handle, next);
 		}
 		else
 		{
 			/* If the entity is not in the queue that means it was already returned. Forget about the additional weight. */
-			final Recommendation previousRecommendation = queueMap.get(entity);
+			final Recommendation previousRecommendation = queueMap.get(handle);
 			if (previousRecommendation != null)
 			{
 				assert previousRecommendation.getEntity().equals(entity);
 				queue.remove(previousRecommendation);
-				queueMap.remove(entity);
 				final Recommendation newRecommendation = new Recommendation(entity, previousRecommendation.getScore()
 				    + next.getScore());
 				queue.add(newRecommendation);
-				queueMap.put(entity, newRecommendation);
+				queueMap.put(handle, newRecommendation);
 			}
 		}
 	}
+
+	/**
+	 * The handle of an entity, registering its entity type if it has not been seen yet.
+	 */
+	private long getHandle(Entity entity)
+	{
+		final EntityType entityType = entity.getType();
+		int typeIndex = 0;
+		while (typeIndex < entityTypes.size() && !entityTypes.get(typeIndex).equals(entityType))
+			++typeIndex;
+		if (typeIndex == entityTypes.size()) entityTypes.add(entityType);
+		return EntityHandle.pack(typeIndex, entity.getId());
+	}
 }
@@ -0,0 +1,671 @@
+package de.dailab.recommender.text;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import de.dailab.recommender.matrix.template.MatrixBuilder;
+import de.dailab.recommender.matrix.template.ParallelMultiplication;
+
+/**
+ * Parser for the data lines of relationship files, as used by TextReader.readRelationshipSet(). The file is mapped
+ * into memory and split into chunks that end at line ends, which are parsed in parallel using the executor service of
+ * ParallelMultiplication. Numbers are parsed directly from the bytes of the file without creating strings. Each chunk
+ * collects its entries in coordinate format together with the largest subject and object IDs, so that the size of the
+ * matrix is known after a single pass.
+ * <p>
+ * Compressed files cannot be mapped; they are decompressed in a separate thread into chunks that are parsed in parallel
+ * as they become available.
+ * <p>
+ * Lines beginning with '%' and empty lines are skipped. Each other line contains the subject and object IDs, beginning
+ * at 1, and optionally the weight, separated by whitespace. Further columns are ignored.
+ * 
+ * @author kunegis
+ */
+final class RelationshipParser
+{
+	/**
+	 * A parser for the given relationship file. The file is read by parse().
+	 * 
+	 * @param file The relationship file
+	 * @param weighted Whether to parse weights; when FALSE, the weight column is ignored and all weights are one
+	 */
+	RelationshipParser(File file, boolean weighted)
+	{
+		this.file = file;
+		this.weighted = weighted;
+	}
+
+	/**
+	 * Parse all entries of the file.
+	 * 
+	 * @throws IOException on errors reading the file
+	 * @throws TextSyntaxException when a data line is invalid; the first invalid line of the file is reported
+	 */
+	void parse()
+	    throws IOException, TextSyntaxException
+	{
+		if (Utils.isCompressed(file))
+			parseStream();
+		else
+			parseMapped();
+
+		for (final Chunk chunk: chunks)
+		{
+			if (chunk.ioException != null) throw chunk.ioException;
+			if (chunk.errorPosition >= 0) throw exception(chunk.errorPosition, chunk.errorMessage);
+			rowCount = Math.max(rowCount, chunk.rowMax);
+			colCount = Math.max(colCount, chunk.colMax);
+			count += chunk.count;
+		}
+	}
+
+	/**
+	 * Map the file into memory and parse its chunks in parallel.
+	 */
+	private void parseMapped()
+	    throws IOException
+	{
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			final FileChannel channel = randomAccessFile.getChannel();
+			final long size = channel.size();
+
+			/* Split into chunks ending at line ends */
+			final long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / CHUNK_COUNT));
+			final List <Chunk> chunkList = new ArrayList <Chunk>();
+			for (long begin = 0; begin < size;)
+			{
+				final long end = begin + chunkSize >= size ? size : findLineEnd(channel, begin + chunkSize - 1, size);
+				chunkList.add(new Chunk(begin, end));
+				begin = end;
+			}
+			chunks = chunkList.toArray(new Chunk[chunkList.size()]);
+
+			ParallelMultiplication.runRanges(chunks.length, new ParallelMultiplication.Range()
+			{
+				@Override
+				public void run(int begin, int end)
+				{
+					for (int c = begin; c < end; ++c)
+					{
+						final Chunk chunk = chunks[c];
+						try
+						{
+							chunk.parse(channel.map(FileChannel.MapMode.READ_ONLY, chunk.begin, chunk.end
+							    - chunk.begin), weighted);
+						}
+						catch (final IOException ioException)
+						{
+							chunk.ioException = ioException;
+						}
+					}
+				}
+			});
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Decompress the file in a separate thread, and parse the chunks it produces in parallel while the following
+	 * chunks are decompressed. The chunks waiting to be parsed are limited to QUEUE_LENGTH.
+	 */
+	private void parseStream()
+	    throws IOException
+	{
+		final BlockingQueue <Object> queue = new ArrayBlockingQueue <Object>(QUEUE_LENGTH);
+		final Thread thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Object last = END;
+				try
+				{
+					decompress(queue);
+				}
+				catch (final InterruptedException interruptedException)
+				{
+					/* Parsing was aborted */
+					return;
+				}
+				catch (final IOException ioException)
+				{
+					last = ioException;
+				}
+				catch (final RuntimeException runtimeException)
+				{
+					last = runtimeException;
+				}
+				catch (final Error error)
+				{
+					last = error;
+				}
+
+				try
+				{
+					queue.put(last);
+				}
+				catch (final InterruptedException interruptedException)
+				{
+					/* Parsing was aborted */
+				}
+			}
+		}, "RelationshipParser");
+		thread.setDaemon(true);
+		thread.start();
+
+		final List <Chunk> chunkList = new ArrayList <Chunk>();
+		try
+		{
+			/* Parse all chunks that are ready at once */
+			final List <Chunk> batch = new ArrayList <Chunk>();
+			for (boolean done = false; !done;)
+			{
+				batch.clear();
+				Object element = queue.take();
+				do
+				{
+					if (element == END)
+						done = true;
+					else if (element instanceof IOException)
+						throw (IOException) element;
+					else if (element instanceof RuntimeException)
+						throw (RuntimeException) element;
+					else if (element instanceof Error)
+						throw (Error) element;
+					else
+						batch.add((Chunk) element);
+				}
+				while (!done && (element = queue.poll()) != null);
+
+				ParallelMultiplication.runRanges(batch.size(), new ParallelMultiplication.Range()
+				{
+					@Override
+					public void run(int begin, int end)
+					{
+						for (int c = begin; c < end; ++c)
+						{
+							final Chunk chunk = batch.get(c);
+							chunk.parse(chunk.buffer, weighted);
+							chunk.buffer = null;
+						}
+					}
+				});
+				chunkList.addAll(batch);
+			}
+		}
+		catch (final InterruptedException interruptedException)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading " + file.getPath());
+		}
+		finally
+		{
+			thread.interrupt();
+		}
+
+		chunks = chunkList.toArray(new Chunk[chunkList.size()]);
+	}
+
+	/**
+	 * Read the uncompressed content of the file and put it into the queue in chunks that end at line ends. A line
+	 * longer than a chunk gives a larger chunk.
+	 */
+	private void decompress(BlockingQueue <Object> queue)
+	    throws IOException, InterruptedException
+	{
+		final InputStream inputStream = Utils.openInputStream(file);
+		try
+		{
+			long position = 0;
+			byte bytes[] = new byte[STREAM_CHUNK_SIZE];
+			int length = 0;
+			boolean eof = false;
+			while (!eof)
+			{
+				final int read = inputStream.read(bytes, length, bytes.length - length);
+				if (read < 0)
+					eof = true;
+				else
+					length += read;
+				if (!eof && length < bytes.length) continue;
+
+				/* The chunk ends after the last line end, or at the end of the file */
+				int end = length;
+				if (!eof)
+				{
+					while (end > 0 && bytes[end - 1] != '\n')
+						--end;
+				}
+
+				final byte next[] = new byte[end == 0 && !eof ? 2 * bytes.length : bytes.length];
+				if (end > 0)
+				{
+					final Chunk chunk = new Chunk(position, position + end);
+					chunk.buffer = ByteBuffer.wrap(bytes, 0, end);
+					queue.put(chunk);
+					position += end;
+				}
+				System.arraycopy(bytes, end, next, 0, length - end);
+				length -= end;
+				bytes = next;
+			}
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * @return The largest subject ID found, i.e. the smallest possible number of rows
+	 */
+	int getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @return The largest object ID found, i.e. the smallest possible number of columns
+	 */
+	int getColCount()
+	{
+		return colCount;
+	}
+
+	/**
+	 * @return The number of data lines
+	 */
+	int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Add all parsed entries to a matrix builder, in the order of the file, and release them.
+	 * 
+	 * @param matrixBuilder A matrix builder of at least getRowCount() rows and getColCount() columns
+	 */
+	void addTo(MatrixBuilder matrixBuilder)
+	{
+		for (final Chunk chunk: chunks)
+		{
+			matrixBuilder.add(chunk.rowIndexes, chunk.colIndexes, chunk.values, chunk.count);
+			chunk.rowIndexes = chunk.colIndexes = null;
+			chunk.values = null;
+		}
+	}
+
+	/**
+	 * The position after the first line end at or after POSITION, or SIZE when there is none.
+	 */
+	private static long findLineEnd(FileChannel channel, long position, long size)
+	    throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+		while (position < size)
+		{
+			buffer.clear();
+			final int length = channel.read(buffer, position);
+			if (length <= 0) break;
+			for (int i = 0; i < length; ++i)
+				if (buffer.get(i) == '\n') return position + i + 1;
+			position += length;
+		}
+		return size;
+	}
+
+	/**
+	 * A syntax exception for the line containing the given position, giving its line number as counted from the
+	 * beginning of the file.
+	 */
+	private TextSyntaxException exception(long position, String message)
+	    throws IOException
+	{
+		final InputStream inputStream = Utils.openInputStream(file);
+		try
+		{
+			int lineNumber = 1;
+			long lineBegin = 0;
+			for (long p = 0; p < position; ++p)
+			{
+				if (inputStream.read() == '\n')
+				{
+					++lineNumber;
+					lineBegin = p + 1;
+				}
+			}
+			assert lineBegin == position;
+
+			final ByteArrayOutputStream line = new ByteArrayOutputStream();
+			for (int c; (c = inputStream.read()) >= 0 && c != '\n';)
+				line.write(c);
+
+			return new TextSyntaxException(String.format("%s:%s:  %s:  %s", file.getPath(), lineNumber, message, line
+			    .toString("UTF-8")));
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Parse a weight from the bytes BEGIN (inclusive) to END (exclusive) of a buffer. Decimal numbers of at most 15
+	 * significant digits and a decimal exponent of at most 22 in absolute value are parsed directly; the result is then
+	 * correctly rounded, as the mantissa and the power of ten are both exact doubles. All other numbers are parsed using
+	 * Double.parseDouble().
+	 * 
+	 * @throws NumberFormatException when the bytes are not a number
+	 */
+	static double parseDouble(ByteBuffer buffer, int begin, int end)
+	{
+		int position = begin;
+		boolean negative = false;
+		byte c = buffer.get(position);
+		if (c == '-' || c == '+')
+		{
+			negative = c == '-';
+			++position;
+		}
+
+		long mantissa = 0;
+		int digits = 0, exponent = 0;
+		boolean point = false, any = false;
+		for (; position < end; ++position)
+		{
+			c = buffer.get(position);
+			if (c >= '0' && c <= '9')
+			{
+				any = true;
+				if (mantissa != 0 || c != '0') ++digits;
+				mantissa = 10 * mantissa + (c - '0');
+				if (point) --exponent;
+			}
+			else if (c == '.' && !point)
+				point = true;
+			else
+				break;
+		}
+
+		if (any && digits <= 15 && position < end && (c == 'e' || c == 'E'))
+		{
+			++position;
+			boolean negativeExponent = false;
+			if (position < end && (buffer.get(position) == '-' || buffer.get(position) == '+'))
+			    negativeExponent = buffer.get(position++) == '-';
+			int e = 0;
+			final int exponentBegin = position;
+			for (; position < end && (c = buffer.get(position)) >= '0' && c <= '9'; ++position)
+				if (e < 1000) e = 10 * e + (c - '0');
+			if (position == exponentBegin) any = false;
+			exponent += negativeExponent ? -e : e;
+		}
+
+		if (any && digits <= 15 && position == end && exponent >= -22 && exponent <= 22)
+		{
+			double ret = mantissa;
+			if (exponent > 0)
+				ret *= POWERS_OF_TEN[exponent];
+			else if (exponent < 0) ret /= POWERS_OF_TEN[-exponent];
+			return negative ? -ret : ret;
+		}
+
+		/* Other syntax, e.g. many digits or "NaN" */
+		final char chars[] = new char[end - begin];
+		for (int i = begin; i < end; ++i)
+			chars[i - begin] = (char) (buffer.get(i) & 0xFF);
+		return Double.parseDouble(new String(chars));
+	}
+
+	/**
+	 * A range of the file and the entries found in it.
+	 */
+	private static final class Chunk
+	{
+		Chunk(long begin, long end)
+		{
+			this.begin = begin;
+			this.end = end;
+		}
+
+		/**
+		 * Parse all lines in the buffer, which begins at a line beginning and ends at a line end or at the end of the
+		 * file. Stop at the first invalid line, setting ERROR_POSITION.
+		 */
+		void parse(ByteBuffer buffer, boolean weighted)
+		{
+			final int limit = buffer.limit();
+			rowIndexes = new int[INITIAL_CAPACITY];
+			colIndexes = new int[INITIAL_CAPACITY];
+			values = weighted ? new double[INITIAL_CAPACITY] : null;
+
+			int position = 0;
+			while (position < limit)
+			{
+				final int lineBegin = position;
+
+				if (buffer.get(position) == '%')
+				{
+					position = skipLine(buffer, position, limit);
+					continue;
+				}
+
+				position = skipSpace(buffer, position, limit);
+				if (position == limit || buffer.get(position) == '\n')
+				{
+					/* Empty line */
+					++position;
+					continue;
+				}
+
+				/* Subject */
+				final int subject = parseId(buffer, position, limit);
+				if (subject <= 0)
+				{
+					error(lineBegin, "Invalid subject ID");
+					return;
+				}
+				position = skipSpace(buffer, idEnd, limit);
+
+				/* Object */
+				final int object = position == idEnd ? -1 : parseId(buffer, position, limit);
+				if (object <= 0)
+				{
+					error(lineBegin, "Invalid object ID");
+					return;
+				}
+				position = skipSpace(buffer, idEnd, limit);
+
+				/* Weight */
+				double weight = 1.;
+				if (weighted && position < limit && buffer.get(position) != '\n')
+				{
+					int weightEnd = position;
+					while (weightEnd < limit && !isSpace(buffer.get(weightEnd)) && buffer.get(weightEnd) != '\n')
+						++weightEnd;
+					try
+					{
+						weight = parseDouble(buffer, position, weightEnd);
+					}
+					catch (final NumberFormatException numberFormatException)
+					{
+						error(lineBegin, String.format("Parsing weight:  %s", numberFormatException));
+						return;
+					}
+				}
+
+				add(subject - 1, object - 1, weight);
+				if (subject > rowMax) rowMax = subject;
+				if (object > colMax) colMax = object;
+
+				position = skipLine(buffer, position, limit);
+			}
+		}
+
+		/**
+		 * Parse a positive decimal integer beginning at POSITION and set ID_END to the position after it.
+		 * 
+		 * @return The integer, or -1 when there are no digits or the integer is too large
+		 */
+		private int parseId(ByteBuffer buffer, int position, int limit)
+		{
+			long ret = 0;
+			final int begin = position;
+			byte c;
+			while (position < limit && (c = buffer.get(position)) >= '0' && c <= '9')
+			{
+				ret = 10 * ret + (c - '0');
+				if (ret > Integer.MAX_VALUE) return -1;
+				++position;
+			}
+			idEnd = position;
+			if (position == begin) return -1;
+			if (position < limit && !isSpace(buffer.get(position)) && buffer.get(position) != '\n') return -1;
+			return (int) ret;
+		}
+
+		private void add(int rowIndex, int colIndex, double weight)
+		{
+			if (count == rowIndexes.length)
+			{
+				final int capacity = 2 * count;
+				final int newRowIndexes[] = new int[capacity];
+				final int newColIndexes[] = new int[capacity];
+				System.arraycopy(rowIndexes, 0, newRowIndexes, 0, count);
+				System.arraycopy(colIndexes, 0, newColIndexes, 0, count);
+				rowIndexes = newRowIndexes;
+				colIndexes = newColIndexes;
+				if (values != null)
+				{
+					final double newValues[] = new double[capacity];
+					System.arraycopy(values, 0, newValues, 0, count);
+					values = newValues;
+				}
+			}
+
+			rowIndexes[count] = rowIndex;
+			colIndexes[count] = colIndex;
+			if (values != null) values[count] = weight;
+			++count;
+		}
+
+		private void error(int lineBegin, String message)
+		{
+			errorPosition = begin + lineBegin;
+			errorMessage = message;
+		}
+
+		final long begin, end;
+
+		/*
+		 * The entries in coordinate format, with the subject and object IDs minus one. The first COUNT entries are
+		 * used. VALUES is NULL when weights are not parsed.
+		 */
+		int count = 0;
+		int rowIndexes[], colIndexes[];
+		double values[];
+
+		/**
+		 * The largest subject and object IDs.
+		 */
+		int rowMax = 0, colMax = 0;
+
+		/**
+		 * The position of the first invalid line in the file, or -1, and the error message.
+		 */
+		long errorPosition = -1;
+		String errorMessage;
+
+		IOException ioException;
+
+		/**
+		 * The content of the chunk when the file is decompressed; NULL when the file is mapped, and once parsed.
+		 */
+		ByteBuffer buffer;
+
+		/**
+		 * The position after the last integer parsed by parseId().
+		 */
+		private int idEnd;
+	}
+
+	/**
+	 * The position after the line end following POSITION, or LIMIT.
+	 */
+	private static int skipLine(ByteBuffer buffer, int position, int limit)
+	{
+		while (position < limit && buffer.get(position) != '\n')
+			++position;
+		return position + 1 > limit ? limit : position + 1;
+	}
+
+	/**
+	 * The first position at or after POSITION that is not whitespace other than a line end.
+	 */
+	private static int skipSpace(ByteBuffer buffer, int position, int limit)
+	{
+		while (position < limit && isSpace(buffer.get(position)))
+			++position;
+		return position;
+	}
+
+	/**
+	 * Whether C is whitespace other than a line end. A carriage return is considered whitespace, so that lines ending
+	 * in CR LF are accepted.
+	 */
+	private static boolean isSpace(byte c)
+	{
+		return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B;
+	}
+
+	private final File file;
+	private final boolean weighted;
+
+	/**
+	 * The chunks in file order; NULL before parse() is called.
+	 */
+	private Chunk chunks[];
+
+	private int rowCount = 0, colCount = 0, count = 0;
+
+	/**
+	 * The number of chunks into which a file is split, unless this gives chunks smaller than MIN_CHUNK_SIZE or larger
+	 * than MAX_CHUNK_SIZE bytes. Chunks are distributed over the threads in contiguous ranges.
+	 */
+	private static final int CHUNK_COUNT = 64;
+	private static final long MIN_CHUNK_SIZE = 1 << 20, MAX_CHUNK_SIZE = 1 << 26;
+
+	/**
+	 * The size of the chunks of a compressed file, and the number of chunks that are decompressed ahead of parsing.
+	 */
+	private static final int STREAM_CHUNK_SIZE = 1 << 20;
+	private static final int QUEUE_LENGTH = 2 * Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Put into the queue after the last chunk of a compressed file.
+	 */
+	private static final Object END = new Object();
+
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	/**
+	 * The powers of ten that are exact doubles. Also used by TextOutput.
+	 */
+	static final double POWERS_OF_TEN[] = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+}
@@ -19,7 +19,8 @@ public class TextDataset
     extends Dataset
 {
 	/**
-	 * Load a graph dataset from its directory.
+	 * Load a graph dataset from its directory. Files may be compressed with gzip, in which case their name ends in
+	 * ".gz"; when both a compressed and an uncompressed file are present, the uncompressed one is read.
 	 * 
 	 * @param dir directory containing the ent.* and rel.* files.
 	 * @throws IOException while reading the files
@@ -32,12 +33,20 @@ public class TextDataset
 		 * Entities
 		 */
 		for (final File fileEnt: dir.listFiles(new FilenameFilterRegexp("ent\\..*[^~]")))
-			addEntitySet(TextReader.loadEntitySet(fileEnt));
+			if (!isShadowed(fileEnt)) addEntitySet(TextReader.loadEntitySet(fileEnt));
 
 		/*
 		 * Relationships
 		 */
 		for (final File fileRel: dir.listFiles(new FilenameFilterRegexp("rel\\..*[^~]")))
-			addRelationshipSet(TextReader.readRelationshipSet(fileRel));
+			if (!isShadowed(fileRel)) addRelationshipSet(TextReader.readRelationshipSet(fileRel));
+	}
+
+	/**
+	 * Whether FILE is compressed and the uncompressed file is also present.
+	 */
+	private static boolean isShadowed(File file)
+	{
+		return Utils.isCompressed(file) && new File(file.getParentFile(), Utils.getUncompressedName(file)).exists();
 	}
 }
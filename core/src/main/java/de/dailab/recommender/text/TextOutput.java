@@ -0,0 +1,272 @@
+package de.dailab.recommender.text;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffered output of a text dataset file, as used by TextWriter. Bytes are collected in a large buffer that is
+ * written through a file channel when full. Integers and floating point numbers are formatted directly into the
+ * buffer without creating strings.
+ * <p>
+ * Floating point numbers are written with the fewest decimal places with which they are read back exactly, as in
+ * "0.1", "2.75" or "1.0E-20". Numbers that need more than 15 significant digits, such as most random numbers, are
+ * written as by Double.toString().
+ * <p>
+ * Instances must not be used by several threads at once.
+ * 
+ * @author kunegis
+ */
+final class TextOutput
+{
+	/**
+	 * Create or truncate a file for writing.
+	 * 
+	 * @param file The file to write
+	 * @throws IOException on opening the file
+	 */
+	TextOutput(File file)
+	    throws IOException
+	{
+		outputStream = new FileOutputStream(file);
+		channel = outputStream.getChannel();
+	}
+
+	/**
+	 * Write an ASCII character.
+	 */
+	void write(char c)
+	    throws IOException
+	{
+		if (length == bytes.length) flush();
+		bytes[length++] = (byte) c;
+	}
+
+	/**
+	 * Write a string. Characters other than ASCII are encoded in UTF-8, as read by TextReader.
+	 */
+	void write(String string)
+	    throws IOException
+	{
+		final int stringLength = string.length();
+		for (int i = 0; i < stringLength; ++i)
+		{
+			if (string.charAt(i) >= 0x80)
+			{
+				write(string.getBytes(Utils.CHARSET));
+				return;
+			}
+		}
+
+		for (int i = 0; i < stringLength; ++i)
+			write(string.charAt(i));
+	}
+
+	/**
+	 * Write an integer in decimal notation.
+	 */
+	void write(long value)
+	    throws IOException
+	{
+		if (value == Long.MIN_VALUE)
+		{
+			write(Long.toString(value));
+			return;
+		}
+
+		if (bytes.length - length < MAX_LONG_LENGTH) flush();
+		if (value < 0)
+		{
+			bytes[length++] = '-';
+			value = -value;
+		}
+
+		/* Write the digits backward, then reverse them */
+		final int begin = length;
+		do
+		{
+			bytes[length++] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		while (value != 0);
+		reverse(begin, length);
+	}
+
+	/**
+	 * Write a floating point number such that it is read back exactly by TextReader and Double.parseDouble().
+	 * 
+	 * @param value The number
+	 * @param single Whether the number only needs to be read back exactly when converted to float; fewer digits are
+	 *        then written
+	 */
+	void write(double value, boolean single)
+	    throws IOException
+	{
+		final double magnitude = Math.abs(value);
+
+		if (magnitude < MAX_FIXED && value == (long) value && (value != 0 || 1 / value > 0))
+		{
+			write((long) value);
+			return;
+		}
+
+		/*
+		 * Find the fewest decimal places P such that the integer M = VALUE * 10^P gives back VALUE when divided by
+		 * 10^P. As M and 10^P are exact doubles, the division is correctly rounded, and so is the parsing of the
+		 * decimal number M * 10^-P. The check therefore gives the same result as parsing the written number.
+		 */
+		if (magnitude < MAX_FIXED)
+		{
+			for (int p = 1; p < RelationshipParser.POWERS_OF_TEN.length; ++p)
+			{
+				final double scaled = Math.rint(value * RelationshipParser.POWERS_OF_TEN[p]);
+				if (Math.abs(scaled) >= MAX_FIXED) break;
+				final double parsed = scaled / RelationshipParser.POWERS_OF_TEN[p];
+				if (single ? (float) parsed == (float) value : parsed == value)
+				{
+					final boolean negative = value < 0 || 1 / value < 0;
+					if (magnitude < MIN_FIXED && magnitude != 0)
+						writeScientific((long) scaled, p, negative);
+					else
+						writeFixed((long) scaled, p, negative);
+					return;
+				}
+			}
+		}
+
+		write(single ? Float.toString((float) value) : Double.toString(value));
+	}
+
+	/**
+	 * Write all buffered bytes and close the file.
+	 */
+	void close()
+	    throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			outputStream.close();
+		}
+	}
+
+	/**
+	 * Write the number MANTISSA * 10^-PLACES with exactly PLACES decimal places.
+	 * 
+	 * @param negative Whether the number is negative; needed when MANTISSA is zero
+	 */
+	private void writeFixed(long mantissa, int places, boolean negative)
+	    throws IOException
+	{
+		if (bytes.length - length < MAX_LONG_LENGTH + places + 2) flush();
+		if (negative) bytes[length++] = '-';
+		mantissa = Math.abs(mantissa);
+
+		final int begin = length;
+		for (int i = 0; i < places; ++i)
+		{
+			bytes[length++] = (byte) ('0' + mantissa % 10);
+			mantissa /= 10;
+		}
+		bytes[length++] = '.';
+		do
+		{
+			bytes[length++] = (byte) ('0' + mantissa % 10);
+			mantissa /= 10;
+		}
+		while (mantissa != 0);
+		reverse(begin, length);
+	}
+
+	/**
+	 * Write the number MANTISSA * 10^-PLACES in scientific notation as in Double.toString(), e.g. "1.25E-5". The
+	 * decimal number is the same as that written by writeFixed(), so it is parsed to the same value.
+	 */
+	private void writeScientific(long mantissa, int places, boolean negative)
+	    throws IOException
+	{
+		if (bytes.length - length < 2 * MAX_LONG_LENGTH) flush();
+		if (negative) bytes[length++] = '-';
+		mantissa = Math.abs(mantissa);
+
+		final int begin = length;
+		int digits = 0;
+		do
+		{
+			bytes[length++] = (byte) ('0' + mantissa % 10);
+			mantissa /= 10;
+			++digits;
+		}
+		while (mantissa != 0);
+		reverse(begin, length);
+
+		/* Insert the point after the first digit */
+		System.arraycopy(bytes, begin + 1, bytes, begin + 2, digits - 1);
+		bytes[begin + 1] = '.';
+		++length;
+		if (digits == 1) bytes[length++] = '0';
+
+		bytes[length++] = 'E';
+		write((long) (digits - 1 - places));
+	}
+
+	private void write(byte array[])
+	    throws IOException
+	{
+		for (final byte b: array)
+		{
+			if (length == bytes.length) flush();
+			bytes[length++] = b;
+		}
+	}
+
+	private void reverse(int begin, int end)
+	{
+		for (--end; begin < end; ++begin, --end)
+		{
+			final byte b = bytes[begin];
+			bytes[begin] = bytes[end];
+			bytes[end] = b;
+		}
+	}
+
+	private void flush()
+	    throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		length = 0;
+	}
+
+	private final FileOutputStream outputStream;
+	private final FileChannel channel;
+
+	/**
+	 * The buffer, of which the first LENGTH bytes are not yet written.
+	 */
+	private final byte bytes[] = new byte[BUFFER_SIZE];
+	private int length = 0;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * The length of the longest decimal representation of a long, including the sign.
+	 */
+	private static final int MAX_LONG_LENGTH = 20;
+
+	/**
+	 * Numbers smaller than this are written in scientific notation, as by Double.toString().
+	 */
+	private static final double MIN_FIXED = 1e-3;
+
+	/**
+	 * Numbers are written in fixed point notation when the mantissa is smaller than this, i.e. has at most 15 digits.
+	 */
+	private static final double MAX_FIXED = 1e15;
+}
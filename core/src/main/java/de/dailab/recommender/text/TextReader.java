@@ -2,12 +2,10 @@ package de.dailab.recommender.text;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.InputMismatchException;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -19,8 +17,7 @@ import de.dailab.recommender.dataset.RelationshipFormat;
 import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.dataset.RelationshipType;
 import de.dailab.recommender.dataset.WeightRange;
-import de.dailab.recommender.matrix.Matrix;
-import de.dailab.recommender.matrix.template.MatrixFactory;
+import de.dailab.recommender.matrix.template.MatrixBuilder;
 
 /**
  * Utility for reading datasets in text files. These functions load single entity sets and relationship sets. To load a
@@ -29,6 +26,9 @@ import de.dailab.recommender.matrix.template.MatrixFactory;
  * The format is the one used in the Graph Store.
  * <p>
  * Since the relationship type names are used in filenames, they are escaped using the Utils class.
+ * <p>
+ * Files are encoded in UTF-8. Files whose names end in ".gz" are compressed with gzip and are decompressed while
+ * reading. The suffix is not part of the entity or relationship type name.
  * 
  * @see TextWriter
  * @see TextDataset
@@ -42,7 +42,7 @@ public class TextReader
 	 * <p>
 	 * Subject and object type are NULL if they are not specified in the text file.
 	 * 
-	 * @param file The relationship file; usually called "out.*" or rel.*"
+	 * @param file The relationship file; usually called "out.*" or rel.*", optionally followed by ".gz"
 	 * 
 	 * @return The corresponding relationship set
 	 * 
@@ -52,7 +52,7 @@ public class TextReader
 	public static RelationshipSet readRelationshipSet(File file)
 	    throws IOException, TextSyntaxException
 	{
-		final String basename = file.getName();
+		final String basename = Utils.getUncompressedName(file);
 		Matcher matcher = Pattern.compile("(?:rel|out)\\.(.*)").matcher(basename);
 		if (!matcher.matches())
 		    throw new IllegalArgumentException(String.format("Relationship filename does not match {rel,out}.*:  %s",
@@ -156,6 +156,15 @@ public class TextReader
 
 		if (weightRange == WeightRange.UNWEIGHTED) weightType = boolean.class.getSimpleName();
 
+		graphReader.close();
+
+		/*
+		 * Data lines. The largest IDs are found in the same pass.
+		 */
+		final RelationshipParser relationshipParser = new RelationshipParser(file, !boolean.class.getSimpleName()
+		    .equals(weightType));
+		relationshipParser.parse();
+
 		/* Line 2 */
 		/* The files contains indices beginning at 1 */
 		int rowMax = -1, colMax = -1;
@@ -175,30 +184,16 @@ public class TextReader
 				throw graphReader.exception(numberFormatException);
 			}
 
+			if (relationshipParser.getRowCount() > rowMax || relationshipParser.getColCount() > colMax)
+			    throw graphReader.exception("Entity IDs larger than counts");
 		}
 		else
 		{
 			/*
-			 * If line 2 of the header is not present, parse the whole file to get the line/subject/object count.
+			 * If line 2 of the header is not present, the counts are the largest IDs.
 			 */
-			while (graphReader.readLine() != null)
-			{
-				/* ignore other header lines forward-compatibly */
-				if (graphReader.getLine().charAt(0) == '%') continue;
-				final FastScanner scanner = new FastScanner(graphReader.getLine());
-				try
-				{
-					final int row = scanner.nextUnsigned();
-					final int col = scanner.nextUnsigned();
-					rowMax = Math.max(row, rowMax);
-					colMax = Math.max(col, colMax);
-				}
-				catch (final InputMismatchException inputMismatchException)
-				{
-					throw graphReader.exception(inputMismatchException);
-				}
-			}
-			graphReader.reset();
+			rowMax = relationshipParser.getRowCount();
+			colMax = relationshipParser.getColCount();
 
 			if (relationshipFormat == RelationshipFormat.ASYM || relationshipFormat == RelationshipFormat.SYM)
 			{
@@ -210,39 +205,18 @@ public class TextReader
 		final int rowCount = rowMax, colCount = colMax;
 
 		/*
-		 * Load
+		 * Load. Entries are collected and the matrix built at once; repeated entries overwrite earlier ones.
 		 */
-		final Matrix matrix = MatrixFactory.newMemoryMatrix(rowCount, colCount, weightType);
-
-		while (graphReader.readLine() != null)
-		{
-			if (graphReader.getLine().charAt(0) == '%') continue;
-
-			final FastScanner fastScanner = new FastScanner(graphReader.getLine());
-			final int subject = fastScanner.nextUnsigned();
-			final int object = fastScanner.nextUnsigned();
-
-			final String weightString = fastScanner.nextNonspace();
-
-			try
-			{
-				final int row = -1 + subject;
-				final int col = -1 + object;
-
-				final double weight = weightString == null ? 1. : Double.parseDouble(weightString);
-
-				matrix.set(row, col, weight);
-			}
-			catch (final NumberFormatException numberFormatException)
-			{
-				throw graphReader.exception(String.format("Parsing weight \"%s\":  %s", weightString,
-				    numberFormatException));
-			}
-		}
+		final MatrixBuilder matrixBuilder = new MatrixBuilder(rowCount, colCount, weightType);
+		relationshipParser.addTo(matrixBuilder);
 
 		final RelationshipSet ret = new RelationshipSet(relationshipType, subjectType, objectType, relationshipFormat,
 		    weightRange);
-		ret.setMatrix(matrix);
+		/*
+		 * Each edge of a symmetric relationship set is stored once, as in the file, and not as a symmetric matrix, so
+		 * that Dataset.getNeighbors() finds it once from each of its entities.
+		 */
+		ret.setMatrix(matrixBuilder.build());
 
 		return ret;
 	}
@@ -264,7 +238,7 @@ public class TextReader
 		 * Filename
 		 */
 		{
-			final String basename = file.getName();
+			final String basename = Utils.getUncompressedName(file);
 			final Matcher matcher = Pattern.compile("ent\\.(.*)").matcher(basename);
 			if (!matcher.matches())
 			    throw new IllegalArgumentException(String.format("Entity filename does not match ent.*:  %s", basename));
@@ -371,6 +345,7 @@ public class TextReader
 			metadata = textReader.parseEntityLine(line, id);
 			ret.setMetadataValues(id[0] - 1, metadata);
 		}
+		textReader.close();
 
 		return ret;
 	}
@@ -488,15 +463,16 @@ public class TextReader
 	/** Number of last line read, beginning at 1, 0 when nothing was read yet. */
 	private int lineNumber;
 
-	private FileReader fileReader;
 	private BufferedReader bufferedReader;
 
+	/**
+	 * @param file A dataset file; compressed files are decompressed while reading
+	 */
 	private TextReader(File file)
-	    throws FileNotFoundException
+	    throws IOException
 	{
 		this.file = file;
-		fileReader = new FileReader(file);
-		bufferedReader = new BufferedReader(fileReader);
+		bufferedReader = new BufferedReader(new InputStreamReader(Utils.openInputStream(file), Utils.CHARSET));
 		lineNumber = 0;
 	}
 
@@ -514,11 +490,17 @@ public class TextReader
 	}
 
 	private void reset()
-	    throws FileNotFoundException
+	    throws IOException
 	{
+		bufferedReader.close();
 		lineNumber = 0;
-		fileReader = new FileReader(file);
-		bufferedReader = new BufferedReader(fileReader);
+		bufferedReader = new BufferedReader(new InputStreamReader(Utils.openInputStream(file), Utils.CHARSET));
+	}
+
+	private void close()
+	    throws IOException
+	{
+		bufferedReader.close();
 	}
 
 	/**
@@ -1,20 +1,24 @@
 package de.dailab.recommender.text;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import de.dailab.recommender.dataset.Dataset;
 import de.dailab.recommender.dataset.EntitySet;
 import de.dailab.recommender.dataset.MetadataName;
 import de.dailab.recommender.dataset.RelationshipSet;
-import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.template.ParallelMultiplication;
 
 /**
- * Write datasets to text files.
+ * Write datasets to text files. Numbers are formatted directly into a large buffer, and the files of a dataset can be
+ * written in parallel. The files are read back exactly by TextReader.
+ * 
+ * @see TextReader
  * 
  * @author kunegis
  */
@@ -30,20 +34,66 @@ public class TextWriter
 	public static void write(File dir, Dataset dataset)
 	    throws IOException
 	{
-		for (final EntitySet entitySet: dataset.getEntitySets())
-		{
-			final File file = new File(dir, String.format("ent.%s", Utils.escapeName(entitySet.getType().getName())));
+		write(dir, dataset, false);
+	}
 
-			writeEntitySet(file, entitySet);
-		}
+	/**
+	 * Write a given dataset into text files in a given directory, optionally writing several files in parallel using
+	 * the executor service of ParallelMultiplication.
+	 * 
+	 * @param dir The directory to write the files into
+	 * @param dataset The dataset to dump
+	 * @param parallel Whether to write several files at once
+	 * @throws IOException on IO errors; when several files fail, the exception of the first is thrown
+	 */
+	public static void write(final File dir, Dataset dataset, boolean parallel)
+	    throws IOException
+	{
+		/* Entity sets and relationship sets in one list */
+		final List <Object> sets = new ArrayList <Object>();
+		sets.addAll(dataset.getEntitySets());
+		sets.addAll(dataset.getRelationshipSets());
+		final IOException ioExceptions[] = new IOException[sets.size()];
 
-		for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
+		final ParallelMultiplication.Range range = new ParallelMultiplication.Range()
 		{
-			final File file = new File(dir, String.format("rel.%s", Utils.escapeName(relationshipSet.getType()
-			    .getName())));
+			@Override
+			public void run(int begin, int end)
+			{
+				for (int i = begin; i < end; ++i)
+				{
+					try
+					{
+						if (sets.get(i) instanceof EntitySet)
+						{
+							final EntitySet entitySet = (EntitySet) sets.get(i);
+							final File file = new File(dir, String.format("ent.%s", Utils.escapeName(entitySet
+							    .getType().getName())));
+							writeEntitySet(file, entitySet);
+						}
+						else
+						{
+							final RelationshipSet relationshipSet = (RelationshipSet) sets.get(i);
+							final File file = new File(dir, String.format("rel.%s", Utils.escapeName(relationshipSet
+							    .getType().getName())));
+							writeRelationshipSet(file, relationshipSet);
+						}
+					}
+					catch (final IOException ioException)
+					{
+						ioExceptions[i] = ioException;
+					}
+				}
+			}
+		};
 
-			writeRelationshipSet(file, relationshipSet);
-		}
+		if (parallel)
+			ParallelMultiplication.runRanges(sets.size(), range);
+		else
+			range.run(0, sets.size());
+
+		for (final IOException ioException: ioExceptions)
+			if (ioException != null) throw ioException;
 	}
 
 	/**
@@ -56,67 +106,77 @@ public class TextWriter
 	public static void writeEntitySet(File file, EntitySet entitySet)
 	    throws IOException
 	{
-		final Writer writer = new BufferedWriter(new FileWriter(file));
+		final TextOutput output = new TextOutput(file);
 
-		final MetadataName metadataNames[] = new MetadataName[entitySet.getMetadataNames().size()];
+		try
 		{
-			int i = 0;
-			for (final MetadataName metadataName: entitySet.getMetadataNames())
-				metadataNames[i++] = metadataName;
-		}
+			final MetadataName metadataNames[] = new MetadataName[entitySet.getMetadataNames().size()];
+			{
+				int i = 0;
+				for (final MetadataName metadataName: entitySet.getMetadataNames())
+					metadataNames[i++] = metadataName;
+			}
 
-		/*
-		 * Header
-		 */
-		writer.write("%\n");
+			/*
+			 * Header
+			 */
+			output.write("%\n");
 
-		writer.write(String.format("%% %s\n", entitySet.size()));
+			output.write(String.format("%% %s\n", entitySet.size()));
 
-		writer.write("% ent");
-		for (final MetadataName metadataName: metadataNames)
-		{
-			final Class <?> clazz = entitySet.getMetadataClass(metadataName);
-			String typeString;
-
-			if (clazz.equals(String.class))
-				typeString = "string";
-			else if (clazz.equals(int.class))
-				typeString = "int";
-			else if (clazz.equals(double.class))
-				typeString = "double";
-			else if (clazz.equals(Date.class))
-				typeString = "date";
-			else
+			output.write("% ent");
+			for (final MetadataName metadataName: metadataNames)
 			{
-				assert false;
-				typeString = null;
-			}
+				final Class <?> clazz = entitySet.getMetadataClass(metadataName);
+				String typeString;
 
-			if (typeString == null)
-				typeString = "";
-			else
-				typeString = "." + typeString;
+				if (clazz.equals(String.class))
+					typeString = "string";
+				else if (clazz.equals(int.class))
+					typeString = "int";
+				else if (clazz.equals(double.class))
+					typeString = "double";
+				else if (clazz.equals(long.class) || clazz.equals(Date.class))
+					/* Dates are stored as milliseconds */
+					typeString = "date";
+				else
+				{
+					assert false;
+					typeString = null;
+				}
 
-			writer.write(" " + String.format("dat%s.%s", typeString, metadataName.getValue()));
-		}
-		writer.write("\n");
+				if (typeString == null)
+					typeString = "";
+				else
+					typeString = "." + typeString;
 
-		/*
-		 * Data
-		 */
-		for (int i = 0; i < entitySet.size(); ++i)
+				output.write(" " + String.format("dat%s.%s", typeString, metadataName.getValue()));
+			}
+			output.write("\n");
+
+			/*
+			 * Data
+			 */
+			for (int i = 0; i < entitySet.size(); ++i)
+			{
+				output.write(1 + i);
+				for (final MetadataName metadataName: metadataNames)
+				{
+					output.write(' ');
+					writeMetadata(output, entitySet.getMetadata(i, metadataName));
+				}
+				output.write('\n');
+			}
+		}
+		finally
 		{
-			writer.write(Integer.toString(1 + i));
-			for (final MetadataName metadataName: metadataNames)
-				writer.write(" " + escapeMetadata(entitySet.getMetadata(i, metadataName)));
-			writer.write("\n");
+			output.close();
 		}
-
-		writer.close();
 	}
 
 	/**
-	 * Write a relationship set to a text file.
+	 * Write a relationship set to a text file. Weights are written with as few digits as are needed to read them back
+	 * exactly.
 	 * 
 	 * @param file The file to write the relationship set to
 	 * @param relationshipSet The relationship set to write to file
@@ -125,36 +185,53 @@ public class TextWriter
 	public static void writeRelationshipSet(File file, RelationshipSet relationshipSet)
 	    throws IOException
 	{
-		final Writer writer = new BufferedWriter(new FileWriter(file));
+		final TextOutput output = new TextOutput(file);
+		final Matrix matrix = relationshipSet.getMatrix();
 
-		/*
-		 * Header
-		 */
-		writer.write(String.format("%% %s %s\n", relationshipSet.getRelationshipFormat().name().toLowerCase(),
-		    relationshipSet.getWeightRange().name().toLowerCase()));
+		try
+		{
+			/*
+			 * Header
+			 */
+			output.write(String.format("%% %s %s\n", relationshipSet.getRelationshipFormat().name().toLowerCase(),
+			    relationshipSet.getWeightRange().name().toLowerCase()));
 
-		writer.write(String.format("%% %d %d %d\n", relationshipSet.getMatrix().nnz(), relationshipSet.getMatrix()
-		    .rows(), relationshipSet.getMatrix().cols()));
+			output.write(String.format("%% %d %d %d\n", matrix.nnz(), matrix.rows(), matrix.cols()));
 
-		final String weightType = relationshipSet.getMatrix().getWeightType();
+			final String weightType = matrix.getWeightType();
 
-		writer.write(String.format("%% ent.%s ent.%s%s\n", relationshipSet.getSubject().getName(), relationshipSet
-		    .getObject().getName(), weightType.equals(boolean.class.getSimpleName()) ? "" : String.format(" %s.weight",
-		    weightType)));
+			output.write(String.format("%% ent.%s ent.%s%s\n", relationshipSet.getSubject().getName(),
+			    relationshipSet.getObject().getName(), weightType.equals(boolean.class.getSimpleName()) ? ""
+			        : String.format(" %s.weight", weightType)));
 
-		/*
-		 * Data
-		 */
-		for (final FullEntry fullEntry: relationshipSet.getMatrix().all())
+			/*
+			 * Data. Symmetric matrices contain each entry in the rows of both its row and column, and are thus written
+			 * with both orientations.
+			 */
+			final boolean weighted = !weightType.equals(boolean.class.getSimpleName());
+			final boolean single = weightType.equals(float.class.getSimpleName());
+			/* Matrices of relationship sets with an empty entity set have no entries */
+			final MatrixCursor cursor = matrix.rows() != 0 && matrix.cols() != 0 ? matrix.cursor() : null;
+			for (int i = 0; cursor != null && i < matrix.rows(); ++i)
+			{
+				for (cursor.row(i); cursor.next();)
+				{
+					output.write(1 + i);
+					output.write(' ');
+					output.write(1 + cursor.index());
+					if (weighted)
+					{
+						output.write(' ');
+						output.write(cursor.value(), single);
+					}
+					output.write('\n');
+				}
+			}
+		}
+		finally
 		{
-			if (weightType.equals(boolean.class.getSimpleName()))
-				writer.write(String.format("%d %d\n", 1 + fullEntry.rowIndex, 1 + fullEntry.colIndex));
-			else
-				writer.write(String.format("%d %d %g\n", 1 + fullEntry.rowIndex, 1 + fullEntry.colIndex,
-				    fullEntry.value));
+			output.close();
 		}
-
-		writer.close();
 	}
 
 	/**
@@ -181,4 +258,38 @@ public class TextWriter
 		return null;
 	}
 
+	/**
+	 * Write a metadata object as formatted by escapeMetadata(), except that doubles are written with as few digits as
+	 * are needed to read them back exactly.
+	 */
+	private static void writeMetadata(TextOutput output, Object object)
+	    throws IOException
+	{
+		if (object instanceof String)
+		{
+			final String string = (String) object;
+			output.write('"');
+			int begin = 0;
+			for (int i = 0; i < string.length(); ++i)
+			{
+				final char c = string.charAt(i);
+				if (c == '\\' || c == '"')
+				{
+					output.write(string.substring(begin, i));
+					output.write('\\');
+					begin = i;
+				}
+			}
+			output.write(begin == 0 ? string : string.substring(begin));
+			output.write('"');
+		}
+		else if (object instanceof Integer)
+			output.write(((Integer) object).intValue());
+		else if (object instanceof Double)
+			output.write(((Double) object).doubleValue(), false);
+		else if (object instanceof Date)
+			output.write(((Date) object).getTime());
+		else
+			output.write(escapeMetadata(object));
+	}
 }
@@ -1,5 +1,12 @@
 package de.dailab.recommender.text;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
 /**
  * Static utilities for text datasets.
  * 
@@ -31,4 +38,63 @@ public class Utils
 		    "\0").replaceAll("\\\\\\\\", "\\\\");
 
 	}
+
+	/**
+	 * Whether a dataset file is compressed with gzip, as indicated by its name ending in ".gz". Compressed files are
+	 * read transparently by TextReader.
+	 * 
+	 * @param file A dataset file
+	 * @return Whether the file is compressed
+	 */
+	public static boolean isCompressed(File file)
+	{
+		return file.getName().endsWith(COMPRESSED_SUFFIX);
+	}
+
+	/**
+	 * The name of a dataset file without the suffix denoting compression, e.g. "rel.rating" for "rel.rating.gz".
+	 * 
+	 * @param file A compressed or uncompressed dataset file
+	 * @return The name of the uncompressed file
+	 */
+	public static String getUncompressedName(File file)
+	{
+		final String name = file.getName();
+		return isCompressed(file) ? name.substring(0, name.length() - COMPRESSED_SUFFIX.length()) : name;
+	}
+
+	/**
+	 * Open a dataset file for reading, decompressing it when it is compressed.
+	 * 
+	 * @param file A compressed or uncompressed dataset file
+	 * @return A buffered stream of the uncompressed content of the file
+	 * @throws IOException on opening the file or reading the gzip header
+	 */
+	public static InputStream openInputStream(File file)
+	    throws IOException
+	{
+		final InputStream inputStream = new FileInputStream(file);
+		try
+		{
+			return isCompressed(file) ? new GZIPInputStream(inputStream, BUFFER_SIZE) : new BufferedInputStream(
+			    inputStream, BUFFER_SIZE);
+		}
+		catch (final IOException ioException)
+		{
+			inputStream.close();
+			throw ioException;
+		}
+	}
+
+	/**
+	 * The suffix of compressed dataset files.
+	 */
+	public static final String COMPRESSED_SUFFIX = ".gz";
+
+	/**
+	 * The charset of dataset files.
+	 */
+	public static final String CHARSET = "UTF-8";
+
+	private static final int BUFFER_SIZE = 1 << 16;
 }
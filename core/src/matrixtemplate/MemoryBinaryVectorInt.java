@@ -1,5 +1,6 @@
 package de.dailab.recommender.matrix.template;
  
+import de.dailab.recommender.matrix.Cursor;
 import de.dailab.recommender.matrix.Entry;
 import de.dailab.recommender.matrix.MatrixIterator;
 import de.dailab.recommender.matrix.Vector;
@@ -33,6 +34,17 @@ final class MemoryBinaryVectorInt
 		indexes = new int[capacity];
 	}
 
+	/**
+	 * A memory vector containing the given entries. The array is used by the vector and not copied.
+	 * 
+	 * @param indexes Indexes, sorted and without duplicates
+	 */
+	MemoryBinaryVectorInt(int indexes[])
+	{
+		this.indexes = indexes;
+		capacity = indexes.length;
+	}
+
 	@Override
 	public String getIndexType()
 	{
@@ -155,6 +167,33 @@ final class MemoryBinaryVectorInt
 		};
 	}
 
+	@Override
+	public Cursor cursor()
+	{
+		return new Cursor()
+		{
+			@Override
+			public boolean next()
+			{
+				return ++k < capacity;
+			}
+
+			@Override
+			public int index()
+			{
+				return indexes[k];
+			}
+
+			@Override
+			public double value()
+			{
+				return 1.;
+			}
+
+			private int k = -1;
+		};
+	}
+
 	public double getGeneric(int i)
 	{
 		return get((int) i) ? 1. : 0.; 
@@ -188,6 +227,52 @@ final class MemoryBinaryVectorInt
 		return false;
 	}
 
+	/**
+	 * @param k Position of an entry; smaller than nnz()
+	 * @return The index of the entry at position K
+	 */
+	int getIndex(int k)
+	{
+		return indexes[k];
+	}
+
+	/**
+	 * Scalar product.
+	 * 
+	 * @param v A vector
+	 * @return THIS * v
+	 */
+	double mult(double v[])
+	{
+		double ret = 0.;
+
+		for (int i = 0; i < capacity; ++i)
+			ret += v[indexes[i]];
+
+		return ret;
+	}
+
+	/**
+	 * Compute the scalar products of this vector with several vectors at once.
+	 * 
+	 * @param v Vectors
+	 * @param ret Set to THIS * v[k] for each k; of the same length as V
+	 */
+	void mult(double v[][], double ret[])
+	{
+		assert ret.length == v.length;
+
+		for (int r = 0; r < ret.length; ++r)
+			ret[r] = 0.;
+
+		for (int i = 0; i < capacity; ++i)
+		{
+			final int index = indexes[i];
+			for (int r = 0; r < ret.length; ++r)
+				ret[r] += v[r][index];
+		}
+	}
+
 	/**
 	 * @return Number of nonsparse elements
 	 */
@@ -0,0 +1,60 @@
+package de.dailab.recommender.constraint;
+
+import org.junit.Test;
+
+import de.dailab.recommender.dataset.Dataset;
+import de.dailab.recommender.dataset.Entity;
+import de.dailab.recommender.dataset.EntitySet;
+import de.dailab.recommender.dataset.EntityType;
+import de.dailab.recommender.dataset.RelationshipFormat;
+import de.dailab.recommender.dataset.RelationshipSet;
+import de.dailab.recommender.dataset.RelationshipType;
+import de.dailab.recommender.dataset.WeightRange;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+import de.dailab.recommender.recommendation.Recommendation;
+
+/**
+ * Test the present constraint.
+ * 
+ * @author kunegis
+ */
+public class TestPresentConstraint
+{
+	/**
+	 * Relationship types whose subject is not the type of the source are ignored, even when the source's ID is larger
+	 * than their number of rows. Relationships added after the constraint was created are taken into account.
+	 */
+	@Test
+	public void testSubject()
+	{
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(3);
+		dataset.addEntitySet(users);
+		final EntitySet items = new EntitySet(item);
+		items.setSize(10);
+		dataset.addEntitySet(items);
+
+		final RelationshipType rating = new RelationshipType("rating"), similar = new RelationshipType("similar");
+		final RelationshipSet ratingSet = new RelationshipSet(rating, user, item, RelationshipFormat.BIP,
+		    WeightRange.UNWEIGHTED);
+		ratingSet.setMatrix(MatrixFactory.newMemoryMatrix(3, 10, boolean.class.getSimpleName()));
+		ratingSet.getMatrix().set(2, 5, 1);
+		dataset.addRelationshipSet(ratingSet);
+		final RelationshipSet similarSet = new RelationshipSet(similar, item, item, RelationshipFormat.ASYM,
+		    WeightRange.UNWEIGHTED);
+		similarSet.setMatrix(MatrixFactory.newMemoryMatrix(10, 10, boolean.class.getSimpleName()));
+		similarSet.getMatrix().set(7, 4, 1);
+		dataset.addRelationshipSet(similarSet);
+
+		final PresentConstraint presentConstraint = new PresentConstraint(dataset, new Entity(item, 7),
+		    new RelationshipType[] { rating, similar });
+		assert !presentConstraint.accept(new Recommendation(new Entity(item, 4), 1));
+		assert presentConstraint.accept(new Recommendation(new Entity(item, 5), 1));
+		assert presentConstraint.accept(new Recommendation(new Entity(user, 2), 1));
+
+		similarSet.getMatrix().set(7, 5, 1);
+		assert !presentConstraint.accept(new Recommendation(new Entity(item, 5), 1));
+	}
+}
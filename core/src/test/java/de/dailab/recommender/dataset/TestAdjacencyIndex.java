@@ -0,0 +1,178 @@
+package de.dailab.recommender.dataset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.ZeroMatrix;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Test the adjacency index of datasets.
+ * 
+ * @author kunegis
+ */
+public class TestAdjacencyIndex
+{
+	/**
+	 * The cursor finds the entries of the matrices in the documented order, in a dataset with a weighted bipartite
+	 * and an unweighted unipartite relationship set. Changes to modifiable matrices are always reflected, and the
+	 * index is only reused once the dataset is frozen.
+	 */
+	@Test
+	public void testAdjacencyIndex()
+	{
+		final Random random = new Random(113);
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(100);
+		dataset.addEntitySet(users);
+		final EntitySet items = new EntitySet(item);
+		items.setSize(60);
+		dataset.addEntitySet(items);
+
+		final Matrix ratings = MatrixFactory.newMemoryMatrix(100, 60, float.class.getSimpleName());
+		final Matrix contacts = MatrixFactory.newMemoryMatrix(100, 100, boolean.class.getSimpleName());
+		for (int k = 0; k < 800; ++k)
+		{
+			ratings.set(random.nextInt(100), random.nextInt(60), 1 + random.nextInt(5));
+			contacts.set(random.nextInt(100), random.nextInt(100), 1);
+		}
+		addRelationshipSet(dataset, "rating", user, item, ratings);
+		addRelationshipSet(dataset, "contact", user, user, contacts);
+
+		final AdjacencyIndex adjacencyIndex = dataset.getAdjacencyIndex();
+		compare(dataset, adjacencyIndex);
+
+		double maxAbsWeight = 0, absWeightSum = 0;
+		final MatrixCursor matrixCursor = ratings.cursor();
+		for (int i = 0; i < 100; ++i)
+			for (matrixCursor.row(i); matrixCursor.next();)
+			{
+				maxAbsWeight = Math.max(maxAbsWeight, Math.abs(matrixCursor.value()));
+				absWeightSum += Math.abs(matrixCursor.value());
+			}
+		final int ratingIndex = adjacencyIndex.getRelationshipSet(0).getMatrix() == ratings ? 0 : 1;
+		assert adjacencyIndex.getMaxAbsWeight(ratingIndex) == maxAbsWeight;
+		assert adjacencyIndex.getAbsWeightSum(ratingIndex) == absWeightSum;
+		assert adjacencyIndex.getMaxAbsWeight(1 - ratingIndex) == 1.;
+
+		/* A new entry and a changed weight are found */
+		int j = 0;
+		while (ratings.get(5, j) != 0.)
+			++j;
+		ratings.set(5, j, 2.);
+		assert dataset.getAdjacencyIndex().getDegree(0, 5) == adjacencyIndex.getDegree(0, 5) + 1;
+		ratings.set(5, j, 7.);
+		compare(dataset, dataset.getAdjacencyIndex());
+		boolean found = false;
+		for (final DatasetEntry datasetEntry: dataset.getNeighbors(new Entity(user, 5)))
+			if (datasetEntry.entity.equals(new Entity(item, j)))
+			{
+				assert datasetEntry.weight == 7.;
+				found = true;
+			}
+		assert found;
+
+		/* The index of a frozen dataset is reused */
+		dataset.freeze();
+		final AdjacencyIndex adjacencyIndexFrozen = dataset.getAdjacencyIndex();
+		assert dataset.getAdjacencyIndex() == adjacencyIndexFrozen;
+		compare(dataset, adjacencyIndexFrozen);
+
+		/* Handles and DatasetEntry objects agree with the cursor */
+		final NeighborCursor cursor = adjacencyIndexFrozen.cursor();
+		final Entity entity = new Entity(item, j);
+		cursor.entity(dataset.getHandle(entity));
+		for (final DatasetEntry datasetEntry: dataset.getNeighbors(entity))
+		{
+			assert cursor.next();
+			assert dataset.getEntity(cursor.handle()).equals(datasetEntry.entity);
+			assert datasetEntry.entity.getType().equals(user);
+			assert !datasetEntry.forward;
+			assert datasetEntry.weight == cursor.weight();
+		}
+		assert !cursor.next();
+	}
+
+	/**
+	 * A relationship set with an empty entity set has a matrix without columns; it contributes no neighbors.
+	 */
+	@Test
+	public void testEmptyEntitySet()
+	{
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(3);
+		dataset.addEntitySet(users);
+		dataset.addEntitySet(new EntitySet(item));
+
+		final Matrix contacts = MatrixFactory.newMemoryMatrix(3, 3, boolean.class.getSimpleName());
+		contacts.set(0, 2, 1);
+		addRelationshipSet(dataset, "rating", user, item, new ZeroMatrix(3, 0));
+		addRelationshipSet(dataset, "contact", user, user, contacts);
+
+		final AdjacencyIndex adjacencyIndex = dataset.getAdjacencyIndex();
+		compare(dataset, adjacencyIndex);
+		assert adjacencyIndex.getDegree(0, 0) == 1;
+		assert adjacencyIndex.getDegree(0, 1) == 0;
+		assert dataset.getNeighbors(new Entity(user, 0)).iterator().next().entity.equals(new Entity(user, 2));
+		assert !dataset.getNeighbors(new Entity(user, 1)).iterator().hasNext();
+	}
+
+	private static void compare(Dataset dataset, AdjacencyIndex adjacencyIndex)
+	{
+		final NeighborCursor cursor = adjacencyIndex.cursor();
+		for (int t = 0; t < dataset.getEntityTypes().size(); ++t)
+		{
+			final int size = dataset.getEntitySet(dataset.getEntityType(t)).size();
+			for (int id = 0; id < size; ++id)
+			{
+				final List <Object[]> expected = new ArrayList <Object[]>();
+				int r = 0;
+				for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
+				{
+					final Matrix matrix = relationshipSet.getMatrix();
+					final MatrixCursor matrixCursor = matrix.cursor();
+					final int subject = dataset.getEntityTypeIndex(relationshipSet.getSubject());
+					final int object = dataset.getEntityTypeIndex(relationshipSet.getObject());
+					if (subject == t) for (matrixCursor.row(id); matrixCursor.next();)
+						expected.add(new Object[] { r, true, object, matrixCursor.index(), matrixCursor.value() });
+					if (object == t) for (matrixCursor.col(id); matrixCursor.next();)
+						expected.add(new Object[] { r, false, subject, matrixCursor.index(), matrixCursor.value() });
+					++r;
+				}
+
+				assert adjacencyIndex.getDegree(t, id) == expected.size();
+				cursor.entity(t, id);
+				for (final Object[] neighbor: expected)
+				{
+					assert cursor.next();
+					assert cursor.relationshipIndex() == (Integer) neighbor[0];
+					assert cursor.forward() == (Boolean) neighbor[1];
+					assert cursor.typeIndex() == (Integer) neighbor[2];
+					assert cursor.id() == (Integer) neighbor[3];
+					assert cursor.weight() == (Double) neighbor[4];
+				}
+				assert !cursor.next();
+			}
+		}
+	}
+
+	private static void addRelationshipSet(Dataset dataset, String type, EntityType subject, EntityType object,
+	    Matrix matrix)
+	{
+		final RelationshipSet relationshipSet = new RelationshipSet(new RelationshipType(type), subject, object,
+		    subject.equals(object) ? RelationshipFormat.ASYM : RelationshipFormat.BIP,
+		    matrix.getWeightType().equals(boolean.class.getSimpleName()) ? WeightRange.UNWEIGHTED : WeightRange.POSITIVE);
+		relationshipSet.setMatrix(matrix);
+		dataset.addRelationshipSet(relationshipSet);
+	}
+}
@@ -0,0 +1,141 @@
+package de.dailab.recommender.dataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.ZeroMatrix;
+
+/**
+ * Test the reordering of datasets.
+ * 
+ * @author kunegis
+ */
+public class TestDatasetReordering
+{
+	/**
+	 * In all orders, relationships and metadata are moved consistently and the ID maps are inverse permutations.
+	 */
+	@Test
+	public void testConsistent()
+	{
+		final Random random = new Random(89);
+		final SimpleBipartiteDataset dataset = new SimpleBipartiteDataset(300, 200);
+		final Matrix matrix = dataset.getRelationshipSet(SimpleBipartiteDataset.RELATIONSHIP).getMatrix();
+		for (int k = 0; k < 2000; ++k)
+			matrix.set(random.nextInt(300), random.nextInt(200), random.nextInt(5));
+
+		final MetadataName name = new MetadataName("name");
+		final EntitySet subjects = dataset.getEntitySet(SimpleBipartiteDataset.SUBJECT);
+		final List <MetadataName> metadataNames = new ArrayList <MetadataName>();
+		metadataNames.add(name);
+		final List <Object> sampleMetadata = new ArrayList <Object>();
+		sampleMetadata.add("");
+		subjects.setMetadataNames(metadataNames, sampleMetadata);
+		for (int i = 0; i < 300; ++i)
+			subjects.setMetadata(i, name, ("subject" + i).intern());
+
+		for (final DatasetReordering.Order order: DatasetReordering.Order.values())
+		{
+			final DatasetReordering reordering = new DatasetReordering(dataset, order);
+			final Dataset reordered = reordering.getDataset();
+			final Matrix newMatrix = reordered.getRelationshipSet(SimpleBipartiteDataset.RELATIONSHIP).getMatrix();
+
+			assert newMatrix.nnz() == matrix.nnz();
+			for (final FullEntry fullEntry: matrix.all())
+			{
+				final Entity subject = reordering.getNewEntity(new Entity(SimpleBipartiteDataset.SUBJECT,
+				    fullEntry.rowIndex));
+				final Entity object = reordering.getNewEntity(new Entity(SimpleBipartiteDataset.OBJECT,
+				    fullEntry.colIndex));
+				assert newMatrix.get(subject.getId(), object.getId()) == fullEntry.value;
+			}
+
+			for (final EntityType entityType: dataset.getEntityTypes())
+			{
+				final int newIds[] = reordering.getNewIds(entityType);
+				assert newIds.length == dataset.getEntitySet(entityType).size();
+				for (int id = 0; id < newIds.length; ++id)
+					assert reordering.getOldIds(entityType)[newIds[id]] == id;
+			}
+
+			for (int i = 0; i < 300; ++i)
+			{
+				final Entity entity = reordering.getNewEntity(new Entity(SimpleBipartiteDataset.SUBJECT, i));
+				assert reordered.getMetadata(entity, name).equals("subject" + i);
+				assert reordering.getOldEntity(entity).getId() == i;
+			}
+		}
+	}
+
+	/**
+	 * Reverse Cuthill-McKee reduces the bandwidth of a path whose vertices are shuffled, and the degree order puts the
+	 * entity of largest degree first.
+	 */
+	@Test
+	public void testPath()
+	{
+		final int n = 1000;
+		final SimpleUnipartiteDataset dataset = new SimpleUnipartiteDataset(n, WeightRange.UNWEIGHTED);
+		final Matrix matrix = dataset.getRelationshipSet(SimpleUnipartiteDataset.RELATIONSHIP).getMatrix();
+		final List <Integer> labels = new ArrayList <Integer>();
+		for (int i = 0; i < n; ++i)
+			labels.add(i);
+		Collections.shuffle(labels, new Random(97));
+		for (int i = 0; i + 1 < n; ++i)
+			matrix.set(labels.get(i), labels.get(i + 1), 1.);
+		/* A star around the middle vertex */
+		for (int i = 0; i < n; i += 100)
+			if (Math.abs(i - n / 2) > 1) matrix.set(labels.get(n / 2), labels.get(i), 1.);
+
+		final Matrix rcm = new DatasetReordering(dataset, DatasetReordering.Order.RCM).getDataset().getRelationshipSet(
+		    SimpleUnipartiteDataset.RELATIONSHIP).getMatrix();
+		assert bandwidth(rcm) < bandwidth(matrix) / 10;
+
+		final DatasetReordering degreeReordering = new DatasetReordering(dataset, DatasetReordering.Order.DEGREE);
+		assert degreeReordering.getOldEntity(new Entity(SimpleUnipartiteDataset.ENTITY, 0)).getId() == labels.get(n / 2);
+
+		final DatasetReordering bfsReordering = new DatasetReordering(dataset, DatasetReordering.Order.BFS);
+		assert bfsReordering.getOldEntity(new Entity(SimpleUnipartiteDataset.ENTITY, 0)).getId() == labels.get(n / 2);
+	}
+
+	/**
+	 * A relationship set with an empty entity set keeps a matrix without columns in all orders.
+	 */
+	@Test
+	public void testEmptyEntitySet()
+	{
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(3);
+		dataset.addEntitySet(users);
+		dataset.addEntitySet(new EntitySet(item));
+		final RelationshipType rating = new RelationshipType("rating");
+		final RelationshipSet relationshipSet = new RelationshipSet(rating, user, item, RelationshipFormat.BIP,
+		    WeightRange.UNWEIGHTED);
+		relationshipSet.setMatrix(new ZeroMatrix(3, 0));
+		dataset.addRelationshipSet(relationshipSet);
+
+		for (final DatasetReordering.Order order: DatasetReordering.Order.values())
+		{
+			final DatasetReordering reordering = new DatasetReordering(dataset, order);
+			final Matrix matrix = reordering.getDataset().getRelationshipSet(rating).getMatrix();
+			assert matrix.rows() == 3 && matrix.cols() == 0;
+			assert reordering.getNewIds(user).length == 3;
+		}
+	}
+
+	private static int bandwidth(Matrix matrix)
+	{
+		int ret = 0;
+		for (final FullEntry fullEntry: matrix.all())
+			ret = Math.max(ret, Math.abs(fullEntry.rowIndex - fullEntry.colIndex));
+		return ret;
+	}
+}
@@ -0,0 +1,145 @@
+package de.dailab.recommender.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.MappedMatrix;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.template.MatrixBuilder;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Test saving and loading datasets as snapshots.
+ * 
+ * @author kunegis
+ */
+public class TestDatasetSnapshot
+{
+	/**
+	 * A dataset with metadata and modifiable, symmetric and read-only matrices is loaded with the same entities,
+	 * metadata and relationships, both into memory and mapped.
+	 * 
+	 * @throws IOException on errors in the temporary directory
+	 */
+	@Test
+	public void testSnapshot()
+	    throws IOException
+	{
+		final Random random = new Random(109);
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+		final MetadataName name = new MetadataName("name"), age = new MetadataName("age"), date = new MetadataName(
+		    "date");
+
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(300);
+		final List <MetadataName> metadataNames = new ArrayList <MetadataName>();
+		metadataNames.add(name);
+		metadataNames.add(age);
+		metadataNames.add(date);
+		final List <Object> sampleMetadata = new ArrayList <Object>();
+		sampleMetadata.add("");
+		sampleMetadata.add(0);
+		sampleMetadata.add(new Date());
+		users.setMetadataNames(metadataNames, sampleMetadata);
+		for (int i = 0; i < 300; ++i)
+		{
+			/* Leave some names NULL */
+			if (i % 7 != 0) users.setMetadata(i, name, ("user-\u00e4" + i).intern());
+			users.setMetadata(i, age, random.nextInt(100));
+			users.setMetadata(i, date, new Date(random.nextLong()));
+		}
+		dataset.addEntitySet(users);
+		final EntitySet items = new EntitySet(item);
+		items.setSize(200);
+		dataset.addEntitySet(items);
+
+		final MatrixBuilder ratingBuilder = new MatrixBuilder(300, 200, short.class.getSimpleName());
+		final MatrixBuilder contactBuilder = new MatrixBuilder(300, 300, boolean.class.getSimpleName());
+		final MatrixBuilder viewBuilder = new MatrixBuilder(300, 200, double.class.getSimpleName());
+		for (int k = 0; k < 2000; ++k)
+		{
+			ratingBuilder.add(random.nextInt(300), random.nextInt(200), 1 + random.nextInt(5));
+			contactBuilder.add(random.nextInt(300), random.nextInt(300));
+			viewBuilder.add(random.nextInt(300), random.nextInt(200), random.nextGaussian());
+		}
+		addRelationshipSet(dataset, "rating", user, item, RelationshipFormat.BIP, WeightRange.POSITIVE, ratingBuilder
+		    .build());
+		addRelationshipSet(dataset, "contact", user, user, RelationshipFormat.SYM, WeightRange.UNWEIGHTED,
+		    contactBuilder.buildSymmetric());
+		addRelationshipSet(dataset, "view", user, item, RelationshipFormat.BIP, WeightRange.SIGNED, viewBuilder
+		    .buildFrozen());
+
+		final File directory = File.createTempFile("dataset", ".snapshot");
+		try
+		{
+			directory.delete();
+			DatasetSnapshot.write(dataset, directory);
+
+			for (final boolean map: new boolean[] { false, true })
+			{
+				final Dataset read = DatasetSnapshot.read(directory, map);
+
+				assert read.getEntityTypeIndex(user) == dataset.getEntityTypeIndex(user);
+				assert read.getEntitySet(item).size() == 200;
+				assert read.getEntitySet(item).getMetadataNames().isEmpty();
+				final EntitySet readUsers = read.getEntitySet(user);
+				assert readUsers.size() == 300;
+				for (int i = 0; i < 300; ++i)
+				{
+					final Object userName = readUsers.getMetadata(i, name);
+					assert userName == users.getMetadata(i, name);
+					assert readUsers.getMetadata(i, age).equals(users.getMetadata(i, age));
+					assert readUsers.getMetadata(i, date).equals(users.getMetadata(i, date));
+				}
+				assert read.getEntity(name, user, "user-\u00e41").getId() == 1;
+
+				assert read.getRelationshipSets().size() == 3;
+				for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
+				{
+					final RelationshipSet readRelationshipSet = read.getRelationshipSet(relationshipSet.getType());
+					assert readRelationshipSet.getSubject().equals(relationshipSet.getSubject());
+					assert readRelationshipSet.getWeightRange() == relationshipSet.getWeightRange();
+					assert readRelationshipSet.getRelationshipFormat() == relationshipSet.getRelationshipFormat();
+
+					final Matrix matrix = relationshipSet.getMatrix();
+					final Matrix readMatrix = readRelationshipSet.getMatrix();
+					assert readMatrix.getWeightType().equals(matrix.getWeightType());
+					if (map)
+						assert readMatrix instanceof MappedMatrix;
+					else
+					{
+						assert readMatrix.getClass() == matrix.getClass();
+						assert MatrixFactory.isFrozen(readMatrix) == MatrixFactory.isFrozen(matrix);
+					}
+
+					assert readMatrix.nnz() == matrix.nnz();
+					for (final FullEntry fullEntry: matrix.all())
+						assert (float) readMatrix.get(fullEntry.rowIndex, fullEntry.colIndex) == (float) fullEntry.value;
+				}
+			}
+		}
+		finally
+		{
+			for (final File file: directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	private static void addRelationshipSet(Dataset dataset, String type, EntityType subject, EntityType object,
+	    RelationshipFormat relationshipFormat, WeightRange weightRange, Matrix matrix)
+	{
+		final RelationshipSet relationshipSet = new RelationshipSet(new RelationshipType(type), subject, object,
+		    relationshipFormat, weightRange);
+		relationshipSet.setMatrix(matrix);
+		dataset.addRelationshipSet(relationshipSet);
+	}
+}
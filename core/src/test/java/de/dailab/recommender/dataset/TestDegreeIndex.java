@@ -0,0 +1,111 @@
+package de.dailab.recommender.dataset;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Test the degree index of relationship sets.
+ * 
+ * @author kunegis
+ */
+public class TestDegreeIndex
+{
+	/**
+	 * Degrees equal the number of entries found by a cursor, and reflect all changes to the matrix. The index is only
+	 * reused for frozen matrices.
+	 */
+	@Test
+	public void testDegreeIndex()
+	{
+		final RelationshipSet relationshipSet = new RelationshipSet(new RelationshipType("rating"), new EntityType(
+		    "user"), new EntityType("item"), RelationshipFormat.BIP, WeightRange.POSITIVE);
+		final Matrix matrix = MatrixFactory.newMemoryMatrix(100, 50);
+		relationshipSet.setMatrix(matrix);
+
+		final Random random = new Random(73);
+		for (int k = 0; k < 1000; ++k)
+			matrix.set(random.nextInt(100), random.nextInt(50), 1 + random.nextInt(5));
+
+		final DegreeIndex degreeIndex = relationshipSet.getDegreeIndex();
+		compare(matrix, degreeIndex);
+		assert degreeIndex.countRows(0) == 100;
+		assert degreeIndex.countRows(degreeIndex.getMaxRowDegree() + 1) == 0;
+
+		/* Overwriting a value does not change degrees */
+		matrix.set(3, 4, 2.);
+		matrix.set(3, 4, 3.);
+		final DegreeIndex degreeIndexOverwritten = relationshipSet.getDegreeIndex();
+		compare(matrix, degreeIndexOverwritten);
+
+		/* A new entry does */
+		int j = 0;
+		while (matrix.get(7, j) != 0.)
+			++j;
+		matrix.set(7, j, 1.);
+		final DegreeIndex degreeIndexAdded = relationshipSet.getDegreeIndex();
+		assert degreeIndexAdded != degreeIndex;
+		assert degreeIndexAdded.getRowDegree(7) == degreeIndexOverwritten.getRowDegree(7) + 1;
+		compare(matrix, degreeIndexAdded);
+
+		/* As does a new matrix */
+		relationshipSet.setMatrix(MatrixFactory.newMemoryMatrix(100, 50));
+		assert relationshipSet.getDegreeIndex().getMaxRowDegree() == 0;
+		assert relationshipSet.getDegreeIndex().countRows(1) == 0;
+
+		/* The index of a frozen matrix is reused */
+		relationshipSet.setMatrix(MatrixFactory.freeze(matrix));
+		final DegreeIndex degreeIndexFrozen = relationshipSet.getDegreeIndex();
+		assert relationshipSet.getDegreeIndex() == degreeIndexFrozen;
+		compare(matrix, degreeIndexFrozen);
+	}
+
+	/**
+	 * In a dense matrix, removing an entry by setting it to zero and adding another one keeps the number of entries,
+	 * but changes the degrees.
+	 */
+	@Test
+	public void testDense()
+	{
+		final RelationshipSet relationshipSet = new RelationshipSet(new RelationshipType("rating"), new EntityType(
+		    "user"), new EntityType("item"), RelationshipFormat.BIP, WeightRange.POSITIVE);
+		final Matrix matrix = MatrixFactory.newDenseMatrix(3, 2, float.class.getSimpleName());
+		relationshipSet.setMatrix(matrix);
+		matrix.set(0, 0, 1);
+		matrix.set(1, 1, 2);
+		compare(matrix, relationshipSet.getDegreeIndex());
+
+		matrix.set(0, 0, 0);
+		matrix.set(2, 0, 3);
+		assert matrix.nnz() == 2;
+		final DegreeIndex degreeIndex = relationshipSet.getDegreeIndex();
+		assert degreeIndex.getRowDegree(0) == 0 && degreeIndex.getRowDegree(2) == 1;
+		compare(matrix, degreeIndex);
+	}
+
+	private static void compare(Matrix matrix, DegreeIndex degreeIndex)
+	{
+		final MatrixCursor cursor = matrix.cursor();
+		int maxRowDegree = 0;
+		for (int i = 0; i < matrix.rows(); ++i)
+		{
+			int count = 0;
+			for (cursor.row(i); cursor.next();)
+				++count;
+			assert degreeIndex.getRowDegree(i) == count;
+			maxRowDegree = Math.max(maxRowDegree, count);
+		}
+		assert degreeIndex.getMaxRowDegree() == maxRowDegree;
+		for (int j = 0; j < matrix.cols(); ++j)
+		{
+			int count = 0;
+			for (cursor.col(j); cursor.next();)
+				++count;
+			assert degreeIndex.getColDegree(j) == count;
+		}
+	}
+}
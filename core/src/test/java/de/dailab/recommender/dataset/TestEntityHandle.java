@@ -0,0 +1,73 @@
+package de.dailab.recommender.dataset;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test entity handles and the map keyed by them.
+ * 
+ * @author kunegis
+ */
+public class TestEntityHandle
+{
+	/**
+	 * Handles translate back to the same entities, and type indexes are kept when an entity set is replaced.
+	 */
+	@Test
+	public void testHandle()
+	{
+		final SimpleBipartiteDataset dataset = new SimpleBipartiteDataset(300, 200);
+		final int subjectIndex = dataset.getEntityTypeIndex(SimpleBipartiteDataset.SUBJECT);
+		final int objectIndex = dataset.getEntityTypeIndex(SimpleBipartiteDataset.OBJECT);
+		assert subjectIndex != objectIndex;
+		assert dataset.getEntityType(subjectIndex).equals(SimpleBipartiteDataset.SUBJECT);
+
+		for (final Entity entity: new Entity[] { new Entity(SimpleBipartiteDataset.SUBJECT, 0),
+		    new Entity(SimpleBipartiteDataset.OBJECT, 199),
+		    new Entity(SimpleBipartiteDataset.SUBJECT, Integer.MAX_VALUE) })
+		{
+			final long handle = dataset.getHandle(entity);
+			assert handle >= 0;
+			assert EntityHandle.getId(handle) == entity.getId();
+			assert dataset.getEntity(handle).equals(entity);
+		}
+
+		dataset.addEntitySet(new EntitySet(SimpleBipartiteDataset.SUBJECT));
+		assert dataset.getEntityTypeIndex(SimpleBipartiteDataset.SUBJECT) == subjectIndex;
+	}
+
+	/**
+	 * The map agrees with a HashMap, including keys mapped to NULL.
+	 */
+	@Test
+	public void testMap()
+	{
+		final Random random = new Random(107);
+		final EntityHandleMap <Integer> handleMap = new EntityHandleMap <Integer>();
+		final Map <Long, Integer> map = new HashMap <Long, Integer>();
+
+		for (int k = 0; k < 50000; ++k)
+		{
+			final long handle = EntityHandle.pack(random.nextInt(4), random.nextInt(10000));
+			final Integer value = random.nextInt(10) == 0 ? null : k;
+			handleMap.put(handle, value);
+			map.put(handle, value);
+		}
+
+		assert handleMap.size() == map.size();
+		for (final Map.Entry <Long, Integer> entry: map.entrySet())
+		{
+			assert handleMap.containsKey(entry.getKey());
+			assert handleMap.get(entry.getKey()) == entry.getValue();
+		}
+		for (int k = 0; k < 1000; ++k)
+		{
+			final long handle = EntityHandle.pack(4 + random.nextInt(4), random.nextInt(10000));
+			assert !handleMap.containsKey(handle);
+			assert handleMap.get(handle) == null;
+		}
+	}
+}
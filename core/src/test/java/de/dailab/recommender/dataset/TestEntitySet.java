@@ -58,4 +58,54 @@ public class TestEntitySet
 		final String newTitle = (String) entitySet.getMetadata(newId, METADATA_TITLE);
 		assert newTitle.equals("New One");
 	}
+
+	/**
+	 * Entities added one by one and in batches keep their metadata, also after trimming.
+	 */
+	@Test
+	public void testAddEntities()
+	{
+		final MetadataName METADATA_URI = new MetadataName("uri");
+		final MetadataName METADATA_AGE = new MetadataName("age");
+
+		final EntitySet entitySet = new EntitySet(new EntityType("thing"));
+		final List <MetadataName> metadataNames = new ArrayList <MetadataName>();
+		metadataNames.add(METADATA_URI);
+		metadataNames.add(METADATA_AGE);
+		final List <Object> sampleMetadata = new ArrayList <Object>();
+		sampleMetadata.add("");
+		sampleMetadata.add(0);
+		entitySet.setMetadataNames(metadataNames, sampleMetadata);
+
+		for (int i = 0; i < 10000; ++i)
+		{
+			final int id = entitySet.addEntity();
+			assert id == i;
+			entitySet.setMetadata(id, METADATA_URI, "http://example.org/" + i);
+			entitySet.setMetadata(id, METADATA_AGE, 3 * i);
+		}
+
+		assert entitySet.addEntities(5000) == 10000;
+		assert entitySet.addEntities(0) == 15000;
+		assert entitySet.size() == 15000;
+		entitySet.setMetadata(14999, METADATA_AGE, -1);
+		entitySet.trimToSize();
+
+		assert entitySet.size() == 15000;
+		for (int i = 0; i < 10000; ++i)
+		{
+			assert entitySet.getMetadata(i, METADATA_URI).equals("http://example.org/" + i);
+			assert (Integer) entitySet.getMetadata(i, METADATA_AGE) == 3 * i;
+		}
+		assert entitySet.getMetadata(10000, METADATA_URI) == null;
+		assert (Integer) entitySet.getMetadata(14998, METADATA_AGE) == 0;
+		assert (Integer) entitySet.getMetadata(14999, METADATA_AGE) == -1;
+
+		/* Without metadata */
+		final EntitySet plainEntitySet = new EntitySet(new EntityType("other"));
+		assert plainEntitySet.addEntities(3) == 0;
+		assert plainEntitySet.addEntity() == 3;
+		plainEntitySet.trimToSize();
+		assert plainEntitySet.size() == 4;
+	}
 }
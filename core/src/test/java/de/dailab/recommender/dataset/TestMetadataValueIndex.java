@@ -0,0 +1,147 @@
+package de.dailab.recommender.dataset;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test looking up entities by their metadata.
+ * 
+ * @author kunegis
+ */
+public class TestMetadataValueIndex
+{
+	/**
+	 * Entities are found by string, integer and date metadata; duplicate values give the largest ID, and missing
+	 * values and values of the wrong type are not found.
+	 */
+	@Test
+	public void testLookup()
+	{
+		final Dataset dataset = createDataset();
+		final EntitySet users = dataset.getEntitySet(USER);
+
+		for (int i = 0; i < SIZE; ++i)
+		{
+			if (users.getMetadata(i, NAME) != null)
+			    assert dataset.getEntity(NAME, USER, new String("user-" + i)).getId() == i;
+			assert dataset.getEntity(DATE, USER, users.getMetadata(i, DATE)).getId() == i;
+		}
+
+		/* Ages are i modulo 100 */
+		for (int age = 0; age < 100; ++age)
+			assert dataset.getEntity(AGE, USER, age).getId() == SIZE - 100 + age;
+
+		for (final Object object: new Object[] { "user-" + SIZE, 100, (long) 3, "user-0", new Date(-1) })
+		{
+			try
+			{
+				dataset.getEntity(object instanceof Integer ? AGE : NAME, USER, object);
+				assert false;
+			}
+			catch (final NoSuchElementException noSuchElementException)
+			{
+				/* Expected */
+			}
+		}
+
+		try
+		{
+			dataset.getEntity(NAME, ITEM, "user-1");
+			assert false;
+		}
+		catch (final NoSuchElementException noSuchElementException)
+		{
+			/* Expected */
+		}
+	}
+
+	/**
+	 * Freezing builds the indexes, and concurrent lookups find the same entities.
+	 * 
+	 * @throws InterruptedException when interrupted
+	 */
+	@Test
+	public void testConcurrent()
+	    throws InterruptedException
+	{
+		final Dataset dataset = createDataset();
+		final MetadataValueIndex nameIndex = dataset.getMetadataValueIndex(NAME);
+		assert dataset.getMetadataValueIndex(NAME) == nameIndex;
+		dataset.freeze();
+		assert dataset.getMetadataValueIndex(NAME) != nameIndex;
+		final MetadataValueIndex ageIndex = dataset.getMetadataValueIndex(AGE);
+		dataset.getEntity(AGE, USER, 3);
+		assert dataset.getMetadataValueIndex(AGE) == ageIndex;
+
+		final Dataset unfrozen = createDataset();
+		final boolean failed[] = new boolean[1];
+		final Thread threads[] = new Thread[4];
+		for (int k = 0; k < threads.length; ++k)
+		{
+			final int seed = k;
+			threads[k] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					final Random random = new Random(seed);
+					for (int j = 0; j < 2000; ++j)
+					{
+						final int i = 1 + 7 * random.nextInt(SIZE / 7 - 1);
+						if (unfrozen.getEntity(NAME, USER, "user-" + i).getId() != i) failed[0] = true;
+					}
+				}
+			};
+			threads[k].start();
+		}
+		for (final Thread thread: threads)
+			thread.join();
+		assert !failed[0];
+	}
+
+	/**
+	 * Users with a name (NULL for multiples of seven), an age and a date, and items without metadata.
+	 */
+	private static Dataset createDataset()
+	{
+		final Random random = new Random(131);
+		final Dataset dataset = new Dataset();
+
+		final EntitySet users = new EntitySet(USER);
+		users.setSize(SIZE);
+		final List <MetadataName> metadataNames = new ArrayList <MetadataName>();
+		metadataNames.add(NAME);
+		metadataNames.add(AGE);
+		metadataNames.add(DATE);
+		final List <Object> sampleMetadata = new ArrayList <Object>();
+		sampleMetadata.add("");
+		sampleMetadata.add(0);
+		sampleMetadata.add(new Date());
+		users.setMetadataNames(metadataNames, sampleMetadata);
+		for (int i = 0; i < SIZE; ++i)
+		{
+			if (i % 7 != 0) users.setMetadata(i, NAME, "user-" + i);
+			users.setMetadata(i, AGE, i % 100);
+			users.setMetadata(i, DATE, new Date(1000L * i + random.nextInt(1000)));
+		}
+		dataset.addEntitySet(users);
+
+		final EntitySet items = new EntitySet(ITEM);
+		items.setSize(50);
+		dataset.addEntitySet(items);
+
+		return dataset;
+	}
+
+	private static final EntityType USER = new EntityType("user"), ITEM = new EntityType("item");
+
+	private static final MetadataName NAME = new MetadataName("name"), AGE = new MetadataName("age"),
+	    DATE = new MetadataName("date");
+
+	private static final int SIZE = 10000;
+}
@@ -0,0 +1,76 @@
+package de.dailab.recommender.dataset;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the storage of string metadata.
+ * 
+ * @author kunegis
+ */
+public class TestStringColumn
+{
+	/**
+	 * A column agrees with an array of strings when values are set in order, overwritten in random order, set to NULL
+	 * and added, both while it is a dictionary and after it has been converted to front-coded blocks.
+	 */
+	@Test
+	public void testStringColumn()
+	{
+		final Random random = new Random(127);
+		final int size = 3 * StringColumn.DICTIONARY_MAX_SIZE;
+		final StringColumn column = new StringColumn(size);
+		final String strings[] = new String[size + 100];
+
+		/* Few distinct values */
+		for (int id = 0; id < size; ++id)
+			set(column, strings, id, random.nextInt(5) == 0 ? null : "category-" + random.nextInt(20));
+		compare(column, strings);
+
+		/* Many distinct, prefix-sharing values, including long and non-ASCII ones */
+		for (int id = 0; id < size; ++id)
+			set(column, strings, id, random.nextInt(10) == 0 ? null : value(random, id));
+		compare(column, strings);
+
+		for (int k = 0; k < 20000; ++k)
+		{
+			final int id = random.nextInt(size);
+			set(column, strings, id, random.nextInt(10) == 0 ? null : value(random, random.nextInt(size)));
+		}
+		compare(column, strings);
+
+		column.setSize(size + 100);
+		assert column.get(size + 99) == null;
+		set(column, strings, size + 50, value(random, 0));
+		set(column, strings, size - 1, value(random, 1));
+		compare(column, strings);
+
+		final int oldIds[] = new int[size + 100];
+		for (int i = 0; i < oldIds.length; ++i)
+			oldIds[i] = oldIds.length - 1 - i;
+		final StringColumn renumbered = column.renumber(oldIds);
+		for (int i = 0; i < oldIds.length; ++i)
+			assert renumbered.get(i) == column.get(oldIds[i]);
+	}
+
+	private static String value(Random random, int id)
+	{
+		final StringBuilder ret = new StringBuilder("http://example.org/resource/\u00e9l\u00e9ment/");
+		if (random.nextInt(50) == 0) for (int i = 0; i < 300; ++i)
+			ret.append((char) ('a' + random.nextInt(26)));
+		return ret.append(id).toString();
+	}
+
+	private static void set(StringColumn column, String strings[], int id, String value)
+	{
+		column.set(id, value == null ? null : new String(value));
+		strings[id] = value == null ? null : value.intern();
+	}
+
+	private static void compare(StringColumn column, String strings[])
+	{
+		for (int id = 0; id < column.size(); ++id)
+			assert column.get(id) == strings[id];
+	}
+}
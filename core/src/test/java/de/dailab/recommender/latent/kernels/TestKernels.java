@@ -0,0 +1,89 @@
+package de.dailab.recommender.latent.kernels;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test the latent kernels against simple loops.
+ * 
+ * @author kunegis
+ */
+public class TestKernels
+{
+	/**
+	 * All kernels agree with simple loops, also for lengths that are not a multiple of the unrolling.
+	 */
+	@Test
+	public void testKernels()
+	{
+		final Random random = new Random(101);
+		for (final int n: new int[] { 0, 1, 3, 4, 5, 17, 1000 })
+		{
+			final double a[] = random(random, n), b[] = random(random, n);
+
+			double dot = 0., sum = 0.;
+			for (int i = 0; i < n; ++i)
+			{
+				dot += a[i] * b[i];
+				sum += a[i];
+			}
+			assert close(Kernels.dot(a, b), dot);
+			assert close(Kernels.sum(a), sum);
+			assert close(Kernels.norm(a), Math.sqrt(Kernels.dot(a, a)));
+
+			final double y[] = b.clone();
+			Kernels.axpy(-.5, a, y);
+			for (int i = 0; i < n; ++i)
+				assert close(y[i], b[i] - .5 * a[i]);
+
+			final double x[] = a.clone();
+			Kernels.scale(3., x);
+			for (int i = 0; i < n; ++i)
+				assert close(x[i], 3. * a[i]);
+		}
+	}
+
+	/**
+	 * The scalar products of one vector with all entities, over several blocks of entities.
+	 */
+	@Test
+	public void testDotAll()
+	{
+		final Random random = new Random(103);
+		final int rank = 7, n = 2500;
+		final double u[][] = new double[rank][];
+		for (int k = 0; k < rank; ++k)
+			u[k] = random(random, n);
+		final double x[] = random(random, rank);
+		x[2] = 0.;
+
+		final double scores[] = Kernels.dotAll(x, u, null);
+		assert scores.length == n;
+		for (int i = 0; i < n; ++i)
+		{
+			double score = 0.;
+			for (int k = 0; k < rank; ++k)
+				score += x[k] * u[k][i];
+			assert close(scores[i], score);
+		}
+
+		/* Scores are added to an existing vector */
+		final double twice[] = Kernels.dotAll(x, u, scores.clone());
+		for (int i = 0; i < n; ++i)
+			assert close(twice[i], 2. * scores[i]);
+	}
+
+	private static double[] random(Random random, int n)
+	{
+		final double ret[] = new double[n];
+		for (int i = 0; i < n; ++i)
+			ret[i] = random.nextGaussian();
+		return ret;
+	}
+
+	private static boolean close(double a, double b)
+	{
+		return Math.abs(a - b) < 1e-9 * (1 + Math.abs(b));
+	}
+}
@@ -0,0 +1,183 @@
+package de.dailab.recommender.matrix;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Test bitmap vectors and matrices against sets and memory-held matrices.
+ * 
+ * @author kunegis
+ */
+public class TestBitmapMatrix
+{
+	/**
+	 * Membership, intersection and union of vectors with sparse, dense and clustered blocks.
+	 */
+	@Test
+	public void testVector()
+	{
+		final Random random = new Random(31);
+
+		for (int t = 0; t < 20; ++t)
+		{
+			final TreeSet <Integer> a = randomSet(random), b = randomSet(random);
+			final BitmapVector vectorA = new BitmapVector(toArray(a)), vectorB = new BitmapVector(toArray(b));
+
+			assert vectorA.cardinality() == a.size();
+			assert vectorA.nnz() == a.size();
+			compare(a, vectorA);
+
+			for (int k = 0; k < 1000; ++k)
+			{
+				final int i = random.nextInt(1 << 19);
+				assert vectorA.contains(i) == a.contains(i);
+			}
+			for (final int i: a)
+				assert vectorA.contains(i);
+
+			final TreeSet <Integer> and = new TreeSet <Integer>(a);
+			and.retainAll(b);
+			compare(and, vectorA.and(vectorB));
+			assert vectorA.andCardinality(vectorB) == and.size();
+			assert vectorB.andCardinality(vectorA) == and.size();
+
+			final TreeSet <Integer> or = new TreeSet <Integer>(a);
+			or.addAll(b);
+			compare(or, vectorA.or(vectorB));
+		}
+	}
+
+	/**
+	 * A bitmap matrix has the same entries as the matrix it is built from.
+	 */
+	@Test
+	public void testMatrix()
+	{
+		final Matrix matrix = MatrixFactory.newMemoryMatrixUnweighted(200, 70000);
+		final Random random = new Random(37);
+		for (int i = 0; i < 200; ++i)
+		{
+			/* Rows of increasing density, some with runs */
+			final int count = random.nextInt(1 + 50 * i);
+			for (int k = 0; k < count; ++k)
+				matrix.set(i, random.nextInt(70000), 1.);
+			if (i % 3 == 0) for (int j = 1000; j < 1000 + i; ++j)
+				matrix.set(i, j, 1.);
+		}
+
+		final BitmapMatrix bitmapMatrix = new BitmapMatrix(matrix);
+		assert MatrixFactory.isFrozen(bitmapMatrix);
+		assert bitmapMatrix.nnz() == matrix.nnz();
+
+		final MatrixCursor cursor = bitmapMatrix.cursor();
+		for (int i = 0; i < matrix.rows(); ++i)
+		{
+			assert bitmapMatrix.getRowCount(i) == matrix.getRowCount(i);
+			int count = 0;
+			for (cursor.row(i); cursor.next(); ++count)
+				assert matrix.get(i, cursor.index()) == 1.;
+			assert count == matrix.getRowCount(i);
+		}
+		for (int j = 0; j < matrix.cols(); j += 7)
+		{
+			assert bitmapMatrix.getColCount(j) == matrix.getColCount(j);
+			for (final Entry entry: bitmapMatrix.col(j))
+				assert matrix.get(entry.index, j) == 1.;
+		}
+		for (int k = 0; k < 10000; ++k)
+		{
+			final int i = random.nextInt(200), j = random.nextInt(70000);
+			assert bitmapMatrix.get(i, j) == matrix.get(i, j);
+		}
+
+		int count = 0;
+		for (final FullEntry fullEntry: bitmapMatrix.all())
+		{
+			assert matrix.get(fullEntry.rowIndex, fullEntry.colIndex) == 1.;
+			++count;
+		}
+		assert count == matrix.nnz();
+
+		final double v[] = new double[matrix.cols()];
+		for (int j = 0; j < v.length; ++j)
+			v[j] = random.nextGaussian();
+		final double mult[] = matrix.mult(v, null, 2.);
+		final double multBitmap[] = bitmapMatrix.mult(v, null, 2.);
+		final double multBlock[][] = bitmapMatrix.multBlock(new double[][] { v }, null, 2.);
+		for (int i = 0; i < mult.length; ++i)
+		{
+			assert Math.abs(mult[i] - multBitmap[i]) < 1e-9;
+			assert Math.abs(mult[i] - multBlock[0][i]) < 1e-9;
+		}
+
+		final double u[] = new double[matrix.rows()];
+		for (int i = 0; i < u.length; ++i)
+			u[i] = random.nextGaussian();
+		final double multT[] = matrix.multT(u, null, 1.);
+		final double multTBitmap[] = bitmapMatrix.multT(u, null, 1.);
+		for (int j = 0; j < multT.length; ++j)
+			assert Math.abs(multT[j] - multTBitmap[j]) < 1e-9;
+	}
+
+	/**
+	 * A random set with blocks of different densities, and runs.
+	 */
+	private static TreeSet <Integer> randomSet(Random random)
+	{
+		final TreeSet <Integer> ret = new TreeSet <Integer>();
+		for (int block = 0; block < 8; ++block)
+		{
+			final int base = block << 16;
+			switch (random.nextInt(4))
+			{
+			case 0:
+				break;
+			case 1:
+				for (int k = random.nextInt(100); k > 0; --k)
+					ret.add(base + random.nextInt(1 << 16));
+				break;
+			case 2:
+				for (int k = 10000 + random.nextInt(20000); k > 0; --k)
+					ret.add(base + random.nextInt(1 << 16));
+				break;
+			case 3:
+				for (int r = random.nextInt(10); r >= 0; --r)
+				{
+					final int start = random.nextInt(60000);
+					for (int low = start; low < start + random.nextInt(5000); ++low)
+						ret.add(base + low);
+				}
+				break;
+			}
+		}
+		return ret;
+	}
+
+	private static int[] toArray(TreeSet <Integer> set)
+	{
+		final int ret[] = new int[set.size()];
+		int k = 0;
+		for (final int i: set)
+			ret[k++] = i;
+		return ret;
+	}
+
+	private static void compare(TreeSet <Integer> set, BitmapVector vector)
+	{
+		assert vector.cardinality() == set.size();
+		final int array[] = vector.toArray();
+		assert array.length == set.size();
+		int k = 0;
+		for (final int i: set)
+			assert array[k++] == i;
+
+		k = 0;
+		for (final Entry entry: vector)
+			assert entry.index == array[k++];
+		assert k == array.length;
+	}
+}
@@ -0,0 +1,76 @@
+package de.dailab.recommender.matrix;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Test hash vectors against maps.
+ * 
+ * @author kunegis
+ */
+public class TestHashVector
+{
+	/**
+	 * Scattered additions, including indexes that collide and entries that are set to zero.
+	 */
+	@Test
+	public void testAdd()
+	{
+		final Random random = new Random(67);
+		final HashVector vector = new HashVector();
+		final TreeMap <Integer, Double> map = new TreeMap <Integer, Double>();
+
+		for (int k = 0; k < 100000; ++k)
+		{
+			/* Many indexes with the same low bits */
+			final int i = random.nextBoolean() ? random.nextInt(5000) : random.nextInt(1000) << 16;
+			final double value = random.nextInt(7) - 3;
+			if (k % 10 == 0)
+			{
+				vector.setGeneric(i, value);
+				map.put(i, value);
+			}
+			else
+			{
+				vector.addGeneric(i, value);
+				map.put(i, (map.containsKey(i) ? map.get(i) : 0.) + value);
+			}
+		}
+
+		assert vector.nnz() == map.size();
+		for (final Map.Entry <Integer, Double> entry: map.entrySet())
+			assert vector.getGeneric(entry.getKey()) == entry.getValue();
+		for (int k = 0; k < 1000; ++k)
+		{
+			final int i = random.nextInt(1 << 26);
+			assert vector.getGeneric(i) == (map.containsKey(i) ? map.get(i) : 0.);
+		}
+
+		int count = 0;
+		for (final Cursor cursor = vector.cursor(); cursor.next(); ++count)
+			assert map.get(cursor.index()) == cursor.value();
+		assert count == map.size();
+
+		final Cursor sortedCursor = vector.sortedCursor();
+		for (final Map.Entry <Integer, Double> entry: map.entrySet())
+		{
+			assert sortedCursor.next();
+			assert sortedCursor.index() == entry.getKey();
+			assert sortedCursor.value() == entry.getValue();
+		}
+		assert !sortedCursor.next();
+
+		for (final MatrixIterator <Entry> iterator = vector.iterator(); iterator.hasNext();)
+		{
+			final Entry entry = iterator.next();
+			assert map.get(entry.index) == entry.value;
+			iterator.set(2 * entry.value);
+		}
+		for (final Map.Entry <Integer, Double> entry: map.entrySet())
+			assert vector.getGeneric(entry.getKey()) == 2 * entry.getValue();
+		assert vector.nnz() == map.size();
+	}
+}
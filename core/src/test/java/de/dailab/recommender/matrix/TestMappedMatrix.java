@@ -0,0 +1,133 @@
+package de.dailab.recommender.matrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Test writing and mapping matrices with MappedMatrix.
+ * 
+ * @author kunegis
+ */
+public class TestMappedMatrix
+{
+	/**
+	 * Write and map weighted and unweighted matrices and compare them with the originals.
+	 * 
+	 * @throws IOException on file errors
+	 */
+	@Test
+	public void testRoundTrip()
+	    throws IOException
+	{
+		for (final String valueType: new String[] { boolean.class.getSimpleName(), float.class.getSimpleName(),
+		    int.class.getSimpleName() })
+		{
+			final Matrix matrix = MatrixFactory.newMemoryMatrix(150, 70, valueType);
+			final Random random = new Random(3);
+			for (int k = 0; k < 1000; ++k)
+				matrix.set(random.nextInt(150), random.nextInt(70), random.nextInt(1000) - 500);
+
+			final File file = File.createTempFile("matrix", ".mapped");
+			try
+			{
+				MappedMatrix.write(matrix, file);
+				final Matrix mapped = new MappedMatrix(file);
+
+				assert MatrixFactory.isFrozen(mapped);
+				assert mapped.getWeightType().equals(valueType);
+				assert mapped.rows() == matrix.rows();
+				assert mapped.cols() == matrix.cols();
+				assert mapped.nnz() == matrix.nnz();
+
+				for (int i = 0; i < matrix.rows(); ++i)
+					for (int j = 0; j < matrix.cols(); ++j)
+						assert mapped.get(i, j) == matrix.get(i, j);
+
+				for (int i = 0; i < matrix.rows(); ++i)
+				{
+					assert mapped.getRowCount(i) == matrix.getRowCount(i);
+					for (final Entry entry: mapped.row(i))
+						assert entry.value == matrix.get(i, entry.index);
+				}
+
+				for (int j = 0; j < matrix.cols(); ++j)
+				{
+					assert mapped.getColCount(j) == matrix.getColCount(j);
+					for (final Entry entry: mapped.col(j))
+						assert entry.value == matrix.get(entry.index, j);
+				}
+
+				int count = 0;
+				for (final FullEntry fullEntry: mapped.all())
+				{
+					assert fullEntry.value == matrix.get(fullEntry.rowIndex, fullEntry.colIndex);
+					++count;
+				}
+				assert count == matrix.nnz();
+
+				final double v[] = new double[matrix.cols()];
+				for (int j = 0; j < v.length; ++j)
+					v[j] = random.nextGaussian();
+				final double mult[] = matrix.mult(v, null, 2.);
+				final double multMapped[] = mapped.mult(v, null, 2.);
+				for (int i = 0; i < mult.length; ++i)
+					assert Math.abs(mult[i] - multMapped[i]) < 1e-9;
+
+				final double u[] = new double[matrix.rows()];
+				for (int i = 0; i < u.length; ++i)
+					u[i] = random.nextGaussian();
+				final double multT[] = matrix.multT(u, null, 1.);
+				final double multTMapped[] = mapped.multT(u, null, 1.);
+				for (int j = 0; j < multT.length; ++j)
+					assert Math.abs(multT[j] - multTMapped[j]) < 1e-9;
+
+				final double multBlock[][] = mapped.multBlock(new double[][] { v, v }, null, 2.);
+				for (int i = 0; i < mult.length; ++i)
+					assert Math.abs(multBlock[1][i] - mult[i]) < 1e-9;
+				final double multBlockT[][] = mapped.multBlockT(new double[][] { u }, null, 1.);
+				for (int j = 0; j < multT.length; ++j)
+					assert Math.abs(multBlockT[0][j] - multT[j]) < 1e-9;
+
+				final Matrix copy = MatrixFactory.copyMatrix(mapped);
+				assert copy.nnz() == matrix.nnz();
+			}
+			finally
+			{
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Files that are not mapped matrix files are rejected.
+	 * 
+	 * @throws IOException on file errors
+	 */
+	@Test
+	public void testInvalid()
+	    throws IOException
+	{
+		final File file = File.createTempFile("matrix", ".mapped");
+		try
+		{
+			try
+			{
+				new MappedMatrix(file);
+				assert false;
+			}
+			catch (final IOException ioException)
+			{
+				/* expected */
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package de.dailab.recommender.matrix;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.template.MatrixBuilder;
+import de.dailab.recommender.matrix.template.MatrixFactory;
+
+/**
+ * Test varint matrices against the matrices they are built from.
+ * 
+ * @author kunegis
+ */
+public class TestVarintMatrix
+{
+	/**
+	 * Weighted and unweighted matrices with short and long rows, small and large gaps.
+	 */
+	@Test
+	public void testCompare()
+	{
+		for (final String valueType: new String[] { boolean.class.getSimpleName(), float.class.getSimpleName(),
+		    double.class.getSimpleName() })
+		{
+			final int m = 300, n = 3000000;
+			final Random random = new Random(41);
+			final MatrixBuilder matrixBuilder = new MatrixBuilder(m, n, valueType);
+			for (int i = 0; i < m; ++i)
+			{
+				/* Dense beginning, and sparse entries over the whole range */
+				final int count = random.nextInt(i + 1) * 3;
+				for (int k = 0; k < count; ++k)
+					matrixBuilder.add(i, random.nextInt(1000), random.nextInt(100) - 50);
+				for (int k = random.nextInt(20); k > 0; --k)
+					matrixBuilder.add(i, random.nextInt(n), random.nextGaussian());
+			}
+			final Matrix matrix = matrixBuilder.buildFrozen();
+			final VarintMatrix varintMatrix = new VarintMatrix(matrix);
+
+			assert MatrixFactory.isFrozen(varintMatrix);
+			assert varintMatrix.nnz() == matrix.nnz();
+			assert varintMatrix.getWeightType().equals(valueType);
+
+			final MatrixCursor cursor = varintMatrix.cursor();
+			for (int i = 0; i < m; ++i)
+			{
+				assert varintMatrix.getRowCount(i) == matrix.getRowCount(i);
+				int last = -1;
+				for (cursor.row(i); cursor.next();)
+				{
+					assert cursor.index() > last;
+					last = cursor.index();
+					assert (float) cursor.value() == (float) matrix.get(i, cursor.index());
+				}
+				for (final Entry entry: varintMatrix.row(i))
+				{
+					assert varintMatrix.get(i, entry.index) == entry.value;
+					if (entry.index > 0) assert varintMatrix.get(i, entry.index - 1) == matrix.get(i, entry.index - 1);
+				}
+			}
+			for (int j = 0; j < 1000; ++j)
+			{
+				assert varintMatrix.getColCount(j) == matrix.getColCount(j);
+				for (final Entry entry: varintMatrix.col(j))
+					assert (float) entry.value == (float) matrix.get(entry.index, j);
+			}
+			for (int k = 0; k < 10000; ++k)
+			{
+				final int i = random.nextInt(m), j = random.nextInt(k % 2 == 0 ? 1000 : n);
+				assert (float) varintMatrix.get(i, j) == (float) matrix.get(i, j);
+			}
+
+			int count = 0;
+			for (final FullEntry fullEntry: varintMatrix.all())
+			{
+				assert (float) fullEntry.value == (float) matrix.get(fullEntry.rowIndex, fullEntry.colIndex);
+				++count;
+			}
+			assert count == matrix.nnz();
+
+			final double v[] = new double[n];
+			for (int j = 0; j < n; ++j)
+				v[j] = random.nextGaussian();
+			final double mult[] = matrix.mult(v, null, 2.);
+			final double multVarint[] = varintMatrix.mult(v, null, 2.);
+			final double multBlock[][] = varintMatrix.multBlock(new double[][] { v, v }, null, 2.);
+			for (int i = 0; i < m; ++i)
+			{
+				assert Math.abs(mult[i] - multVarint[i]) < 1e-4;
+				assert Math.abs(mult[i] - multBlock[1][i]) < 1e-4;
+			}
+
+			final double u[] = new double[m];
+			for (int i = 0; i < m; ++i)
+				u[i] = random.nextGaussian();
+			final double multT[] = matrix.multT(u, null, 1.);
+			final double multTVarint[] = varintMatrix.multT(u, null, 1.);
+			final double multBlockT[][] = varintMatrix.multBlockT(new double[][] { u }, null, 1.);
+			for (int j = 0; j < n; j += 97)
+			{
+				assert Math.abs(multT[j] - multTVarint[j]) < 1e-4;
+				assert Math.abs(multT[j] - multBlockT[0][j]) < 1e-4;
+			}
+
+			/* Four bytes per index in the compressed format */
+			assert varintMatrix.getIndexSize() < 4L * 2 * matrix.nnz() + 4L * 3 * (m + n + 2);
+		}
+	}
+}
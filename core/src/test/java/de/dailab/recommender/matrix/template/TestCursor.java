@@ -0,0 +1,94 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Cursor;
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.Vector;
+import de.dailab.recommender.matrix.ZeroMatrix;
+
+/**
+ * Test that cursors visit the same entries as iterators.
+ * 
+ * @author kunegis
+ */
+public class TestCursor
+{
+	/**
+	 * Compare cursors and iterators of memory-held and frozen matrices, weighted and unweighted.
+	 */
+	@Test
+	public void testMatrix()
+	{
+		for (final String valueType: new String[] { float.class.getSimpleName(), boolean.class.getSimpleName() })
+		{
+			final Matrix matrix = MatrixFactory.newMemoryMatrix(40, 300, valueType);
+			final Random random = new Random(13);
+			for (int k = 0; k < 900; ++k)
+				matrix.set(random.nextInt(40), random.nextInt(300), 1 + random.nextInt(5));
+
+			compare(matrix);
+			compare(MatrixFactory.freeze(matrix));
+		}
+	}
+
+	/**
+	 * Cursors over the rows and columns of zero matrices with no rows or no columns, as used for relationship sets
+	 * with an empty entity set, have no entries.
+	 */
+	@Test
+	public void testZeroMatrix()
+	{
+		compare(new ZeroMatrix(3, 0));
+		compare(new ZeroMatrix(0, 3));
+
+		final MatrixCursor cursor = new ZeroMatrix(3, 0).cursor();
+		for (int i = 0; i < 3; ++i)
+			assert !cursor.row(i).next();
+	}
+
+	/**
+	 * Compare cursors and iterators of vectors.
+	 */
+	@Test
+	public void testVector()
+	{
+		for (final String valueType: new String[] { double.class.getSimpleName(), boolean.class.getSimpleName() })
+		{
+			final Vector vector = MatrixFactory.newMemoryVector(1000, valueType);
+			final Random random = new Random(19);
+			for (int k = 0; k < 100; ++k)
+				vector.setGeneric(random.nextInt(1000), 1 + random.nextInt(5));
+
+			compare(vector.iterator(), vector.cursor());
+		}
+	}
+
+	private static void compare(Matrix matrix)
+	{
+		/* One cursor is used for all rows and columns */
+		final MatrixCursor cursor = matrix.cursor();
+
+		for (int i = 0; i < matrix.rows(); ++i)
+			compare(matrix.row(i).iterator(), cursor.row(i));
+		for (int j = 0; j < matrix.cols(); ++j)
+			compare(matrix.col(j).iterator(), cursor.col(j));
+	}
+
+	private static void compare(Iterator <Entry> iterator, Cursor cursor)
+	{
+		while (iterator.hasNext())
+		{
+			final Entry entry = iterator.next();
+			assert cursor.next();
+			assert cursor.index() == entry.index;
+			assert cursor.value() == entry.value;
+		}
+		assert !cursor.next();
+	}
+}
@@ -0,0 +1,178 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.MatrixIterator;
+
+/**
+ * Test dense matrices against sparse matrices with the same entries.
+ * 
+ * @author kunegis
+ */
+public class TestDenseMatrix
+{
+	/**
+	 * Entries, counts, iteration and multiplication, with more columns than are multiplied at once.
+	 */
+	@Test
+	public void testCompare()
+	{
+		for (final String valueType: new String[] { float.class.getSimpleName(), double.class.getSimpleName() })
+		{
+			final int m = 30, n = 2500;
+			final Matrix dense = MatrixFactory.newDenseMatrix(m, n, valueType);
+			assert dense.getWeightType().equals(valueType);
+
+			/* Values are overwritten, some of them with zero */
+			final Random random = new Random(59);
+			final double values[][] = new double[m][n];
+			for (int k = 0; k < m * n; ++k)
+			{
+				final int i = random.nextInt(m), j = random.nextInt(n);
+				final double value = random.nextInt(3) == 0 ? 0. : random.nextInt(100) - 50;
+				dense.set(i, j, value);
+				values[i][j] = value;
+			}
+			final Matrix sparse = MatrixFactory.newMemoryMatrix(m, n, valueType);
+			for (int i = 0; i < m; ++i)
+				for (int j = 0; j < n; ++j)
+					if (values[i][j] != 0.) sparse.set(i, j, values[i][j]);
+
+			assert dense.nnz() == sparse.nnz();
+			for (int i = 0; i < m; ++i)
+				assert dense.getRowCount(i) == sparse.getRowCount(i);
+			for (int j = 0; j < n; ++j)
+				assert dense.getColCount(j) == sparse.getColCount(j);
+
+			final MatrixCursor cursor = dense.cursor();
+			for (int i = 0; i < m; ++i)
+			{
+				int count = 0;
+				for (final Entry entry: dense.row(i))
+				{
+					assert entry.value != 0.;
+					assert sparse.get(i, entry.index) == entry.value;
+					++count;
+				}
+				assert count == sparse.getRowCount(i);
+				for (cursor.row(i); cursor.next(); --count)
+					assert cursor.value() == sparse.get(i, cursor.index());
+				assert count == 0;
+			}
+			for (int j = 0; j < n; j += 13)
+			{
+				for (final Entry entry: dense.col(j))
+					assert sparse.get(entry.index, j) == entry.value;
+				for (cursor.col(j); cursor.next();)
+					assert cursor.value() == sparse.get(cursor.index(), j);
+			}
+
+			final double v[] = new double[n];
+			for (int j = 0; j < n; ++j)
+				v[j] = random.nextGaussian();
+			final double u[] = new double[m];
+			for (int i = 0; i < m; ++i)
+				u[i] = random.nextGaussian();
+			compare(sparse.mult(v, null, 2.), dense.mult(v, null, 2.));
+			compare(sparse.multT(u, null, 3.), dense.multT(u, null, 3.));
+			compare(sparse.mult(v, null, 1.), dense.multBlock(new double[][] { v, v }, null, 1.)[1]);
+			compare(sparse.multT(u, null, 1.), dense.multBlockT(new double[][] { u }, null, 1.)[0]);
+			compare(sparse.multT(u, null, 1.), ParallelMultiplication.multT(dense, u, null, 1.));
+
+			/* Setting values through the iterator updates the counts */
+			for (final MatrixIterator <FullEntry> iterator = dense.all().iterator(); iterator.hasNext();)
+			{
+				final FullEntry fullEntry = iterator.next();
+				if (fullEntry.rowIndex == 0) iterator.set(0.);
+			}
+			assert dense.getRowCount(0) == 0;
+			assert dense.nnz() == sparse.nnz() - sparse.getRowCount(0);
+		}
+	}
+
+	/**
+	 * The planner chooses dense matrices for nearly full weighted matrices only; build() never returns dense matrices.
+	 */
+	@Test
+	public void testChoice()
+	{
+		final Random random = new Random(61);
+		final MatrixBuilder builder = new MatrixBuilder(100, 40, byte.class.getSimpleName());
+		final MatrixBuilder builderPlanned = new MatrixBuilder(100, 40, byte.class.getSimpleName());
+		final MatrixBuilder builderSparse = new MatrixBuilder(100, 40, byte.class.getSimpleName());
+		for (int i = 0; i < 100; ++i)
+		{
+			for (int j = 0; j < 40; ++j)
+			{
+				if (random.nextInt(10) == 0) continue;
+				final int value = 1 + random.nextInt(10);
+				builder.add(i, j, value);
+				builderPlanned.add(i, j, value);
+				if (j % 5 == 0) builderSparse.add(i, j, value);
+			}
+		}
+
+		final Matrix matrix = builder.build();
+		assert !(matrix instanceof DenseMatrixFloat);
+		builderSparse.buildPlanned(true);
+		assert builderSparse.getPlan().layout == MatrixPlan.Layout.MEMORY;
+
+		final Matrix matrixPlanned = builderPlanned.buildPlanned(true);
+		assert builderPlanned.getPlan().layout == MatrixPlan.Layout.DENSE;
+		assert matrixPlanned instanceof DenseMatrixFloat;
+
+		for (final FullEntry fullEntry: matrix.all())
+			assert matrixPlanned.get(fullEntry.rowIndex, fullEntry.colIndex) == fullEntry.value;
+		assert matrixPlanned.nnz() == matrix.nnz();
+
+		assert MatrixFactory.newMemoryMatrix(matrixPlanned).getClass() == matrixPlanned.getClass();
+		assert MatrixFactory.freeze(matrixPlanned).nnz() == matrixPlanned.nnz();
+	}
+
+	/**
+	 * Entries of value zero are kept by MatrixBuilder, which therefore does not choose a dense matrix for them, as
+	 * set() does for memory-held matrices.
+	 */
+	@Test
+	public void testZero()
+	{
+		for (final boolean planned: new boolean[] { false, true })
+		{
+			final MatrixBuilder builder = new MatrixBuilder(2, 2, float.class.getSimpleName());
+			builder.add(0, 0, 1);
+			builder.add(0, 1, 0);
+			builder.add(1, 0, 2);
+			builder.add(1, 1, 3);
+			final Matrix matrix = planned ? builder.buildPlanned(true) : builder.build();
+			assert !(matrix instanceof DenseMatrixFloat);
+			assert matrix.nnz() == 4;
+			assert matrix.getRowCount(0) == 2 && matrix.getColCount(1) == 2;
+
+			final Matrix memoryMatrix = MatrixFactory.newMemoryMatrix(2, 2, float.class.getSimpleName());
+			memoryMatrix.set(0, 0, 1);
+			memoryMatrix.set(0, 1, 0);
+			memoryMatrix.set(1, 0, 2);
+			memoryMatrix.set(1, 1, 3);
+			assert memoryMatrix.nnz() == matrix.nnz();
+		}
+
+		final MatrixBuilder builder = new MatrixBuilder(2, 2, float.class.getSimpleName());
+		builder.add(0, 1, 0);
+		final Matrix frozen = builder.buildPlanned(false);
+		assert frozen.nnz() == 1;
+		assert frozen.getRowCount(0) == 1;
+	}
+
+	private static void compare(double expected[], double actual[])
+	{
+		assert expected.length == actual.length;
+		for (int i = 0; i < expected.length; ++i)
+			assert Math.abs(expected[i] - actual[i]) < 1e-6 * (1 + Math.abs(expected[i]));
+	}
+}
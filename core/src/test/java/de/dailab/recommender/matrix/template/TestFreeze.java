@@ -0,0 +1,186 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FrozenMatrix;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.ZeroMatrix;
+
+/**
+ * Test frozen matrices as returned by MatrixFactory.freeze().
+ * 
+ * @author kunegis
+ */
+public class TestFreeze
+{
+	/**
+	 * Freeze a weighted matrix and compare all access methods with the original.
+	 */
+	@Test
+	public void testWeighted()
+	{
+		final Matrix matrix = MatrixFactory.newMemoryMatrix(300, 90, float.class.getSimpleName());
+		fill(matrix, 2000);
+
+		final Matrix frozen = MatrixFactory.freeze(matrix);
+
+		assert MatrixFactory.isFrozen(frozen);
+		assert frozen.getWeightType().equals(float.class.getSimpleName());
+		compare(matrix, frozen);
+	}
+
+	/**
+	 * Freeze an unweighted matrix and compare all access methods with the original.
+	 */
+	@Test
+	public void testUnweighted()
+	{
+		final Matrix matrix = MatrixFactory.newMemoryMatrixUnweighted(70, 400);
+		fill(matrix, 1500);
+
+		final Matrix frozen = MatrixFactory.freeze(matrix);
+
+		assert MatrixFactory.isFrozen(frozen);
+		assert frozen.getWeightType().equals(boolean.class.getSimpleName());
+		compare(matrix, frozen);
+	}
+
+	/**
+	 * Frozen matrices cannot be modified, but empty matrices of the same type can be created from them.
+	 */
+	@Test
+	public void testReadOnly()
+	{
+		final Matrix matrix = MatrixFactory.newMemoryMatrix(5, 7);
+		matrix.set(1, 2, 3.);
+		final Matrix frozen = MatrixFactory.freeze(matrix);
+
+		assert MatrixFactory.freeze(frozen) == frozen;
+
+		try
+		{
+			frozen.set(1, 2, 4.);
+			assert false;
+		}
+		catch (final UnsupportedOperationException unsupportedOperationException)
+		{
+			/* expected */
+		}
+
+		final Matrix copy = MatrixFactory.copyMatrix(frozen);
+		assert !MatrixFactory.isFrozen(copy);
+		assert copy.get(1, 2) == 3.;
+		copy.set(1, 2, 4.);
+		assert copy.get(1, 2) == 4.;
+	}
+
+	/**
+	 * Matrices without rows or columns are frozen to empty compressed matrices, also when built with MatrixBuilder.
+	 */
+	@Test
+	public void testEmpty()
+	{
+		final Matrix frozens[] = new Matrix[]
+		{ MatrixFactory.freeze(new ZeroMatrix(3, 0)), MatrixFactory.freeze(new ZeroMatrix(0, 4)),
+		    new MatrixBuilder(3, 0, float.class.getSimpleName()).buildFrozen(),
+		    new MatrixBuilder(0, 0, boolean.class.getSimpleName()).buildPlanned(false) };
+		for (final Matrix frozen: frozens)
+		{
+			assert MatrixFactory.isFrozen(frozen) && frozen instanceof FrozenMatrix;
+			assert MatrixFactory.freeze(frozen) == frozen;
+			assert frozen.nnz() == 0;
+			for (int i = 0; i < frozen.rows(); ++i)
+			{
+				assert frozen.getRowCount(i) == 0;
+				assert !frozen.cursor().row(i).next();
+			}
+			assert frozen.mult(new double[frozen.cols()], null, 1.).length == frozen.rows();
+			assert frozen.multT(new double[frozen.rows()], null, 1.).length == frozen.cols();
+		}
+		assert frozens[0].rows() == 3 && frozens[0].cols() == 0;
+		assert frozens[1].rows() == 0 && frozens[1].cols() == 4;
+		assert frozens[2].getWeightType().equals(float.class.getSimpleName());
+	}
+
+	private static void fill(Matrix matrix, int count)
+	{
+		final Random random = new Random(17);
+		for (int k = 0; k < count; ++k)
+			matrix.set(random.nextInt(matrix.rows()), random.nextInt(matrix.cols()), 1 + random.nextInt(9));
+	}
+
+	private static void compare(Matrix matrix, Matrix frozen)
+	{
+		assert frozen.rows() == matrix.rows();
+		assert frozen.cols() == matrix.cols();
+		assert frozen.nnz() == matrix.nnz();
+
+		for (int i = 0; i < matrix.rows(); ++i)
+		{
+			assert frozen.getRowCount(i) == matrix.getRowCount(i);
+			int last = -1;
+			for (final Entry entry: frozen.row(i))
+			{
+				assert entry.index > last;
+				last = entry.index;
+				assert entry.value == matrix.get(i, entry.index);
+			}
+		}
+
+		for (int j = 0; j < matrix.cols(); ++j)
+		{
+			assert frozen.getColCount(j) == matrix.getColCount(j);
+			int last = -1;
+			for (final Entry entry: frozen.col(j))
+			{
+				assert entry.index > last;
+				last = entry.index;
+				assert entry.value == matrix.get(entry.index, j);
+			}
+		}
+
+		for (int i = 0; i < matrix.rows(); ++i)
+			for (int j = 0; j < matrix.cols(); ++j)
+				assert frozen.get(i, j) == matrix.get(i, j);
+
+		int count = 0;
+		for (final FullEntry fullEntry: frozen.all())
+		{
+			assert fullEntry.value == matrix.get(fullEntry.rowIndex, fullEntry.colIndex);
+			++count;
+		}
+		assert count == matrix.nnz();
+
+		final Random random = new Random(23);
+		final double u[] = new double[matrix.rows()];
+		final double v[] = new double[matrix.cols()];
+		for (int i = 0; i < u.length; ++i)
+			u[i] = random.nextGaussian();
+		for (int j = 0; j < v.length; ++j)
+			v[j] = random.nextGaussian();
+
+		final double mult[] = matrix.mult(v, null, 1.5);
+		final double multFrozen[] = frozen.mult(v, null, 1.5);
+		for (int i = 0; i < u.length; ++i)
+			assert Math.abs(mult[i] - multFrozen[i]) < 1e-9;
+
+		final double multT[] = matrix.multT(u, null, -.5);
+		final double multTFrozen[] = frozen.multT(u, null, -.5);
+		for (int j = 0; j < v.length; ++j)
+			assert Math.abs(multT[j] - multTFrozen[j]) < 1e-9;
+
+		int rowCount = 0;
+		for (@SuppressWarnings("unused")
+		final Integer i: frozen.getRows())
+			++rowCount;
+		int rowCountExpected = 0;
+		for (@SuppressWarnings("unused")
+		final Integer i: matrix.getRows())
+			++rowCountExpected;
+		assert rowCount == rowCountExpected;
+	}
+}
@@ -0,0 +1,120 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+
+/**
+ * Test memory matrices with a lazy column index against matrices with the same entries.
+ * 
+ * @author kunegis
+ */
+public class TestLazyMatrix
+{
+	/**
+	 * Entries set before and after the column index is built are found in the columns.
+	 */
+	@Test
+	public void testSet()
+	{
+		for (final String valueType: new String[] { long.class.getSimpleName(), float.class.getSimpleName(),
+		    boolean.class.getSimpleName() })
+		{
+			final Random random = new Random(79);
+			final Matrix lazy = MatrixFactory.newLazyMemoryMatrix(300, 200, valueType);
+			final Matrix matrix = MatrixFactory.newMemoryMatrix(300, 200, valueType);
+			assert lazy.getClass() == matrix.getClass();
+
+			for (int k = 0; k < 3000; ++k)
+			{
+				final int i = random.nextInt(300), j = random.nextInt(200);
+				final double value = 1 + random.nextInt(100);
+				lazy.set(i, j, value);
+				matrix.set(i, j, value);
+			}
+			assert lazy.nnz() == matrix.nnz();
+			assert lazy.get(7, 9) == matrix.get(7, 9);
+			compare(matrix, lazy);
+
+			/* The column index now exists and is updated by set() */
+			lazy.set(299, 199, 5.);
+			matrix.set(299, 199, 5.);
+			lazy.set(0, 199, 6.);
+			matrix.set(0, 199, 6.);
+			compare(matrix, lazy);
+		}
+	}
+
+	/**
+	 * Matrices built lazily by MatrixBuilder equal those built by build(), also when the column index is built in
+	 * parallel by a multiplication.
+	 */
+	@Test
+	public void testBuild()
+	{
+		for (final String valueType: new String[] { double.class.getSimpleName(), boolean.class.getSimpleName() })
+		{
+			final Random random = new Random(83);
+			final MatrixBuilder builder = new MatrixBuilder(2000, 3000, valueType);
+			final MatrixBuilder builderLazy = new MatrixBuilder(2000, 3000, valueType);
+			for (int k = 0; k < 4 * ParallelMultiplication.MIN_PARALLEL_NNZ; ++k)
+			{
+				final int i = random.nextInt(2000), j = random.nextInt(3000);
+				final double value = random.nextGaussian();
+				builder.add(i, j, value);
+				builderLazy.add(i, j, value);
+			}
+			final Matrix matrix = builder.build();
+			final Matrix lazy = builderLazy.buildLazy();
+			assert lazy.nnz() == matrix.nnz();
+
+			final double v[] = new double[2000];
+			for (int i = 0; i < v.length; ++i)
+				v[i] = random.nextGaussian();
+			final double expected[] = matrix.multT(v, null, 1.);
+			final double actual[] = ParallelMultiplication.multT(lazy, v, null, 1.);
+			for (int j = 0; j < expected.length; ++j)
+				assert Math.abs(expected[j] - actual[j]) < 1e-9 * (1 + Math.abs(expected[j]));
+
+			compare(matrix, lazy);
+		}
+	}
+
+	private static void compare(Matrix expected, Matrix actual)
+	{
+		assert expected.nnz() == actual.nnz();
+		for (final FullEntry fullEntry: expected.all())
+			assert actual.get(fullEntry.rowIndex, fullEntry.colIndex) == fullEntry.value;
+
+		final MatrixCursor cursor = actual.cursor();
+		for (int j = 0; j < expected.cols(); ++j)
+		{
+			assert actual.getColCount(j) == expected.getColCount(j);
+			int count = 0;
+			for (final Entry entry: actual.col(j))
+			{
+				assert expected.get(entry.index, j) == entry.value;
+				++count;
+			}
+			assert count == expected.getColCount(j);
+			for (cursor.col(j); cursor.next(); --count)
+				assert expected.get(cursor.index(), j) == cursor.value();
+			assert count == 0;
+		}
+
+		int cols = 0;
+		for (@SuppressWarnings("unused")
+		final int j: actual.getCols())
+			++cols;
+		int expectedCols = 0;
+		for (@SuppressWarnings("unused")
+		final int j: expected.getCols())
+			++expectedCols;
+		assert cols == expectedCols;
+	}
+}
@@ -0,0 +1,123 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.Matrix;
+
+/**
+ * Test the bulk construction of matrices using MatrixBuilder.
+ * 
+ * @author kunegis
+ */
+public class TestMatrixBuilder
+{
+	/**
+	 * Entries given in random order with duplicates result in the same matrix as calling set() for each entry.
+	 */
+	@Test
+	public void testLast()
+	{
+		for (final String valueType: new String[] { float.class.getSimpleName(), boolean.class.getSimpleName() })
+		{
+			final Matrix matrix = MatrixFactory.newMemoryMatrix(200, 300, valueType);
+			final MatrixBuilder matrixBuilder = new MatrixBuilder(200, 300, valueType);
+
+			final Random random = new Random(5);
+			for (int k = 0; k < 3000; ++k)
+			{
+				final int i = random.nextInt(20) * 10;
+				final int j = random.nextInt(30);
+				final double value = 1 + random.nextInt(9);
+				matrix.set(i, j, value);
+				matrixBuilder.add(i, j, value);
+			}
+
+			final Matrix built = matrixBuilder.build();
+			assert !MatrixFactory.isFrozen(built);
+			assert built.getClass() == matrix.getClass();
+			compare(matrix, built);
+
+			built.set(199, 299, 1.);
+			assert built.get(199, 299) == 1.;
+		}
+	}
+
+	/**
+	 * Duplicate entries are added in SUM mode.
+	 */
+	@Test
+	public void testSum()
+	{
+		final MatrixBuilder matrixBuilder = new MatrixBuilder(3, 4, null, MatrixBuilder.Duplicates.SUM);
+		matrixBuilder.add(2, 1, 1.5);
+		matrixBuilder.add(0, 3, 2.);
+		matrixBuilder.add(2, 1, -4.);
+		matrixBuilder.add(2, 0);
+		matrixBuilder.add(2, 1);
+		assert matrixBuilder.size() == 5;
+
+		final Matrix matrix = matrixBuilder.buildFrozen();
+
+		assert MatrixFactory.isFrozen(matrix);
+		assert matrix.nnz() == 3;
+		assert matrix.get(2, 1) == -1.5;
+		assert matrix.get(2, 0) == 1.;
+		assert matrix.get(0, 3) == 2.;
+		assert matrix.getColCount(1) == 1;
+
+		int last = -1;
+		for (final Entry entry: matrix.row(2))
+		{
+			assert entry.index > last;
+			last = entry.index;
+		}
+		assert last == 1;
+	}
+
+	/**
+	 * Frozen matrices built directly are equal to frozen matrices created from memory-held matrices.
+	 */
+	@Test
+	public void testFrozen()
+	{
+		final Matrix matrix = MatrixFactory.newMemoryMatrix(1000, 50, "byte");
+		final MatrixBuilder matrixBuilder = new MatrixBuilder(1000, 50, "byte");
+
+		final Random random = new Random(11);
+		for (int k = 0; k < 4000; ++k)
+		{
+			final int i = random.nextInt(1000);
+			final int j = random.nextInt(50);
+			final double value = random.nextInt(100);
+			matrix.set(i, j, value);
+			matrixBuilder.add(i, j, value);
+		}
+
+		compare(MatrixFactory.freeze(matrix), matrixBuilder.buildFrozen());
+	}
+
+	private static void compare(Matrix matrix, Matrix built)
+	{
+		assert built.rows() == matrix.rows();
+		assert built.cols() == matrix.cols();
+		assert built.nnz() == matrix.nnz();
+		assert built.getWeightType().equals(matrix.getWeightType());
+
+		for (int i = 0; i < matrix.rows(); ++i)
+		{
+			assert built.getRowCount(i) == matrix.getRowCount(i);
+			for (final Entry entry: built.row(i))
+				assert entry.value == matrix.get(i, entry.index);
+		}
+
+		for (int j = 0; j < matrix.cols(); ++j)
+		{
+			assert built.getColCount(j) == matrix.getColCount(j);
+			for (final Entry entry: built.col(j))
+				assert entry.value == matrix.get(entry.index, j);
+		}
+	}
+}
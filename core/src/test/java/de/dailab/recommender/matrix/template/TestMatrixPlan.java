@@ -0,0 +1,150 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.BitmapMatrix;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.VarintMatrix;
+
+/**
+ * Test the layouts chosen by MatrixBuilder.buildPlanned().
+ * 
+ * @author kunegis
+ */
+public class TestMatrixPlan
+{
+	/**
+	 * Integer ratings are stored as bytes, modifiable only when asked for.
+	 */
+	@Test
+	public void testRatings()
+	{
+		final MatrixBuilder modifiableBuilder = ratings(), readOnlyBuilder = ratings();
+
+		final Matrix modifiable = modifiableBuilder.buildPlanned(true);
+		assert modifiableBuilder.getPlan().layout == MatrixPlan.Layout.MEMORY;
+		assert modifiable.getWeightType().equals(float.class.getSimpleName());
+		assert !MatrixFactory.isFrozen(modifiable);
+
+		final Matrix readOnly = readOnlyBuilder.buildPlanned(false);
+		final MatrixPlan plan = readOnlyBuilder.getPlan();
+		assert plan.layout == MatrixPlan.Layout.COMPRESSED || plan.layout == MatrixPlan.Layout.VARINT;
+		assert plan.minValue == 1. && plan.maxValue == 5.;
+		assert readOnly.getWeightType().equals(byte.class.getSimpleName());
+		assert MatrixFactory.isFrozen(readOnly);
+
+		compare(modifiable, readOnly);
+	}
+
+	/**
+	 * Symmetric entries are detected and stored once per row.
+	 */
+	@Test
+	public void testSymmetric()
+	{
+		final Random random = new Random(43);
+		final MatrixBuilder builder = new MatrixBuilder(300, 300, double.class.getSimpleName());
+		final MatrixBuilder builderAsymmetric = new MatrixBuilder(300, 300, double.class.getSimpleName());
+		for (int k = 0; k < 2000; ++k)
+		{
+			final int i = random.nextInt(300), j = random.nextInt(300);
+			final double value = random.nextGaussian();
+			builder.add(i, j, value);
+			builder.add(j, i, value);
+			builderAsymmetric.add(i, j, value);
+			builderAsymmetric.add(j, i, value);
+		}
+		builderAsymmetric.add(1, 2, 7.);
+
+		final Matrix matrix = builder.buildPlanned(true);
+		assert builder.getPlan().layout == MatrixPlan.Layout.SYMMETRIC;
+		assert builder.getPlan().symmetric;
+		assert matrix.isSymmetric();
+		assert builder.getPlan().getSize(MatrixPlan.Layout.SYMMETRIC) < builder.getPlan().getSize(
+		    MatrixPlan.Layout.MEMORY);
+
+		final Matrix matrixAsymmetric = builderAsymmetric.buildPlanned(true);
+		assert builderAsymmetric.getPlan().layout == MatrixPlan.Layout.MEMORY;
+		assert !matrixAsymmetric.isSymmetric();
+		assert matrixAsymmetric.get(1, 2) == 7.;
+
+		for (final FullEntry fullEntry: matrix.all())
+		{
+			if (fullEntry.rowIndex == 1 && fullEntry.colIndex == 2) continue;
+			assert matrixAsymmetric.get(fullEntry.rowIndex, fullEntry.colIndex) == fullEntry.value;
+		}
+	}
+
+	/**
+	 * A binary matrix of dense blocks is stored as bitmaps, and a binary matrix with long sparse rows using varints.
+	 */
+	@Test
+	public void testBinary()
+	{
+		final MatrixBuilder builder = new MatrixBuilder(2000, 2000, boolean.class.getSimpleName());
+		final MatrixBuilder builderMemory = new MatrixBuilder(2000, 2000, boolean.class.getSimpleName());
+		for (int i = 0; i < 2000; ++i)
+		{
+			for (int j = i / 100 * 100; j < i / 100 * 100 + 100; ++j)
+			{
+				builder.add(i, j);
+				builderMemory.add(i, j);
+			}
+		}
+		final Matrix matrix = builder.buildPlanned(false);
+		assert builder.getPlan().layout == MatrixPlan.Layout.BITMAP;
+		assert matrix instanceof BitmapMatrix;
+		compare(builderMemory.build(), matrix);
+
+		final Random random = new Random(47);
+		final MatrixBuilder builderVarint = new MatrixBuilder(50, 70000, boolean.class.getSimpleName());
+		final MatrixBuilder builderCompressed = new MatrixBuilder(50, 70000, boolean.class.getSimpleName());
+		for (int i = 0; i < 50; ++i)
+		{
+			for (int k = 0; k < 20000; ++k)
+			{
+				final int j = random.nextInt(70000);
+				builderVarint.add(i, j);
+				builderCompressed.add(i, j);
+			}
+		}
+		final Matrix matrixVarint = builderVarint.buildPlanned(false);
+		assert builderVarint.getPlan().layout == MatrixPlan.Layout.VARINT;
+		assert matrixVarint instanceof VarintMatrix;
+		compare(builderCompressed.buildFrozen(), matrixVarint);
+	}
+
+	/**
+	 * Matrices created several times through the constructor cache are independent.
+	 */
+	@Test
+	public void testConstructorCache()
+	{
+		final Matrix a = MatrixFactory.newMemoryMatrix(10, 20, byte.class.getSimpleName());
+		final Matrix b = MatrixFactory.newMemoryMatrix(10, 20, byte.class.getSimpleName());
+		assert a.getClass() == b.getClass();
+		a.set(1, 2, 3.);
+		assert b.get(1, 2) == 0.;
+		assert MatrixFactory.freeze(a).get(1, 2) == 3.;
+		assert MatrixFactory.newMemoryMatrix(a).getClass() == a.getClass();
+	}
+
+	private static MatrixBuilder ratings()
+	{
+		final Random random = new Random(53);
+		final MatrixBuilder ret = new MatrixBuilder(500, 1000, float.class.getSimpleName());
+		for (int k = 0; k < 20000; ++k)
+			ret.add(random.nextInt(500), random.nextInt(1000), 1 + random.nextInt(5));
+		return ret;
+	}
+
+	private static void compare(Matrix expected, Matrix actual)
+	{
+		assert expected.nnz() == actual.nnz();
+		for (final FullEntry fullEntry: expected.all())
+			assert actual.get(fullEntry.rowIndex, fullEntry.colIndex) == fullEntry.value;
+	}
+}
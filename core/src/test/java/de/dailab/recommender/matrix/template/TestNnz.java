@@ -1,7 +1,10 @@
 package de.dailab.recommender.matrix.template;
 
+import java.util.Random;
+
 import org.junit.Test;
 
+import de.dailab.recommender.matrix.FullEntry;
 import de.dailab.recommender.matrix.Matrix;
 
 /**
@@ -54,4 +57,41 @@ public class TestNnz
 
 		assert nnz == 7;
 	}
+
+	/**
+	 * The number of entries maintained by set() equals the number of entries iterated over, in all kinds of memory
+	 * matrices, when entries are set repeatedly.
+	 */
+	@Test
+	public void testIncremental()
+	{
+		final Matrix matrices[] = new Matrix[] { MatrixFactory.newMemoryMatrix(200, 300, "short"),
+		    MatrixFactory.newMemoryMatrixUnweighted(200, 300), MatrixFactory.newSymmetricMatrix(200, "double"),
+		    MatrixFactory.newSymmetricMatrixUnweighted(200) };
+
+		for (final Matrix matrix: matrices)
+		{
+			final Random random = new Random(71);
+			for (int k = 0; k < 5000; ++k)
+			{
+				matrix.set(random.nextInt(matrix.rows()), random.nextInt(matrix.cols()), 1 + random.nextInt(3));
+				if (k % 1000 == 0) assert matrix.nnz() == count(matrix);
+			}
+			assert matrix.nnz() == count(matrix);
+
+			final MatrixBuilder builder = new MatrixBuilder(matrix.rows(), matrix.cols(), matrix.getWeightType());
+			for (final FullEntry fullEntry: matrix.all())
+				builder.add(fullEntry.rowIndex, fullEntry.colIndex, fullEntry.value);
+			assert builder.build().nnz() == matrix.nnz();
+		}
+	}
+
+	private static int count(Matrix matrix)
+	{
+		int ret = 0;
+		for (@SuppressWarnings("unused")
+		final FullEntry fullEntry: matrix.all())
+			++ret;
+		return ret;
+	}
 }
@@ -0,0 +1,155 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Matrix;
+
+/**
+ * Test that parallel multiplication and multiplication with several vectors at once give the same result as
+ * multiplication with one vector in one thread.
+ * 
+ * @author kunegis
+ */
+public class TestParallelMultiplication
+{
+	/**
+	 * Compare parallel and sequential mult() and multT() for memory-held and frozen matrices, weighted and unweighted.
+	 */
+	@Test
+	public void testMult()
+	{
+		final ExecutorService previous = ParallelMultiplication.getExecutorService();
+		final ExecutorService executorService = Executors.newFixedThreadPool(3);
+		ParallelMultiplication.setExecutorService(executorService, 3);
+
+		try
+		{
+			for (final String valueType: new String[] { double.class.getSimpleName(), boolean.class.getSimpleName() })
+			{
+				/* Skewed degrees, with some empty rows */
+				final Random random = new Random(7);
+				final MatrixBuilder matrixBuilder = new MatrixBuilder(3000, 800, valueType);
+				for (int k = 0; k < 4 * ParallelMultiplication.MIN_PARALLEL_NNZ; ++k)
+				{
+					final int i = (int) (3000 * Math.pow(random.nextDouble(), 3));
+					if (i % 7 == 0) continue;
+					matrixBuilder.add(i, random.nextInt(800), random.nextGaussian());
+				}
+				final Matrix matrix = matrixBuilder.build();
+				assert matrix.nnz() >= ParallelMultiplication.MIN_PARALLEL_NNZ;
+
+				compare(matrix, random);
+				compare(MatrixFactory.freeze(matrix), random);
+			}
+		}
+		finally
+		{
+			ParallelMultiplication.setExecutorService(previous, Runtime.getRuntime().availableProcessors());
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Tasks running in the pool can use parallel multiplication without waiting for each other, when the threads of
+	 * the executor service are created by a thread factory of ParallelMultiplication.
+	 */
+	@Test
+	public void testPoolThread()
+	    throws InterruptedException, ExecutionException, TimeoutException
+	{
+		final ExecutorService previous = ParallelMultiplication.getExecutorService();
+		final ExecutorService executorService = Executors.newFixedThreadPool(2, ParallelMultiplication
+		    .newThreadFactory(Executors.defaultThreadFactory()));
+		ParallelMultiplication.setExecutorService(executorService, 2);
+
+		try
+		{
+			final Random random = new Random(11);
+			final MatrixBuilder matrixBuilder = new MatrixBuilder(2000, 500, double.class.getSimpleName());
+			for (int k = 0; k < 2 * ParallelMultiplication.MIN_PARALLEL_NNZ; ++k)
+				matrixBuilder.add(random.nextInt(2000), random.nextInt(500), random.nextGaussian());
+			final Matrix matrix = matrixBuilder.build();
+			assert !ParallelMultiplication.isPoolThread();
+
+			/* As many tasks as threads, so that all threads would wait if the tasks were split */
+			final List <Future <?>> futures = new ArrayList <Future <?>>();
+			for (int t = 0; t < 2; ++t)
+			{
+				final int seed = t;
+				futures.add(executorService.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						assert ParallelMultiplication.isPoolThread();
+						compare(matrix, new Random(seed));
+					}
+				}));
+			}
+			for (final Future <?> future: futures)
+				future.get(60, TimeUnit.SECONDS);
+		}
+		finally
+		{
+			ParallelMultiplication.setExecutorService(previous, Runtime.getRuntime().availableProcessors());
+			executorService.shutdown();
+		}
+	}
+
+	private static void compare(Matrix matrix, Random random)
+	{
+		final double u[] = new double[matrix.rows()];
+		final double v[] = new double[matrix.cols()];
+		for (int i = 0; i < u.length; ++i)
+			u[i] = random.nextGaussian();
+		for (int j = 0; j < v.length; ++j)
+			v[j] = random.nextGaussian();
+
+		final double mult[] = matrix.mult(v, null, 1.5);
+		final double multParallel[] = ParallelMultiplication.mult(matrix, v, null, 1.5);
+		for (int i = 0; i < u.length; ++i)
+			assert mult[i] == multParallel[i];
+
+		final double multT[] = matrix.multT(u, null, -2.);
+		final double multTParallel[] = ParallelMultiplication.multT(matrix, u, null, -2.);
+		for (int j = 0; j < v.length; ++j)
+			assert multT[j] == multTParallel[j];
+
+		final double us[][] = new double[][] { u, mult, new double[u.length] };
+		final double vs[][] = new double[][] { v, multT, new double[v.length] };
+
+		final double multBlock[][] = matrix.multBlock(vs, null, .5);
+		final double multBlockParallel[][] = ParallelMultiplication.multBlock(matrix, vs, null, .5);
+		for (int k = 0; k < vs.length; ++k)
+		{
+			final double expected[] = matrix.mult(vs[k], null, .5);
+			for (int i = 0; i < u.length; ++i)
+			{
+				assert Math.abs(multBlock[k][i] - expected[i]) < 1e-9;
+				assert Math.abs(multBlockParallel[k][i] - expected[i]) < 1e-9;
+			}
+		}
+
+		final double multBlockT[][] = matrix.multBlockT(us, null, 3.);
+		final double multBlockTParallel[][] = ParallelMultiplication.multBlockT(matrix, us, null, 3.);
+		for (int k = 0; k < us.length; ++k)
+		{
+			final double expected[] = matrix.multT(us[k], null, 3.);
+			for (int j = 0; j < v.length; ++j)
+			{
+				assert Math.abs(multBlockT[k][j] - expected[j]) < 1e-9;
+				assert Math.abs(multBlockTParallel[k][j] - expected[j]) < 1e-9;
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package de.dailab.recommender.matrix.template;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.matrix.Entry;
+import de.dailab.recommender.matrix.FullEntry;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixIterator;
+
+/**
+ * Test symmetric matrices against asymmetric matrices containing each entry in both orientations.
+ * 
+ * @author kunegis
+ */
+public class TestSymmetricMatrix
+{
+	/**
+	 * Setting an entry of a symmetric matrix sets its symmetric entry, and the matrix behaves like an asymmetric matrix
+	 * in which both entries were set.
+	 */
+	@Test
+	public void testSet()
+	{
+		for (final String valueType: new String[] { float.class.getSimpleName(), boolean.class.getSimpleName() })
+		{
+			final Matrix matrix = MatrixFactory.newMemoryMatrix(300, valueType);
+			final Matrix symmetric = MatrixFactory.newSymmetricMatrix(300, valueType);
+			assert symmetric.isSymmetric();
+
+			final Random random = new Random(23);
+			for (int k = 0; k < 2000; ++k)
+			{
+				final int i = random.nextInt(300);
+				final int j = random.nextInt(300);
+				final double value = 1 + random.nextInt(5);
+				matrix.set(i, j, value);
+				matrix.set(j, i, value);
+				symmetric.set(i, j, value);
+			}
+
+			compare(matrix, symmetric, random);
+
+			final Matrix copy = MatrixFactory.copyMatrix(symmetric);
+			assert copy.isSymmetric();
+			compare(matrix, copy, random);
+		}
+	}
+
+	/**
+	 * MatrixBuilder.buildSymmetric() uses each entry in both orientations.
+	 */
+	@Test
+	public void testBuilder()
+	{
+		final Matrix matrix = MatrixFactory.newMemoryMatrix(1000, double.class.getSimpleName());
+		final MatrixBuilder matrixBuilder = new MatrixBuilder(1000, 1000, double.class.getSimpleName());
+
+		final Random random = new Random(29);
+		for (int k = 0; k < 5000; ++k)
+		{
+			final int i = random.nextInt(1000);
+			final int j = random.nextInt(100);
+			final double value = random.nextGaussian();
+			matrix.set(i, j, value);
+			matrix.set(j, i, value);
+			matrixBuilder.add(i, j, value);
+		}
+
+		final Matrix symmetric = matrixBuilder.buildSymmetric();
+		assert symmetric.isSymmetric();
+		compare(matrix, symmetric, random);
+	}
+
+	/**
+	 * Setting a value through the iterator of all() also sets the symmetric entry. The iterator visits (i,j) and (j,i),
+	 * so the value set last is used.
+	 */
+	@Test
+	public void testIteratorSet()
+	{
+		final Matrix symmetric = MatrixFactory.newSymmetricMatrix(5, null);
+		symmetric.set(1, 3, 1.);
+		symmetric.set(2, 2, 1.);
+
+		final MatrixIterator <FullEntry> iterator = symmetric.all().iterator();
+		while (iterator.hasNext())
+		{
+			final FullEntry fullEntry = iterator.next();
+			iterator.set(fullEntry.rowIndex);
+		}
+
+		assert symmetric.get(1, 3) == 3.;
+		assert symmetric.get(3, 1) == 3.;
+		assert symmetric.get(2, 2) == 2.;
+		assert symmetric.nnz() == 3;
+	}
+
+	private static void compare(Matrix matrix, Matrix symmetric, Random random)
+	{
+		final int n = matrix.rows();
+
+		assert symmetric.rows() == n && symmetric.cols() == n;
+		assert symmetric.nnz() == matrix.nnz();
+		assert symmetric.getWeightType().equals(matrix.getWeightType());
+
+		for (int i = 0; i < n; ++i)
+		{
+			assert symmetric.getRowCount(i) == matrix.getRowCount(i);
+			assert symmetric.getColCount(i) == matrix.getColCount(i);
+			for (final Entry entry: symmetric.row(i))
+				assert entry.value == matrix.get(i, entry.index);
+			for (final Entry entry: symmetric.col(i))
+				assert entry.value == matrix.get(entry.index, i);
+		}
+
+		for (int k = 0; k < 1000; ++k)
+		{
+			final int i = random.nextInt(n);
+			final int j = random.nextInt(n);
+			assert symmetric.get(i, j) == matrix.get(i, j);
+		}
+
+		final double v[] = new double[n];
+		for (int i = 0; i < n; ++i)
+			v[i] = random.nextGaussian();
+		final double mult[] = matrix.mult(v, null, 1.5);
+		final double multSymmetric[] = symmetric.mult(v, null, 1.5);
+		final double multTSymmetric[] = symmetric.multT(v, null, 1.5);
+		final double multParallel[] = ParallelMultiplication.multT(symmetric, v, null, 1.5);
+		for (int i = 0; i < n; ++i)
+		{
+			assert Math.abs(multSymmetric[i] - mult[i]) < 1e-9;
+			assert multTSymmetric[i] == multSymmetric[i];
+			assert multParallel[i] == multSymmetric[i];
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package de.dailab.recommender.text;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import de.dailab.recommender.dataset.Dataset;
+import de.dailab.recommender.dataset.DatasetEntry;
+import de.dailab.recommender.dataset.Entity;
+import de.dailab.recommender.dataset.EntityType;
+import de.dailab.recommender.dataset.MetadataName;
+import de.dailab.recommender.dataset.RelationshipFormat;
+import de.dailab.recommender.dataset.RelationshipSet;
+import de.dailab.recommender.dataset.RelationshipType;
+import de.dailab.recommender.matrix.Matrix;
+
+/**
+ * Test the parsing of relationship files, both uncompressed and compressed.
+ * 
+ * @author kunegis
+ */
+public class TestRelationshipParser
+{
+	/**
+	 * Read a small file with comments, empty lines, CRLF line ends, weights in various formats and repeated entries.
+	 */
+	@Test
+	public void testRead()
+	    throws IOException, TextSyntaxException
+	{
+		final File file = write("% bip signed\n% 5 3 4\n% ent.user ent.item double.rating\n" + "1 1 1\n"
+		    + "% comment\n" + "\n" + "2 3 -2.5\r\n" + "3\t4  1e-3\n" + "1 1 0.1\n"
+		    + "3 2 123456789012345678\n" + "2  2\t+7.25E2 \n");
+		try
+		{
+			final RelationshipSet relationshipSet = TextReader.readRelationshipSet(file);
+			assert relationshipSet.getRelationshipFormat() == RelationshipFormat.BIP;
+			final Matrix matrix = relationshipSet.getMatrix();
+			assert matrix.rows() == 3;
+			assert matrix.cols() == 4;
+			assert matrix.nnz() == 5;
+			assert matrix.get(0, 0) == 0.1;
+			assert matrix.get(1, 2) == -2.5;
+			assert matrix.get(2, 3) == 1e-3;
+			assert matrix.get(2, 1) == 123456789012345678.;
+			assert matrix.get(1, 1) == 725;
+			assert matrix.get(0, 1) == 0;
+			assert matrix.get(0, 3) == 0;
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Parse a file large enough to be split into several chunks, without counts in the header. Lines are not aligned
+	 * to chunks, so some of them span two chunks. Weights are stored as float, the default value type.
+	 */
+	@Test
+	public void testChunks()
+	    throws IOException, TextSyntaxException
+	{
+		final Random random = new Random(23);
+		final Map <Long, Double> entries = new HashMap <Long, Double>();
+		final StringBuilder text = new StringBuilder("% asym positive\n");
+		int rowMax = 0, colMax = 0;
+		for (int k = 0; k < 250000; ++k)
+		{
+			final int row = 1 + random.nextInt(5000);
+			final int col = 1 + random.nextInt(3000);
+			final double weight = random.nextInt(3) == 0 ? random.nextInt(100) : random.nextDouble();
+			entries.put((long) row << 32 | col, weight);
+			rowMax = Math.max(rowMax, row);
+			colMax = Math.max(colMax, col);
+			text.append(row).append(' ').append(col).append(' ').append(weight).append('\n');
+		}
+		assert text.length() > 4 << 20;
+
+		final File file = write(text.toString());
+		try
+		{
+			final Matrix matrix = TextReader.readRelationshipSet(file).getMatrix();
+			assert matrix.rows() == Math.max(rowMax, colMax);
+			assert matrix.cols() == matrix.rows();
+			assert matrix.nnz() == entries.size();
+			for (final Map.Entry <Long, Double> entry: entries.entrySet())
+			{
+				final int row = (int) (entry.getKey() >>> 32) - 1;
+				final int col = (int) (long) entry.getKey() - 1;
+				assert matrix.get(row, col) == (float) (double) entry.getValue();
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	/**
+	 * Syntax errors give the number of the line as counted from the beginning of the file.
+	 */
+	@Test
+	public void testSyntaxError()
+	    throws IOException
+	{
+		final String lines[] = new String[]
+		{ "1 2 x", "1 0", "1 99999999999", "1", "a 2" };
+		for (final String line: lines)
+		{
+			final File file = write("% bip positive\n1 1 1\n\n% comment\n" + line + "\n2 2 1\n");
+			try
+			{
+				TextReader.readRelationshipSet(file);
+				assert false;
+			}
+			catch (final TextSyntaxException textSyntaxException)
+			{
+				assert textSyntaxException.getMessage().startsWith(file.getPath() + ":5:");
+			}
+			finally
+			{
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Parsed weights are equal to those returned by Double.parseDouble().
+	 */
+	@Test
+	public void testParseDouble()
+	{
+		final Random random = new Random(42);
+		for (int k = 0; k < 100000; ++k)
+		{
+			final String string;
+			switch (k % 4)
+			{
+			default:
+				string = Double.toString(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+				break;
+			case 1:
+				string = Long.toString(random.nextLong() >> random.nextInt(64));
+				break;
+			case 2:
+				string = String.format(Locale.ENGLISH, "%." + random.nextInt(18) + "f", random.nextDouble()
+				    * random.nextInt(10000));
+				break;
+			case 3:
+				string = (random.nextInt(100000) - 50000) + "e" + (random.nextInt(60) - 30);
+			}
+
+			final ByteBuffer buffer = ByteBuffer.wrap((" " + string + " ").getBytes());
+			assert RelationshipParser.parseDouble(buffer, 1, string.length() + 1) == Double.parseDouble(string)
+			    : string;
+		}
+	}
+
+	/**
+	 * A compressed file is read in several chunks, with the same result as the uncompressed file. Syntax errors give
+	 * the line number in the uncompressed content.
+	 */
+	@Test
+	public void testCompressed()
+	    throws IOException, TextSyntaxException
+	{
+		final Random random = new Random(31);
+		final StringBuilder text = new StringBuilder("% bip signed\n% 0 4000 2000\n% ent.user ent.item double.weight\n");
+		for (int k = 0; k < 200000; ++k)
+			text.append(1 + random.nextInt(4000)).append('\t').append(1 + random.nextInt(2000)).append(' ').append(
+			    random.nextGaussian()).append('\n');
+		assert text.length() > 4 << 20;
+
+		final File file = write(text.toString());
+		final File directory = createDirectory();
+		final File compressedFile = new File(directory, "rel.test.gz");
+		write(compressedFile, text.toString());
+		try
+		{
+			final RelationshipSet relationshipSet = TextReader.readRelationshipSet(file);
+			final RelationshipSet compressedRelationshipSet = TextReader.readRelationshipSet(compressedFile);
+			assert compressedRelationshipSet.getType().equals(relationshipSet.getType());
+			assert compressedRelationshipSet.getSubject().equals(relationshipSet.getSubject());
+			final Matrix matrix = relationshipSet.getMatrix();
+			final Matrix compressedMatrix = compressedRelationshipSet.getMatrix();
+			assert compressedMatrix.rows() == matrix.rows() && compressedMatrix.cols() == matrix.cols();
+			assert compressedMatrix.nnz() == matrix.nnz();
+			for (int i = 0; i < matrix.rows(); ++i)
+			{
+				assert compressedMatrix.getRowCount(i) == matrix.getRowCount(i);
+				for (int j = 0; j < matrix.cols(); j += 97)
+					assert compressedMatrix.get(i, j) == matrix.get(i, j);
+			}
+
+			write(compressedFile, "% bip positive\n1 1 1\n\n% comment\n1 2 x\n2 2 1\n");
+			try
+			{
+				TextReader.readRelationshipSet(compressedFile);
+				assert false;
+			}
+			catch (final TextSyntaxException textSyntaxException)
+			{
+				assert textSyntaxException.getMessage().startsWith(compressedFile.getPath() + ":5:");
+			}
+		}
+		finally
+		{
+			file.delete();
+			compressedFile.delete();
+		}
+	}
+
+	/**
+	 * A dataset directory with compressed entity and relationship files. When both the compressed and the
+	 * uncompressed file are present, the uncompressed one is read.
+	 */
+	@Test
+	public void testCompressedDataset()
+	    throws IOException, TextSyntaxException
+	{
+		final File directory = createDirectory();
+		final File files[] = new File[]
+		{ new File(directory, "ent.user.gz"), new File(directory, "rel.follow.gz"), new File(directory, "rel.like"),
+		    new File(directory, "rel.like.gz") };
+		write(files[0], "%\n% 3\n% ent dat.string.name\n1 a\n2 b\n3 c\n");
+		write(files[1], "% asym unweighted\n% 2 3 3\n% ent.user ent.user\n1 2\n3 1\n");
+		write(files[2], "% asym unweighted\n% 1 3 3\n% ent.user ent.user\n2 3\n");
+		write(files[3], "% asym unweighted\n% 1 3 3\n% ent.user ent.user\n1 3\n");
+		try
+		{
+			final Dataset dataset = new TextDataset(directory);
+			final EntityType user = new EntityType("user");
+			assert dataset.getEntitySet(user).size() == 3;
+			assert "c".equals(dataset.getEntitySet(user).getMetadata(2, new MetadataName("name")));
+			assert dataset.getRelationshipSets().size() == 2;
+			final Matrix follow = dataset.getRelationshipSet(new RelationshipType("follow")).getMatrix();
+			assert follow.nnz() == 2 && follow.get(0, 1) == 1 && follow.get(2, 0) == 1;
+			final Matrix like = dataset.getRelationshipSet(new RelationshipType("like")).getMatrix();
+			assert like.nnz() == 1 && like.get(1, 2) == 1;
+		}
+		finally
+		{
+			for (final File file: files)
+				file.delete();
+		}
+	}
+
+	/**
+	 * In a dataset read from a SYM file, each edge is found once from each of its entities: forward from the entity
+	 * in the first column of the file and backward from the other.
+	 */
+	@Test
+	public void testSymmetric()
+	    throws IOException, TextSyntaxException
+	{
+		final File directory = createDirectory();
+		final File files[] = new File[]
+		{ new File(directory, "ent.user"), new File(directory, "rel.friend") };
+		write(files[0], "%\n% 3\n% ent\n1\n2\n3\n");
+		write(files[1], "% sym positive\n% 2 3 3\n% ent.user ent.user double.weight\n1 2 0.5\n3 2 2\n");
+		try
+		{
+			final Dataset dataset = new TextDataset(directory);
+			final EntityType user = new EntityType("user");
+			assert dataset.getRelationshipSet(new RelationshipType("friend")).getMatrix().nnz() == 2;
+
+			final List <DatasetEntry> neighbors = new ArrayList <DatasetEntry>();
+			for (final DatasetEntry datasetEntry: dataset.getNeighbors(new Entity(user, 1)))
+				neighbors.add(datasetEntry);
+			assert neighbors.size() == 2;
+			assert neighbors.get(0).entity.equals(new Entity(user, 0)) && !neighbors.get(0).forward;
+			assert neighbors.get(0).weight == 0.5;
+			assert neighbors.get(1).entity.equals(new Entity(user, 2)) && !neighbors.get(1).forward;
+			assert neighbors.get(1).weight == 2;
+
+			int count = 0;
+			for (final DatasetEntry datasetEntry: dataset.getNeighbors(new Entity(user, 0)))
+			{
+				assert datasetEntry.entity.equals(new Entity(user, 1)) && datasetEntry.forward;
+				++count;
+			}
+			assert count == 1;
+
+			/* The same holds for the adjacency index of the frozen dataset */
+			dataset.freeze();
+			count = 0;
+			for (final DatasetEntry datasetEntry: dataset.getNeighbors(new Entity(user, 1)))
+			{
+				assert !datasetEntry.forward;
+				++count;
+			}
+			assert count == 2;
+		}
+		finally
+		{
+			for (final File file: files)
+				file.delete();
+		}
+	}
+
+	/**
+	 * Write a relationship file in a new temporary directory.
+	 */
+	private static File write(String text)
+	    throws IOException
+	{
+		final File file = new File(createDirectory(), "rel.test");
+		write(file, text);
+		return file;
+	}
+
+	/**
+	 * Write a file, compressing it when its name ends in ".gz".
+	 */
+	private static void write(File file, String text)
+	    throws IOException
+	{
+		final OutputStream outputStream = new FileOutputStream(file);
+		final Writer writer = new OutputStreamWriter(Utils.isCompressed(file) ? new GZIPOutputStream(outputStream)
+		    : outputStream, "UTF-8");
+		try
+		{
+			writer.write(text);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/**
+	 * A new temporary directory that is deleted on exit when it is empty.
+	 */
+	private static File createDirectory()
+	    throws IOException
+	{
+		final File directory = File.createTempFile("relationship", ".dir");
+		directory.delete();
+		directory.mkdir();
+		directory.deleteOnExit();
+		return directory;
+	}
+}
@@ -0,0 +1,278 @@
+package de.dailab.recommender.text;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.dailab.recommender.dataset.Dataset;
+import de.dailab.recommender.dataset.EntitySet;
+import de.dailab.recommender.dataset.EntityType;
+import de.dailab.recommender.dataset.MetadataName;
+import de.dailab.recommender.dataset.RelationshipFormat;
+import de.dailab.recommender.dataset.RelationshipSet;
+import de.dailab.recommender.dataset.RelationshipType;
+import de.dailab.recommender.dataset.WeightRange;
+import de.dailab.recommender.matrix.Matrix;
+import de.dailab.recommender.matrix.MatrixCursor;
+import de.dailab.recommender.matrix.ZeroMatrix;
+import de.dailab.recommender.matrix.template.MatrixBuilder;
+
+/**
+ * Test writing datasets to text files.
+ * 
+ * @author kunegis
+ */
+public class TestTextWriter
+{
+	/**
+	 * A dataset with metadata and weighted, unweighted and symmetric relationship sets is read back with the same
+	 * entities, metadata and weights, both when written sequentially and in parallel.
+	 */
+	@Test
+	public void testRoundTrip()
+	    throws IOException, TextSyntaxException
+	{
+		final Random random = new Random(55);
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+		final MetadataName name = new MetadataName("name"), age = new MetadataName("age"), score = new MetadataName(
+		    "score"), date = new MetadataName("date");
+
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(200);
+		final List <MetadataName> metadataNames = new ArrayList <MetadataName>();
+		metadataNames.add(name);
+		metadataNames.add(age);
+		metadataNames.add(score);
+		metadataNames.add(date);
+		final List <Object> sampleMetadata = new ArrayList <Object>();
+		sampleMetadata.add("");
+		sampleMetadata.add(0);
+		sampleMetadata.add(0.);
+		sampleMetadata.add(new Date());
+		users.setMetadataNames(metadataNames, sampleMetadata);
+		for (int i = 0; i < 200; ++i)
+		{
+			users.setMetadata(i, name, "user \"\u00e4\\" + i);
+			users.setMetadata(i, age, random.nextInt(100) - 10);
+			users.setMetadata(i, score, i % 2 == 0 ? random.nextGaussian() : random.nextInt(1000) / 100.);
+			users.setMetadata(i, date, new Date(random.nextLong() >> 20));
+		}
+		dataset.addEntitySet(users);
+		final EntitySet items = new EntitySet(item);
+		items.setSize(100);
+		dataset.addEntitySet(items);
+
+		final MatrixBuilder ratingBuilder = new MatrixBuilder(200, 100, double.class.getSimpleName());
+		final MatrixBuilder viewBuilder = new MatrixBuilder(200, 100, float.class.getSimpleName());
+		final MatrixBuilder contactBuilder = new MatrixBuilder(200, 200, boolean.class.getSimpleName());
+		for (int k = 0; k < 3000; ++k)
+		{
+			final double rating;
+			switch (k % 5)
+			{
+			default:
+				rating = random.nextGaussian();
+				break;
+			case 1:
+				rating = random.nextInt(11) / 2. - 2;
+				break;
+			case 2:
+				rating = (random.nextInt(2000) - 1000) / 1000.;
+				break;
+			case 3:
+				rating = random.nextGaussian() * Math.pow(10, random.nextInt(80) - 40);
+				break;
+			case 4:
+				rating = random.nextInt(5) == 0 ? -0. : random.nextLong();
+			}
+			ratingBuilder.add(random.nextInt(200), random.nextInt(100), rating);
+			viewBuilder.add(random.nextInt(200), random.nextInt(100), k % 2 == 0 ? random.nextFloat() : 0.1
+			    * random.nextInt(100));
+			contactBuilder.add(random.nextInt(200), random.nextInt(200));
+		}
+		addRelationshipSet(dataset, "rating", user, item, RelationshipFormat.BIP, WeightRange.SIGNED, ratingBuilder
+		    .build());
+		addRelationshipSet(dataset, "view", user, item, RelationshipFormat.BIP, WeightRange.POSITIVE, viewBuilder
+		    .build());
+		addRelationshipSet(dataset, "contact", user, user, RelationshipFormat.SYM, WeightRange.UNWEIGHTED,
+		    contactBuilder.buildSymmetric());
+
+		for (final boolean parallel: new boolean[] { false, true })
+		{
+			final File directory = File.createTempFile("dataset", ".text");
+			directory.delete();
+			directory.mkdir();
+			try
+			{
+				TextWriter.write(directory, dataset, parallel);
+				final Dataset read = new TextDataset(directory);
+
+				final EntitySet readUsers = read.getEntitySet(user);
+				assert readUsers.size() == 200;
+				assert read.getEntitySet(item).size() == 100;
+				for (int i = 0; i < 200; ++i)
+				{
+					assert readUsers.getMetadata(i, name).equals(users.getMetadata(i, name));
+					assert readUsers.getMetadata(i, age).equals(users.getMetadata(i, age));
+					assert readUsers.getMetadata(i, score).equals(users.getMetadata(i, score));
+					assert readUsers.getMetadata(i, date).equals(users.getMetadata(i, date));
+				}
+
+				assert read.getRelationshipSets().size() == 3;
+				for (final RelationshipSet relationshipSet: dataset.getRelationshipSets())
+				{
+					final RelationshipSet readRelationshipSet = read.getRelationshipSet(relationshipSet.getType());
+					assert readRelationshipSet.getRelationshipFormat() == relationshipSet.getRelationshipFormat();
+					assert readRelationshipSet.getWeightRange() == relationshipSet.getWeightRange();
+					final Matrix matrix = relationshipSet.getMatrix();
+					final Matrix readMatrix = readRelationshipSet.getMatrix();
+					assert readMatrix.getWeightType().equals(matrix.getWeightType());
+					assert readMatrix.rows() == matrix.rows() && readMatrix.cols() == matrix.cols();
+					assert readMatrix.nnz() == matrix.nnz();
+					final MatrixCursor cursor = matrix.cursor();
+					for (int i = 0; i < matrix.rows(); ++i)
+					{
+						for (cursor.row(i); cursor.next();)
+						{
+							final double value = readMatrix.get(i, cursor.index());
+							assert Double.doubleToLongBits(value) == Double.doubleToLongBits(cursor.value());
+						}
+					}
+				}
+			}
+			finally
+			{
+				for (final File file: directory.listFiles())
+					file.delete();
+				directory.delete();
+			}
+		}
+	}
+
+	/**
+	 * A relationship set with an empty entity set is written without entries and is read back with the same size.
+	 */
+	@Test
+	public void testEmptyEntitySet()
+	    throws IOException, TextSyntaxException
+	{
+		final EntityType user = new EntityType("user"), item = new EntityType("item");
+		final Dataset dataset = new Dataset();
+		final EntitySet users = new EntitySet(user);
+		users.setSize(3);
+		dataset.addEntitySet(users);
+		dataset.addEntitySet(new EntitySet(item));
+		addRelationshipSet(dataset, "rating", user, item, RelationshipFormat.BIP, WeightRange.UNWEIGHTED,
+		    new ZeroMatrix(3, 0));
+
+		final File directory = File.createTempFile("dataset", ".text");
+		directory.delete();
+		directory.mkdir();
+		try
+		{
+			TextWriter.write(directory, dataset, false);
+			final Matrix matrix = TextReader.readRelationshipSet(new File(directory, "rel.rating")).getMatrix();
+			assert matrix.rows() == 3 && matrix.cols() == 0;
+			assert matrix.nnz() == 0;
+		}
+		finally
+		{
+			for (final File file: directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Numbers are written with the fewest decimal places that give them back exactly, and are read back exactly by
+	 * Double.parseDouble().
+	 */
+	@Test
+	public void testFormat()
+	    throws IOException
+	{
+		final double values[] = new double[] { 0, -0., 1, -17, 0.1, 2.75, -0.001, 1e14, 1e-20, 0.1f, 1e300,
+		    Double.MIN_VALUE, Double.NaN, Double.NEGATIVE_INFINITY };
+		final String strings[] = new String[] { "0", "-0.0", "1", "-17", "0.1", "2.75", "-0.001", "100000000000000",
+		    "1.0E-20", "0.10000000149011612", "1.0E300", "4.9E-324", "NaN", "-Infinity" };
+
+		final Random random = new Random(7);
+		final double randomValues[] = new double[10000];
+		for (int k = 0; k < randomValues.length; ++k)
+			randomValues[k] = k % 2 == 0 ? random.nextGaussian() * Math.pow(10, random.nextInt(60) - 30) : random
+			    .nextInt(1000000) / Math.pow(10, random.nextInt(8));
+
+		final File file = File.createTempFile("numbers", ".txt");
+		try
+		{
+			final TextOutput output = new TextOutput(file);
+			for (final double value: values)
+			{
+				output.write(value, false);
+				output.write('\n');
+			}
+			output.write(0.1f, true);
+			output.write('\n');
+			for (final double value: randomValues)
+			{
+				output.write(value, false);
+				output.write('\n');
+				output.write((float) value, true);
+				output.write('\n');
+			}
+			output.close();
+
+			final String lines[] = read(file).split("\n");
+			assert lines.length == values.length + 1 + 2 * randomValues.length;
+			for (int k = 0; k < values.length; ++k)
+				assert lines[k].equals(strings[k]) : lines[k];
+			assert lines[values.length].equals("0.1");
+			for (int k = 0; k < randomValues.length; ++k)
+			{
+				final String line = lines[values.length + 1 + 2 * k];
+				final String singleLine = lines[values.length + 2 + 2 * k];
+				assert Double.parseDouble(line) == randomValues[k] : line;
+				assert line.length() <= Double.toString(randomValues[k]).length() : line;
+				assert (float) Double.parseDouble(singleLine) == (float) randomValues[k] : singleLine;
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	private static void addRelationshipSet(Dataset dataset, String name, EntityType subject, EntityType object,
+	    RelationshipFormat relationshipFormat, WeightRange weightRange, Matrix matrix)
+	{
+		final RelationshipSet relationshipSet = new RelationshipSet(new RelationshipType(name), subject, object,
+		    relationshipFormat, weightRange);
+		relationshipSet.setMatrix(matrix);
+		dataset.addRelationshipSet(relationshipSet);
+	}
+
+	private static String read(File file)
+	    throws IOException
+	{
+		final InputStream inputStream = new FileInputStream(file);
+		try
+		{
+			final StringBuilder ret = new StringBuilder();
+			for (int c; (c = inputStream.read()) >= 0;)
+				ret.append((char) c);
+			return ret.toString();
+		}
+		finally
+		{
+			inputStream.close();
+		}
+	}
+}
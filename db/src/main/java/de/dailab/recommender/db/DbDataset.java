@@ -21,8 +21,7 @@ import de.dailab.recommender.dataset.MetadataIndex;
 import de.dailab.recommender.dataset.MetadataName;
 import de.dailab.recommender.dataset.RelationshipSet;
 import de.dailab.recommender.dataset.SingleMetadataIndex;
-import de.dailab.recommender.matrix.Matrix;
-import de.dailab.recommender.matrix.template.MatrixFactory;
+import de.dailab.recommender.matrix.template.MatrixBuilder;
 
 /**
  * A dataset read from a database.
@@ -164,11 +163,8 @@ public class DbDataset
 			final int m = subjectCache.size();
 			final int n = objectCache.size();
 
-			Matrix matrix;
-			if (relationshipTable.columnWeight == null)
-				matrix = MatrixFactory.newMemoryMatrix(m, n, boolean.class.getSimpleName());
-			else
-				matrix = MatrixFactory.newMemoryMatrix(m, n);
+			final MatrixBuilder matrixBuilder = new MatrixBuilder(m, n,
+			    relationshipTable.columnWeight == null ? boolean.class.getSimpleName() : null);
 
 			PreparedStatement preparedStatement = null;
 			ResultSet resultSet = null;
@@ -208,7 +204,7 @@ public class DbDataset
 						assert !Double.isNaN(weight) && !Double.isInfinite(weight);
 					}
 
-					matrix.set(i, j, weight);
+					matrixBuilder.add(i, j, weight);
 				}
 			}
 			finally
@@ -216,7 +212,7 @@ public class DbDataset
 				if (resultSet != null) resultSet.close();
 				if (preparedStatement != null) preparedStatement.close();
 			}
-			relationshipSet.setMatrix(matrix);
+			relationshipSet.setMatrix(matrixBuilder.build());
 
 			this.addRelationshipSet(relationshipSet);
 		}
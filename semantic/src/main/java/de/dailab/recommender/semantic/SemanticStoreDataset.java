@@ -442,6 +442,8 @@ public class SemanticStoreDataset
 			final int newId = entitySet.addEntity();
 			entitySet.setMetadata(newId, METADATA_URI, uriSubject);
 		}
+		for (final EntitySet entitySet: getEntitySets())
+			entitySet.trimToSize();
 
 		/*
 		 * Add relationships